@@ -0,0 +1,42 @@
+package cstjean.mobile.dames;
+
+import android.util.Log;
+import cstjean.mobile.dames.damier.EcouteurPartie;
+import cstjean.mobile.dames.damier.Pion;
+
+/**
+ * Écouteur qui écrit les événements de la partie dans Logcat.
+ * N'est abonné que si la journalisation de débogage est activée pour {@link #TAG},
+ * par exemple avec {@code adb shell setprop log.tag.JeuDames DEBUG}.
+ */
+public class JournalPartie implements EcouteurPartie {
+    /**
+     * Étiquette des messages dans Logcat.
+     */
+    public static final String TAG = "JeuDames";
+
+    @Override
+    public void coupJoue(int depart, int arrivee) {
+        Log.d(TAG, "Coup joué : " + depart + " → " + arrivee);
+    }
+
+    @Override
+    public void coupRefuse(int depart, int arrivee, int raison) {
+        Log.d(TAG, "Coup refusé : " + depart + " → " + arrivee + " (raison " + raison + ")");
+    }
+
+    @Override
+    public void prise(int depart, int arrivee, int positionPrise, int codePionPris) {
+        Log.d(TAG, "Position pion capturé : " + positionPrise);
+    }
+
+    @Override
+    public void promotion(int position, Pion.CouleurPion couleur) {
+        Log.d(TAG, "Le pion à la position " + position + " a été promu en dame !");
+    }
+
+    @Override
+    public void changementTour(int tour) {
+        Log.d(TAG, "Tour du joueur " + (tour + 1));
+    }
+}
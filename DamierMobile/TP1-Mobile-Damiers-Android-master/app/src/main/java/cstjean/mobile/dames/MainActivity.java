@@ -3,6 +3,8 @@ package cstjean.mobile.dames;
 import android.content.Intent;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
@@ -11,10 +13,24 @@ import android.widget.GridLayout;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.Toast;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import cstjean.mobile.dames.damier.Coup;
 import cstjean.mobile.dames.damier.Dame;
 import cstjean.mobile.dames.damier.JeuDames;
 import cstjean.mobile.dames.damier.Pion;
+import cstjean.mobile.dames.damier.Variante;
+import cstjean.mobile.dames.metriques.Metriques;
+import cstjean.mobile.dames.moteur.AnalyseIndices;
+import cstjean.mobile.dames.moteur.AnalysePartie;
+import cstjean.mobile.dames.moteur.AnnotationCoup;
+import cstjean.mobile.dames.moteur.EvaluationClassique;
+import cstjean.mobile.dames.moteur.Indice;
+import cstjean.mobile.dames.moteur.ResultatRecherche;
+import cstjean.mobile.dames.moteur.ServiceMoteur;
+import cstjean.mobile.dames.stockage.JournalCoups;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -27,7 +43,12 @@ public class MainActivity extends AppCompatActivity {
      * Objet représentant l'état du jeu de dames.
      * Il contient la logique du jeu, telle que les règles et l'état des pièces.
      */
-    private final JeuDames jeu = new JeuDames();
+    private JeuDames jeu;
+
+    /**
+     * Variante jouée, qui fixe la taille du damier affiché et la numérotation des cases.
+     */
+    private Variante variante;
 
     /**
      * Référence à l'ImageView représentant le dernier pion sélectionné.
@@ -47,16 +68,85 @@ public class MainActivity extends AppCompatActivity {
      */
     private final List<Integer> casesSurbrillantes = new ArrayList<>();
 
+    /**
+     * Temps accordé au moteur pour suggérer un coup, en millisecondes.
+     */
+    private static final long BUDGET_SUGGESTION = 1000;
+
+    /**
+     * Temps accordé au calcul des indices affichés sur les destinations d'un pion, en millisecondes.
+     */
+    private static final long BUDGET_INDICES = 200;
+
+    /**
+     * Temps accordé à la réflexion du moteur pendant que le joueur réfléchit, en millisecondes.
+     */
+    private static final long BUDGET_PONDERATION = 30_000;
+
+    /**
+     * Fichier des ressources contenant les paramètres réglés de l'évaluation.
+     */
+    private static final String FICHIER_PARAMETRES = "evaluation.properties";
+
+    /**
+     * Clé de l'état sérialisé de la partie dans le {@code Bundle} de l'activité.
+     */
+    private static final String CLE_ETAT_PARTIE = "etatPartie";
+
+    /**
+     * Moteur exécutant ses recherches en arrière-plan ; les résultats reviennent sur le thread principal.
+     * Le moteur et les analyses reposent sur des masques de 64 bits : ils valent null pour une
+     * variante de plus de 64 cases, qui se joue alors sans suggestions ni indices.
+     */
+    private ServiceMoteur moteur;
+
+    /**
+     * Analyse classant les coups du joueur au trait pour colorer les destinations proposées.
+     */
+    private AnalyseIndices indices;
+
+    /**
+     * Analyse annotant les coups de la partie une fois celle-ci terminée.
+     */
+    private AnalysePartie analysePartie;
+
+    /**
+     * Indique si la fin de la partie a déjà été annoncée et son analyse lancée.
+     */
+    private boolean partieTerminee = false;
+
+    /**
+     * Journal rendant chaque coup durable, ou null si le stockage est indisponible.
+     */
+    private JournalCoups journal;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        String nomVariante = getIntent().getStringExtra("variante");
+        variante = nomVariante != null ? Variante.valueOf(nomVariante) : Variante.INTERNATIONALE;
+        byte[] etat = savedInstanceState != null ? savedInstanceState.getByteArray(CLE_ETAT_PARTIE) : null;
+        jeu = etat != null ? JeuDames.restaurer(etat) : new JeuDames(variante);
+        ouvrirJournal(etat == null);
+        variante = jeu.getDamier().getVariante();
+        Handler principal = new Handler(Looper.getMainLooper());
+        if (variante.supporteMasques()) {
+            moteur = new ServiceMoteur(variante, principal::post, chargerParametresEvaluation());
+            indices = new AnalyseIndices(variante, principal::post);
+            analysePartie = new AnalysePartie(variante, principal::post);
+        }
+        Metriques.setTraceur(new TraceurAndroid());
+        if (Log.isLoggable(JournalPartie.TAG, Log.DEBUG)) {
+            jeu.setEcouteur(new JournalPartie());
+        }
         String player1Name = getIntent().getStringExtra("player1Name");
         String player2Name = getIntent().getStringExtra("player2Name");
         String currentPlayer = (jeu.getTour() == 0) ? player1Name : player2Name;
         Toast.makeText(this, "C'est le tour de " + currentPlayer, Toast.LENGTH_SHORT).show();
         GridLayout gridLayout = findViewById(R.id.myGridLayout);
-        int boardSize = 10;
+        int boardSize = variante.getTaille();
+        int tailleCase = Math.min(100, getResources().getDisplayMetrics().widthPixels / (boardSize + 1));
         gridLayout.setRowCount(boardSize);
         gridLayout.setColumnCount(boardSize);
         for (int row = 0; row < boardSize; row++) {
@@ -79,24 +169,13 @@ public class MainActivity extends AppCompatActivity {
                         }
                         if (dernierPionSelectionne != null && positionPionSelectionne != -1) {
                             Log.d("DEPLACEMENT", "Passer de " + positionPionSelectionne + " à " + positionManoury);
-                            int delta = positionManoury - positionPionSelectionne;
-                            int positionCapturee = jeu.getPositionIntermediaire(positionPionSelectionne, delta);
-                            Pion pionCapture = jeu.getDamier().getPion(positionCapturee);
-                            int positionCaptureePrecedente =
-                                    jeu.getPositionIntermediaire(positionPionSelectionne, delta);
-                            int couleurPionCapture = pionCapture != null ? pionCapture.getCouleur().ordinal() : -1;
-                            if (jeu.capturerPion(positionPionSelectionne, positionManoury)) {
-                                jeu.deplacerPion(positionPionSelectionne, positionManoury);
-                                jeu.getHistoriqueActions()
-                                        // Je peux pas l'indenter pour réduire la ligne car sinon
-                                        // j'ai une erreur de mauvaise indentation.
-                                        .push(new int[]{positionPionSelectionne, positionManoury, positionCaptureePrecedente, couleurPionCapture});
-                                enleverImagePionCapture(positionCapturee);
-                                jeu.getDamier().enleverPion(positionCapturee);
-                                mettreAjourVue(positionPionSelectionne, positionManoury);
-                            } else if (jeu.deplacerPion(positionPionSelectionne, positionManoury)) {
-                                jeu.getHistoriqueActions()
-                                        .push(new int[]{positionPionSelectionne, positionManoury, -1, -1});
+                            if (jeu.capturerPion(positionPionSelectionne, positionManoury)
+                                    || jeu.deplacerPion(positionPionSelectionne, positionManoury)) {
+                                int positionCapturee = Coup.casePrise(jeu.getDernierCoup());
+                                if (positionCapturee != 0) {
+                                    enleverImagePionCapture(positionCapturee);
+                                }
+                                journaliser(false);
                                 mettreAjourVue(positionPionSelectionne, positionManoury);
                             } else {
                                 Log.d("DEPLACEMENT", "Déplacement invalide.");
@@ -127,18 +206,11 @@ public class MainActivity extends AppCompatActivity {
                 });
                 Pion pion = (positionManoury != -1) ? jeu.getDamier().getPion(positionManoury) : null;
                 if (pion != null) {
-                    ImageView pionView = new ImageView(this);
-                    pionView.setImageResource(pion.getCouleur() == Pion.CouleurPion.noir ?
-                            R.drawable.pion_noir : R.drawable.pion_blanc);
-                    FrameLayout.LayoutParams params =
-                            new FrameLayout.LayoutParams(FrameLayout.LayoutParams.MATCH_PARENT,
-                                    FrameLayout.LayoutParams.MATCH_PARENT);
-                    pionView.setLayoutParams(params);
-                    caseLayout.addView(pionView);
+                    caseLayout.addView(getImageView(pion));
                 }
                 GridLayout.LayoutParams params = new GridLayout.LayoutParams();
-                params.width = 100;
-                params.height = 100;
+                params.width = tailleCase;
+                params.height = tailleCase;
                 caseLayout.setLayoutParams(params);
                 gridLayout.addView(caseLayout);
             }
@@ -151,6 +223,152 @@ public class MainActivity extends AppCompatActivity {
             annulerDerniereAction();
         });
         linearLayout.addView(boutonAnnuler);
+        if (moteur != null) {
+            Button boutonSuggestion = new Button(this);
+            boutonSuggestion.setText(R.string.suggestion);
+            boutonSuggestion.setOnClickListener(v -> moteur.chercher(jeu.getInstantane(),
+                    Integer.MAX_VALUE, BUDGET_SUGGESTION, this::afficherSuggestion));
+            linearLayout.addView(boutonSuggestion);
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putByteArray(CLE_ETAT_PARTIE, jeu.sauvegarder());
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (moteur != null) {
+            moteur.ponderer(jeu.getInstantane(), BUDGET_PONDERATION);
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (moteur != null) {
+            moteur.annuler();
+            indices.annuler();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (moteur != null) {
+            moteur.fermer();
+            indices.fermer();
+            analysePartie.fermer();
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                Log.e("JOURNAL", "Fermeture du journal impossible", e);
+            }
+        }
+    }
+
+    /**
+     * Lit les paramètres réglés de l'évaluation dans les ressources de l'application,
+     * ou retourne les paramètres par défaut s'il n'y en a pas.
+     *
+     * @return Les paramètres de l'évaluation classique.
+     */
+    private int[] chargerParametresEvaluation() {
+        try (InputStream flux = getAssets().open(FICHIER_PARAMETRES)) {
+            return EvaluationClassique.chargerParametres(flux);
+        } catch (IOException e) {
+            Log.d("MOTEUR", "Paramètres d'évaluation par défaut : " + e.getMessage());
+            return EvaluationClassique.getParametresDefaut();
+        }
+    }
+
+    /**
+     * Ouvre le journal de la partie dans le stockage interne. Au lancement, une partie
+     * journalisée et pas encore terminée est reprise si elle existe et se joue dans la variante
+     * demandée, par exemple après que le système a tué l'application.
+     *
+     * @param reprendre true pour reprendre la partie du journal existant.
+     */
+    private void ouvrirJournal(boolean reprendre) {
+        try {
+            journal = reprendre ? JournalCoups.reprendre(getFilesDir()) : null;
+            if (journal != null && journal.getJeu().getDamier().getVariante() != variante) {
+                // Une autre variante a été choisie : la partie journalisée est abandonnée.
+                journal.close();
+                journal = null;
+            }
+            if (journal != null) {
+                jeu = journal.getJeu();
+            } else {
+                journal = JournalCoups.ouvrir(getFilesDir(), jeu);
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.e("JOURNAL", "Journal indisponible, la partie ne sera pas journalisée", e);
+            journal = null;
+        }
+    }
+
+    /**
+     * Ferme et supprime le journal d'une partie terminée, pour que le prochain lancement
+     * commence une nouvelle partie.
+     */
+    private void terminerJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+            JournalCoups.supprimer(getFilesDir());
+        } catch (IOException e) {
+            Log.e("JOURNAL", "Suppression du journal impossible", e);
+        }
+        journal = null;
+    }
+
+    /**
+     * Enregistre dans le journal le dernier coup joué ou son annulation.
+     *
+     * @param annulation true si le dernier coup vient d'être annulé.
+     */
+    private void journaliser(boolean annulation) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            if (annulation) {
+                journal.coupAnnule();
+            } else {
+                journal.coupJoue();
+            }
+        } catch (IOException e) {
+            Log.e("JOURNAL", "Écriture du journal impossible", e);
+            journal = null;
+        }
+    }
+
+    /**
+     * Met en surbrillance la case de départ et la case d'arrivée du coup suggéré par le moteur.
+     *
+     * @param resultat Le résultat de la recherche.
+     */
+    private void afficherSuggestion(ResultatRecherche resultat) {
+        if (resultat.getCoup() == Coup.AUCUN) {
+            return;
+        }
+        Log.d("SUGGESTION", resultat.toString());
+        GridLayout gridLayout = findViewById(R.id.myGridLayout);
+        reinitialiserCouleursCases();
+        int[] cases = {Coup.depart(resultat.getCoup()), Coup.arrivee(resultat.getCoup())};
+        for (int position : cases) {
+            int index = positionToIndex(position);
+            gridLayout.getChildAt(index).setBackgroundColor(getColor(R.color.suggestion));
+            casesSurbrillantes.add(index);
+        }
     }
 
     private void afficherTourActuel() {
@@ -161,10 +379,7 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private int calculerPositionManoury(int row, int col) {
-        if ((row + col) % 2 != 0) {
-            return (row * (10 / 2)) + (col / 2) + 1;
-        }
-        return -1;
+        return variante.getNumero(row, col);
     }
 
     private boolean caseContientPion(int row, int col) {
@@ -189,6 +404,10 @@ public class MainActivity extends AppCompatActivity {
         }
         afficherTourActuel();
         verifierVictoire();
+        if (moteur != null) {
+            indices.annuler();
+            moteur.ponderer(jeu.getInstantane(), BUDGET_PONDERATION);
+        }
     }
 
     private ImageView getImageView(Pion pion) {
@@ -208,9 +427,7 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private int positionToIndex(int positionManoury) {
-        int row = (positionManoury - 1) / (10 / 2);
-        int col = ((positionManoury - 1) % (10 / 2)) * 2 + (row % 2 == 0 ? 1 : 0);
-        return row * 10 + col;
+        return variante.getLigne(positionManoury) * variante.getTaille() + variante.getColonne(positionManoury);
     }
 
     /**
@@ -228,50 +445,25 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void annulerDerniereAction() {
-        if (jeu.getHistoriqueActions().isEmpty()) {
+        int coupAnnule = jeu.annulerDernierCoup();
+        if (coupAnnule == Coup.AUCUN) {
             Log.d("ANNULER_ACTION", "Aucune action à annuler.");
             return;
         }
-        int[] derniereAction = jeu.getHistoriqueActions().pop();
-        int positionInitiale = derniereAction[0];
-        int positionFinale = derniereAction[1];
-        if (derniereAction.length < 3) {
-            Pion pionDeplace = jeu.getDamier().getPion(positionFinale);
-            if (pionDeplace != null) {
-                jeu.getDamier().enleverPion(positionFinale);
-                if (pionDeplace instanceof Dame) {
-                    pionDeplace = new Pion(pionDeplace.getCouleur());
-                }
-                jeu.getDamier().ajouterPion(positionInitiale, pionDeplace);
-            }
-        } else {
-            int positionCapturee = derniereAction[2];
-            int couleurPionCapture = derniereAction[3];
-            Pion pionDeplace = jeu.getDamier().getPion(positionFinale);
-            if (pionDeplace != null) {
-                jeu.getDamier().enleverPion(positionFinale);
-                if (pionDeplace instanceof Dame) {
-                    pionDeplace = new Pion(pionDeplace.getCouleur());
-                }
-                jeu.getDamier().ajouterPion(positionInitiale, pionDeplace);
-            }
-            if (positionCapturee != -1 && couleurPionCapture != -1) {
-                Pion pionCapture = new Pion(Pion.CouleurPion.values()[couleurPionCapture]);
-                jeu.getDamier().ajouterPion(positionCapturee, pionCapture);
-                remettreImagePion(positionCapturee, couleurPionCapture);
-            }
+        journaliser(true);
+        int positionInitiale = Coup.depart(coupAnnule);
+        int positionFinale = Coup.arrivee(coupAnnule);
+        int positionCapturee = Coup.casePrise(coupAnnule);
+        if (positionCapturee != 0) {
+            remettreImagePion(positionCapturee);
         }
-        jeu.setTour(jeu.getTour() == 1 ? 0 : 1);
-        afficherTourActuel();
-        jeu.pionDevientDame(jeu.getDamier());
         mettreAjourVue(positionFinale, positionInitiale);
-        verifierVictoire();
     }
 
     /**
      * Cette méthode met en surbrillance les cases sur lesquelles un pion (ou une dame) peut se déplacer.
      * Elle parcourt toutes les cases du plateau et colore en vert celles où un mouvement est valide
-     * pour le pion sélectionné.
+     * pour le pion sélectionné, déplacement ou prise d'un saut.
      *
      * @param positionPion La position du pion sélectionné sur le damier.
      */
@@ -279,13 +471,23 @@ public class MainActivity extends AppCompatActivity {
         GridLayout gridLayout = findViewById(R.id.myGridLayout);
         reinitialiserCouleursCases();
         Pion pion = jeu.getDamier().getPion(positionPion);
-        if (pion instanceof Dame) {
+        if (pion instanceof Dame && !variante.supporteMasques()) {
+            for (int i = 0; i < gridLayout.getChildCount(); i++) {
+                int positionCase = calculerPositionManoury(i / variante.getTaille(), i % variante.getTaille());
+                if (positionCase != -1 && (jeu.deplacementValideDame(positionPion, positionCase)
+                        || jeu.getPositionPriseDame(positionPion, positionCase) != 0)) {
+                    gridLayout.getChildAt(i).setBackgroundColor(Color.GREEN);
+                    casesSurbrillantes.add(i);
+                }
+            }
+        } else if (pion instanceof Dame) {
+            long destinations = jeu.getDestinationsDame(positionPion);
             for (int i = 0; i < gridLayout.getChildCount(); i++) {
                 View caseView = gridLayout.getChildAt(i);
-                int row = i / 10;
-                int col = i % 10;
+                int row = i / variante.getTaille();
+                int col = i % variante.getTaille();
                 int positionCase = calculerPositionManoury(row, col);
-                if (positionCase != -1 && jeu.deplacementValideDame(positionPion, positionCase)) {
+                if (positionCase != -1 && (destinations & variante.getBit(positionCase)) != 0) {
                     caseView.setBackgroundColor(Color.GREEN);
                     casesSurbrillantes.add(i);
                 }
@@ -293,15 +495,49 @@ public class MainActivity extends AppCompatActivity {
         } else {
             for (int i = 0; i < gridLayout.getChildCount(); i++) {
                 View caseView = gridLayout.getChildAt(i);
-                int row = i / 10;
-                int col = i % 10;
+                int row = i / variante.getTaille();
+                int col = i % variante.getTaille();
                 int positionCase = calculerPositionManoury(row, col);
-                if (positionCase != -1 && jeu.deplacementValide(positionPion, positionCase)) {
+                if (positionCase != -1 && (jeu.deplacementValide(positionPion, positionCase)
+                        || jeu.getPositionPrise(positionPion, positionCase) != 0)) {
                     caseView.setBackgroundColor(Color.GREEN);
                     casesSurbrillantes.add(i);
                 }
             }
         }
+        if (!casesSurbrillantes.isEmpty() && moteur != null) {
+            moteur.annuler();
+            indices.calculer(jeu.getInstantane(), BUDGET_INDICES,
+                    resultats -> colorerIndices(positionPion, resultats));
+        }
+    }
+
+    /**
+     * Recolore les destinations en surbrillance du pion sélectionné selon la qualité des coups
+     * calculée par l'analyse des indices. Pour chaque destination, le meilleur coup l'emporte.
+     *
+     * @param positionPion La position du pion pour lequel les indices ont été demandés.
+     * @param resultats    Les coups du joueur au trait, du meilleur au pire.
+     */
+    private void colorerIndices(int positionPion, Indice[] resultats) {
+        if (positionPion != positionPionSelectionne) {
+            return;
+        }
+        GridLayout gridLayout = findViewById(R.id.myGridLayout);
+        List<Integer> colorees = new ArrayList<>();
+        for (Indice indice : resultats) {
+            if (Coup.depart(indice.getCoup()) != positionPion) {
+                continue;
+            }
+            Integer index = positionToIndex(Coup.arrivee(indice.getCoup()));
+            if (!casesSurbrillantes.contains(index) || colorees.contains(index)) {
+                continue;
+            }
+            int couleur = indice.getQualite() == Indice.BON ? R.color.indiceBon
+                    : indice.getQualite() == Indice.DOUTEUX ? R.color.indiceDouteux : R.color.indiceMauvais;
+            gridLayout.getChildAt(index).setBackgroundColor(getColor(couleur));
+            colorees.add(index);
+        }
     }
 
     private void verifierVictoire() {
@@ -309,16 +545,86 @@ public class MainActivity extends AppCompatActivity {
             afficherMessageVictoire("Le joueur blanc a gagné!");
         } else if (jeu.estFinDePartieNoir()) {
             afficherMessageVictoire("Le joueur noir a gagné!");
+        } else if (jeu.estPartieNulle()) {
+            afficherMessageVictoire("Partie nulle !");
         }
     }
 
     private void afficherMessageVictoire(String message) {
+        if (partieTerminee) {
+            return;
+        }
+        partieTerminee = true;
+        terminerJournal();
         Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+        if (analysePartie == null) {
+            retournerAuxJoueurs(2000);
+            return;
+        }
+        try {
+            analyserPartie();
+        } catch (IllegalArgumentException e) {
+            Log.e("ANALYSE", "Analyse de la partie impossible", e);
+            retournerAuxJoueurs(2000);
+        }
+    }
+
+    /**
+     * Annote chaque coup de la partie terminée, puis affiche le rapport : pour chaque demi-coup,
+     * le meilleur coup et la perte, sous un résumé des gaffes et des prises manquées. La fermeture
+     * du rapport ramène à l'écran des joueurs.
+     */
+    private void analyserPartie() {
+        analysePartie.analyser(jeu, AnalysePartie.PROFONDEUR_DEFAUT, AnalysePartie.BUDGET_DEFAUT,
+                new AnalysePartie.Rappel() {
+                    @Override
+                    public void coupAnalyse(AnnotationCoup annotation) {
+                        // Le rapport n'est affiché qu'une fois complet.
+                    }
+
+                    @Override
+                    public void analyseTerminee(AnnotationCoup[] annotations) {
+                        afficherRapport(annotations);
+                    }
+                });
+    }
+
+    /**
+     * Affiche le rapport d'analyse de la partie.
+     *
+     * @param annotations Les annotations, dans l'ordre de la partie.
+     */
+    private void afficherRapport(AnnotationCoup[] annotations) {
+        if (isFinishing()) {
+            return;
+        }
+        int gaffes = 0;
+        int prisesManquees = 0;
+        String[] lignes = new String[annotations.length];
+        for (int i = 0; i < annotations.length; i++) {
+            gaffes += annotations[i].estGaffe() ? 1 : 0;
+            prisesManquees += annotations[i].estPriseManquee() ? 1 : 0;
+            lignes[i] = annotations[i].toString();
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(getString(R.string.rapport_analyse, gaffes, prisesManquees))
+                .setItems(lignes, null)
+                .setPositiveButton(R.string.fermer, null)
+                .setOnDismissListener(dialogue -> retournerAuxJoueurs(0))
+                .show();
+    }
+
+    /**
+     * Revient à l'écran des joueurs.
+     *
+     * @param delaiMillis Le délai avant le retour, en millisecondes.
+     */
+    private void retournerAuxJoueurs(long delaiMillis) {
         new android.os.Handler().postDelayed(() -> {
             Intent intent = new Intent(MainActivity.this, PlayerNamesActivity.class);
             startActivity(intent);
             finish();
-        }, 2000);
+        }, delaiMillis);
     }
 
     /**
@@ -335,16 +641,12 @@ public class MainActivity extends AppCompatActivity {
         casesSurbrillantes.clear();
     }
 
-    private void remettreImagePion(int positionManoury, int couleurPionCapture) {
+    private void remettreImagePion(int positionManoury) {
         GridLayout gridLayout = findViewById(R.id.myGridLayout);
         FrameLayout caseCapturee = (FrameLayout) gridLayout.getChildAt(positionToIndex(positionManoury));
-        if (caseCapturee != null) {
-            ImageView pionView = new ImageView(this);
-            pionView.setImageResource(couleurPionCapture == 1 ? R.drawable.pion_noir : R.drawable.pion_blanc);
-            FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(
-                    FrameLayout.LayoutParams.MATCH_PARENT, FrameLayout.LayoutParams.MATCH_PARENT);
-            pionView.setLayoutParams(params);
-            caseCapturee.addView(pionView);
+        Pion pion = jeu.getDamier().getPion(positionManoury);
+        if (caseCapturee != null && pion != null) {
+            caseCapturee.addView(getImageView(pion));
         }
     }
-}
\ No newline at end of file
+}
@@ -6,12 +6,15 @@ import android.text.Editable;
 import android.text.TextWatcher;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.Spinner;
 import androidx.appcompat.app.AppCompatActivity;
+import cstjean.mobile.dames.damier.Variante;
 
 /**
  * Activité permettant à l'utilisateur de saisir les noms des joueurs avant de commencer une partie.
  * Cette activité contient des champs de texte pour entrer les noms des joueurs 1 et 2,
- * ainsi qu'un bouton pour démarrer le jeu une fois les noms saisis.
+ * une liste pour choisir la variante, ainsi qu'un bouton pour démarrer le jeu une fois les
+ * noms saisis.
  */
 public class PlayerNamesActivity extends AppCompatActivity {
 
@@ -25,6 +28,11 @@ public class PlayerNamesActivity extends AppCompatActivity {
      */
     private EditText player2NameEditText;
 
+    /**
+     * Liste de choix de la variante, dans l'ordre des constantes de {@link Variante}.
+     */
+    private Spinner varianteSpinner;
+
     /**
      * Bouton pour démarrer le jeu une fois que les noms des joueurs ont été saisis.
      */
@@ -37,8 +45,10 @@ public class PlayerNamesActivity extends AppCompatActivity {
 
         player1NameEditText = findViewById(R.id.player1Name);
         player2NameEditText = findViewById(R.id.player2Name);
+        varianteSpinner = findViewById(R.id.variante);
         startGameButton = findViewById(R.id.startGameButton);
 
+        varianteSpinner.setSelection(Variante.INTERNATIONALE.ordinal());
         startGameButton.setEnabled(false);
 
         TextWatcher nameWatcher = new TextWatcher() {
@@ -69,6 +79,7 @@ public class PlayerNamesActivity extends AppCompatActivity {
             Intent intent = new Intent(PlayerNamesActivity.this, MainActivity.class);
             intent.putExtra("player1Name", player1Name);
             intent.putExtra("player2Name", player2Name);
+            intent.putExtra("variante", Variante.values()[varianteSpinner.getSelectedItemPosition()].name());
             startActivity(intent);
         });
 
@@ -0,0 +1,26 @@
+package cstjean.mobile.dames;
+
+import android.os.Build;
+import android.os.Trace;
+import cstjean.mobile.dames.metriques.TraceurRecherche;
+
+/**
+ * Traceur qui publie les itérations de recherche dans les traces système d'Android,
+ * visibles avec Perfetto ou le profileur d'Android Studio.
+ * Chaque itération devient une section de trace, et le nombre de nœuds un compteur.
+ */
+public class TraceurAndroid implements TraceurRecherche {
+
+    @Override
+    public void debutIteration(int profondeur) {
+        Trace.beginSection("Recherche profondeur " + profondeur);
+    }
+
+    @Override
+    public void finIteration(int profondeur, long noeuds, int score) {
+        Trace.endSection();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.setCounter("Nœuds de recherche", noeuds);
+        }
+    }
+}
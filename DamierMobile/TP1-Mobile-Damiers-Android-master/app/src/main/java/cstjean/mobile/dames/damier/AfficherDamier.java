@@ -7,9 +7,10 @@ package cstjean.mobile.dames.damier;
  * et les pions blancs sur les lignes correspondantes.
  *
  * <p>Le damier est composé de cases représentant des pions noirs et blancs.
- * Les lignes centrales sont affichées comme des cases vides pour séparer les
- * deux groupes de pions. Chaque ligne contient des séparateurs et l'affichage
- * est ajusté en fonction de la parité de la ligne pour un alignement en damier.</p>
+ * Les lignes centrales, hors des rangées de départ, sont affichées comme des séparateurs
+ * tant qu'elles sont vides. Toute autre ligne, même vidée en cours de partie, garde les
+ * colonnes des lignes occupées : l'affichage est ajusté en fonction de la parité de la
+ * ligne pour un alignement en damier. La taille du damier est celle de sa variante.</p>
  *
  * @see Damier
  */
@@ -22,37 +23,47 @@ public class AfficherDamier {
      * @return La chaîne représentant le damier.
      */
     public static String afficher(Damier damier) {
+        Variante variante = damier.getVariante();
+        int casesParLigne = variante.getTaille() / 2;
         StringBuilder sb = new StringBuilder();
         int position = 1;
 
-        // Parcours des 4 premières lignes avec les pions noirs
-        for (int i = 0; i < 4; i++) {
-            position = getPositionGraphique(sb, damier, position, i);
-            sb.append('\n');
-        }
-
-        // Deux lignes vides
-        for (int i = 0; i < 2; i++) {
-            sb.append("-".repeat(10));
-            sb.append('\n');
-        }
-
-        // Parcours des 4 dernières lignes avec les pions blancs
-        position = 31;
-        for (int i = 0; i < 4; i++) {
-            position = getPositionGraphique(sb, damier, position, i);
-            if (i < 3) {
+        for (int i = 0; i < variante.getTaille(); i++) {
+            if (i > 0) {
                 sb.append('\n');
             }
+            if (estLigneCentrale(variante, i) && ligneVide(damier, position, casesParLigne)) {
+                // Ligne centrale sans pion, qui sépare les deux groupes de pions
+                for (int j = 0; j < variante.getTaille(); j++) {
+                    sb.append('-');
+                }
+                position += casesParLigne;
+            } else {
+                position = getPositionGraphique(sb, damier, position, i, casesParLigne);
+            }
         }
 
         // Retourne la chaîne finale représentant le damier
         return sb.toString();
     }
 
-    private static int getPositionGraphique(StringBuilder sb, Damier damier, int position, int i) {
+    private static boolean estLigneCentrale(Variante variante, int ligne) {
+        return ligne >= variante.getNbRangeesDepart() && ligne < variante.getTaille() - variante.getNbRangeesDepart();
+    }
+
+    private static boolean ligneVide(Damier damier, int position, int casesParLigne) {
+        for (int j = 0; j < casesParLigne; j++) {
+            if (damier.getPion(position + j) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int getPositionGraphique(StringBuilder sb, Damier damier, int position, int i,
+                                            int casesParLigne) {
         if (i % 2 == 0) {
-            for (int j = 0; j < 5; j++) {
+            for (int j = 0; j < casesParLigne; j++) {
                 sb.append('-');
                 Pion pion = damier.getPion(position);  // Récupérer le pion du damier
                 if (pion != null) {
@@ -63,7 +74,7 @@ public class AfficherDamier {
                 position++;
             }
         } else {
-            for (int j = 0; j < 5; j++) {
+            for (int j = 0; j < casesParLigne; j++) {
                 Pion pion = damier.getPion(position);  // Récupérer le pion du damier
                 if (pion != null) {
                     sb.append(pion.getRepresentation(pion));  // Passer le pion en paramètre
@@ -77,4 +88,4 @@ public class AfficherDamier {
         return position;
     }
 
-}
\ No newline at end of file
+}
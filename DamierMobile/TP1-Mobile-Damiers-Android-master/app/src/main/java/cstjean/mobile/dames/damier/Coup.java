@@ -0,0 +1,243 @@
+package cstjean.mobile.dames.damier;
+
+/**
+ * Encodage d'un coup dans un entier primitif, commun à l'historique des parties,
+ * au moteur et au stockage.
+ *
+ * <p>Disposition des 32 bits :</p>
+ * <ul>
+ *     <li>bits 0 à 6 : case de départ ;</li>
+ *     <li>bits 7 à 13 : case d'arrivée ;</li>
+ *     <li>bit 14 : promotion en dame ;</li>
+ *     <li>bits 15 à 19 : nombre de pièces prises ;</li>
+ *     <li>bits 20 à 26 : case de la pièce prise, pour une prise simple de l'historique ;</li>
+ *     <li>bits 27 et 28 : code de la pièce prise (voir {@link Pion#getCode()}).</li>
+ * </ul>
+ *
+ * <p>Les 20 bits de poids faible identifient un coup dans une position ; les bits suivants
+ * ne servent qu'à l'annuler. Le moteur garde l'ensemble des pièces prises d'une rafle dans
+ * un masque à part. Pour le stockage, {@link #compacter(int, int)} réduit un coup à 16 bits :
+ * départ, arrivée et rang de la rafle parmi celles qui relient les mêmes cases, ce qui suffit
+ * à retrouver le coup parmi les coups légaux de la position.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class Coup {
+    /**
+     * Valeur représentant l'absence de coup.
+     */
+    public static final int AUCUN = 0;
+
+    /**
+     * Masque des bits identifiant un coup dans une position.
+     */
+    public static final int MASQUE_IDENTITE = 0xFFFFF;
+
+    /**
+     * Nombre maximal de rafles distinctes reliant les mêmes cases, dans la forme compacte.
+     */
+    public static final int NB_SEQUENCES = 16;
+
+    /**
+     * Plus grand numéro de case d'un coup compact.
+     */
+    public static final int CASE_MAX_COMPACTE = 64;
+
+    private static final int MASQUE_CASE = 0x7F;
+
+    private static final int DECALAGE_ARRIVEE = 7;
+
+    private static final int BIT_PROMOTION = 1 << 14;
+
+    private static final int DECALAGE_PRISES = 15;
+
+    private static final int MASQUE_PRISES = 0x1F;
+
+    private static final int DECALAGE_CASE_PRISE = 20;
+
+    private static final int DECALAGE_CODE_PRIS = 27;
+
+    private static final int MASQUE_CASE_COMPACTE = 0x3F;
+
+    private static final int DECALAGE_ARRIVEE_COMPACTE = 6;
+
+    private static final int DECALAGE_SEQUENCE_COMPACTE = 12;
+
+    private Coup() {
+    }
+
+    /**
+     * Encode un coup.
+     *
+     * @param depart    La case de départ.
+     * @param arrivee   La case d'arrivée.
+     * @param promotion true si le pion est promu en dame.
+     * @param nbPrises  Le nombre de pièces prises.
+     * @return Le coup encodé.
+     */
+    public static int encoder(int depart, int arrivee, boolean promotion, int nbPrises) {
+        return depart | arrivee << DECALAGE_ARRIVEE | (promotion ? BIT_PROMOTION : 0)
+                | nbPrises << DECALAGE_PRISES;
+    }
+
+    /**
+     * Encode une prise simple avec de quoi l'annuler.
+     *
+     * @param depart    La case de départ.
+     * @param arrivee   La case d'arrivée.
+     * @param promotion true si le pion est promu en dame.
+     * @param casePrise La case de la pièce prise.
+     * @param codePris  Le code de la pièce prise.
+     * @return Le coup encodé.
+     */
+    public static int encoderPrise(int depart, int arrivee, boolean promotion, int casePrise, int codePris) {
+        return encoder(depart, arrivee, promotion, 1) | casePrise << DECALAGE_CASE_PRISE
+                | codePris << DECALAGE_CODE_PRIS;
+    }
+
+    /**
+     * Retourne la case de départ d'un coup.
+     *
+     * @param coup Le coup encodé.
+     * @return La case de départ.
+     */
+    public static int depart(int coup) {
+        return coup & MASQUE_CASE;
+    }
+
+    /**
+     * Retourne la case d'arrivée d'un coup.
+     *
+     * @param coup Le coup encodé.
+     * @return La case d'arrivée.
+     */
+    public static int arrivee(int coup) {
+        return coup >>> DECALAGE_ARRIVEE & MASQUE_CASE;
+    }
+
+    /**
+     * Indique si un coup promeut un pion en dame.
+     *
+     * @param coup Le coup encodé.
+     * @return true si le coup est une promotion.
+     */
+    public static boolean estPromotion(int coup) {
+        return (coup & BIT_PROMOTION) != 0;
+    }
+
+    /**
+     * Retourne le nombre de pièces prises par un coup.
+     *
+     * @param coup Le coup encodé.
+     * @return Le nombre de pièces prises, 0 pour un déplacement simple.
+     */
+    public static int nbPrises(int coup) {
+        return coup >>> DECALAGE_PRISES & MASQUE_PRISES;
+    }
+
+    /**
+     * Retourne la case de la pièce prise par une prise simple de l'historique.
+     *
+     * @param coup Le coup encodé.
+     * @return La case de la pièce prise, ou 0 si elle n'est pas enregistrée.
+     */
+    public static int casePrise(int coup) {
+        return coup >>> DECALAGE_CASE_PRISE & MASQUE_CASE;
+    }
+
+    /**
+     * Retourne le code de la pièce prise par une prise simple de l'historique.
+     *
+     * @param coup Le coup encodé.
+     * @return Le code de la pièce prise.
+     */
+    public static int codePris(int coup) {
+        return coup >>> DECALAGE_CODE_PRIS & 0x3;
+    }
+
+    /**
+     * Retourne la partie d'un coup qui l'identifie dans une position.
+     *
+     * @param coup Le coup encodé.
+     * @return Le coup sans ses informations d'annulation.
+     */
+    public static int identite(int coup) {
+        return coup & MASQUE_IDENTITE;
+    }
+
+    /**
+     * Réduit un coup à 16 bits pour le stockage : départ et arrivée (de 1 à 64) et rang
+     * de la rafle parmi celles qui relient les mêmes cases.
+     *
+     * @param coup     Le coup encodé.
+     * @param sequence Le rang de la rafle, de 0 à {@link #NB_SEQUENCES} - 1.
+     * @return Le coup compact.
+     * @throws IllegalArgumentException Si une case dépasse {@link #CASE_MAX_COMPACTE} ou si le rang
+     *                                  est hors bornes.
+     */
+    public static short compacter(int coup, int sequence) {
+        if (depart(coup) < 1 || depart(coup) > CASE_MAX_COMPACTE
+                || arrivee(coup) < 1 || arrivee(coup) > CASE_MAX_COMPACTE) {
+            throw new IllegalArgumentException("Le coup " + notation(coup) + " sort des "
+                    + CASE_MAX_COMPACTE + " cases de la forme compacte.");
+        }
+        if (sequence < 0 || sequence >= NB_SEQUENCES) {
+            throw new IllegalArgumentException("Rang de rafle invalide : " + sequence + ".");
+        }
+        return (short) (depart(coup) - 1 | arrivee(coup) - 1 << DECALAGE_ARRIVEE_COMPACTE
+                | sequence << DECALAGE_SEQUENCE_COMPACTE);
+    }
+
+    /**
+     * Vérifie que tous les coups d'une variante se réduisent à la forme compacte.
+     *
+     * @param variante La variante.
+     * @throws IllegalArgumentException Si la variante compte plus de {@link #CASE_MAX_COMPACTE} cases.
+     */
+    public static void verifierCompactable(Variante variante) {
+        if (variante.getNbCases() > CASE_MAX_COMPACTE) {
+            throw new IllegalArgumentException("La variante " + variante + " compte plus de "
+                    + CASE_MAX_COMPACTE + " cases : ses coups ne tiennent pas dans la forme compacte.");
+        }
+    }
+
+    /**
+     * Retourne la case de départ d'un coup compact.
+     *
+     * @param compact Le coup compact.
+     * @return La case de départ.
+     */
+    public static int departCompact(short compact) {
+        return (compact & MASQUE_CASE_COMPACTE) + 1;
+    }
+
+    /**
+     * Retourne la case d'arrivée d'un coup compact.
+     *
+     * @param compact Le coup compact.
+     * @return La case d'arrivée.
+     */
+    public static int arriveeCompact(short compact) {
+        return (compact >>> DECALAGE_ARRIVEE_COMPACTE & MASQUE_CASE_COMPACTE) + 1;
+    }
+
+    /**
+     * Retourne le rang de la rafle d'un coup compact.
+     *
+     * @param compact Le coup compact.
+     * @return Le rang parmi les rafles reliant les mêmes cases.
+     */
+    public static int sequenceCompact(short compact) {
+        return (compact & 0xFFFF) >>> DECALAGE_SEQUENCE_COMPACTE;
+    }
+
+    /**
+     * Écrit un coup en notation officielle : « 32-28 » pour un déplacement, « 28x19 » pour une prise.
+     *
+     * @param coup Le coup encodé.
+     * @return La notation du coup.
+     */
+    public static String notation(int coup) {
+        return depart(coup) + (nbPrises(coup) > 0 ? "x" : "-") + arrivee(coup);
+    }
+}
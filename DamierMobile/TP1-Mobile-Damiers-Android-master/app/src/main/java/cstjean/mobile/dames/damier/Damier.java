@@ -1,5 +1,6 @@
 package cstjean.mobile.dames.damier;
 
+import java.util.Arrays;
 import java.util.HashMap;
 
 /**
@@ -13,12 +14,53 @@ public class Damier {
      */
     private final HashMap<Integer, Pion> pions;
 
+    /**
+     * Nombre de pions présents sur le damier pour chaque code de type de pion.
+     */
+    private final int[] nbParType = new int[Zobrist.NB_TYPES];
+
+    /**
+     * Clé de Zobrist des pions présents, mise à jour à chaque ajout ou retrait.
+     */
+    private long cle;
+
+    /**
+     * Masques d'occupation indexés par code de type de pion (bit case - 1).
+     * Tenus à jour seulement si la variante supporte les masques.
+     */
+    private final long[] masques = new long[Zobrist.NB_TYPES];
+
+    /**
+     * Variante jouée, qui fixe la taille du damier et les cases de départ.
+     */
+    private final Variante variante;
+
     /**
      * Constructeur de la classe Damier.
-     * Initialise le HashMap pour stocker les pions avec des clés de 1 à 50.
+     * Initialise le HashMap pour stocker les pions avec des clés de 1 à 50 (dames internationales).
      */
     public Damier() {
-        pions = new HashMap<>(50);
+        this(Variante.INTERNATIONALE);
+    }
+
+    /**
+     * Constructeur d'un damier pour une variante donnée.
+     * Initialise le HashMap pour stocker les pions avec des clés de 1 au nombre de cases de la variante.
+     *
+     * @param variante La variante jouée.
+     */
+    public Damier(Variante variante) {
+        this.variante = variante;
+        pions = new HashMap<>(variante.getNbCases());
+    }
+
+    /**
+     * Retourne la variante jouée sur ce damier.
+     *
+     * @return La variante.
+     */
+    public Variante getVariante() {
+        return variante;
     }
 
     /**
@@ -37,7 +79,16 @@ public class Damier {
      * @param pion     Le pion à ajouter.
      */
     public void ajouterPion(int position, Pion pion) {
-        pions.put(position, pion);
+        Pion ancien = pions.put(position, pion);
+        if (ancien != null) {
+            retirerDeLaCle(position, ancien);
+        }
+        int type = pion.getCode();
+        nbParType[type]++;
+        cle ^= Zobrist.cle(position, type);
+        if (variante.supporteMasques()) {
+            masques[type] |= variante.getBit(position);
+        }
     }
 
     /**
@@ -46,7 +97,19 @@ public class Damier {
      * @param position La position du pion à enlever.
      */
     public void enleverPion(int position) {
-        pions.remove(position); // Supprime le pion à la position spécifiée
+        Pion pion = pions.remove(position); // Supprime le pion à la position spécifiée
+        if (pion != null) {
+            retirerDeLaCle(position, pion);
+        }
+    }
+
+    private void retirerDeLaCle(int position, Pion pion) {
+        int type = pion.getCode();
+        nbParType[type]--;
+        cle ^= Zobrist.cle(position, type);
+        if (variante.supporteMasques()) {
+            masques[type] &= ~variante.getBit(position);
+        }
     }
 
     /**
@@ -54,18 +117,18 @@ public class Damier {
      * traditionnelle d'un jeu de dames. Les pions noirs sont placés sur les quatre
      * premières lignes, et les pions blancs sur les quatre dernières lignes, avec une
      * alternance de positions pour simuler un damier.
-     * La méthode assigne des positions de 1 à 50 pour les pions noirs et blancs
-     * sur les lignes respectives :
+     * Pour les dames internationales, la méthode assigne des positions de 1 à 50
+     * pour les pions noirs et blancs sur les lignes respectives :
      *      1. Les pions noirs sont placés sur les positions 1 à 20.
      *      2. Les pions blancs sont placés sur les positions 31 à 50.
      *      3. Les positions 21 à 30 restent vides.
+     * Les autres variantes suivent le même principe avec leurs propres rangées de départ.
      * Cette configuration respecte le principe de placement des pions sur les
      * cases noires d'un damier.
      */
-
     public void initializer() {
-        placerPions(1, Pion.CouleurPion.noir);  // Placer les pions noirs
-        placerPions(31, Pion.CouleurPion.blanc); // Placer les pions blancs
+        placerPions(Pion.CouleurPion.noir);  // Placer les pions noirs
+        placerPions(Pion.CouleurPion.blanc); // Placer les pions blancs
     }
 
     /**
@@ -73,22 +136,72 @@ public class Damier {
      */
     public void enleverTousLesPions() {
         pions.clear();
+        Arrays.fill(nbParType, 0);
+        Arrays.fill(masques, 0);
+        cle = 0;
+    }
+
+    /**
+     * Retourne le masque des cases occupées par les pions d'un type donné.
+     * Seulement disponible si la variante supporte les masques.
+     *
+     * @param code Le code du type de pion (voir {@link Pion#getCode()}).
+     * @return Le masque d'occupation (bit case - 1).
+     */
+    public long getMasque(int code) {
+        return masques[code];
+    }
+
+    /**
+     * Retourne le masque des cases occupées par les pièces (pions et dames) d'une couleur.
+     *
+     * @param couleur La couleur des pièces.
+     * @return Le masque d'occupation (bit case - 1).
+     */
+    public long getMasque(Pion.CouleurPion couleur) {
+        return masques[couleur.ordinal()] | masques[2 + couleur.ordinal()];
     }
 
     /**
-     * Méthode pour placer les pions sur le damier selon une position de départ et une couleur.
+     * Retourne le masque de toutes les cases occupées.
      *
-     * @param positionDepart La position de départ pour placer les pions.
-     * @param couleur        La couleur des pions à placer (noir ou blanc).
-     */
-    private void placerPions(int positionDepart, Pion.CouleurPion couleur) {
-        int position = positionDepart;
-        for (int i = 0; i < 4; i++) {
-            for (int j = 0; j < 5; j++) {
-                Pion pion = new Pion(couleur);
-                ajouterPion(position, pion);
-                position++;
-            }
+     * @return Le masque d'occupation (bit case - 1).
+     */
+    public long getOccupation() {
+        return masques[0] | masques[1] | masques[2] | masques[3];
+    }
+
+    /**
+     * Retourne la clé de Zobrist des pions présents sur le damier.
+     * Le trait n'en fait pas partie.
+     *
+     * @return La clé de 64 bits.
+     */
+    public long getCle() {
+        return cle;
+    }
+
+    /**
+     * Retourne le nombre de pions d'un type donné, sans parcourir le damier.
+     *
+     * @param code Le code du type de pion (voir {@link Pion#getCode()}).
+     * @return Le nombre de pions de ce type.
+     */
+    public int nbPions(int code) {
+        return nbParType[code];
+    }
+
+    /**
+     * Méthode pour placer les pions d'une couleur sur leurs cases de départ.
+     *
+     * @param couleur La couleur des pions à placer (noir ou blanc).
+     */
+    private void placerPions(Pion.CouleurPion couleur) {
+        int position = variante.getPremiereCaseDepart(couleur);
+        for (int i = 0; i < variante.getNbPionsDepart(); i++) {
+            Pion pion = new Pion(couleur);
+            ajouterPion(position, pion);
+            position++;
         }
     }
 
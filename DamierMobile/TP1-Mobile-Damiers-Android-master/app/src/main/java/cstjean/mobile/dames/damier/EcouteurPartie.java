@@ -0,0 +1,96 @@
+package cstjean.mobile.dames.damier;
+
+/**
+ * Reçoit les événements d'une partie de dames : coups joués ou refusés, prises,
+ * promotions et changements de tour.
+ *
+ * <p>Les événements sont des appels de méthodes à paramètres primitifs : aucun objet
+ * n'est créé et aucun texte n'est construit tant que personne ne s'abonne. Toutes les
+ * méthodes ont une implémentation vide, un écouteur ne redéfinit que celles qui l'intéressent.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public interface EcouteurPartie {
+    /**
+     * Écouteur qui ignore tous les événements, utilisé par défaut.
+     */
+    EcouteurPartie AUCUN = new EcouteurPartie() {
+    };
+
+    /**
+     * Raison de refus : aucun pion sur la case de départ.
+     */
+    int PAS_DE_PION = 1;
+
+    /**
+     * Raison de refus : le pion n'appartient pas au joueur dont c'est le tour.
+     */
+    int MAUVAIS_JOUEUR = 2;
+
+    /**
+     * Raison de refus : la case d'arrivée est occupée.
+     */
+    int CASE_OCCUPEE = 3;
+
+    /**
+     * Raison de refus : le pion ne peut pas se déplacer vers cette case.
+     */
+    int DEPLACEMENT_INVALIDE = 4;
+
+    /**
+     * Raison de refus : la dame ne peut ni se déplacer ni prendre vers cette case.
+     */
+    int DEPLACEMENT_INVALIDE_DAME = 5;
+
+    /**
+     * Raison de refus : aucune pièce adverse ne peut être prise entre les deux cases.
+     */
+    int PRISE_INVALIDE = 6;
+
+    /**
+     * Appelé après qu'un coup (déplacement ou prise) a été appliqué au damier.
+     *
+     * @param depart  La case de départ.
+     * @param arrivee La case d'arrivée.
+     */
+    default void coupJoue(int depart, int arrivee) {
+    }
+
+    /**
+     * Appelé lorsqu'un coup est refusé.
+     *
+     * @param depart  La case de départ demandée.
+     * @param arrivee La case d'arrivée demandée.
+     * @param raison  La raison du refus, l'une des constantes de cette interface.
+     */
+    default void coupRefuse(int depart, int arrivee, int raison) {
+    }
+
+    /**
+     * Appelé lorsqu'une pièce adverse est prise.
+     *
+     * @param depart        La case de départ de la pièce qui prend.
+     * @param arrivee       La case d'arrivée de la pièce qui prend.
+     * @param positionPrise La case de la pièce prise.
+     * @param codePionPris  Le code du type de la pièce prise (voir {@link Pion#getCode()}).
+     */
+    default void prise(int depart, int arrivee, int positionPrise, int codePionPris) {
+    }
+
+    /**
+     * Appelé lorsqu'un pion est promu en dame.
+     *
+     * @param position La case de la nouvelle dame.
+     * @param couleur  La couleur de la dame.
+     */
+    default void promotion(int position, Pion.CouleurPion couleur) {
+    }
+
+    /**
+     * Appelé lorsque le tour change.
+     *
+     * @param tour Le joueur dont c'est maintenant le tour (0 pour les blancs, 1 pour les noirs).
+     */
+    default void changementTour(int tour) {
+    }
+}
@@ -0,0 +1,172 @@
+package cstjean.mobile.dames.damier;
+
+/**
+ * Instantané immuable de la position d'une partie.
+ *
+ * <p>{@link JeuDames} en publie un nouveau après chaque coup ou annulation. Tous les champs
+ * sont primitifs et finaux : n'importe quel fil peut lire l'instantané courant sans verrou et
+ * obtient une vue cohérente, même si la partie change entre-temps. Copier la position dans un
+ * état de recherche revient à copier quelques mots.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class InstantanePartie {
+    /**
+     * Variante jouée.
+     */
+    private final Variante variante;
+
+    /**
+     * Pions blancs (bit case - 1).
+     */
+    private final long pionsBlancs;
+
+    /**
+     * Pions noirs.
+     */
+    private final long pionsNoirs;
+
+    /**
+     * Dames blanches.
+     */
+    private final long damesBlanches;
+
+    /**
+     * Dames noires.
+     */
+    private final long damesNoires;
+
+    /**
+     * Clé de Zobrist de la position, trait compris.
+     */
+    private final long cle;
+
+    /**
+     * Joueur au trait : 0 pour les blancs, 1 pour les noirs.
+     */
+    private final int tour;
+
+    /**
+     * Nombre de coups joués.
+     */
+    private final int nbCoups;
+
+    /**
+     * Dernier coup joué, encodé avec {@link Coup}.
+     */
+    private final int dernierCoup;
+
+    /**
+     * Construit un instantané.
+     *
+     * @param damier      Le damier dont les masques sont copiés.
+     * @param cle         La clé de Zobrist, trait compris.
+     * @param tour        Le joueur au trait.
+     * @param nbCoups     Le nombre de coups joués.
+     * @param dernierCoup Le dernier coup, ou {@link Coup#AUCUN}.
+     */
+    InstantanePartie(Damier damier, long cle, int tour, int nbCoups, int dernierCoup) {
+        this.variante = damier.getVariante();
+        this.pionsBlancs = damier.getMasque(0);
+        this.pionsNoirs = damier.getMasque(1);
+        this.damesBlanches = damier.getMasque(2);
+        this.damesNoires = damier.getMasque(3);
+        this.cle = cle;
+        this.tour = tour;
+        this.nbCoups = nbCoups;
+        this.dernierCoup = dernierCoup;
+    }
+
+    /**
+     * Retourne la variante jouée.
+     *
+     * @return La variante.
+     */
+    public Variante getVariante() {
+        return variante;
+    }
+
+    /**
+     * Retourne le masque d'un type de pièce.
+     *
+     * @param code Le code de la pièce (voir {@link Pion#getCode()}).
+     * @return Le masque des cases occupées par ce type de pièce.
+     */
+    public long getMasque(int code) {
+        switch (code) {
+            case 0:
+                return pionsBlancs;
+            case 1:
+                return pionsNoirs;
+            case 2:
+                return damesBlanches;
+            case 3:
+                return damesNoires;
+            default:
+                throw new IllegalArgumentException("Code de pièce invalide : " + code);
+        }
+    }
+
+    /**
+     * Retourne les pièces blanches, pions et dames.
+     *
+     * @return Le masque des pièces blanches.
+     */
+    public long getBlancs() {
+        return pionsBlancs | damesBlanches;
+    }
+
+    /**
+     * Retourne les pièces noires, pions et dames.
+     *
+     * @return Le masque des pièces noires.
+     */
+    public long getNoirs() {
+        return pionsNoirs | damesNoires;
+    }
+
+    /**
+     * Retourne les dames des deux camps.
+     *
+     * @return Le masque des dames.
+     */
+    public long getDames() {
+        return damesBlanches | damesNoires;
+    }
+
+    /**
+     * Retourne la clé de Zobrist de la position, trait compris.
+     *
+     * @return La clé de 64 bits.
+     */
+    public long getCle() {
+        return cle;
+    }
+
+    /**
+     * Retourne le joueur au trait.
+     *
+     * @return 0 pour les blancs, 1 pour les noirs.
+     */
+    public int getTour() {
+        return tour;
+    }
+
+    /**
+     * Retourne le nombre de coups joués au moment de l'instantané.
+     *
+     * @return Le nombre de coups.
+     */
+    public int getNbCoups() {
+        return nbCoups;
+    }
+
+    /**
+     * Retourne le dernier coup joué au moment de l'instantané.
+     *
+     * @return Le coup encodé, ou {@link Coup#AUCUN}.
+     */
+    public int getDernierCoup() {
+        return dernierCoup;
+    }
+}
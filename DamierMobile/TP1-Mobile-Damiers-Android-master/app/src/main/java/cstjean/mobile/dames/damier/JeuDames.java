@@ -1,38 +1,69 @@
 package cstjean.mobile.dames.damier;
 
-import android.util.Log;
-import java.util.ArrayList;
+import cstjean.mobile.dames.metriques.Metriques;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
-import java.util.Stack;
 
 /**
  * Classe représentant le jeu de dames. * Gère l'état du jeu, le tour des joueurs et les règles du jeu.
  */
 public class JeuDames {
+    /**
+     * Version du format écrit par {@link #ecrireEtat(ByteBuffer)}.
+     */
+    private static final byte VERSION_ETAT = 2;
     /**
      * Le damier du jeu, contenant les pions et dames en jeu.
      */
     private final Damier damier;
     /**
-     * Liste enregistrant l'historique des déplacements effectués dans la partie.
+     * Historique des coups joués dans la partie, encodés avec {@link Coup}
+     * (case et code de la pièce prise compris, pour pouvoir les annuler).
+     */
+    private int[] historique = new int[64];
+    /**
+     * Nombre de coups de l'historique.
+     */
+    private int nbCoups;
+    /**
+     * Suivi des positions jouées et des compteurs servant aux règles de partie nulle.
+     */
+    private final RegleNulle regleNulle = new RegleNulle();
+    /**
+     * Écouteur recevant les événements de la partie ; par défaut, aucun.
      */
-    private final Stack<int[]> historiqueActions;
+    private EcouteurPartie ecouteur = EcouteurPartie.AUCUN;
     /**
      * Indicateur de tour du joueur : 0 pour le joueur 1, 1 pour le joueur 2.
      */
     private int tour;
+    /**
+     * Dernier instantané publié ; lu sans verrou par les autres fils.
+     */
+    private volatile InstantanePartie instantane;
 
     /**
      * Constructeur de la classe JeuDames.
      * Initialise le damier, place les pions au départ, et attribue le tour au joueur 1.
      */
     public JeuDames() {
-        damier = new Damier();
+        this(Variante.INTERNATIONALE);
+    }
+
+    /**
+     * Constructeur d'une partie pour une variante donnée.
+     * Initialise le damier de la variante, place les pions au départ, et attribue le tour au joueur 1.
+     * Les déplacements des dames se calculent avec des masques d'occupation de 64 bits quand la
+     * variante les supporte, et en parcourant les rayons case par case sinon.
+     *
+     * @param variante La variante jouée.
+     */
+    public JeuDames(Variante variante) {
+        damier = new Damier(variante);
         damier.initializer();
         tour = 0;
-        historiqueActions = new Stack<>();
+        regleNulle.reinitialiser(getCle());
+        publierInstantane();
     }
 
     /**
@@ -43,22 +74,12 @@ public class JeuDames {
      * @return La position intermédiaire du pion.
      */
     public int getPositionIntermediaire(int positionActuelle, int delta) {
-        int positionIntermediaire = 0;
-        int colonneActuelle = positionActuelle % 10;
-        if (delta == 9) {
-            positionIntermediaire = (colonneActuelle >= 1 && colonneActuelle <= 5) ?
-                    positionActuelle + 5 : positionActuelle + 4;
-        } else if (delta == 11) {
-            positionIntermediaire = (colonneActuelle >= 1 && colonneActuelle <= 5) ?
-                    positionActuelle + 6 : positionActuelle + 5;
-        } else if (delta == -9) {
-            positionIntermediaire = (colonneActuelle >= 1 && colonneActuelle <= 5) ?
-                    positionActuelle - 4 : positionActuelle - 5;
-        } else if (delta == -11) {
-            positionIntermediaire = (colonneActuelle >= 2 && colonneActuelle <= 6) ?
-                    positionActuelle - 5 : positionActuelle - 6;
+        Variante variante = damier.getVariante();
+        int positionArrivee = positionActuelle + delta;
+        if (!variante.estCase(positionActuelle) || !variante.estCase(positionArrivee)) {
+            return 0;
         }
-        return positionIntermediaire;
+        return variante.getCaseIntermediaire(positionActuelle, positionArrivee);
     }
 
     /**
@@ -70,37 +91,47 @@ public class JeuDames {
      */
     public boolean deplacerPion(int positionActuelle, int positionSouhaitee) {
         Pion pion = damier.getPion(positionActuelle);
-        if (!estDeTour(pion)) {
-            System.out.println("Coup invalide :mauvais joueur.");
-            Log.d("DEPLACERPION", "Coup invalide :mauvais joueur.");
+        if (pion == null) {
+            ecouteur.coupRefuse(positionActuelle, positionSouhaitee, EcouteurPartie.PAS_DE_PION);
             return false;
         }
-        if (pion == null) {
-            System.out.println("Coup invalide : pas de pion.");
-            Log.d("DEPLACERPION", "Coup invalide : pas de pion.");
+        if (!estDeTour(pion)) {
+            ecouteur.coupRefuse(positionActuelle, positionSouhaitee, EcouteurPartie.MAUVAIS_JOUEUR);
             return false;
         }
         if (pion instanceof Dame) {
             if (!deplacementValideDame(positionActuelle, positionSouhaitee)) {
-                System.out.println("Déplacement invalide pour la dame.");
-                return false;
+                int positionPrise = getPositionPriseDame(positionActuelle, positionSouhaitee);
+                if (positionPrise == 0) {
+                    ecouteur.coupRefuse(positionActuelle, positionSouhaitee,
+                            EcouteurPartie.DEPLACEMENT_INVALIDE_DAME);
+                    return false;
+                }
+                effectuerPrise(pion, positionActuelle, positionSouhaitee, positionPrise);
+                return true;
             }
         } else {
             if (!deplacementValide(positionActuelle, positionSouhaitee)) {
-                System.out.println("Déplacement invalide pour un pion normal.");
+                ecouteur.coupRefuse(positionActuelle, positionSouhaitee,
+                        damier.getPion(positionSouhaitee) != null
+                                ? EcouteurPartie.CASE_OCCUPEE : EcouteurPartie.DEPLACEMENT_INVALIDE);
                 return false;
             }
         }
         damier.enleverPion(positionActuelle);
         damier.ajouterPion(positionSouhaitee, pion);
-        if ((pion.getCouleur() == Pion.CouleurPion.blanc && positionSouhaitee <= 5) ||
-                (pion.getCouleur() == Pion.CouleurPion.noir && positionSouhaitee >= 46)) {
+        boolean promotion = false;
+        if (!(pion instanceof Dame) && damier.getVariante().estPromotion(pion.getCouleur(), positionSouhaitee)) {
             damier.enleverPion(positionSouhaitee);
             damier.ajouterPion(positionSouhaitee, new Dame(pion.getCouleur()));
-            System.out.println("Le pion à la position " + positionSouhaitee + " a été promu en dame !");
+            promotion = true;
+            ecouteur.promotion(positionSouhaitee, pion.getCouleur());
         }
-        historiqueActions.push(new int[]{positionActuelle, positionSouhaitee});
+        empiler(Coup.encoder(positionActuelle, positionSouhaitee, promotion, 0));
+        ecouteur.coupJoue(positionActuelle, positionSouhaitee);
         changerTour();
+        regleNulle.jouer(getCle(), !(pion instanceof Dame), promotion);
+        publierInstantane();
         return true;
     }
 
@@ -112,304 +143,24 @@ public class JeuDames {
      * @return true si le déplacement est valide, false sinon.
      */
     public boolean deplacementValide(int positionDepart, int positionArrivee) {
+        Metriques.validation();
+        Variante variante = damier.getVariante();
+        if (!variante.estCase(positionDepart) || !variante.estCase(positionArrivee)) {
+            return false;
+        }
         Pion pion = damier.getPion(positionDepart);
-        List<Integer> casesPossibles = new ArrayList<>();
         if (pion == null) {
             return false;
         }
         if (damier.getPion(positionArrivee) != null) {
-            Log.d("ERREUR", "La case d'arrivée n'est pas vide.");
             return false;
         }
-        if (pion.getCouleur() == Pion.CouleurPion.blanc) {
-            switch (positionDepart) {
-                case 6:
-                    casesPossibles = Collections.singletonList(1);
-                    break;
-                case 7:
-                    casesPossibles = Arrays.asList(1, 2);
-                    break;
-                case 8:
-                    casesPossibles = Arrays.asList(2, 3);
-                    break;
-                case 9:
-                    casesPossibles = Arrays.asList(3, 4);
-                    break;
-                case 10:
-                    casesPossibles = Arrays.asList(4, 5);
-                    break;
-                case 11:
-                    casesPossibles = Arrays.asList(6, 7);
-                    break;
-                case 12:
-                    casesPossibles = Arrays.asList(7, 8);
-                    break;
-                case 13:
-                    casesPossibles = Arrays.asList(8, 9);
-                    break;
-                case 14:
-                    casesPossibles = Arrays.asList(9, 10);
-                    break;
-                case 15:
-                    casesPossibles = Collections.singletonList(10);
-                    break;
-                case 16:
-                    casesPossibles = Collections.singletonList(11);
-                    break;
-                case 17:
-                    casesPossibles = Arrays.asList(11, 12);
-                    break;
-                case 18:
-                    casesPossibles = Arrays.asList(12, 13);
-                    break;
-                case 19:
-                    casesPossibles = Arrays.asList(13, 14);
-                    break;
-                case 20:
-                    casesPossibles = Arrays.asList(14, 15);
-                    break;
-                case 21:
-                    casesPossibles = Arrays.asList(16, 17);
-                    break;
-                case 22:
-                    casesPossibles = Arrays.asList(17, 18);
-                    break;
-                case 23:
-                    casesPossibles = Arrays.asList(18, 19);
-                    break;
-                case 24:
-                    casesPossibles = Arrays.asList(19, 20);
-                    break;
-                case 25:
-                    casesPossibles = Collections.singletonList(20);
-                    break;
-                case 26:
-                    casesPossibles = Collections.singletonList(21);
-                    break;
-                case 27:
-                    casesPossibles = Arrays.asList(21, 22);
-                    break;
-                case 28:
-                    casesPossibles = Arrays.asList(22, 23);
-                    break;
-                case 29:
-                    casesPossibles = Arrays.asList(23, 24);
-                    break;
-                case 30:
-                    casesPossibles = Arrays.asList(24, 25);
-                    break;
-                case 31:
-                    casesPossibles = Arrays.asList(26, 27);
-                    break;
-                case 32:
-                    casesPossibles = Arrays.asList(27, 28);
-                    break;
-                case 33:
-                    casesPossibles = Arrays.asList(28, 29);
-                    break;
-                case 34:
-                    casesPossibles = Arrays.asList(29, 30);
-                    break;
-                case 35:
-                    casesPossibles = Collections.singletonList(30);
-                    break;
-                case 36:
-                    casesPossibles = Collections.singletonList(31);
-                    break;
-                case 37:
-                    casesPossibles = Arrays.asList(31, 32);
-                    break;
-                case 38:
-                    casesPossibles = Arrays.asList(32, 33);
-                    break;
-                case 39:
-                    casesPossibles = Arrays.asList(33, 34);
-                    break;
-                case 40:
-                    casesPossibles = Arrays.asList(34, 35);
-                    break;
-                case 41:
-                    casesPossibles = Arrays.asList(36, 37);
-                    break;
-                case 42:
-                    casesPossibles = Arrays.asList(37, 38);
-                    break;
-                case 43:
-                    casesPossibles = Arrays.asList(38, 39);
-                    break;
-                case 44:
-                    casesPossibles = Arrays.asList(39, 40);
-                    break;
-                case 45:
-                    casesPossibles = Collections.singletonList(40);
-                    break;
-                case 46:
-                    casesPossibles = Collections.singletonList(41);
-                    break;
-                case 47:
-                    casesPossibles = Arrays.asList(41, 42);
-                    break;
-                case 48:
-                    casesPossibles = Arrays.asList(42, 43);
-                    break;
-                case 49:
-                    casesPossibles = Arrays.asList(43, 44);
-                    break;
-                case 50:
-                    casesPossibles = Arrays.asList(44, 45);
-                    break;
-                default:
-                    casesPossibles = Collections.emptyList();
-                    break;
-            }
-        } else if (pion.getCouleur() == Pion.CouleurPion.noir) {
-            switch (positionDepart) {
-                case 1:
-                    casesPossibles = Arrays.asList(6, 7);
-                    break;
-                case 2:
-                    casesPossibles = Arrays.asList(7, 8);
-                    break;
-                case 3:
-                    casesPossibles = Arrays.asList(8, 9);
-                    break;
-                case 4:
-                    casesPossibles = Arrays.asList(9, 10);
-                    break;
-                case 5:
-                    casesPossibles = Collections.singletonList(10);
-                    break;
-                case 6:
-                    casesPossibles = Collections.singletonList(11);
-                    break;
-                case 7:
-                    casesPossibles = Arrays.asList(11, 12);
-                    break;
-                case 8:
-                    casesPossibles = Arrays.asList(12, 13);
-                    break;
-                case 9:
-                    casesPossibles = Arrays.asList(13, 14);
-                    break;
-                case 10:
-                    casesPossibles = Arrays.asList(14, 15);
-                    break;
-                case 11:
-                    casesPossibles = Arrays.asList(16, 17);
-                    break;
-                case 12:
-                    casesPossibles = Arrays.asList(17, 18);
-                    break;
-                case 13:
-                    casesPossibles = Arrays.asList(18, 19);
-                    break;
-                case 14:
-                    casesPossibles = Arrays.asList(19, 20);
-                    break;
-                case 15:
-                    casesPossibles = Collections.singletonList(20);
-                    break;
-                case 16:
-                    casesPossibles = Collections.singletonList(21);
-                    break;
-                case 17:
-                    casesPossibles = Arrays.asList(21, 22);
-                    break;
-                case 18:
-                    casesPossibles = Arrays.asList(22, 23);
-                    break;
-                case 19:
-                    casesPossibles = Arrays.asList(23, 24);
-                    break;
-                case 20:
-                    casesPossibles = Arrays.asList(24, 25);
-                    break;
-                case 21:
-                    casesPossibles = Arrays.asList(26, 27);
-                    break;
-                case 22:
-                    casesPossibles = Arrays.asList(27, 28);
-                    break;
-                case 23:
-                    casesPossibles = Arrays.asList(28, 29);
-                    break;
-                case 24:
-                    casesPossibles = Arrays.asList(29, 30);
-                    break;
-                case 25:
-                    casesPossibles = Collections.singletonList(30);
-                    break;
-                case 26:
-                    casesPossibles = Collections.singletonList(31);
-                    break;
-                case 27:
-                    casesPossibles = Arrays.asList(31, 32);
-                    break;
-                case 28:
-                    casesPossibles = Arrays.asList(32, 33);
-                    break;
-                case 29:
-                    casesPossibles = Arrays.asList(33, 34);
-                    break;
-                case 30:
-                    casesPossibles = Arrays.asList(34, 35);
-                    break;
-                case 31:
-                    casesPossibles = Collections.singletonList(36);
-                    break;
-                case 32:
-                    casesPossibles = Arrays.asList(37, 38);
-                    break;
-                case 33:
-                    casesPossibles = Arrays.asList(38, 39);
-                    break;
-                case 34:
-                    casesPossibles = Arrays.asList(39, 40);
-                    break;
-                case 35:
-                    casesPossibles = Collections.singletonList(40);
-                    break;
-                case 36:
-                    casesPossibles = Collections.singletonList(41);
-                    break;
-                case 37:
-                    casesPossibles = Arrays.asList(41, 42);
-                    break;
-                case 38:
-                    casesPossibles = Arrays.asList(42, 43);
-                    break;
-                case 39:
-                    casesPossibles = Arrays.asList(43, 44);
-                    break;
-                case 40:
-                    casesPossibles = Arrays.asList(44, 45);
-                    break;
-                case 41:
-                    casesPossibles = Arrays.asList(46, 47);
-                    break;
-                case 42:
-                    casesPossibles = Arrays.asList(47, 48);
-                    break;
-                case 43:
-                    casesPossibles = Arrays.asList(48, 49);
-                    break;
-                case 44:
-                    casesPossibles = Arrays.asList(49, 50);
-                    break;
-                case 45:
-                    casesPossibles = Collections.singletonList(50);
-                    break;
-                default:
-                    casesPossibles = Collections.emptyList();
-                    break;
+        for (int direction : variante.getDirectionsPion(pion.getCouleur())) {
+            if (variante.getVoisin(positionDepart, direction) == positionArrivee) {
+                return true;
             }
         }
-        if (casesPossibles.contains(positionArrivee)) {
-            return true;
-        } else {
-            Log.d("ERREUR", "Déplacement non valide.");
-            return false;
-        }
+        return false;
     }
 
     /**
@@ -420,169 +171,151 @@ public class JeuDames {
      * @return true si le déplacement est valide, false sinon.
      */
     public boolean deplacementValideDame(int positionDepart, int positionArrivee) {
-        if (damier.getPion(positionArrivee) != null) {
+        Metriques.validation();
+        Variante variante = damier.getVariante();
+        if (!variante.estCase(positionDepart) || !variante.estCase(positionArrivee)) {
+            return false;
+        }
+        if (!variante.supporteMasques()) {
+            for (int direction = 0; direction < Variante.NB_DIRECTIONS; direction++) {
+                for (int position : variante.getRayonDame(positionDepart, direction)) {
+                    if (damier.getPion(position) != null) {
+                        break;
+                    }
+                    if (position == positionArrivee) {
+                        return true;
+                    }
+                }
+            }
             return false;
         }
+        long deplacements = variante.getDeplacementsDame(positionDepart, damier.getOccupation());
+        return (deplacements & variante.getBit(positionArrivee)) != 0;
+    }
+
+    /**
+     * Retourne la position de la pièce prise par une dame allant d'une case à une autre.
+     * La dame doit rencontrer une seule pièce adverse sur la diagonale, puis s'arrêter sur une
+     * case libre au-delà ; les pièces rencontrées sont trouvées avec les masques d'occupation,
+     * ou en parcourant la diagonale si la variante ne les supporte pas.
+     *
+     * @param positionDepart  La position de la dame.
+     * @param positionArrivee La position d'arrivée après la prise.
+     * @return La position de la pièce prise, ou 0 si le coup n'est pas une prise valide.
+     */
+    public int getPositionPriseDame(int positionDepart, int positionArrivee) {
+        Variante variante = damier.getVariante();
+        Pion dame = damier.getPion(positionDepart);
+        if (dame == null || !variante.estCase(positionArrivee)) {
+            return 0;
+        }
+        if (!variante.supporteMasques()) {
+            for (int direction = 0; direction < Variante.NB_DIRECTIONS; direction++) {
+                int prise = getPriseDameSurRayon(dame, positionDepart, direction, positionArrivee);
+                if (prise != 0) {
+                    return prise;
+                }
+            }
+            return 0;
+        }
+        long occupation = damier.getOccupation();
+        long adversaires = damier.getMasque(dame.getCouleur() == Pion.CouleurPion.blanc
+                ? Pion.CouleurPion.noir : Pion.CouleurPion.blanc);
+        long arrivee = variante.getBit(positionArrivee);
+        for (int direction = 0; direction < Variante.NB_DIRECTIONS; direction++) {
+            if ((variante.getPrisesDame(positionDepart, direction, occupation, adversaires) & arrivee) != 0) {
+                return variante.getPremierBloqueur(positionDepart, direction, occupation);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Cherche une prise d'une dame dans une direction, sans masques d'occupation : la première
+     * pièce du rayon doit être adverse, et l'arrivée une des cases libres qui la suivent.
+     *
+     * @param dame            La dame.
+     * @param positionDepart  La position de la dame.
+     * @param direction       La direction.
+     * @param positionArrivee La position d'arrivée après la prise.
+     * @return La position de la pièce prise, ou 0 si l'arrivée n'est pas atteinte par une prise.
+     */
+    private int getPriseDameSurRayon(Pion dame, int positionDepart, int direction, int positionArrivee) {
+        Variante variante = damier.getVariante();
+        for (int bloqueur : variante.getRayonDame(positionDepart, direction)) {
+            Pion piece = damier.getPion(bloqueur);
+            if (piece == null) {
+                continue;
+            }
+            if (piece.getCouleur() == dame.getCouleur()) {
+                return 0;
+            }
+            for (int position : variante.getRayonDame(bloqueur, direction)) {
+                if (damier.getPion(position) != null) {
+                    return 0;
+                }
+                if (position == positionArrivee) {
+                    return bloqueur;
+                }
+            }
+            return 0;
+        }
+        return 0;
+    }
+
+    /**
+     * Retourne toutes les cases qu'une dame peut atteindre, en se déplaçant ou en prenant.
+     * Seulement disponible si la variante supporte les masques ; sinon, chaque case se vérifie
+     * avec {@link #deplacementValideDame(int, int)} et {@link #getPositionPriseDame(int, int)}.
+     *
+     * @param position La position de la dame.
+     * @return Le masque des cases atteignables (bit case - 1), vide s'il n'y a pas de dame.
+     * @throws IllegalStateException Si la variante compte plus de 64 cases.
+     */
+    public long getDestinationsDame(int position) {
+        Variante variante = damier.getVariante();
+        if (!variante.supporteMasques()) {
+            throw new IllegalStateException("La variante " + variante + " ne supporte pas les masques.");
+        }
+        Pion dame = damier.getPion(position);
+        if (dame == null) {
+            return 0;
+        }
+        long occupation = damier.getOccupation();
+        long adversaires = damier.getMasque(dame.getCouleur() == Pion.CouleurPion.blanc
+                ? Pion.CouleurPion.noir : Pion.CouleurPion.blanc);
+        long destinations = variante.getDeplacementsDame(position, occupation);
+        for (int direction = 0; direction < Variante.NB_DIRECTIONS; direction++) {
+            destinations |= variante.getPrisesDame(position, direction, occupation, adversaires);
+        }
+        Metriques.coupsGeneres(Long.bitCount(destinations));
+        return destinations;
+    }
 
-        List<Integer> casesPossibles;
-
-        switch (positionDepart) {
-            case 1:
-                casesPossibles = Arrays.asList(6, 7, 12, 18, 23, 29, 34, 40, 45);
-                break;
-            case 2:
-                casesPossibles = Arrays.asList(7, 11, 16, 8, 13, 19, 24, 20, 35, 30);
-                break;
-            case 3:
-                casesPossibles = Arrays.asList(8, 12, 17, 21, 26, 9, 14, 20, 25);
-                break;
-            case 4:
-                casesPossibles = Arrays.asList(9, 13, 18, 22, 27, 31, 36, 10, 15);
-                break;
-            case 5:
-                casesPossibles = Arrays.asList(10, 14, 19, 23, 28, 32, 37, 41, 46);
-                break;
-            case 6:
-                casesPossibles = Arrays.asList(1, 11, 17, 22, 28, 33, 39, 44, 50);
-                break;
-            case 7:
-                casesPossibles = Arrays.asList(1, 2, 11, 16, 12, 18, 23, 29, 34, 40, 45);
-                break;
-            case 8:
-                casesPossibles = Arrays.asList(2, 3, 12, 17, 21, 26, 13, 19, 24, 30, 35);
-                break;
-            case 9:
-                casesPossibles = Arrays.asList(3, 4, 13, 18, 22, 27, 31, 36, 14, 20, 25);
-                break;
-            case 10:
-                casesPossibles = Arrays.asList(4, 5, 14, 19, 23, 28, 32, 37, 41, 46, 15);
-                break;
-            case 11:
-                casesPossibles = Arrays.asList(6, 7, 2, 16, 17, 22, 28, 33, 39, 44, 50);
-                break;
-            case 12:
-                casesPossibles = Arrays.asList(7, 1, 8, 3, 17, 21, 26, 17, 23, 29, 34, 40, 45);
-                break;
-            case 13:
-                casesPossibles = Arrays.asList(8, 2, 9, 4, 18, 22, 27, 31, 36, 19, 24, 30, 35);
-                break;
-            case 14:
-                casesPossibles = Arrays.asList(9, 3, 10, 5, 20, 25, 19, 23, 28, 32, 37, 41, 46);
-                break;
-            case 15:
-                casesPossibles = Arrays.asList(10, 4, 20, 24, 29, 33, 38, 42, 47);
-                break;
-            case 16:
-                casesPossibles = Arrays.asList(11, 7, 2, 21, 27, 32, 38, 43, 49);
-                break;
-            case 17:
-                casesPossibles = Arrays.asList(11, 6, 12, 8, 3, 22, 28, 33, 39, 44, 50, 21, 26);
-                break;
-            case 18:
-                casesPossibles = Arrays.asList(12, 7, 1, 13, 9, 4, 22, 27, 31, 36, 23, 29, 34, 40, 45);
-                break;
-            case 19:
-                casesPossibles = Arrays.asList(13, 8, 2, 14, 10, 5, 19, 23, 28, 32, 37, 41, 46, 24, 30, 35);
-                break;
-            case 20:
-                casesPossibles = Arrays.asList(14, 9, 3, 25, 24, 29, 33, 38, 42, 47);
-                break;
-            case 21:
-                casesPossibles = Arrays.asList(16, 17, 12, 8, 3, 27, 32, 38, 43, 49, 26);
-                break;
-            case 22:
-                casesPossibles = Arrays.asList(17, 11, 6, 18, 13, 9, 4, 27, 31, 36, 28, 33, 39, 44, 50);
-                break;
-            case 23:
-                casesPossibles = Arrays.asList(18, 12, 7, 1, 19, 14, 10, 5, 29, 34, 40, 45, 28, 32, 37, 41, 46);
-                break;
-            case 24:
-                casesPossibles = Arrays.asList(19, 13, 8, 2, 20, 15, 29, 33, 38, 42, 47, 30, 35);
-                break;
-            case 25:
-                casesPossibles = Arrays.asList(20, 14, 9, 3, 30, 34, 39, 43, 48);
-                break;
-            case 26:
-                casesPossibles = Arrays.asList(31, 37, 42, 48, 21, 17, 12, 8, 3);
-                break;
-            case 27:
-                casesPossibles = Arrays.asList(31, 36, 22, 18, 13, 9, 4, 32, 38, 43, 49);
-                break;
-            case 28:
-                casesPossibles = Arrays.asList(46, 41, 37, 32, 23, 19, 14, 10, 5, 6, 11, 17, 22, 33, 39, 44, 50);
-                break;
-            case 29:
-                casesPossibles = Arrays.asList(47, 42, 38, 33, 24, 20, 15, 1, 7, 12, 18, 23, 34, 40, 45);
-                break;
-            case 30:
-                casesPossibles = Arrays.asList(2, 8, 13, 19, 24, 35, 48, 43, 39, 34, 25);
-                break;
-            case 31:
-                casesPossibles = Arrays.asList(36, 27, 22, 18, 13, 9, 4, 26, 37, 42, 48);
-                break;
-            case 32:
-                casesPossibles = Arrays.asList(16, 21, 27, 38, 43, 49, 46, 41, 37, 28, 23, 19, 14, 10, 5);
-                break;
-            case 33:
-                casesPossibles = Arrays.asList(6, 11, 17, 22, 28, 39, 44, 50, 47, 42, 38, 29, 24, 20, 15);
-                break;
-            case 34:
-                casesPossibles = Arrays.asList(1, 7, 12, 18, 23, 29, 40, 45, 48, 43, 39, 30, 25);
-                break;
-            case 35:
-                casesPossibles = Arrays.asList(2, 8, 13, 19, 24, 30, 49, 44, 40);
-                break;
-            case 36:
-                casesPossibles = Arrays.asList(47, 41, 4, 9, 13, 18, 22, 27, 31);
-                break;
-            case 37:
-                casesPossibles = Arrays.asList(26, 31, 42, 48, 5, 10, 14, 19, 23, 28, 32, 41, 46);
-                break;
-            case 38:
-                casesPossibles = Arrays.asList(16, 21, 27, 32, 43, 49, 47, 42, 33, 29, 24, 20, 15);
-                break;
-            case 39:
-                casesPossibles = Arrays.asList(6, 11, 17, 22, 28, 33, 44, 50, 25, 30, 34, 43, 48);
-                break;
-            case 40:
-                casesPossibles = Arrays.asList(1, 7, 12, 18, 23, 29, 34, 45, 49, 44, 35);
-                break;
-            case 41:
-                casesPossibles = Arrays.asList(5, 10, 14, 19, 23, 28, 32, 37, 46, 36, 47);
-                break;
-            case 42:
-                casesPossibles = Arrays.asList(26, 31, 37, 48, 47, 38, 33, 29, 24, 20, 15);
-                break;
-            case 43:
-                casesPossibles = Arrays.asList(48, 39, 34, 30, 25, 49, 38, 32, 27, 21, 16);
-                break;
-            case 44:
-                casesPossibles = Arrays.asList(50, 39, 33, 28, 22, 17, 11, 6, 35, 40, 49);
-                break;
-            case 45:
-                casesPossibles = Arrays.asList(1, 7, 12, 18, 23, 29, 34, 40, 45, 50);
-                break;
-            case 46:
-                casesPossibles = Arrays.asList(41, 37, 32, 28, 23, 19, 14, 10, 5);
-                break;
-            case 47:
-                casesPossibles = Arrays.asList(41, 36, 42, 38, 33, 29, 24, 20, 15);
-                break;
-            case 48:
-                casesPossibles = Arrays.asList(42, 37, 31, 26, 43, 39, 34, 30, 25);
-                break;
-            case 49:
-                casesPossibles = Arrays.asList(43, 38, 32, 27, 21, 16, 44, 40, 35);
-                break;
-            case 50:
-                casesPossibles = Arrays.asList(44, 39, 33, 28, 22, 17, 11, 6, 45);
-                break;
-            default:
-                casesPossibles = Collections.emptyList();
-                break;
-
-        }
-        return casesPossibles.contains(positionArrivee);
+    /**
+     * Retourne la position de la pièce prise par le pion (ou la dame) d'une case allant à une autre.
+     * La pièce sautée doit être adverse et la case d'arrivée libre.
+     *
+     * @param positionDepart  La position du pion.
+     * @param positionArrivee La position d'arrivée après la prise.
+     * @return La position de la pièce prise, ou 0 si le coup n'est pas une prise valide.
+     */
+    public int getPositionPrise(int positionDepart, int positionArrivee) {
+        Pion pion = damier.getPion(positionDepart);
+        if (pion == null) {
+            return 0;
+        }
+        if (pion instanceof Dame) {
+            return getPositionPriseDame(positionDepart, positionArrivee);
+        }
+        int positionIntermediaire = getPositionIntermediaire(positionDepart, positionArrivee - positionDepart);
+        Pion pionAdverse = positionIntermediaire == 0 ? null : damier.getPion(positionIntermediaire);
+        if (pionAdverse == null || pionAdverse.getCouleur() == pion.getCouleur()
+                || damier.getPion(positionArrivee) != null
+                || !directionDePrise(pion, positionDepart, positionIntermediaire)) {
+            return 0;
+        }
+        return positionIntermediaire;
     }
 
     /**
@@ -594,24 +327,344 @@ public class JeuDames {
      */
     public boolean capturerPion(int positionActuelle, int positionSouhaitee) {
         Pion pion = damier.getPion(positionActuelle);
-        Log.d("PION", "Selection du pion :" + pion);
-        if (pion == null || !estDeTour(pion)) {
-            System.out.println("Capture invalide : pas de pion ou mauvais joueur.");
+        if (pion == null) {
+            ecouteur.coupRefuse(positionActuelle, positionSouhaitee, EcouteurPartie.PAS_DE_PION);
             return false;
         }
-        int delta = positionSouhaitee - positionActuelle;
-        int positionIntermediaire = getPositionIntermediaire(positionActuelle, delta);
-        System.out.println("Position pion à capturer : " + positionIntermediaire);
-        Pion pionAdverse = damier.getPion(positionIntermediaire);
-        if (pionAdverse == null || pionAdverse.getCouleur() == pion.getCouleur()) {
+        if (!estDeTour(pion)) {
+            ecouteur.coupRefuse(positionActuelle, positionSouhaitee, EcouteurPartie.MAUVAIS_JOUEUR);
+            return false;
+        }
+        int positionIntermediaire = getPositionPrise(positionActuelle, positionSouhaitee);
+        if (positionIntermediaire == 0) {
+            ecouteur.coupRefuse(positionActuelle, positionSouhaitee, EcouteurPartie.PRISE_INVALIDE);
             return false;
         }
+        effectuerPrise(pion, positionActuelle, positionSouhaitee, positionIntermediaire);
+        return true;
+    }
+
+    /**
+     * Rejoue un coup enregistré : une prise si elle est possible, sinon un déplacement simple.
+     *
+     * @param positionActuelle  La case de départ.
+     * @param positionSouhaitee La case d'arrivée.
+     * @throws IllegalArgumentException Si le coup n'est pas jouable dans la position courante.
+     */
+    public void jouer(int positionActuelle, int positionSouhaitee) {
+        if (!capturerPion(positionActuelle, positionSouhaitee) && !deplacerPion(positionActuelle, positionSouhaitee)) {
+            throw new IllegalArgumentException("Coup " + positionActuelle + "-" + positionSouhaitee
+                    + " injouable au coup " + (nbCoups + 1) + ".");
+        }
+    }
+
+    /**
+     * Rejoue un coup encodé (voir {@link Coup}) ; voir {@link #jouer(int, int)}.
+     *
+     * @param coup Le coup encodé.
+     * @throws IllegalArgumentException Si le coup n'est pas jouable dans la position courante.
+     */
+    public void jouer(int coup) {
+        jouer(Coup.depart(coup), Coup.arrivee(coup));
+    }
+
+    /**
+     * Effectue une prise déjà validée et l'enregistre dans l'historique. Un pion qui termine
+     * sa prise sur la rangée de promotion devient une dame.
+     *
+     * @param pion                  Le pion (ou la dame) qui prend.
+     * @param positionActuelle      La position de départ.
+     * @param positionSouhaitee     La position d'arrivée.
+     * @param positionIntermediaire La position de la pièce prise.
+     */
+    private void effectuerPrise(Pion pion, int positionActuelle, int positionSouhaitee, int positionIntermediaire) {
+        Metriques.prise();
+        Pion pionAdverse = damier.getPion(positionIntermediaire);
         damier.enleverPion(positionActuelle);
         damier.enleverPion(positionIntermediaire);
-        damier.ajouterPion(positionSouhaitee, pion);
-        historiqueActions.push(new int[]{positionActuelle, positionSouhaitee});
+        boolean promotion = !(pion instanceof Dame)
+                && damier.getVariante().estPromotion(pion.getCouleur(), positionSouhaitee);
+        damier.ajouterPion(positionSouhaitee, promotion ? new Dame(pion.getCouleur()) : pion);
+        empiler(Coup.encoderPrise(positionActuelle, positionSouhaitee, promotion, positionIntermediaire,
+                pionAdverse.getCode()));
+        ecouteur.prise(positionActuelle, positionSouhaitee, positionIntermediaire, pionAdverse.getCode());
+        if (promotion) {
+            ecouteur.promotion(positionSouhaitee, pion.getCouleur());
+        }
+        ecouteur.coupJoue(positionActuelle, positionSouhaitee);
         changerTour();
-        return true;
+        regleNulle.jouer(getCle(), true, true);
+        publierInstantane();
+    }
+
+    /**
+     * Annule le dernier coup joué : le pion revient à sa case de départ (rétrogradé
+     * s'il avait été promu), le pion capturé est remis en place et le tour est rendu.
+     *
+     * @return Le coup annulé (voir {@link Coup}), ou {@link Coup#AUCUN} si l'historique est vide.
+     */
+    public int annulerDernierCoup() {
+        if (nbCoups == 0) {
+            return Coup.AUCUN;
+        }
+        Metriques.annulation();
+        int coup = historique[--nbCoups];
+        defaire(coup);
+        changerTour();
+        if (!regleNulle.annuler()) {
+            reconstruireRegleNulle();
+        }
+        publierInstantane();
+        return coup;
+    }
+
+    /**
+     * Remet sur le damier la position précédant un coup : le pion revient à sa case de départ
+     * (rétrogradé s'il avait été promu) et le pion capturé est remis en place.
+     *
+     * @param coup Le coup encodé, le dernier joué sur le damier.
+     */
+    private void defaire(int coup) {
+        int depart = Coup.depart(coup);
+        int arrivee = Coup.arrivee(coup);
+        Pion pion = damier.getPion(arrivee);
+        damier.enleverPion(arrivee);
+        if (pion != null) {
+            if (Coup.estPromotion(coup)) {
+                pion = new Pion(pion.getCouleur());
+            }
+            damier.ajouterPion(depart, pion);
+        }
+        if (Coup.casePrise(coup) != 0) {
+            damier.ajouterPion(Coup.casePrise(coup), Pion.depuisCode(Coup.codePris(coup)));
+        }
+    }
+
+    /**
+     * Rejoue un coup de l'historique sur le damier, sans validation ni notification.
+     *
+     * @param coup Le coup encodé.
+     */
+    private void refaire(int coup) {
+        int arrivee = Coup.arrivee(coup);
+        Pion pion = damier.getPion(Coup.depart(coup));
+        damier.enleverPion(Coup.depart(coup));
+        if (Coup.casePrise(coup) != 0) {
+            damier.enleverPion(Coup.casePrise(coup));
+        }
+        damier.ajouterPion(arrivee, Coup.estPromotion(coup) ? new Dame(pion.getCouleur()) : pion);
+    }
+
+    /**
+     * Reconstruit le suivi des règles de nulle quand une annulation remonte au-delà de son
+     * tampon : les coups suivis sont défaits jusqu'à sa position de départ, puis rejoués en
+     * enregistrant chaque position. Rien n'est notifié ni publié.
+     */
+    private void reconstruireRegleNulle() {
+        int debut = nbCoups - Math.min(regleNulle.getDemiCoup(), nbCoups);
+        for (int i = nbCoups - 1; i >= debut; i--) {
+            defaire(historique[i]);
+            tour = 1 - tour;
+        }
+        regleNulle.reinitialiser(getCle());
+        for (int i = debut; i < nbCoups; i++) {
+            int coup = historique[i];
+            boolean dame = damier.getPion(Coup.depart(coup)) instanceof Dame;
+            boolean prise = Coup.casePrise(coup) != 0;
+            refaire(coup);
+            tour = 1 - tour;
+            regleNulle.jouer(getCle(), prise || !dame, prise || Coup.estPromotion(coup));
+        }
+    }
+
+    /**
+     * Ajoute un coup à l'historique, en agrandissant le tableau au besoin.
+     *
+     * @param coup Le coup encodé.
+     */
+    private void empiler(int coup) {
+        if (nbCoups == historique.length) {
+            historique = Arrays.copyOf(historique, 2 * nbCoups);
+        }
+        historique[nbCoups++] = coup;
+    }
+
+    /**
+     * Retourne le nombre d'octets écrits par {@link #ecrireEtat(ByteBuffer)}.
+     *
+     * @return La taille de l'état sérialisé.
+     */
+    public int getTailleEtat() {
+        Variante variante = damier.getVariante();
+        int pieces = variante.supporteMasques() ? 4 * Long.BYTES : variante.getNbCases();
+        return 3 + pieces + Short.BYTES + nbCoups * Integer.BYTES + regleNulle.getTailleEtat();
+    }
+
+    /**
+     * Écrit l'état complet de la partie : variante, trait, masques des quatre types de pions,
+     * historique des actions et suivi des règles de nulle. Pour une variante de plus de 64 cases,
+     * les masques sont remplacés par un octet par case : le code de la pièce plus un, ou 0.
+     *
+     * @param tampon Le tampon de destination ; il doit disposer de {@link #getTailleEtat()} octets.
+     */
+    public void ecrireEtat(ByteBuffer tampon) {
+        tampon.put(VERSION_ETAT);
+        tampon.put((byte) damier.getVariante().ordinal());
+        tampon.put((byte) tour);
+        if (damier.getVariante().supporteMasques()) {
+            for (int code = 0; code < Zobrist.NB_TYPES; code++) {
+                tampon.putLong(damier.getMasque(code));
+            }
+        } else {
+            for (int position = 1; position <= damier.getVariante().getNbCases(); position++) {
+                Pion pion = damier.getPion(position);
+                tampon.put((byte) (pion == null ? 0 : pion.getCode() + 1));
+            }
+        }
+        tampon.putShort((short) nbCoups);
+        for (int i = 0; i < nbCoups; i++) {
+            tampon.putInt(historique[i]);
+        }
+        regleNulle.ecrire(tampon);
+    }
+
+    /**
+     * Sérialise l'état complet de la partie dans un tableau d'octets, par exemple pour un {@code Bundle}.
+     *
+     * @return L'état sérialisé.
+     */
+    public byte[] sauvegarder() {
+        byte[] octets = new byte[getTailleEtat()];
+        ecrireEtat(ByteBuffer.wrap(octets));
+        return octets;
+    }
+
+    /**
+     * Reconstruit une partie à partir d'un état écrit par {@link #ecrireEtat(ByteBuffer)},
+     * sans rejouer les coups.
+     *
+     * @param tampon Le tampon source.
+     * @return La partie restaurée.
+     * @throws IllegalArgumentException Si la version, la variante ou le joueur au trait est inconnu.
+     */
+    public static JeuDames restaurer(ByteBuffer tampon) {
+        if (tampon.get() != VERSION_ETAT) {
+            throw new IllegalArgumentException("Version de l'état de partie non supportée.");
+        }
+        int ordinal = tampon.get();
+        if (ordinal < 0 || ordinal >= Variante.values().length) {
+            throw new IllegalArgumentException("Variante inconnue dans l'état de partie : " + ordinal);
+        }
+        Variante variante = Variante.values()[ordinal];
+        int tour = tampon.get();
+        if (tour != 0 && tour != 1) {
+            throw new IllegalArgumentException("Joueur au trait inconnu dans l'état de partie : " + tour);
+        }
+        JeuDames jeu = new JeuDames(variante);
+        jeu.tour = tour;
+        Damier damier = jeu.damier;
+        damier.enleverTousLesPions();
+        if (variante.supporteMasques()) {
+            for (int code = 0; code < Zobrist.NB_TYPES; code++) {
+                for (long masque = tampon.getLong(); masque != 0; masque &= masque - 1) {
+                    damier.ajouterPion(Long.numberOfTrailingZeros(masque) + 1, Pion.depuisCode(code));
+                }
+            }
+        } else {
+            for (int position = 1; position <= variante.getNbCases(); position++) {
+                int code = tampon.get();
+                if (code != 0) {
+                    damier.ajouterPion(position, Pion.depuisCode(code - 1));
+                }
+            }
+        }
+        int nbCoups = tampon.getShort();
+        for (int i = 0; i < nbCoups; i++) {
+            jeu.empiler(tampon.getInt());
+        }
+        jeu.regleNulle.lire(tampon);
+        jeu.publierInstantane();
+        return jeu;
+    }
+
+    /**
+     * Reconstruit une partie à partir d'un tableau produit par {@link #sauvegarder()}.
+     *
+     * @param octets L'état sérialisé.
+     * @return La partie restaurée.
+     */
+    public static JeuDames restaurer(byte[] octets) {
+        return restaurer(ByteBuffer.wrap(octets));
+    }
+
+    /**
+     * Retourne la clé de Zobrist de la position courante, trait compris.
+     *
+     * @return La clé de 64 bits de la position.
+     */
+    public long getCle() {
+        return tour == 1 ? damier.getCle() ^ Zobrist.TRAIT_NOIR : damier.getCle();
+    }
+
+    /**
+     * Détermine si la partie est nulle selon les règles de répétition et de finale.
+     *
+     * @return La règle de nulle qui s'applique (voir {@link RegleNulle}), ou {@link RegleNulle#AUCUNE}.
+     */
+    public int getRaisonNulle() {
+        return regleNulle.raisonNulle(damier.nbPions(0), damier.nbPions(2),
+                damier.nbPions(1), damier.nbPions(3));
+    }
+
+    /**
+     * Vérifie si la partie est nulle.
+     *
+     * @return true si une règle de partie nulle s'applique, false sinon.
+     */
+    public boolean estPartieNulle() {
+        return getRaisonNulle() != RegleNulle.AUCUNE;
+    }
+
+    /**
+     * Retourne le suivi des règles de partie nulle, utilisé notamment par la recherche
+     * pour détecter les répétitions à chaque nœud.
+     *
+     * @return Le suivi des règles de partie nulle.
+     */
+    public RegleNulle getRegleNulle() {
+        return regleNulle;
+    }
+
+    /**
+     * Repart le suivi des règles de partie nulle de la position courante, puis publie son
+     * instantané. À appeler après avoir mis en place le damier ou le tour directement : les
+     * positions suivies jusque-là ne peuvent plus se répéter.
+     */
+    public void reinitialiserRegleNulle() {
+        regleNulle.reinitialiser(getCle());
+        publierInstantane();
+    }
+
+    /**
+     * Vérifie qu'un pion peut prendre dans la direction de la case sautée.
+     * Les dames prennent dans toutes les directions ; les pions selon la variante.
+     *
+     * @param pion                  Le pion qui prend.
+     * @param positionActuelle      La position du pion.
+     * @param positionIntermediaire La position de la pièce prise.
+     * @return true si la direction de prise est permise.
+     */
+    private boolean directionDePrise(Pion pion, int positionActuelle, int positionIntermediaire) {
+        if (pion instanceof Dame) {
+            return true;
+        }
+        Variante variante = damier.getVariante();
+        for (int direction : variante.getDirectionsPrisePion(pion.getCouleur())) {
+            if (variante.getVoisin(positionActuelle, direction) == positionIntermediaire) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -619,6 +672,7 @@ public class JeuDames {
      */
     public void changerTour() {
         tour = 1 - tour;
+        ecouteur.changementTour(tour);
     }
 
     /**
@@ -671,20 +725,13 @@ public class JeuDames {
 
     /**
      * Calcule le nombre de pions d'une couleur donnée sur le damier.
-     * Cette méthode parcourt tous les pions du damier et compte ceux qui ont la couleur spécifiée.
+     * Les pions et les dames de cette couleur sont comptés à partir des compteurs du damier.
      *
      * @param couleur La couleur des pions à compter. Cela peut être une valeur de l'énumération.
      * @return Le nombre de pions de la couleur spécifiée sur le damier.
      */
     public int nbPionsParCouleur(Pion.CouleurPion couleur) {
-        int compteur = 0;
-        for (int i = 0; i < damier.nbPions(); i++) {
-            Pion pion = damier.getPion(i);
-            if (pion != null && pion.getCouleur() == couleur) {
-                compteur++;
-            }
-        }
-        return compteur;
+        return damier.nbPions(couleur.ordinal()) + damier.nbPions(2 + couleur.ordinal());
     }
 
     /**
@@ -693,13 +740,10 @@ public class JeuDames {
      * @param damier Le damier contenant les pions et dames.
      */
     public void pionDevientDame(Damier damier) {
-        for (int i = 1; i <= 50; i++) {
+        Variante variante = damier.getVariante();
+        for (int i = 1; i <= variante.getNbCases(); i++) {
             Pion pion = damier.getPion(i);
-            if (pion != null && pion.getCouleur() == Pion.CouleurPion.blanc && i <= 5) {
-                damier.enleverPion(i);
-                damier.ajouterPion(i, new Dame(pion.getCouleur()));
-            }
-            if (pion != null && pion.getCouleur() == Pion.CouleurPion.noir && i >= 46) {
+            if (pion != null && !(pion instanceof Dame) && variante.estPromotion(pion.getCouleur(), i)) {
                 damier.enleverPion(i);
                 damier.ajouterPion(i, new Dame(pion.getCouleur()));
             }
@@ -707,12 +751,65 @@ public class JeuDames {
     }
 
     /**
-     * Retourne l'historique des déplacements effectués dans la partie.
+     * Retourne le dernier instantané publié de la position. Il peut être lu depuis
+     * n'importe quel fil ; il reflète l'état après le dernier coup, la dernière annulation
+     * ou le dernier appel à {@link #publierInstantane()}.
      *
-     * @return Liste des déplacements en tant que chaînes de caractères.
+     * @return L'instantané courant, ou null si la variante ne supporte pas les masques.
      */
-    public Stack<int[]> getHistoriqueActions() {
-        return historiqueActions;
+    public InstantanePartie getInstantane() {
+        return instantane;
+    }
+
+    /**
+     * Publie un nouvel instantané de la position courante. Appelé après chaque coup et
+     * chaque annulation ; à appeler aussi après avoir modifié le damier ou le tour directement.
+     * Sans effet pour une variante de plus de 64 cases, qui n'a pas d'instantané.
+     */
+    public void publierInstantane() {
+        if (damier.getVariante().supporteMasques()) {
+            instantane = new InstantanePartie(damier, getCle(), tour, nbCoups, getDernierCoup());
+        }
+    }
+
+    /**
+     * Retourne le nombre de coups de l'historique.
+     *
+     * @return Le nombre de coups joués et non annulés.
+     */
+    public int getNbCoups() {
+        return nbCoups;
+    }
+
+    /**
+     * Retourne un coup de l'historique.
+     *
+     * @param index L'indice du coup, de 0 au nombre de coups exclu.
+     * @return Le coup encodé (voir {@link Coup}).
+     */
+    public int getCoup(int index) {
+        if (index < 0 || index >= nbCoups) {
+            throw new IndexOutOfBoundsException("Coup " + index + " sur " + nbCoups);
+        }
+        return historique[index];
+    }
+
+    /**
+     * Retourne le dernier coup de l'historique.
+     *
+     * @return Le coup encodé, ou {@link Coup#AUCUN} si l'historique est vide.
+     */
+    public int getDernierCoup() {
+        return nbCoups == 0 ? Coup.AUCUN : historique[nbCoups - 1];
+    }
+
+    /**
+     * Retourne une copie de l'historique des coups.
+     *
+     * @return Les coups encodés, du premier au dernier.
+     */
+    public int[] getCoups() {
+        return Arrays.copyOf(historique, nbCoups);
     }
 
     /**
@@ -733,7 +830,17 @@ public class JeuDames {
         return damier;
     }
 
+    /**
+     * Abonne un écouteur aux événements de la partie, à la place du précédent.
+     *
+     * @param ecouteur L'écouteur, ou null pour ne plus recevoir d'événements.
+     */
+    public void setEcouteur(EcouteurPartie ecouteur) {
+        this.ecouteur = ecouteur != null ? ecouteur : EcouteurPartie.AUCUN;
+    }
+
     public void setTour(int tour) {
         this.tour = tour;
+        publierInstantane();
     }
 }
\ No newline at end of file
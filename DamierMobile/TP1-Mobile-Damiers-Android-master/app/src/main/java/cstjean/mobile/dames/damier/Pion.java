@@ -42,6 +42,27 @@ public class Pion {
         return couleurPion;
     }
 
+    /**
+     * Retourne le code du type de pion : 0 pour un pion blanc, 1 pour un pion noir,
+     * 2 pour une dame blanche et 3 pour une dame noire.
+     *
+     * @return Le code du type de pion.
+     */
+    public int getCode() {
+        return (this instanceof Dame ? 2 : 0) + couleurPion.ordinal();
+    }
+
+    /**
+     * Crée un pion (ou une dame) à partir de son code.
+     *
+     * @param code Le code du type de pion, tel que retourné par {@link #getCode()}.
+     * @return Le nouveau pion.
+     */
+    public static Pion depuisCode(int code) {
+        CouleurPion couleur = CouleurPion.values()[code & 1];
+        return code >= 2 ? new Dame(couleur) : new Pion(couleur);
+    }
+
     /**
      * Retourne une représentation du pion en fonction de sa couleur et
      * de son type (pion ou dame).
@@ -0,0 +1,307 @@
+package cstjean.mobile.dames.damier;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Suivi des règles de partie nulle du jeu de dames international.
+ *
+ * <p>Les clés des positions jouées sont conservées dans un tampon circulaire
+ * de tableaux primitifs, avec pour chaque demi-coup le nombre de coups réversibles
+ * (déplacements de dames sans prise) et le nombre de demi-coups depuis le dernier
+ * changement de matériel. Jouer, annuler et détecter une répétition ne font aucune
+ * allocation ; la recherche de répétition ne remonte que jusqu'au dernier coup
+ * irréversible. Seuls les {@value #CAPACITE} derniers demi-coups tiennent dans le tampon :
+ * une annulation qui remonte plus loin le signale, et le suivi doit alors être reconstruit
+ * (voir {@link #annuler()}).</p>
+ *
+ * <p>Règles détectées :</p>
+ * <ul>
+ *     <li>la même position se présente trois fois avec le même joueur au trait ;</li>
+ *     <li>25 coups de chaque joueur sans déplacement de pion ni prise ;</li>
+ *     <li>trois pièces dont au moins une dame contre une dame seule : 16 coups chacun ;</li>
+ *     <li>deux pièces dont au moins une dame contre une dame seule : 5 coups chacun.</li>
+ * </ul>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public class RegleNulle {
+    /**
+     * Aucune règle de nulle ne s'applique.
+     */
+    public static final int AUCUNE = 0;
+
+    /**
+     * Nulle par triple répétition de la position.
+     */
+    public static final int REPETITION = 1;
+
+    /**
+     * Nulle après 25 coups de dames de chaque côté sans prise ni déplacement de pion.
+     */
+    public static final int VINGT_CINQ_COUPS = 2;
+
+    /**
+     * Nulle après 16 coups chacun dans une finale de trois pièces contre une dame.
+     */
+    public static final int SEIZE_COUPS = 3;
+
+    /**
+     * Nulle après 5 coups chacun dans une finale de deux pièces contre une dame.
+     */
+    public static final int CINQ_COUPS = 4;
+
+    /**
+     * Taille du tampon circulaire, une puissance de deux.
+     */
+    private static final int CAPACITE = 256;
+
+    /**
+     * Masque permettant de ramener un numéro de demi-coup dans le tampon.
+     */
+    private static final int MASQUE = CAPACITE - 1;
+
+    /**
+     * Clés des positions, par demi-coup.
+     */
+    private final long[] cles = new long[CAPACITE];
+
+    /**
+     * Nombre de demi-coups réversibles consécutifs ayant mené à chaque position.
+     */
+    private final int[] reversibles = new int[CAPACITE];
+
+    /**
+     * Nombre de demi-coups depuis le dernier changement de matériel, par position.
+     */
+    private final int[] depuisMateriel = new int[CAPACITE];
+
+    /**
+     * Numéro du demi-coup courant.
+     */
+    private int demiCoup;
+
+    /**
+     * Numéro du plus ancien demi-coup dont l'entrée n'a pas été écrasée dans le tampon.
+     */
+    private int premierConserve;
+
+    /**
+     * Repart d'une position initiale unique.
+     *
+     * @param cle La clé de la position de départ.
+     */
+    public void reinitialiser(long cle) {
+        demiCoup = 0;
+        premierConserve = 0;
+        cles[0] = cle;
+        reversibles[0] = 0;
+        depuisMateriel[0] = 0;
+    }
+
+    /**
+     * Enregistre la position obtenue après un coup.
+     *
+     * @param cle            La clé de la nouvelle position (trait compris).
+     * @param irreversible   true si le coup déplace un pion ou effectue une prise.
+     * @param materielChange true si le coup effectue une prise ou une promotion.
+     */
+    public void jouer(long cle, boolean irreversible, boolean materielChange) {
+        int precedent = demiCoup & MASQUE;
+        demiCoup++;
+        int index = demiCoup & MASQUE;
+        premierConserve = Math.max(premierConserve, demiCoup - CAPACITE + 1);
+        cles[index] = cle;
+        reversibles[index] = irreversible ? 0 : reversibles[precedent] + 1;
+        depuisMateriel[index] = materielChange ? 0 : depuisMateriel[precedent] + 1;
+    }
+
+    /**
+     * Revient à la position précédant le dernier coup enregistré.
+     *
+     * @return false si l'entrée de cette position a été écrasée dans le tampon : le suivi doit
+     *         être reconstruit en rejouant les coups depuis sa position de départ.
+     */
+    public boolean annuler() {
+        if (demiCoup > 0) {
+            demiCoup--;
+        }
+        return demiCoup >= premierConserve;
+    }
+
+    /**
+     * Compte les occurrences antérieures de la position courante.
+     * Seules les positions atteintes depuis le dernier coup irréversible, avec le même
+     * joueur au trait, sont examinées.
+     *
+     * @return Le nombre de fois où la position courante s'est déjà présentée.
+     */
+    public int nbRepetitions() {
+        int index = demiCoup & MASQUE;
+        long cle = cles[index];
+        int limite = Math.min(reversibles[index], demiCoup - premierConserve);
+        int repetitions = 0;
+        for (int i = 4; i <= limite; i += 2) {
+            if (cles[(demiCoup - i) & MASQUE] == cle) {
+                repetitions++;
+            }
+        }
+        return repetitions;
+    }
+
+    /**
+     * Indique si la position courante s'est déjà présentée au moins une fois.
+     * Pensée pour être appelée à chaque nœud d'une recherche.
+     *
+     * @return true si la position est une répétition.
+     */
+    public boolean estRepetition() {
+        int index = demiCoup & MASQUE;
+        long cle = cles[index];
+        int limite = Math.min(reversibles[index], demiCoup - premierConserve);
+        for (int i = 4; i <= limite; i += 2) {
+            if (cles[(demiCoup - i) & MASQUE] == cle) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Détermine si l'une des règles de nulle s'applique à la position courante.
+     *
+     * @param pionsBlancs   Le nombre de pions blancs.
+     * @param damesBlanches Le nombre de dames blanches.
+     * @param pionsNoirs    Le nombre de pions noirs.
+     * @param damesNoires   Le nombre de dames noires.
+     * @return La règle qui s'applique, ou {@link #AUCUNE}.
+     */
+    public int raisonNulle(int pionsBlancs, int damesBlanches, int pionsNoirs, int damesNoires) {
+        if (nbRepetitions() >= 2) {
+            return REPETITION;
+        }
+        int index = demiCoup & MASQUE;
+        return raisonNulle(reversibles[index], depuisMateriel[index], pionsBlancs, damesBlanches, pionsNoirs,
+                damesNoires);
+    }
+
+    /**
+     * Détermine si l'une des règles de nulle fondées sur les compteurs de demi-coups s'applique,
+     * sans l'historique des positions : la répétition n'est pas détectée.
+     *
+     * @param coupsReversibles    Le nombre de demi-coups réversibles consécutifs.
+     * @param coupsDepuisMateriel Le nombre de demi-coups depuis le dernier changement de matériel.
+     * @param pionsBlancs         Le nombre de pions blancs.
+     * @param damesBlanches       Le nombre de dames blanches.
+     * @param pionsNoirs          Le nombre de pions noirs.
+     * @param damesNoires         Le nombre de dames noires.
+     * @return La règle qui s'applique, ou {@link #AUCUNE}.
+     */
+    public static int raisonNulle(int coupsReversibles, int coupsDepuisMateriel, int pionsBlancs,
+                                  int damesBlanches, int pionsNoirs, int damesNoires) {
+        if (coupsReversibles >= 50) {
+            return VINGT_CINQ_COUPS;
+        }
+        int piecesBlanches = pionsBlancs + damesBlanches;
+        int piecesNoires = pionsNoirs + damesNoires;
+        boolean dameSeuleBlanche = piecesBlanches == 1 && damesBlanches == 1;
+        boolean dameSeuleNoire = piecesNoires == 1 && damesNoires == 1;
+        int piecesAttaquant;
+        if (dameSeuleNoire && damesBlanches > 0) {
+            piecesAttaquant = piecesBlanches;
+        } else if (dameSeuleBlanche && damesNoires > 0) {
+            piecesAttaquant = piecesNoires;
+        } else {
+            return AUCUNE;
+        }
+        if (piecesAttaquant == 3 && coupsDepuisMateriel >= 32) {
+            return SEIZE_COUPS;
+        }
+        if (piecesAttaquant <= 2 && coupsDepuisMateriel >= 10) {
+            return CINQ_COUPS;
+        }
+        return AUCUNE;
+    }
+
+    /**
+     * Retourne le nombre de demi-coups réversibles consécutifs menant à la position courante.
+     *
+     * @return Le nombre de demi-coups réversibles.
+     */
+    public int getCoupsReversibles() {
+        return reversibles[demiCoup & MASQUE];
+    }
+
+    /**
+     * Retourne le nombre de demi-coups joués depuis la dernière prise ou promotion.
+     *
+     * @return Le nombre de demi-coups depuis le dernier changement de matériel.
+     */
+    public int getCoupsDepuisMateriel() {
+        return depuisMateriel[demiCoup & MASQUE];
+    }
+
+    /**
+     * Retourne le nombre d'octets écrits par {@link #ecrire(ByteBuffer)}.
+     *
+     * @return La taille de l'état sérialisé.
+     */
+    public int getTailleEtat() {
+        return Integer.BYTES + Short.BYTES + nbEntreesConservees() * (Long.BYTES + 2 * Short.BYTES);
+    }
+
+    /**
+     * Écrit l'état du suivi : le numéro du demi-coup et les entrées encore dans le tampon,
+     * de la plus ancienne à la plus récente.
+     *
+     * @param tampon Le tampon de destination.
+     */
+    public void ecrire(ByteBuffer tampon) {
+        int nbEntrees = nbEntreesConservees();
+        tampon.putInt(demiCoup);
+        tampon.putShort((short) nbEntrees);
+        for (int i = demiCoup - nbEntrees + 1; i <= demiCoup; i++) {
+            int index = i & MASQUE;
+            tampon.putLong(cles[index]);
+            tampon.putShort((short) Math.min(reversibles[index], Short.MAX_VALUE));
+            tampon.putShort((short) Math.min(depuisMateriel[index], Short.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Remplace l'état du suivi par celui lu dans un tampon écrit par {@link #ecrire(ByteBuffer)}.
+     *
+     * @param tampon Le tampon source.
+     */
+    public void lire(ByteBuffer tampon) {
+        demiCoup = tampon.getInt();
+        int nbEntrees = tampon.getShort();
+        if (demiCoup < 0 || nbEntrees < 1 || nbEntrees > CAPACITE || nbEntrees > demiCoup + 1) {
+            throw new IllegalArgumentException("État du suivi des nulles invalide.");
+        }
+        for (int i = demiCoup - nbEntrees + 1; i <= demiCoup; i++) {
+            int index = i & MASQUE;
+            cles[index] = tampon.getLong();
+            reversibles[index] = tampon.getShort();
+            depuisMateriel[index] = tampon.getShort();
+        }
+        premierConserve = demiCoup - nbEntrees + 1;
+    }
+
+    /**
+     * Retourne le nombre d'entrées valides du tampon, position courante comprise.
+     *
+     * @return Le nombre d'entrées à sérialiser.
+     */
+    private int nbEntreesConservees() {
+        return demiCoup - premierConserve + 1;
+    }
+
+    /**
+     * Retourne le numéro du demi-coup courant.
+     *
+     * @return Le nombre de demi-coups enregistrés depuis la réinitialisation.
+     */
+    public int getDemiCoup() {
+        return demiCoup;
+    }
+}
@@ -0,0 +1,564 @@
+package cstjean.mobile.dames.damier;
+
+import java.util.Arrays;
+
+/**
+ * Variantes du jeu de dames supportées et géométrie de leur damier.
+ *
+ * <p>Chaque variante génère une seule fois ses tables : numérotation des cases
+ * (ligne et colonne de chaque case jouable, case de chaque ligne et colonne),
+ * voisins et rayons diagonaux dans les quatre directions, cases de départ et
+ * rangées de promotion. Les règles propres à la variante (dames volantes, prise
+ * arrière des pions) sont elles aussi traduites en tables de directions, de sorte
+ * que la validation des coups consulte des tableaux sans jamais tester la variante.</p>
+ *
+ * <p>Les cases sont numérotées de 1 à {@link #getNbCases()} de gauche à droite et de
+ * haut en bas ; seules les cases dont la somme ligne + colonne est impaire sont jouables.
+ * Les noirs partent du haut du damier et les blancs du bas.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public enum Variante {
+    /**
+     * Dames anglaises (checkers) : 8×8, dames non volantes, pions ne prenant que vers l'avant,
+     * prise libre.
+     */
+    ANGLAISE(8, false, false, false),
+
+    /**
+     * Dames brésiliennes : règles internationales sur un damier 8×8.
+     */
+    BRESILIENNE(8, true, true, true),
+
+    /**
+     * Dames internationales : 10×10, dames volantes, prise arrière des pions, prise majoritaire.
+     */
+    INTERNATIONALE(10, true, true, true),
+
+    /**
+     * Dames canadiennes : règles internationales sur un damier 12×12.
+     */
+    CANADIENNE(12, true, true, true);
+
+    /**
+     * Direction haut-gauche (vers les petits numéros).
+     */
+    public static final int NORD_OUEST = 0;
+
+    /**
+     * Direction haut-droite (vers les petits numéros).
+     */
+    public static final int NORD_EST = 1;
+
+    /**
+     * Direction bas-gauche (vers les grands numéros).
+     */
+    public static final int SUD_OUEST = 2;
+
+    /**
+     * Direction bas-droite (vers les grands numéros).
+     */
+    public static final int SUD_EST = 3;
+
+    /**
+     * Nombre de directions diagonales.
+     */
+    public static final int NB_DIRECTIONS = 4;
+
+    /**
+     * Nombre de lignes (et de colonnes) du damier.
+     */
+    private final int taille;
+
+    /**
+     * Nombre de cases jouables.
+     */
+    private final int nbCases;
+
+    /**
+     * Nombre de rangées occupées par chaque camp au départ.
+     */
+    private final int nbRangeesDepart;
+
+    /**
+     * Indique si les dames se déplacent et prennent à distance.
+     */
+    private final boolean damesVolantes;
+
+    /**
+     * Indique si les pions peuvent prendre vers l'arrière.
+     */
+    private final boolean priseArrierePions;
+
+    /**
+     * Indique si la prise du plus grand nombre de pièces est obligatoire.
+     */
+    private final boolean priseMajoritaire;
+
+    /**
+     * Ligne de chaque case, indexée par numéro de case.
+     */
+    private final int[] lignes;
+
+    /**
+     * Colonne de chaque case, indexée par numéro de case.
+     */
+    private final int[] colonnes;
+
+    /**
+     * Numéro de case de chaque (ligne * taille + colonne), ou -1 pour une case non jouable.
+     */
+    private final int[] numeros;
+
+    /**
+     * Voisin de chaque case, indexé par case * NB_DIRECTIONS + direction ; 0 si hors du damier.
+     */
+    private final int[] voisins;
+
+    /**
+     * Case d'arrivée d'un saut par-dessus le voisin, indexée comme {@link #voisins} ; 0 si hors du damier.
+     */
+    private final int[] sauts;
+
+    /**
+     * Cases rencontrées en partant de chaque case dans chaque direction, dans l'ordre,
+     * indexées comme {@link #voisins}.
+     */
+    private final int[][] rayons;
+
+    /**
+     * Cases qu'une dame peut parcourir dans chaque direction : le rayon complet si les dames
+     * sont volantes, sinon le seul voisin.
+     */
+    private final int[][] rayonsDame;
+
+    /**
+     * Bit de chaque case dans un masque d'occupation (bit case - 1), indexé par numéro de case.
+     * Null si la variante compte plus de 64 cases.
+     */
+    private final long[] bits;
+
+    /**
+     * Masque des cases de chaque rayon complet, indexé comme {@link #voisins}.
+     * Null si la variante compte plus de 64 cases.
+     */
+    private final long[] masquesRayons;
+
+    /**
+     * Masque des cases de chaque rayon de dame, indexé comme {@link #voisins}.
+     * Null si la variante compte plus de 64 cases.
+     */
+    private final long[] masquesRayonsDame;
+
+    /**
+     * Directions de déplacement des pions, indexées par ordinal de couleur.
+     */
+    private final int[][] directionsPion;
+
+    /**
+     * Directions de prise des pions, indexées par ordinal de couleur.
+     */
+    private final int[][] directionsPrisePion;
+
+    /**
+     * Indique, par ordinal de couleur puis numéro de case, si un pion y est promu.
+     */
+    private final boolean[][] promotions;
+
+    Variante(int taille, boolean damesVolantes, boolean priseArrierePions, boolean priseMajoritaire) {
+        this.taille = taille;
+        this.nbCases = taille * taille / 2;
+        this.nbRangeesDepart = (taille - 2) / 2;
+        this.damesVolantes = damesVolantes;
+        this.priseArrierePions = priseArrierePions;
+        this.priseMajoritaire = priseMajoritaire;
+
+        lignes = new int[nbCases + 1];
+        colonnes = new int[nbCases + 1];
+        numeros = new int[taille * taille];
+        for (int ligne = 0; ligne < taille; ligne++) {
+            for (int colonne = 0; colonne < taille; colonne++) {
+                int numero = -1;
+                if ((ligne + colonne) % 2 != 0) {
+                    numero = ligne * (taille / 2) + colonne / 2 + 1;
+                    lignes[numero] = ligne;
+                    colonnes[numero] = colonne;
+                }
+                numeros[ligne * taille + colonne] = numero;
+            }
+        }
+
+        voisins = new int[(nbCases + 1) * NB_DIRECTIONS];
+        sauts = new int[(nbCases + 1) * NB_DIRECTIONS];
+        rayons = new int[(nbCases + 1) * NB_DIRECTIONS][];
+        rayonsDame = new int[(nbCases + 1) * NB_DIRECTIONS][];
+        rayons[0] = new int[0];
+        rayonsDame[0] = rayons[0];
+        for (int numero = 1; numero <= nbCases; numero++) {
+            for (int direction = 0; direction < NB_DIRECTIONS; direction++) {
+                int dl = direction < 2 ? -1 : 1;
+                int dc = (direction & 1) == 0 ? -1 : 1;
+                int longueur = 0;
+                int[] rayon = new int[taille];
+                int ligne = lignes[numero] + dl;
+                int colonne = colonnes[numero] + dc;
+                while (ligne >= 0 && ligne < taille && colonne >= 0 && colonne < taille) {
+                    rayon[longueur++] = numeros[ligne * taille + colonne];
+                    ligne += dl;
+                    colonne += dc;
+                }
+                int index = numero * NB_DIRECTIONS + direction;
+                rayons[index] = Arrays.copyOf(rayon, longueur);
+                rayonsDame[index] = damesVolantes ? rayons[index]
+                        : Arrays.copyOf(rayon, Math.min(longueur, 1));
+                voisins[index] = longueur >= 1 ? rayon[0] : 0;
+                sauts[index] = longueur >= 2 ? rayon[1] : 0;
+            }
+        }
+
+        if (nbCases <= Long.SIZE) {
+            bits = new long[nbCases + 1];
+            for (int numero = 1; numero <= nbCases; numero++) {
+                bits[numero] = 1L << (numero - 1);
+            }
+            masquesRayons = new long[rayons.length];
+            masquesRayonsDame = new long[rayons.length];
+            for (int index = NB_DIRECTIONS; index < rayons.length; index++) {
+                for (int numero : rayons[index]) {
+                    masquesRayons[index] |= bits[numero];
+                }
+                for (int numero : rayonsDame[index]) {
+                    masquesRayonsDame[index] |= bits[numero];
+                }
+            }
+        } else {
+            bits = null;
+            masquesRayons = null;
+            masquesRayonsDame = null;
+        }
+
+        int[] avantBlanc = {NORD_OUEST, NORD_EST};
+        int[] avantNoir = {SUD_OUEST, SUD_EST};
+        int[] toutes = {NORD_OUEST, NORD_EST, SUD_OUEST, SUD_EST};
+        directionsPion = new int[][]{avantBlanc, avantNoir};
+        directionsPrisePion = priseArrierePions ? new int[][]{toutes, toutes} : directionsPion;
+
+        promotions = new boolean[2][nbCases + 1];
+        int casesParLigne = taille / 2;
+        for (int i = 1; i <= casesParLigne; i++) {
+            promotions[Pion.CouleurPion.blanc.ordinal()][i] = true;
+            promotions[Pion.CouleurPion.noir.ordinal()][nbCases + 1 - i] = true;
+        }
+    }
+
+    /**
+     * Retourne le nombre de lignes (et de colonnes) du damier.
+     *
+     * @return La taille du damier.
+     */
+    public int getTaille() {
+        return taille;
+    }
+
+    /**
+     * Retourne le nombre de cases jouables, numérotées de 1 à ce nombre.
+     *
+     * @return Le nombre de cases jouables.
+     */
+    public int getNbCases() {
+        return nbCases;
+    }
+
+    /**
+     * Retourne le nombre de rangées occupées par chaque camp au départ.
+     *
+     * @return Le nombre de rangées de départ.
+     */
+    public int getNbRangeesDepart() {
+        return nbRangeesDepart;
+    }
+
+    /**
+     * Indique si les dames se déplacent et prennent à distance.
+     *
+     * @return true si les dames sont volantes.
+     */
+    public boolean aDamesVolantes() {
+        return damesVolantes;
+    }
+
+    /**
+     * Indique si les pions peuvent prendre vers l'arrière.
+     *
+     * @return true si la prise arrière des pions est permise.
+     */
+    public boolean aPriseArrierePions() {
+        return priseArrierePions;
+    }
+
+    /**
+     * Indique si la prise du plus grand nombre de pièces est obligatoire.
+     *
+     * @return true si la prise majoritaire s'applique.
+     */
+    public boolean aPriseMajoritaire() {
+        return priseMajoritaire;
+    }
+
+    /**
+     * Retourne la ligne d'une case.
+     *
+     * @param position Le numéro de la case.
+     * @return La ligne, de 0 (haut) à taille - 1.
+     */
+    public int getLigne(int position) {
+        return lignes[position];
+    }
+
+    /**
+     * Retourne la colonne d'une case.
+     *
+     * @param position Le numéro de la case.
+     * @return La colonne, de 0 (gauche) à taille - 1.
+     */
+    public int getColonne(int position) {
+        return colonnes[position];
+    }
+
+    /**
+     * Retourne le numéro de la case située à une ligne et une colonne données.
+     *
+     * @param ligne   La ligne, de 0 à taille - 1.
+     * @param colonne La colonne, de 0 à taille - 1.
+     * @return Le numéro de la case, ou -1 si la case n'est pas jouable.
+     */
+    public int getNumero(int ligne, int colonne) {
+        return numeros[ligne * taille + colonne];
+    }
+
+    /**
+     * Indique si un numéro désigne une case jouable de ce damier.
+     *
+     * @param position Le numéro à vérifier.
+     * @return true si la case existe.
+     */
+    public boolean estCase(int position) {
+        return position >= 1 && position <= nbCases;
+    }
+
+    /**
+     * Retourne le voisin d'une case dans une direction.
+     *
+     * @param position  Le numéro de la case.
+     * @param direction La direction, de {@link #NORD_OUEST} à {@link #SUD_EST}.
+     * @return Le numéro du voisin, ou 0 s'il est hors du damier.
+     */
+    public int getVoisin(int position, int direction) {
+        return voisins[position * NB_DIRECTIONS + direction];
+    }
+
+    /**
+     * Retourne la case d'arrivée d'un saut par-dessus le voisin dans une direction.
+     *
+     * @param position  Le numéro de la case.
+     * @param direction La direction.
+     * @return Le numéro de la case d'arrivée, ou 0 si elle est hors du damier.
+     */
+    public int getSaut(int position, int direction) {
+        return sauts[position * NB_DIRECTIONS + direction];
+    }
+
+    /**
+     * Retourne la case sautée lors d'une prise à courte distance d'une case à une autre.
+     *
+     * @param depart  Le numéro de la case de départ.
+     * @param arrivee Le numéro de la case d'arrivée, deux cases plus loin en diagonale.
+     * @return Le numéro de la case sautée, ou 0 si les deux cases ne sont pas à distance de saut.
+     */
+    public int getCaseIntermediaire(int depart, int arrivee) {
+        int base = depart * NB_DIRECTIONS;
+        for (int direction = 0; direction < NB_DIRECTIONS; direction++) {
+            if (sauts[base + direction] == arrivee) {
+                return voisins[base + direction];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Retourne les cases rencontrées en partant d'une case dans une direction.
+     * Le tableau retourné est partagé et ne doit pas être modifié.
+     *
+     * @param position  Le numéro de la case.
+     * @param direction La direction.
+     * @return Les numéros des cases, de la plus proche à la plus éloignée.
+     */
+    public int[] getRayon(int position, int direction) {
+        return rayons[position * NB_DIRECTIONS + direction];
+    }
+
+    /**
+     * Retourne les cases qu'une dame peut parcourir depuis une case dans une direction,
+     * en ignorant les pièces présentes. Le tableau retourné est partagé et ne doit pas être modifié.
+     *
+     * @param position  Le numéro de la case.
+     * @param direction La direction.
+     * @return Les numéros des cases, de la plus proche à la plus éloignée.
+     */
+    public int[] getRayonDame(int position, int direction) {
+        return rayonsDame[position * NB_DIRECTIONS + direction];
+    }
+
+    /**
+     * Retourne les directions dans lesquelles un pion d'une couleur se déplace sans prendre.
+     *
+     * @param couleur La couleur du pion.
+     * @return Les directions de déplacement (tableau partagé).
+     */
+    public int[] getDirectionsPion(Pion.CouleurPion couleur) {
+        return directionsPion[couleur.ordinal()];
+    }
+
+    /**
+     * Retourne les directions dans lesquelles un pion d'une couleur peut prendre.
+     *
+     * @param couleur La couleur du pion.
+     * @return Les directions de prise (tableau partagé).
+     */
+    public int[] getDirectionsPrisePion(Pion.CouleurPion couleur) {
+        return directionsPrisePion[couleur.ordinal()];
+    }
+
+    /**
+     * Indique si un pion d'une couleur est promu en arrivant sur une case.
+     *
+     * @param couleur  La couleur du pion.
+     * @param position Le numéro de la case d'arrivée.
+     * @return true si la case est sur la rangée de promotion de cette couleur.
+     */
+    public boolean estPromotion(Pion.CouleurPion couleur, int position) {
+        return promotions[couleur.ordinal()][position];
+    }
+
+    /**
+     * Retourne le nombre de pions de chaque camp au départ.
+     *
+     * @return Le nombre de pions par camp.
+     */
+    public int getNbPionsDepart() {
+        return nbRangeesDepart * taille / 2;
+    }
+
+    /**
+     * Retourne la première case occupée par les pions d'une couleur au départ ; les pions
+     * occupent ensuite les {@link #getNbPionsDepart()} cases consécutives.
+     *
+     * @param couleur La couleur des pions.
+     * @return Le numéro de la première case de départ.
+     */
+    public int getPremiereCaseDepart(Pion.CouleurPion couleur) {
+        return couleur == Pion.CouleurPion.noir ? 1 : nbCases - getNbPionsDepart() + 1;
+    }
+
+    /**
+     * Indique si les cases de la variante tiennent dans un masque de 64 bits, ce qui est
+     * nécessaire aux méthodes travaillant sur des masques d'occupation.
+     *
+     * @return true si la variante compte au plus 64 cases.
+     */
+    public boolean supporteMasques() {
+        return bits != null;
+    }
+
+    /**
+     * Retourne le bit d'une case dans un masque d'occupation.
+     *
+     * @param position Le numéro de la case.
+     * @return Le masque ne contenant que cette case.
+     */
+    public long getBit(int position) {
+        return bits[position];
+    }
+
+    /**
+     * Retourne le masque des cases qu'une dame peut parcourir depuis une case dans une direction,
+     * en ignorant les pièces présentes.
+     *
+     * @param position  Le numéro de la case.
+     * @param direction La direction.
+     * @return Le masque du rayon.
+     */
+    public long getMasqueRayonDame(int position, int direction) {
+        return masquesRayonsDame[position * NB_DIRECTIONS + direction];
+    }
+
+    /**
+     * Retourne la première case occupée sur le rayon de dame partant d'une case.
+     * Les directions nord vont vers les petits numéros : la plus proche est alors le bit
+     * de poids le plus fort.
+     *
+     * @param position   Le numéro de la case de départ.
+     * @param direction  La direction.
+     * @param occupation Le masque des cases occupées.
+     * @return Le numéro de la première case occupée, ou 0 si le rayon est libre.
+     */
+    public int getPremierBloqueur(int position, int direction, long occupation) {
+        long bloqueurs = masquesRayonsDame[position * NB_DIRECTIONS + direction] & occupation;
+        if (bloqueurs == 0) {
+            return 0;
+        }
+        return direction < SUD_OUEST ? Long.SIZE - Long.numberOfLeadingZeros(bloqueurs)
+                : Long.numberOfTrailingZeros(bloqueurs) + 1;
+    }
+
+    /**
+     * Retourne les cases libres qu'une dame atteint depuis une case dans une direction,
+     * jusqu'à la première case occupée exclue.
+     *
+     * @param position   Le numéro de la case de départ.
+     * @param direction  La direction.
+     * @param occupation Le masque des cases occupées.
+     * @return Le masque des cases atteintes.
+     */
+    public long getGlissement(int position, int direction, long occupation) {
+        long rayon = masquesRayonsDame[position * NB_DIRECTIONS + direction];
+        int bloqueur = getPremierBloqueur(position, direction, occupation);
+        if (bloqueur == 0) {
+            return rayon;
+        }
+        return rayon & ~masquesRayons[bloqueur * NB_DIRECTIONS + direction] & ~bits[bloqueur];
+    }
+
+    /**
+     * Retourne toutes les cases libres qu'une dame atteint depuis une case sans prendre.
+     *
+     * @param position   Le numéro de la case de la dame.
+     * @param occupation Le masque des cases occupées.
+     * @return Le masque des cases atteintes.
+     */
+    public long getDeplacementsDame(int position, long occupation) {
+        return getGlissement(position, NORD_OUEST, occupation)
+                | getGlissement(position, NORD_EST, occupation)
+                | getGlissement(position, SUD_OUEST, occupation)
+                | getGlissement(position, SUD_EST, occupation);
+    }
+
+    /**
+     * Retourne les cases d'arrivée d'une prise par une dame dans une direction : la première
+     * pièce rencontrée doit être adverse, et la dame s'arrête sur l'une des cases libres
+     * qui la suivent.
+     *
+     * @param position   Le numéro de la case de la dame.
+     * @param direction  La direction.
+     * @param occupation Le masque des cases occupées.
+     * @param adversaires Le masque des pièces adverses.
+     * @return Le masque des cases d'arrivée possibles, vide s'il n'y a pas de prise.
+     */
+    public long getPrisesDame(int position, int direction, long occupation, long adversaires) {
+        int bloqueur = getPremierBloqueur(position, direction, occupation);
+        if (bloqueur == 0 || (bits[bloqueur] & adversaires) == 0) {
+            return 0;
+        }
+        return getGlissement(bloqueur, direction, occupation);
+    }
+}
@@ -0,0 +1,70 @@
+package cstjean.mobile.dames.damier;
+
+/**
+ * Table de hachage de Zobrist pour les positions du jeu de dames.
+ * Chaque combinaison (case, type de pion) reçoit une clé aléatoire de 64 bits ;
+ * la clé d'une position est le XOR des clés de ses pions, ce qui permet de la
+ * mettre à jour en temps constant à chaque ajout ou retrait de pion.
+ *
+ * <p>Les clés sont générées à partir d'une graine fixe afin qu'une même position
+ * donne toujours la même clé d'une exécution à l'autre.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class Zobrist {
+    /**
+     * Nombre de types de pions distincts (pion blanc, pion noir, dame blanche, dame noire).
+     */
+    public static final int NB_TYPES = 4;
+
+    /**
+     * Numéro de case le plus élevé supporté par la table.
+     */
+    public static final int NB_CASES_MAX = 72;
+
+    /**
+     * Clé à combiner lorsque c'est au joueur noir de jouer.
+     */
+    public static final long TRAIT_NOIR;
+
+    /**
+     * Clés indexées par case * NB_TYPES + type.
+     */
+    private static final long[] CLES = new long[(NB_CASES_MAX + 1) * NB_TYPES];
+
+    static {
+        long graine = 0x5DEECE66DL;
+        for (int i = 0; i < CLES.length; i++) {
+            graine += 0x9E3779B97F4A7C15L;
+            CLES[i] = melanger(graine);
+        }
+        graine += 0x9E3779B97F4A7C15L;
+        TRAIT_NOIR = melanger(graine);
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Retourne la clé associée à un type de pion sur une case.
+     *
+     * @param position La case (numérotation Manoury).
+     * @param type     Le code du type de pion (voir {@link Pion#getCode()}).
+     * @return La clé de 64 bits.
+     */
+    public static long cle(int position, int type) {
+        return CLES[position * NB_TYPES + type];
+    }
+
+    /**
+     * Fonction de mélange SplitMix64.
+     *
+     * @param z La valeur à mélanger.
+     * @return La valeur mélangée.
+     */
+    private static long melanger(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
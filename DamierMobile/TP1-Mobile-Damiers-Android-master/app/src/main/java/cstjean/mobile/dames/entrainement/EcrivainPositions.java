@@ -0,0 +1,107 @@
+package cstjean.mobile.dames.entrainement;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Écrit des positions étiquetées au {@link FormatPositions format d'entraînement}, par blocs,
+ * à travers un {@link FileChannel}. La mémoire utilisée ne dépend pas du nombre d'enregistrements.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class EcrivainPositions implements Closeable {
+    /**
+     * Nombre d'enregistrements par bloc écrit.
+     */
+    private static final int ENREGISTREMENTS_PAR_BLOC = 32768;
+
+    /**
+     * Le canal du fichier.
+     */
+    private final FileChannel canal;
+
+    /**
+     * Le bloc en cours de remplissage.
+     */
+    private final ByteBuffer bloc = ByteBuffer.allocateDirect(ENREGISTREMENTS_PAR_BLOC * FormatPositions.TAILLE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Nombre d'enregistrements écrits, bloc courant compris.
+     */
+    private long nbEnregistrements;
+
+    /**
+     * Ouvre un fichier de positions.
+     *
+     * @param fichier Le fichier.
+     * @param ajouter true pour écrire à la suite des enregistrements existants, false pour le vider.
+     * @throws IOException Si le fichier ne peut pas être ouvert.
+     */
+    public EcrivainPositions(File fichier, boolean ajouter) throws IOException {
+        // RandomAccessFile plutôt que FileChannel.open, qui demande l'API 26.
+        canal = new RandomAccessFile(fichier, "rw").getChannel();
+        if (!ajouter) {
+            canal.truncate(0);
+        }
+        nbEnregistrements = canal.size() / FormatPositions.TAILLE;
+        canal.position(nbEnregistrements * FormatPositions.TAILLE);
+    }
+
+    /**
+     * Ajoute un enregistrement.
+     *
+     * @param blancs   Les pièces blanches.
+     * @param noirs    Les pièces noires.
+     * @param dames    Les dames des deux camps.
+     * @param trait    Le joueur au trait.
+     * @param resultat Le résultat de la partie pour les blancs : 1, 0 ou -1.
+     * @param score    Le score du moteur pour les blancs, ou {@link FormatPositions#SANS_SCORE}.
+     * @param demiCoup Le numéro du demi-coup.
+     * @throws IOException Si l'écriture du bloc plein échoue.
+     */
+    public void ecrire(long blancs, long noirs, long dames, int trait, int resultat, int score, int demiCoup)
+            throws IOException {
+        if (!bloc.hasRemaining()) {
+            vider();
+        }
+        FormatPositions.ecrire(bloc, blancs, noirs, dames, trait, resultat, score, demiCoup);
+        nbEnregistrements++;
+    }
+
+    /**
+     * Écrit le bloc en cours dans le fichier.
+     *
+     * @throws IOException Si l'écriture échoue.
+     */
+    public void vider() throws IOException {
+        bloc.flip();
+        while (bloc.hasRemaining()) {
+            canal.write(bloc);
+        }
+        bloc.clear();
+    }
+
+    /**
+     * Retourne le nombre d'enregistrements du fichier.
+     *
+     * @return Le nombre d'enregistrements, y compris ceux pas encore écrits.
+     */
+    public long getNbEnregistrements() {
+        return nbEnregistrements;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            vider();
+        } finally {
+            canal.close();
+        }
+    }
+}
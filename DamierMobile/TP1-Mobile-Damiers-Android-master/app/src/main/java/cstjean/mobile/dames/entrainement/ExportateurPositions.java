@@ -0,0 +1,390 @@
+package cstjean.mobile.dames.entrainement;
+
+import cstjean.mobile.dames.damier.InstantanePartie;
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.damier.RegleNulle;
+import cstjean.mobile.dames.damier.Variante;
+import cstjean.mobile.dames.moteur.EvaluationClassique;
+import cstjean.mobile.dames.moteur.EvaluationLot;
+import cstjean.mobile.dames.moteur.GenerateurCoups;
+import cstjean.mobile.dames.moteur.ListeCoups;
+import cstjean.mobile.dames.moteur.Position;
+import cstjean.mobile.dames.moteur.Recherche;
+import cstjean.mobile.dames.moteur.TableTransposition;
+import cstjean.mobile.dames.stockage.RecueilParties;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Exporte les positions de parties jouées vers un fichier d'entraînement
+ * (voir {@link FormatPositions}), lisible directement par {@code numpy.memmap}.
+ *
+ * <p>Chaque partie est rejouée coup par coup, dans un {@link JeuDames} pour une partie jouée
+ * sur le damier, sur une {@link Position} pour une partie de recueil dont les rafles sont
+ * retrouvées parmi les coups légaux. Ses positions, de la position de départ à la dernière,
+ * sont rangées dans des tableaux parallèles puis étiquetées d'un coup : par {@link EvaluationLot}
+ * si la profondeur vaut 0, sinon par une {@link Recherche} à profondeur fixe. Le résultat de la
+ * partie est le même pour toutes ses positions.</p>
+ *
+ * <p>Le dédoublonnage par clé de Zobrist utilise une table de taille fixe : une fois pleine,
+ * une clé nouvelle remplace une clé ancienne, si bien que quelques doublons éloignés peuvent
+ * passer, mais la mémoire reste bornée quel que soit le nombre d'enregistrements.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class ExportateurPositions implements Closeable {
+    /**
+     * Nombre d'emplacements examinés pour une clé dans la table de dédoublonnage.
+     */
+    private static final int SONDES = 8;
+
+    /**
+     * La variante des parties exportées.
+     */
+    private final Variante variante;
+
+    /**
+     * L'écrivain du fichier d'entraînement.
+     */
+    private final EcrivainPositions ecrivain;
+
+    /**
+     * Profondeur de la recherche d'étiquetage, ou 0 pour l'évaluation statique.
+     */
+    private final int profondeur;
+
+    /**
+     * Évaluation statique par lots.
+     */
+    private final EvaluationLot evaluationLot;
+
+    /**
+     * Recherche d'étiquetage, si la profondeur est positive.
+     */
+    private final Recherche recherche;
+
+    /**
+     * Position de travail de la recherche et de la détermination des résultats.
+     */
+    private final Position position;
+
+    /**
+     * Générateur de coups de la variante.
+     */
+    private final GenerateurCoups generateur;
+
+    /**
+     * Liste de travail du générateur.
+     */
+    private final ListeCoups liste = new ListeCoups();
+
+    /**
+     * Clés déjà exportées, 0 marquant un emplacement libre ; null sans dédoublonnage.
+     */
+    private final long[] cles;
+
+    /**
+     * Pièces blanches des positions de la partie en cours.
+     */
+    private long[] blancs = new long[256];
+
+    /**
+     * Pièces noires des positions de la partie en cours.
+     */
+    private long[] noirs = new long[256];
+
+    /**
+     * Dames des positions de la partie en cours.
+     */
+    private long[] dames = new long[256];
+
+    /**
+     * Joueur au trait des positions de la partie en cours.
+     */
+    private byte[] traits = new byte[256];
+
+    /**
+     * Clés de Zobrist des positions de la partie en cours.
+     */
+    private long[] clesPositions = new long[256];
+
+    /**
+     * Numéro du demi-coup des positions de la partie en cours.
+     */
+    private int[] demiCoups = new int[256];
+
+    /**
+     * Scores des positions de la partie en cours, pour les blancs.
+     */
+    private int[] scores = new int[256];
+
+    /**
+     * Nombre de positions écartées comme doublons.
+     */
+    private long nbDoublons;
+
+    /**
+     * Nombre de parties ignorées faute de résultat.
+     */
+    private int nbPartiesIgnorees;
+
+    /**
+     * Ouvre un export.
+     *
+     * @param variante   La variante des parties.
+     * @param fichier    Le fichier d'entraînement.
+     * @param ajouter    true pour écrire à la suite des enregistrements existants.
+     * @param profondeur La profondeur de recherche des scores, ou 0 pour l'évaluation statique.
+     * @param log2Cles   Le logarithme en base 2 de la taille de la table de dédoublonnage,
+     *                   ou 0 pour exporter toutes les positions.
+     * @throws IOException Si le fichier ne peut pas être ouvert.
+     */
+    public ExportateurPositions(Variante variante, File fichier, boolean ajouter, int profondeur, int log2Cles)
+            throws IOException {
+        if (profondeur < 0 || profondeur > Recherche.PROFONDEUR_MAX) {
+            throw new IllegalArgumentException("Profondeur invalide : " + profondeur);
+        }
+        if (log2Cles < 0 || log2Cles > 30) {
+            throw new IllegalArgumentException("Taille de table invalide : 2^" + log2Cles);
+        }
+        this.variante = variante;
+        this.profondeur = profondeur;
+        EvaluationClassique evaluation = new EvaluationClassique(variante);
+        evaluationLot = new EvaluationLot(variante, evaluation);
+        recherche = profondeur > 0 ? new Recherche(variante, evaluation, new TableTransposition(16)) : null;
+        position = new Position(variante);
+        generateur = new GenerateurCoups(variante);
+        cles = log2Cles > 0 ? new long[1 << log2Cles] : null;
+        ecrivain = new EcrivainPositions(fichier, ajouter);
+    }
+
+    /**
+     * Exporte les positions d'une partie dont le résultat est connu.
+     *
+     * @param partie   La partie ; elle n'est pas modifiée.
+     * @param resultat Le résultat pour les blancs : 1, 0 ou -1.
+     * @return Le nombre de positions écrites.
+     * @throws IOException Si l'écriture échoue.
+     * @throws IllegalArgumentException Si un coup de la partie n'est pas jouable.
+     */
+    public int exporter(JeuDames partie, int resultat) throws IOException {
+        JeuDames jeu = new JeuDames(variante);
+        int nb = 0;
+        nb = retenir(jeu.getInstantane(), nb);
+        for (int i = 0; i < partie.getNbCoups(); i++) {
+            jeu.jouer(partie.getCoup(i));
+            nb = retenir(jeu.getInstantane(), nb);
+        }
+        return ecrirePartie(nb, resultat);
+    }
+
+    /**
+     * Exporte les positions d'une partie d'un recueil, par exemple issue de l'auto-jeu.
+     * Le résultat est déduit de la position finale ; une partie inachevée est ignorée.
+     *
+     * @param recueil Le recueil.
+     * @param partie  L'indice de la partie.
+     * @return Le nombre de positions écrites.
+     * @throws IOException Si l'écriture échoue.
+     */
+    public int exporter(RecueilParties recueil, int partie) throws IOException {
+        position.copier(new JeuDames(variante).getInstantane());
+        int nb = retenir(position, 0);
+        for (int i = 0; i < recueil.getLongueur(partie); i++) {
+            generateur.generer(position, liste);
+            int index = liste.indexDe(recueil.getCoup(partie, i));
+            if (index < 0) {
+                throw new IllegalStateException("Coup " + i + " de la partie " + partie + " injouable.");
+            }
+            position.jouer(liste.getCoup(index), liste.getPrises(index));
+            nb = retenir(position, nb);
+        }
+        int resultat = resultatFinal();
+        if (resultat == Integer.MIN_VALUE) {
+            nbPartiesIgnorees++;
+            return 0;
+        }
+        return ecrirePartie(nb, resultat);
+    }
+
+    /**
+     * Exporte toutes les parties d'un recueil.
+     *
+     * @param recueil Le recueil.
+     * @return Le nombre de positions écrites.
+     * @throws IOException Si l'écriture échoue.
+     */
+    public long exporter(RecueilParties recueil) throws IOException {
+        long total = 0;
+        for (int partie = 0; partie < recueil.getNbParties(); partie++) {
+            total += exporter(recueil, partie);
+        }
+        return total;
+    }
+
+    /**
+     * Retourne le nombre d'enregistrements du fichier.
+     *
+     * @return Le nombre d'enregistrements, y compris ceux pas encore écrits.
+     */
+    public long getNbEnregistrements() {
+        return ecrivain.getNbEnregistrements();
+    }
+
+    /**
+     * Retourne le nombre de positions écartées comme doublons.
+     *
+     * @return Le nombre de doublons.
+     */
+    public long getNbDoublons() {
+        return nbDoublons;
+    }
+
+    /**
+     * Retourne le nombre de parties de recueil ignorées faute de résultat.
+     *
+     * @return Le nombre de parties inachevées.
+     */
+    public int getNbPartiesIgnorees() {
+        return nbPartiesIgnorees;
+    }
+
+    @Override
+    public void close() throws IOException {
+        ecrivain.close();
+    }
+
+    /**
+     * Ajoute une position aux positions de la partie en cours.
+     *
+     * @param instantane La position.
+     * @param nb         Le nombre de positions retenues.
+     * @return Le nouveau nombre de positions retenues.
+     */
+    private int retenir(InstantanePartie instantane, int nb) {
+        return retenir(instantane.getBlancs(), instantane.getNoirs(), instantane.getDames(),
+                instantane.getTour(), instantane.getCle(), instantane.getNbCoups(), nb);
+    }
+
+    /**
+     * Ajoute une position de recueil aux positions de la partie en cours.
+     *
+     * @param courante La position, dont la hauteur donne le numéro du demi-coup.
+     * @param nb       Le nombre de positions retenues.
+     * @return Le nouveau nombre de positions retenues.
+     */
+    private int retenir(Position courante, int nb) {
+        return retenir(courante.getBlancs(), courante.getNoirs(), courante.getDames(), courante.getTrait(),
+                courante.getCle(), courante.getHauteur(), nb);
+    }
+
+    /**
+     * Ajoute une position aux tableaux de la partie en cours, en les agrandissant au besoin.
+     *
+     * @param b        Les pièces blanches.
+     * @param n        Les pièces noires.
+     * @param d        Les dames.
+     * @param trait    Le joueur au trait.
+     * @param cle      La clé de Zobrist.
+     * @param demiCoup Le numéro du demi-coup.
+     * @param nb       Le nombre de positions retenues.
+     * @return Le nouveau nombre de positions retenues.
+     */
+    private int retenir(long b, long n, long d, int trait, long cle, int demiCoup, int nb) {
+        if (nb == blancs.length) {
+            int taille = nb * 2;
+            blancs = Arrays.copyOf(blancs, taille);
+            noirs = Arrays.copyOf(noirs, taille);
+            dames = Arrays.copyOf(dames, taille);
+            traits = Arrays.copyOf(traits, taille);
+            clesPositions = Arrays.copyOf(clesPositions, taille);
+            demiCoups = Arrays.copyOf(demiCoups, taille);
+            scores = Arrays.copyOf(scores, taille);
+        }
+        blancs[nb] = b;
+        noirs[nb] = n;
+        dames[nb] = d;
+        traits[nb] = (byte) trait;
+        clesPositions[nb] = cle;
+        demiCoups[nb] = demiCoup;
+        return nb + 1;
+    }
+
+    /**
+     * Marque une clé comme exportée.
+     *
+     * @param cle La clé de Zobrist de la position.
+     * @return true si la clé n'avait pas encore été vue.
+     */
+    private boolean marquer(long cle) {
+        long valeur = cle == 0 ? 1 : cle;
+        int masque = cles.length - 1;
+        int premier = (int) (valeur ^ valeur >>> 32) & masque;
+        for (int i = 0; i < SONDES; i++) {
+            int index = (premier + i) & masque;
+            if (cles[index] == valeur) {
+                return false;
+            }
+            if (cles[index] == 0) {
+                cles[index] = valeur;
+                return true;
+            }
+        }
+        cles[premier] = valeur;
+        return true;
+    }
+
+    /**
+     * Écarte les doublons, puis étiquette et écrit les positions retenues de la partie en cours.
+     *
+     * @param retenues Le nombre de positions retenues.
+     * @param resultat Le résultat pour les blancs.
+     * @return Le nombre de positions écrites.
+     * @throws IOException Si l'écriture échoue.
+     */
+    private int ecrirePartie(int retenues, int resultat) throws IOException {
+        int nb = 0;
+        for (int i = 0; i < retenues; i++) {
+            if (cles != null && !marquer(clesPositions[i])) {
+                nbDoublons++;
+                continue;
+            }
+            blancs[nb] = blancs[i];
+            noirs[nb] = noirs[i];
+            dames[nb] = dames[i];
+            traits[nb] = traits[i];
+            demiCoups[nb] = demiCoups[i];
+            nb++;
+        }
+        if (profondeur == 0) {
+            evaluationLot.evaluerBlancs(blancs, noirs, dames, 0, nb, scores);
+        } else {
+            for (int i = 0; i < nb; i++) {
+                position.definir(blancs[i], noirs[i], dames[i], traits[i]);
+                int score = recherche.chercher(position, profondeur, 0).getScore();
+                scores[i] = traits[i] == Position.BLANC ? score : -score;
+            }
+        }
+        for (int i = 0; i < nb; i++) {
+            ecrivain.ecrire(blancs[i], noirs[i], dames[i], traits[i], resultat, scores[i], demiCoups[i]);
+        }
+        return nb;
+    }
+
+    /**
+     * Déduit le résultat d'une partie de recueil de sa position finale, rejouée sur la position de travail.
+     *
+     * @return 1, 0 ou -1 pour les blancs, ou {@link Integer#MIN_VALUE} si la partie est inachevée.
+     */
+    private int resultatFinal() {
+        if (position.getRaisonNulle() != RegleNulle.AUCUNE) {
+            return 0;
+        }
+        if (generateur.generer(position, liste) > 0) {
+            return Integer.MIN_VALUE;
+        }
+        return position.getTrait() == Position.BLANC ? -1 : 1;
+    }
+}
@@ -0,0 +1,165 @@
+package cstjean.mobile.dames.entrainement;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Format des fichiers de positions étiquetées servant à l'entraînement et au réglage.
+ *
+ * <p>Un fichier est une suite d'enregistrements de {@link #TAILLE} octets, sans en-tête, en
+ * petit-boutiste, pour être projeté tel quel en mémoire par NumPy :</p>
+ * <pre>
+ * numpy.dtype([("blancs", "&lt;u8"), ("noirs", "&lt;u8"), ("dames", "&lt;u8"), ("trait", "u1"),
+ *              ("resultat", "i1"), ("score", "&lt;i2"), ("demi_coup", "&lt;u4")])
+ * </pre>
+ * <p>Les masques utilisent le bit case - 1. Le trait vaut 0 pour les blancs et 1 pour les
+ * noirs ; le résultat de la partie et le score sont du point de vue des blancs.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class FormatPositions {
+    /**
+     * Taille d'un enregistrement, en octets.
+     */
+    public static final int TAILLE = 32;
+
+    /**
+     * Position des pièces blanches dans un enregistrement.
+     */
+    public static final int BLANCS = 0;
+
+    /**
+     * Position des pièces noires.
+     */
+    public static final int NOIRS = 8;
+
+    /**
+     * Position des dames.
+     */
+    public static final int DAMES = 16;
+
+    /**
+     * Position du joueur au trait.
+     */
+    public static final int TRAIT = 24;
+
+    /**
+     * Position du résultat : 1 si les blancs ont gagné, 0 pour une nulle, -1 s'ils ont perdu.
+     */
+    public static final int RESULTAT = 25;
+
+    /**
+     * Position du score du moteur, en centièmes de pion.
+     */
+    public static final int SCORE = 26;
+
+    /**
+     * Position du numéro du demi-coup dans la partie.
+     */
+    public static final int DEMI_COUP = 28;
+
+    /**
+     * Score d'une position que le moteur n'a pas évaluée.
+     */
+    public static final short SANS_SCORE = Short.MIN_VALUE;
+
+    /**
+     * Classe utilitaire.
+     */
+    private FormatPositions() {
+    }
+
+    /**
+     * Écrit un enregistrement à la position courante d'un tampon petit-boutiste.
+     *
+     * @param tampon   Le tampon de destination.
+     * @param blancs   Les pièces blanches.
+     * @param noirs    Les pièces noires.
+     * @param dames    Les dames des deux camps.
+     * @param trait    Le joueur au trait.
+     * @param resultat Le résultat de la partie pour les blancs.
+     * @param score    Le score du moteur pour les blancs, ou {@link #SANS_SCORE}.
+     * @param demiCoup Le numéro du demi-coup.
+     */
+    public static void ecrire(ByteBuffer tampon, long blancs, long noirs, long dames, int trait, int resultat,
+                              int score, int demiCoup) {
+        tampon.putLong(blancs).putLong(noirs).putLong(dames).put((byte) trait).put((byte) resultat)
+                .putShort((short) Math.max(Math.min(score, Short.MAX_VALUE), SANS_SCORE + 1)).putInt(demiCoup);
+    }
+
+    /**
+     * Lit les pièces blanches d'un enregistrement.
+     *
+     * @param tampon Le tampon petit-boutiste.
+     * @param debut  La position de l'enregistrement dans le tampon.
+     * @return Le masque des pièces blanches.
+     */
+    public static long getBlancs(ByteBuffer tampon, int debut) {
+        return tampon.getLong(debut + BLANCS);
+    }
+
+    /**
+     * Lit les pièces noires d'un enregistrement.
+     *
+     * @param tampon Le tampon petit-boutiste.
+     * @param debut  La position de l'enregistrement.
+     * @return Le masque des pièces noires.
+     */
+    public static long getNoirs(ByteBuffer tampon, int debut) {
+        return tampon.getLong(debut + NOIRS);
+    }
+
+    /**
+     * Lit les dames d'un enregistrement.
+     *
+     * @param tampon Le tampon petit-boutiste.
+     * @param debut  La position de l'enregistrement.
+     * @return Le masque des dames.
+     */
+    public static long getDames(ByteBuffer tampon, int debut) {
+        return tampon.getLong(debut + DAMES);
+    }
+
+    /**
+     * Lit le joueur au trait d'un enregistrement.
+     *
+     * @param tampon Le tampon.
+     * @param debut  La position de l'enregistrement.
+     * @return 0 pour les blancs, 1 pour les noirs.
+     */
+    public static int getTrait(ByteBuffer tampon, int debut) {
+        return tampon.get(debut + TRAIT);
+    }
+
+    /**
+     * Lit le résultat de la partie d'un enregistrement.
+     *
+     * @param tampon Le tampon.
+     * @param debut  La position de l'enregistrement.
+     * @return 1, 0 ou -1 du point de vue des blancs.
+     */
+    public static int getResultat(ByteBuffer tampon, int debut) {
+        return tampon.get(debut + RESULTAT);
+    }
+
+    /**
+     * Lit le score du moteur d'un enregistrement.
+     *
+     * @param tampon Le tampon petit-boutiste.
+     * @param debut  La position de l'enregistrement.
+     * @return Le score pour les blancs, ou {@link #SANS_SCORE}.
+     */
+    public static int getScore(ByteBuffer tampon, int debut) {
+        return tampon.getShort(debut + SCORE);
+    }
+
+    /**
+     * Lit le numéro du demi-coup d'un enregistrement.
+     *
+     * @param tampon Le tampon petit-boutiste.
+     * @param debut  La position de l'enregistrement.
+     * @return Le numéro du demi-coup.
+     */
+    public static int getDemiCoup(ByteBuffer tampon, int debut) {
+        return tampon.getInt(debut + DEMI_COUP);
+    }
+}
@@ -0,0 +1,332 @@
+package cstjean.mobile.dames.entrainement;
+
+import cstjean.mobile.dames.damier.Variante;
+import cstjean.mobile.dames.moteur.EvaluationClassique;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Réglage hors ligne des paramètres de {@link EvaluationClassique} par la méthode de Texel.
+ *
+ * <p>Chaque position étiquetée du fichier d'entraînement (voir {@link FormatPositions}) prédit
+ * le résultat de sa partie par une sigmoïde de son évaluation. Les paramètres sont ajustés par
+ * descente de gradient (Adam) pour minimiser l'erreur quadratique moyenne de ces prédictions.
+ * L'évaluation étant linéaire en ses paramètres, le gradient d'une position se déduit
+ * directement de ses termes.</p>
+ *
+ * <p>Chaque époque parcourt le fichier par tranches réparties entre les threads d'un
+ * {@link ForkJoinPool} ; chaque tranche est lue par blocs à des positions absolues du canal,
+ * sans jamais charger l'ensemble des positions en mémoire.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class ReglageTexel implements Closeable {
+    /**
+     * Constante de la sigmoïde par défaut : 400 centièmes d'avance donnent 10 contre 1.
+     */
+    public static final double CONSTANTE_DEFAUT = Math.log(10) / 400;
+
+    /**
+     * Taille maximale d'une tranche traitée par une seule tâche.
+     */
+    private static final int ENREGISTREMENTS_PAR_TACHE = 1 << 16;
+
+    /**
+     * Nombre d'enregistrements lus à la fois.
+     */
+    private static final int ENREGISTREMENTS_PAR_LECTURE = 4096;
+
+    /**
+     * Paramètres d'Adam : décroissance des moments et terme de stabilité.
+     */
+    private static final double BETA1 = 0.9;
+
+    /**
+     * Décroissance du second moment d'Adam.
+     */
+    private static final double BETA2 = 0.999;
+
+    /**
+     * Terme de stabilité d'Adam.
+     */
+    private static final double EPSILON = 1e-8;
+
+    /**
+     * Évaluation fournissant les termes des positions.
+     */
+    private final EvaluationClassique evaluation;
+
+    /**
+     * Canal du fichier d'entraînement, lu à des positions absolues par plusieurs threads.
+     */
+    private final FileChannel canal;
+
+    /**
+     * Nombre de positions du fichier.
+     */
+    private final long nbPositions;
+
+    /**
+     * Threads de calcul.
+     */
+    private final ForkJoinPool executeur;
+
+    /**
+     * Tampon de lecture de chaque thread.
+     */
+    private final ThreadLocal<ByteBuffer> tampons = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(ENREGISTREMENTS_PAR_LECTURE * FormatPositions.TAILLE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+    };
+
+    /**
+     * Constante de la sigmoïde.
+     */
+    private double constante = CONSTANTE_DEFAUT;
+
+    /**
+     * Ouvre un fichier d'entraînement.
+     *
+     * @param variante La variante des positions.
+     * @param donnees  Le fichier de positions étiquetées.
+     * @param nbFils   Le nombre de threads de calcul.
+     * @throws IOException Si le fichier ne peut pas être ouvert.
+     */
+    public ReglageTexel(Variante variante, File donnees, int nbFils) throws IOException {
+        evaluation = new EvaluationClassique(variante);
+        canal = new RandomAccessFile(donnees, "r").getChannel();
+        nbPositions = canal.size() / FormatPositions.TAILLE;
+        executeur = new ForkJoinPool(Math.max(1, nbFils));
+    }
+
+    /**
+     * Calcule l'erreur quadratique moyenne des prédictions pour des paramètres.
+     *
+     * @param parametres Les paramètres de l'évaluation.
+     * @return L'erreur moyenne, entre 0 et 1.
+     * @throws IOException Si la lecture du fichier échoue.
+     */
+    public double erreur(int[] parametres) throws IOException {
+        double[] poids = new double[EvaluationClassique.NB_PARAMETRES];
+        for (int i = 0; i < poids.length; i++) {
+            poids[i] = parametres[i];
+        }
+        return parcourir(poids)[0] / Math.max(1, nbPositions);
+    }
+
+    /**
+     * Règle les paramètres.
+     *
+     * @param depart     Les paramètres de départ.
+     * @param iterations Le nombre d'époques.
+     * @param taux       Le pas d'apprentissage, en centièmes de pion par époque.
+     * @return Les paramètres réglés, arrondis.
+     * @throws IOException Si la lecture du fichier échoue.
+     */
+    public int[] regler(int[] depart, int iterations, double taux) throws IOException {
+        int nb = EvaluationClassique.NB_PARAMETRES;
+        double[] poids = new double[nb];
+        for (int i = 0; i < nb; i++) {
+            poids[i] = depart[i];
+        }
+        double[] moment1 = new double[nb];
+        double[] moment2 = new double[nb];
+        for (int t = 1; t <= iterations; t++) {
+            double[] sommes = parcourir(poids);
+            for (int i = 0; i < nb; i++) {
+                double gradient = sommes[1 + i] / Math.max(1, nbPositions);
+                moment1[i] = BETA1 * moment1[i] + (1 - BETA1) * gradient;
+                moment2[i] = BETA2 * moment2[i] + (1 - BETA2) * gradient * gradient;
+                double m = moment1[i] / (1 - Math.pow(BETA1, t));
+                double v = moment2[i] / (1 - Math.pow(BETA2, t));
+                poids[i] -= taux * m / (Math.sqrt(v) + EPSILON);
+            }
+        }
+        int[] parametres = new int[nb];
+        for (int i = 0; i < nb; i++) {
+            parametres[i] = (int) Math.round(poids[i]);
+        }
+        return parametres;
+    }
+
+    /**
+     * Modifie la constante de la sigmoïde.
+     *
+     * @param constante La constante, en inverse de centièmes de pion.
+     */
+    public void setConstante(double constante) {
+        this.constante = constante;
+    }
+
+    /**
+     * Retourne le nombre de positions du fichier.
+     *
+     * @return Le nombre de positions.
+     */
+    public long getNbPositions() {
+        return nbPositions;
+    }
+
+    @Override
+    public void close() throws IOException {
+        executeur.shutdown();
+        canal.close();
+    }
+
+    /**
+     * Règle l'évaluation à partir d'un fichier d'entraînement et écrit les paramètres obtenus.
+     * Arguments : variante, fichier d'entraînement, fichier de paramètres à écrire, nombre
+     * d'époques (100 par défaut).
+     *
+     * @param arguments Les arguments de la ligne de commande.
+     * @throws IOException Si un fichier ne peut pas être lu ou écrit.
+     */
+    public static void main(String[] arguments) throws IOException {
+        if (arguments.length < 3) {
+            System.err.println("Usage : ReglageTexel <variante> <positions> <parametres> [epoques]");
+            return;
+        }
+        Variante variante = Variante.valueOf(arguments[0]);
+        int iterations = arguments.length > 3 ? Integer.parseInt(arguments[3]) : 100;
+        try (ReglageTexel reglage = new ReglageTexel(variante, new File(arguments[1]),
+                Runtime.getRuntime().availableProcessors())) {
+            int[] depart = EvaluationClassique.getParametresDefaut();
+            System.out.println(reglage.getNbPositions() + " positions, erreur initiale "
+                    + reglage.erreur(depart));
+            int[] regles = reglage.regler(depart, iterations, 1.0);
+            System.out.println("Paramètres " + Arrays.toString(regles) + ", erreur " + reglage.erreur(regles));
+            try (OutputStream sortie = new FileOutputStream(arguments[2])) {
+                EvaluationClassique.ecrireParametres(regles, sortie);
+            }
+        }
+    }
+
+    /**
+     * Parcourt toutes les positions en parallèle.
+     *
+     * @param poids Les paramètres courants.
+     * @return La somme des erreurs suivie des sommes des dérivées par paramètre.
+     * @throws IOException Si la lecture du fichier échoue.
+     */
+    private double[] parcourir(double[] poids) throws IOException {
+        try {
+            return executeur.invoke(new Tranche(poids, 0, nbPositions));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Tranche de positions, coupée en deux tant qu'elle dépasse {@link #ENREGISTREMENTS_PAR_TACHE}.
+     */
+    private final class Tranche extends RecursiveTask<double[]> {
+        /**
+         * Version de la forme sérialisée, exigée par {@link RecursiveTask}.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Les paramètres courants.
+         */
+        private final double[] poids;
+
+        /**
+         * Le premier enregistrement.
+         */
+        private final long debut;
+
+        /**
+         * L'enregistrement suivant le dernier.
+         */
+        private final long fin;
+
+        /**
+         * Construit une tranche.
+         *
+         * @param poids Les paramètres courants.
+         * @param debut Le premier enregistrement.
+         * @param fin   L'enregistrement suivant le dernier.
+         */
+        Tranche(double[] poids, long debut, long fin) {
+            this.poids = poids;
+            this.debut = debut;
+            this.fin = fin;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (fin - debut > ENREGISTREMENTS_PAR_TACHE) {
+                long milieu = (debut + fin) >>> 1;
+                Tranche gauche = new Tranche(poids, debut, milieu);
+                gauche.fork();
+                double[] droite = new Tranche(poids, milieu, fin).compute();
+                double[] sommes = gauche.join();
+                for (int i = 0; i < sommes.length; i++) {
+                    sommes[i] += droite[i];
+                }
+                return sommes;
+            }
+            try {
+                return calculer();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Calcule l'erreur et le gradient de la tranche en la lisant par blocs.
+         *
+         * @return La somme des erreurs suivie des sommes des dérivées par paramètre.
+         * @throws IOException Si la lecture échoue.
+         */
+        private double[] calculer() throws IOException {
+            int nb = poids.length;
+            double[] sommes = new double[1 + nb];
+            int[] termes = new int[nb];
+            ByteBuffer tampon = tampons.get();
+            for (long bloc = debut; bloc < fin; bloc += ENREGISTREMENTS_PAR_LECTURE) {
+                int nbEnregistrements = (int) Math.min(ENREGISTREMENTS_PAR_LECTURE, fin - bloc);
+                tampon.clear().limit(nbEnregistrements * FormatPositions.TAILLE);
+                long position = bloc * FormatPositions.TAILLE;
+                while (tampon.hasRemaining()) {
+                    int lus = canal.read(tampon, position + tampon.position());
+                    if (lus < 0) {
+                        throw new IOException("Fichier d'entraînement tronqué.");
+                    }
+                }
+                for (int r = 0; r < nbEnregistrements; r++) {
+                    int offset = r * FormatPositions.TAILLE;
+                    evaluation.calculerTermes(FormatPositions.getBlancs(tampon, offset),
+                            FormatPositions.getNoirs(tampon, offset), FormatPositions.getDames(tampon, offset),
+                            termes);
+                    double score = 0;
+                    for (int i = 0; i < nb; i++) {
+                        score += poids[i] * termes[i];
+                    }
+                    double prediction = 1 / (1 + Math.exp(-constante * score));
+                    double ecart = (FormatPositions.getResultat(tampon, offset) + 1) / 2.0 - prediction;
+                    sommes[0] += ecart * ecart;
+                    double derivee = -2 * ecart * prediction * (1 - prediction) * constante;
+                    for (int i = 0; i < nb; i++) {
+                        sommes[1 + i] += derivee * termes[i];
+                    }
+                }
+            }
+            return sommes;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package cstjean.mobile.dames.metriques;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogramme à intervalles logarithmiques (puissances de deux), sûr entre threads
+ * et sans allocation à l'enregistrement.
+ *
+ * <p>Par défaut, l'intervalle i compte les valeurs v telles que 2^(i-1) &lt;= v &lt; 2^i ;
+ * l'intervalle 0 compte les valeurs nulles ou négatives. Un centile n'est alors connu qu'à un
+ * facteur deux près. Avec k bits de précision, chaque puissance de deux est découpée en 2^k
+ * sous-intervalles égaux (log-linéaire) : l'erreur relative d'un centile tombe sous 2^-k.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public class Histogramme {
+    /**
+     * Nombre d'intervalles, un par bit d'un long plus celui des valeurs nulles.
+     */
+    public static final int NB_INTERVALLES = Long.SIZE + 1;
+
+    /**
+     * Précision maximale, en bits par puissance de deux.
+     */
+    public static final int PRECISION_MAX = 8;
+
+    /**
+     * Nombre de bits qui suivent le bit de tête et choisissent le sous-intervalle.
+     */
+    private final int precision;
+
+    /**
+     * Nombre de valeurs enregistrées dans chaque intervalle.
+     */
+    private final AtomicLongArray comptes;
+
+    /**
+     * Construit un histogramme à un intervalle par puissance de deux.
+     */
+    public Histogramme() {
+        this(0);
+    }
+
+    /**
+     * Construit un histogramme dont chaque puissance de deux est découpée en 2^precision
+     * sous-intervalles.
+     *
+     * @param precision Le nombre de bits de précision, de 0 à {@link #PRECISION_MAX}.
+     * @throws IllegalArgumentException Si la précision est hors bornes.
+     */
+    public Histogramme(int precision) {
+        if (precision < 0 || precision > PRECISION_MAX) {
+            throw new IllegalArgumentException("Précision invalide : " + precision);
+        }
+        this.precision = precision;
+        comptes = new AtomicLongArray(1 + (Long.SIZE << precision));
+    }
+
+    /**
+     * Enregistre une valeur.
+     *
+     * @param valeur La valeur à enregistrer.
+     */
+    public void enregistrer(long valeur) {
+        comptes.incrementAndGet(intervalle(valeur));
+    }
+
+    /**
+     * Retourne l'intervalle d'une valeur.
+     *
+     * @param valeur La valeur.
+     * @return L'indice de son intervalle.
+     */
+    private int intervalle(long valeur) {
+        if (valeur <= 0) {
+            return 0;
+        }
+        int exposant = Long.SIZE - 1 - Long.numberOfLeadingZeros(valeur);
+        int decalage = exposant - precision;
+        int sousIntervalle = (int) (decalage >= 0 ? valeur >>> decalage : valeur << -decalage)
+                & ((1 << precision) - 1);
+        return 1 + (exposant << precision) + sousIntervalle;
+    }
+
+    /**
+     * Retourne le nombre d'intervalles de l'histogramme.
+     *
+     * @return {@link #NB_INTERVALLES} sans précision, davantage sinon.
+     */
+    public int getNbIntervalles() {
+        return comptes.length();
+    }
+
+    /**
+     * Retourne le nombre de valeurs d'un intervalle.
+     *
+     * @param intervalle L'indice de l'intervalle, de 0 à {@link #getNbIntervalles()} - 1.
+     * @return Le nombre de valeurs enregistrées dans cet intervalle.
+     */
+    public long getCompte(int intervalle) {
+        return comptes.get(intervalle);
+    }
+
+    /**
+     * Retourne le nombre total de valeurs enregistrées.
+     *
+     * @return Le nombre de valeurs.
+     */
+    public long getTotal() {
+        long total = 0;
+        for (int i = 0; i < comptes.length(); i++) {
+            total += comptes.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Retourne une borne supérieure du centile demandé : la borne de l'intervalle qui le contient.
+     *
+     * @param centile Le centile, entre 0 et 1 (par exemple 0.99).
+     * @return La borne supérieure exclusive de l'intervalle contenant ce centile, ou 0 si vide.
+     */
+    public long getCentile(double centile) {
+        long total = getTotal();
+        if (total == 0) {
+            return 0;
+        }
+        long rang = (long) Math.ceil(centile * total);
+        long cumul = 0;
+        for (int i = 0; i < comptes.length(); i++) {
+            cumul += comptes.get(i);
+            if (cumul >= rang) {
+                return borneSuperieure(i);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Retourne la borne supérieure exclusive d'un intervalle.
+     *
+     * @param intervalle L'indice de l'intervalle.
+     * @return La borne, saturée à {@link Long#MAX_VALUE}.
+     */
+    private long borneSuperieure(int intervalle) {
+        if (intervalle == 0) {
+            return 0;
+        }
+        int exposant = (intervalle - 1) >> precision;
+        long sousIntervalle = (intervalle - 1) & ((1 << precision) - 1);
+        int decalage = exposant - precision;
+        long inferieure;
+        long largeur;
+        if (decalage >= 0) {
+            inferieure = (1L << exposant) + (sousIntervalle << decalage);
+            largeur = 1L << decalage;
+        } else {
+            // Valeurs exactes : plusieurs sous-intervalles ne sont jamais atteints.
+            inferieure = (1L << exposant) + (sousIntervalle >> -decalage);
+            largeur = 1;
+        }
+        long borne = inferieure + largeur;
+        return borne <= 0 ? Long.MAX_VALUE : borne;
+    }
+
+    /**
+     * Remet tous les intervalles à zéro.
+     */
+    public void reinitialiser() {
+        for (int i = 0; i < comptes.length(); i++) {
+            comptes.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package cstjean.mobile.dames.metriques;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compteurs globaux du coût des règles et des recherches.
+ *
+ * <p>Les métriques s'activent et se désactivent à l'exécution. Désactivées, chaque point
+ * de mesure se résume à la lecture d'un booléen ; activées, les compteurs sont des
+ * {@link LongAdder}, qui restent peu coûteux même lorsque plusieurs threads de recherche
+ * comptent en même temps.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class Metriques {
+    /**
+     * Coups générés (déplacements et prises énumérés).
+     */
+    public static final LongAdder COUPS_GENERES = new LongAdder();
+
+    /**
+     * Validations de coups demandées aux règles.
+     */
+    public static final LongAdder VALIDATIONS = new LongAdder();
+
+    /**
+     * Prises effectuées.
+     */
+    public static final LongAdder PRISES = new LongAdder();
+
+    /**
+     * Coups annulés.
+     */
+    public static final LongAdder ANNULATIONS = new LongAdder();
+
+    /**
+     * Nœuds visités par l'ensemble des recherches.
+     */
+    public static final LongAdder NOEUDS = new LongAdder();
+
+    /**
+     * Durée des recherches terminées, en microsecondes.
+     */
+    public static final Histogramme DUREES_RECHERCHE = new Histogramme();
+
+    /**
+     * Nœuds par seconde des recherches terminées.
+     */
+    public static final Histogramme NOEUDS_PAR_SECONDE = new Histogramme();
+
+    /**
+     * Indique si les métriques sont enregistrées.
+     */
+    private static volatile boolean actif;
+
+    /**
+     * Traceur recevant les itérations de recherche.
+     */
+    private static volatile TraceurRecherche traceur = TraceurRecherche.AUCUN;
+
+    private Metriques() {
+    }
+
+    /**
+     * Active ou désactive l'enregistrement des métriques.
+     *
+     * @param valeur true pour enregistrer les métriques.
+     */
+    public static void activer(boolean valeur) {
+        actif = valeur;
+    }
+
+    /**
+     * Indique si les métriques sont enregistrées.
+     *
+     * @return true si les métriques sont actives.
+     */
+    public static boolean estActif() {
+        return actif;
+    }
+
+    /**
+     * Compte des coups générés.
+     *
+     * @param nombre Le nombre de coups générés.
+     */
+    public static void coupsGeneres(int nombre) {
+        if (actif) {
+            COUPS_GENERES.add(nombre);
+        }
+    }
+
+    /**
+     * Compte une validation de coup.
+     */
+    public static void validation() {
+        if (actif) {
+            VALIDATIONS.increment();
+        }
+    }
+
+    /**
+     * Compte une prise.
+     */
+    public static void prise() {
+        if (actif) {
+            PRISES.increment();
+        }
+    }
+
+    /**
+     * Compte une annulation de coup.
+     */
+    public static void annulation() {
+        if (actif) {
+            ANNULATIONS.increment();
+        }
+    }
+
+    /**
+     * Enregistre une recherche terminée.
+     *
+     * @param statistiques Les statistiques de la recherche.
+     */
+    public static void recherche(StatistiquesRecherche statistiques) {
+        if (actif) {
+            NOEUDS.add(statistiques.getNoeuds());
+            DUREES_RECHERCHE.enregistrer(statistiques.getDureeNanos() / 1000);
+            NOEUDS_PAR_SECONDE.enregistrer(statistiques.getNoeudsParSeconde());
+        }
+    }
+
+    /**
+     * Retourne le traceur des itérations de recherche, {@link TraceurRecherche#AUCUN} si
+     * les métriques sont désactivées.
+     *
+     * @return Le traceur à utiliser.
+     */
+    public static TraceurRecherche getTraceur() {
+        return actif ? traceur : TraceurRecherche.AUCUN;
+    }
+
+    /**
+     * Installe le traceur des itérations de recherche.
+     *
+     * @param nouveauTraceur Le traceur, ou null pour n'en utiliser aucun.
+     */
+    public static void setTraceur(TraceurRecherche nouveauTraceur) {
+        traceur = nouveauTraceur != null ? nouveauTraceur : TraceurRecherche.AUCUN;
+    }
+
+    /**
+     * Remet tous les compteurs et histogrammes à zéro.
+     */
+    public static void reinitialiser() {
+        COUPS_GENERES.reset();
+        VALIDATIONS.reset();
+        PRISES.reset();
+        ANNULATIONS.reset();
+        NOEUDS.reset();
+        DUREES_RECHERCHE.reinitialiser();
+        NOEUDS_PAR_SECONDE.reinitialiser();
+    }
+
+    /**
+     * Résume les compteurs sous forme de texte, pour les journaux de diagnostic.
+     *
+     * @return Le résumé des compteurs.
+     */
+    public static String resume() {
+        return "coups générés=" + COUPS_GENERES.sum()
+                + ", validations=" + VALIDATIONS.sum()
+                + ", prises=" + PRISES.sum()
+                + ", annulations=" + ANNULATIONS.sum()
+                + ", nœuds=" + NOEUDS.sum()
+                + ", recherche p50=" + DUREES_RECHERCHE.getCentile(0.5) + "µs"
+                + ", p99=" + DUREES_RECHERCHE.getCentile(0.99) + "µs";
+    }
+}
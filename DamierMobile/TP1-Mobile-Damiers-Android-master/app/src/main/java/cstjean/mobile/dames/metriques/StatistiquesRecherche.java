@@ -0,0 +1,174 @@
+package cstjean.mobile.dames.metriques;
+
+/**
+ * Statistiques d'une recherche : nœuds visités, durée, sondages de la table de
+ * transposition et facteur de branchement.
+ *
+ * <p>Une instance appartient à une seule recherche (un seul thread) et est remise à zéro
+ * au début de chaque recherche ; ses compteurs sont de simples champs primitifs.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public class StatistiquesRecherche {
+    /**
+     * Nœuds visités.
+     */
+    private long noeuds;
+
+    /**
+     * Nœuds dont les coups ont été générés.
+     */
+    private long noeudsInternes;
+
+    /**
+     * Coups générés dans les nœuds internes.
+     */
+    private long coupsGeneres;
+
+    /**
+     * Sondages de la table de transposition.
+     */
+    private long sondages;
+
+    /**
+     * Sondages ayant trouvé la position dans la table.
+     */
+    private long succes;
+
+    /**
+     * Instant de début de la recherche, en nanosecondes.
+     */
+    private long debut;
+
+    /**
+     * Durée de la recherche, en nanosecondes, une fois terminée.
+     */
+    private long duree;
+
+    /**
+     * Profondeur complète atteinte.
+     */
+    private int profondeur;
+
+    /**
+     * Remet les compteurs à zéro et note l'instant de début.
+     */
+    public void demarrer() {
+        noeuds = 0;
+        noeudsInternes = 0;
+        coupsGeneres = 0;
+        sondages = 0;
+        succes = 0;
+        duree = 0;
+        profondeur = 0;
+        debut = System.nanoTime();
+    }
+
+    /**
+     * Note la fin de la recherche et la transmet aux métriques globales.
+     */
+    public void terminer() {
+        duree = System.nanoTime() - debut;
+        Metriques.recherche(this);
+    }
+
+    /**
+     * Compte un nœud visité.
+     */
+    public void noeud() {
+        noeuds++;
+    }
+
+    /**
+     * Compte les coups générés dans un nœud.
+     *
+     * @param nombre Le nombre de coups générés.
+     */
+    public void coupsGeneres(int nombre) {
+        noeudsInternes++;
+        coupsGeneres += nombre;
+    }
+
+    /**
+     * Compte un sondage de la table de transposition.
+     *
+     * @param trouve true si la position était dans la table.
+     */
+    public void sondage(boolean trouve) {
+        sondages++;
+        if (trouve) {
+            succes++;
+        }
+    }
+
+    /**
+     * Note la profondeur complète atteinte.
+     *
+     * @param valeur La profondeur.
+     */
+    public void setProfondeur(int valeur) {
+        profondeur = valeur;
+    }
+
+    /**
+     * Retourne le nombre de nœuds visités.
+     *
+     * @return Le nombre de nœuds.
+     */
+    public long getNoeuds() {
+        return noeuds;
+    }
+
+    /**
+     * Retourne la durée de la recherche, ou le temps écoulé si elle n'est pas terminée.
+     *
+     * @return La durée en nanosecondes.
+     */
+    public long getDureeNanos() {
+        return duree != 0 ? duree : System.nanoTime() - debut;
+    }
+
+    /**
+     * Retourne la vitesse de la recherche.
+     *
+     * @return Le nombre de nœuds par seconde.
+     */
+    public long getNoeudsParSeconde() {
+        long nanos = Math.max(1, getDureeNanos());
+        return noeuds * 1_000_000_000L / nanos;
+    }
+
+    /**
+     * Retourne la proportion des sondages de la table de transposition ayant réussi.
+     *
+     * @return Le taux de succès, entre 0 et 1.
+     */
+    public double getTauxSucces() {
+        return sondages == 0 ? 0 : (double) succes / sondages;
+    }
+
+    /**
+     * Retourne le nombre moyen de coups par nœud interne.
+     *
+     * @return Le facteur de branchement moyen.
+     */
+    public double getFacteurBranchement() {
+        return noeudsInternes == 0 ? 0 : (double) coupsGeneres / noeudsInternes;
+    }
+
+    /**
+     * Retourne la profondeur complète atteinte.
+     *
+     * @return La profondeur.
+     */
+    public int getProfondeur() {
+        return profondeur;
+    }
+
+    @Override
+    public String toString() {
+        return "profondeur=" + profondeur + ", nœuds=" + noeuds + ", nœuds/s=" + getNoeudsParSeconde()
+                + ", succès table=" + Math.round(getTauxSucces() * 100) + "%"
+                + ", branchement=" + Math.round(getFacteurBranchement() * 10) / 10.0;
+    }
+}
@@ -0,0 +1,38 @@
+package cstjean.mobile.dames.metriques;
+
+/**
+ * Reçoit le début et la fin de chaque itération d'une recherche, pour les
+ * afficher dans un outil de traçage de la plateforme.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public interface TraceurRecherche {
+    /**
+     * Traceur qui ne fait rien, utilisé par défaut.
+     */
+    TraceurRecherche AUCUN = new TraceurRecherche() {
+        @Override
+        public void debutIteration(int profondeur) {
+        }
+
+        @Override
+        public void finIteration(int profondeur, long noeuds, int score) {
+        }
+    };
+
+    /**
+     * Appelé au début d'une itération de l'approfondissement itératif.
+     *
+     * @param profondeur La profondeur de l'itération.
+     */
+    void debutIteration(int profondeur);
+
+    /**
+     * Appelé à la fin d'une itération de l'approfondissement itératif.
+     *
+     * @param profondeur La profondeur de l'itération.
+     * @param noeuds     Le nombre de nœuds visités depuis le début de la recherche.
+     * @param score      Le score obtenu à cette profondeur.
+     */
+    void finIteration(int profondeur, long noeuds, int score);
+}
@@ -0,0 +1,150 @@
+package cstjean.mobile.dames.moteur;
+
+/**
+ * Accumulateurs de la première couche d'un {@link ReseauNeuronal}, un par point de vue.
+ *
+ * <p>Ajouter, retirer ou promouvoir une pièce ne touche qu'une colonne de poids par point
+ * de vue. {@link #synchroniser(long, long, long)} compare les masques de la position avec
+ * ceux déjà accumulés et n'applique que les différences : d'une position à sa voisine dans
+ * l'arbre de recherche, seules quelques pièces changent.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class AccumulateurNeuronal {
+    /**
+     * Le réseau.
+     */
+    private final ReseauNeuronal reseau;
+
+    /**
+     * Accumulateurs des deux points de vue, indexés par joueur.
+     */
+    private final short[][] valeurs;
+
+    /**
+     * Masques des pièces accumulées, indexés par code de pièce.
+     */
+    private final long[] masques = new long[ReseauNeuronal.NB_TYPES];
+
+    /**
+     * Construit un accumulateur vide.
+     *
+     * @param reseau Le réseau.
+     */
+    public AccumulateurNeuronal(ReseauNeuronal reseau) {
+        this.reseau = reseau;
+        this.valeurs = new short[2][reseau.taille1];
+        reinitialiser();
+    }
+
+    /**
+     * Retire toutes les pièces : les accumulateurs ne contiennent plus que les biais.
+     */
+    public void reinitialiser() {
+        System.arraycopy(reseau.biais1, 0, valeurs[Position.BLANC], 0, reseau.taille1);
+        System.arraycopy(reseau.biais1, 0, valeurs[Position.NOIR], 0, reseau.taille1);
+        for (int code = 0; code < masques.length; code++) {
+            masques[code] = 0;
+        }
+    }
+
+    /**
+     * Ajoute une pièce.
+     *
+     * @param numeroCase La case, de 1 au nombre de cases.
+     * @param code       Le code de la pièce.
+     */
+    public void ajouter(int numeroCase, int code) {
+        appliquer(numeroCase, code, 1);
+        masques[code] |= 1L << (numeroCase - 1);
+    }
+
+    /**
+     * Retire une pièce.
+     *
+     * @param numeroCase La case, de 1 au nombre de cases.
+     * @param code       Le code de la pièce.
+     */
+    public void retirer(int numeroCase, int code) {
+        appliquer(numeroCase, code, -1);
+        masques[code] &= ~(1L << (numeroCase - 1));
+    }
+
+    /**
+     * Remplace un pion par une dame de même couleur.
+     *
+     * @param numeroCase La case du pion.
+     * @param couleur    La couleur du pion : 0 pour blanc, 1 pour noir.
+     */
+    public void promouvoir(int numeroCase, int couleur) {
+        retirer(numeroCase, couleur);
+        ajouter(numeroCase, couleur + 2);
+    }
+
+    /**
+     * Met les accumulateurs à jour pour une position, en n'appliquant que les pièces
+     * ajoutées ou retirées depuis la dernière synchronisation.
+     *
+     * @param blancs Les pièces blanches.
+     * @param noirs  Les pièces noires.
+     * @param dames  Les dames des deux camps.
+     */
+    public void synchroniser(long blancs, long noirs, long dames) {
+        synchroniserType(0, blancs & ~dames);
+        synchroniserType(1, noirs & ~dames);
+        synchroniserType(2, blancs & dames);
+        synchroniserType(3, noirs & dames);
+    }
+
+    /**
+     * Retourne l'accumulateur d'un point de vue.
+     *
+     * @param perspective Le joueur.
+     * @return Les valeurs de l'accumulateur, à ne pas modifier.
+     */
+    short[] getValeurs(int perspective) {
+        return valeurs[perspective];
+    }
+
+    /**
+     * Applique les différences d'un type de pièce.
+     *
+     * @param code   Le code de la pièce.
+     * @param masque Le nouveau masque de ce type.
+     */
+    private void synchroniserType(int code, long masque) {
+        long ancien = masques[code];
+        for (long retirees = ancien & ~masque; retirees != 0; retirees &= retirees - 1) {
+            appliquer(Long.numberOfTrailingZeros(retirees) + 1, code, -1);
+        }
+        for (long ajoutees = masque & ~ancien; ajoutees != 0; ajoutees &= ajoutees - 1) {
+            appliquer(Long.numberOfTrailingZeros(ajoutees) + 1, code, 1);
+        }
+        masques[code] = masque;
+    }
+
+    /**
+     * Ajoute ou soustrait la colonne de poids d'une pièce aux deux accumulateurs.
+     *
+     * @param numeroCase La case.
+     * @param code       Le code de la pièce.
+     * @param signe      1 pour ajouter, -1 pour retirer.
+     */
+    private void appliquer(int numeroCase, int code, int signe) {
+        int taille = reseau.taille1;
+        short[] poids = reseau.poids1;
+        for (int perspective = Position.BLANC; perspective <= Position.NOIR; perspective++) {
+            short[] accumulateur = valeurs[perspective];
+            int debut = reseau.entree(perspective, numeroCase, code) * taille;
+            if (signe > 0) {
+                for (int i = 0; i < taille; i++) {
+                    accumulateur[i] += poids[debut + i];
+                }
+            } else {
+                for (int i = 0; i < taille; i++) {
+                    accumulateur[i] -= poids[debut + i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package cstjean.mobile.dames.moteur;
+
+import cstjean.mobile.dames.damier.InstantanePartie;
+import cstjean.mobile.dames.damier.Variante;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Calcule des indices pour le joueur au trait : chaque coup légal est évalué par sa propre
+ * recherche et les coups sont classés du meilleur au pire. Les coups sont ceux qu'accepte
+ * {@code JeuDames} : chaque prise simple et chaque déplacement, prise disponible ou non.
+ *
+ * <p>Les recherches des différents coups s'exécutent en parallèle, une par cœur, et partagent
+ * une même table de transposition : les positions communes à plusieurs coups ne sont
+ * explorées qu'une fois. Le budget de temps est réparti entre les coups pour que le calcul
+ * complet tienne à peu près dans le budget demandé.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class AnalyseIndices {
+    /**
+     * Taille de la table de transposition partagée : 2^16 entrées de 16 octets.
+     */
+    private static final int LOG2_TAILLE_TABLE = 16;
+
+    /**
+     * Reçoit les indices d'une analyse, sur le thread de l'exécuteur de rappel.
+     */
+    public interface Rappel {
+        /**
+         * Appelé quand une analyse non annulée se termine.
+         *
+         * @param indices Les coups, du meilleur au pire.
+         */
+        void indices(Indice[] indices);
+    }
+
+    /**
+     * Nombre de threads de calcul.
+     */
+    private final int nbFils;
+
+    /**
+     * Threads de calcul.
+     */
+    private final ExecutorService executeur;
+
+    /**
+     * Exécuteur recevant les rappels.
+     */
+    private final Executor rappels;
+
+    /**
+     * Variante jouée.
+     */
+    private final Variante variante;
+
+    /**
+     * Table de transposition partagée par toutes les recherches.
+     */
+    private final TableTransposition table = new TableTransposition(LOG2_TAILLE_TABLE);
+
+    /**
+     * Recherches créées, une par thread de calcul, pour pouvoir toutes les arrêter.
+     */
+    private final List<Recherche> recherches = new ArrayList<>();
+
+    /**
+     * Recherche et position de travail du thread courant.
+     */
+    private final ThreadLocal<Travail> travaux = new ThreadLocal<Travail>() {
+        @Override
+        protected Travail initialValue() {
+            Recherche recherche = new Recherche(variante, new EvaluationClassique(variante), table);
+            synchronized (recherches) {
+                recherches.add(recherche);
+            }
+            return new Travail(recherche, new Position(variante), new GenerateurCoups(variante));
+        }
+    };
+
+    /**
+     * Numéro de l'analyse courante ; une analyse dont le numéro n'est plus courant est annulée.
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * État propre à un thread de calcul.
+     */
+    private static final class Travail {
+        /**
+         * Recherche du thread.
+         */
+        final Recherche recherche;
+
+        /**
+         * Position de travail du thread.
+         */
+        final Position position;
+
+        /**
+         * Générateur des réponses forcées.
+         */
+        final GenerateurCoups generateur;
+
+        /**
+         * Liste des réponses forcées.
+         */
+        final ListeCoups reponses = new ListeCoups();
+
+        /**
+         * Construit l'état d'un thread.
+         *
+         * @param recherche  La recherche.
+         * @param position   La position de travail.
+         * @param generateur Le générateur des réponses forcées.
+         */
+        Travail(Recherche recherche, Position position, GenerateurCoups generateur) {
+            this.recherche = recherche;
+            this.position = position;
+            this.generateur = generateur;
+        }
+    }
+
+    /**
+     * Construit une analyse utilisant un thread par cœur disponible.
+     *
+     * @param variante La variante jouée.
+     * @param rappels  L'exécuteur sur lequel les indices sont remis.
+     */
+    public AnalyseIndices(Variante variante, Executor rappels) {
+        this(variante, rappels, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construit une analyse.
+     *
+     * @param variante La variante jouée.
+     * @param rappels  L'exécuteur sur lequel les indices sont remis.
+     * @param nbFils   Le nombre de threads de calcul.
+     */
+    public AnalyseIndices(Variante variante, Executor rappels, int nbFils) {
+        this.variante = variante;
+        this.rappels = rappels;
+        this.nbFils = Math.max(1, nbFils);
+        final AtomicInteger numero = new AtomicInteger();
+        this.executeur = Executors.newFixedThreadPool(this.nbFils, tache -> {
+            Thread thread = new Thread(tache, "indices-" + numero.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+    }
+
+    /**
+     * Lance l'analyse d'une position en annulant l'analyse en cours. Le rappel reçoit les coups
+     * classés quand tous ont été évalués, sauf si l'analyse a été annulée entre-temps.
+     *
+     * @param instantane   La position, publiée par la partie.
+     * @param budgetMillis Le temps alloué à l'analyse complète, en millisecondes.
+     * @param rappel       Le destinataire des indices.
+     */
+    public void calculer(InstantanePartie instantane, long budgetMillis, final Rappel rappel) {
+        final int requete = annulerRequete();
+        final Analyse analyse = new Analyse(instantane, Recherche.PROFONDEUR_MAX, budgetMillis);
+        if (analyse.nbCoups == 0) {
+            rappels.execute(() -> rappel.indices(new Indice[0]));
+            return;
+        }
+        for (int i = 0; i < analyse.nbCoups; i++) {
+            final int index = i;
+            executeur.execute(() -> {
+                analyse.evaluer(index, requete);
+                if (analyse.restants.decrementAndGet() == 0 && requete == generation.get()) {
+                    final Indice[] indices = analyse.classer();
+                    rappels.execute(() -> {
+                        if (requete == generation.get()) {
+                            rappel.indices(indices);
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    /**
+     * Analyse une position et attend le résultat.
+     *
+     * @param instantane   La position, publiée par la partie.
+     * @param budgetMillis Le temps alloué à l'analyse complète, en millisecondes.
+     * @return Les coups, du meilleur au pire ; vide si l'analyse a été annulée.
+     * @throws InterruptedException Si le thread appelant est interrompu pendant l'attente.
+     */
+    public Indice[] calculer(InstantanePartie instantane, long budgetMillis) throws InterruptedException {
+        return calculer(instantane, Recherche.PROFONDEUR_MAX, budgetMillis);
+    }
+
+    /**
+     * Analyse une position à profondeur bornée et attend le résultat. Sans limite de temps, le
+     * classement ne dépend pas de la vitesse de la machine.
+     *
+     * @param instantane    La position, publiée par la partie.
+     * @param profondeurMax La profondeur maximale de la recherche de chaque coup.
+     * @param budgetMillis  Le temps alloué à l'analyse complète, en millisecondes, ou 0 pour ne pas le limiter.
+     * @return Les coups, du meilleur au pire ; vide si l'analyse a été annulée ou si le joueur au
+     *         trait n'a aucun coup.
+     * @throws InterruptedException Si le thread appelant est interrompu pendant l'attente.
+     */
+    public Indice[] calculer(InstantanePartie instantane, int profondeurMax, long budgetMillis)
+            throws InterruptedException {
+        final int requete = annulerRequete();
+        final Analyse analyse = new Analyse(instantane, profondeurMax, budgetMillis);
+        if (analyse.nbCoups == 0) {
+            return new Indice[0];
+        }
+        final CountDownLatch fin = new CountDownLatch(analyse.nbCoups);
+        for (int i = 0; i < analyse.nbCoups; i++) {
+            final int index = i;
+            executeur.execute(() -> {
+                try {
+                    analyse.evaluer(index, requete);
+                } finally {
+                    fin.countDown();
+                }
+            });
+        }
+        fin.await();
+        return requete == generation.get() ? analyse.classer() : new Indice[0];
+    }
+
+    /**
+     * Annule l'analyse en cours ; son rappel ne sera pas appelé.
+     */
+    public void annuler() {
+        annulerRequete();
+    }
+
+    /**
+     * Annule l'analyse en cours et arrête les threads de calcul.
+     */
+    public void fermer() {
+        annulerRequete();
+        executeur.shutdownNow();
+    }
+
+    /**
+     * Retourne la table de transposition partagée.
+     *
+     * @return La table.
+     */
+    public TableTransposition getTable() {
+        return table;
+    }
+
+    /**
+     * Annule l'analyse courante, arrête ses recherches et en ouvre une nouvelle.
+     *
+     * @return Le numéro de la nouvelle analyse.
+     */
+    private int annulerRequete() {
+        synchronized (recherches) {
+            int requete = generation.incrementAndGet();
+            for (Recherche recherche : recherches) {
+                recherche.arreter();
+            }
+            return requete;
+        }
+    }
+
+    /**
+     * Prépare une recherche pour une analyse, sous le verrou des annulations : une annulation
+     * ne peut donc pas survenir entre la vérification de l'analyse et l'armement.
+     *
+     * @param recherche La recherche du thread courant.
+     * @param requete   Le numéro de l'analyse.
+     * @return false si l'analyse a été annulée.
+     */
+    private boolean armer(Recherche recherche, int requete) {
+        synchronized (recherches) {
+            if (requete != generation.get()) {
+                return false;
+            }
+            recherche.armer();
+            return true;
+        }
+    }
+
+    /**
+     * Analyse d'une position : ses coups et leurs scores, remplis par les threads de calcul.
+     */
+    private final class Analyse {
+        /**
+         * La position analysée.
+         */
+        final InstantanePartie instantane;
+
+        /**
+         * Les coups de la position.
+         */
+        final ListeCoups coups = new ListeCoups();
+
+        /**
+         * Le nombre de coups.
+         */
+        final int nbCoups;
+
+        /**
+         * Le score de chaque coup, du point de vue du joueur au trait.
+         */
+        final int[] scores;
+
+        /**
+         * La profondeur atteinte pour chaque coup.
+         */
+        final int[] profondeurs;
+
+        /**
+         * La profondeur maximale de la recherche de chaque coup.
+         */
+        final int profondeurMax;
+
+        /**
+         * Le temps alloué à chaque coup, en millisecondes ; 0 pour aucune limite.
+         */
+        final long tranche;
+
+        /**
+         * Le nombre de coups restant à évaluer.
+         */
+        final AtomicInteger restants;
+
+        /**
+         * Prépare l'analyse d'une position.
+         *
+         * @param instantane    La position.
+         * @param profondeurMax La profondeur maximale de la recherche de chaque coup.
+         * @param budgetMillis  Le temps alloué à l'analyse complète ; 0 pour aucune limite.
+         */
+        Analyse(InstantanePartie instantane, int profondeurMax, long budgetMillis) {
+            this.instantane = instantane;
+            this.profondeurMax = profondeurMax;
+            nbCoups = new GenerateurCoups(variante).generer(Position.depuis(instantane), coups);
+            scores = new int[nbCoups];
+            profondeurs = new int[nbCoups];
+            int vagues = (nbCoups + nbFils - 1) / nbFils;
+            tranche = budgetMillis <= 0 ? 0 : Math.max(1, budgetMillis / Math.max(1, vagues));
+            restants = new AtomicInteger(nbCoups);
+        }
+
+        /**
+         * Évalue un coup sur le thread courant, sauf si l'analyse a été annulée. Le tableau des
+         * scores est publié aux autres threads par le compteur des coups restants.
+         *
+         * @param index   L'indice du coup.
+         * @param requete Le numéro de l'analyse.
+         */
+        void evaluer(int index, int requete) {
+            if (requete != generation.get()) {
+                return;
+            }
+            Travail travail = travaux.get();
+            Position position = travail.position;
+            position.copier(instantane);
+            position.jouer(coups.getCoup(index), coups.getPrises(index));
+            // Une recherche s'arrête dès sa première itération quand un seul coup est possible :
+            // les réponses forcées sont donc jouées d'avance pour que le score reste profond.
+            int joues = 1;
+            int signe = -1;
+            while (joues < Recherche.PROFONDEUR_MAX / 2
+                    && travail.generateur.generer(position, travail.reponses) == 1) {
+                position.jouer(travail.reponses.getCoup(0), travail.reponses.getPrises(0));
+                joues++;
+                signe = -signe;
+            }
+            if (!armer(travail.recherche, requete)) {
+                return;
+            }
+            ResultatRecherche resultat = travail.recherche.explorer(position, profondeurMax, tranche);
+            scores[index] = signe * resultat.getScore();
+            profondeurs[index] = resultat.getProfondeur() + joues;
+        }
+
+        /**
+         * Classe les coups évalués, du meilleur au pire, et qualifie chacun par son écart
+         * avec le meilleur score.
+         *
+         * @return Les indices classés.
+         */
+        Indice[] classer() {
+            long[] ordre = new long[nbCoups];
+            for (int i = 0; i < nbCoups; i++) {
+                // Score décroissant dans les bits de poids fort, indice du coup dans ceux de poids faible.
+                ordre[i] = ((long) (Recherche.MAT - scores[i]) << 32) | i;
+            }
+            Arrays.sort(ordre);
+            Indice[] indices = new Indice[nbCoups];
+            int meilleur = scores[(int) ordre[0]];
+            for (int rang = 0; rang < nbCoups; rang++) {
+                int i = (int) ordre[rang];
+                int ecart = meilleur - scores[i];
+                int qualite = ecart <= Indice.ECART_BON ? Indice.BON
+                        : ecart <= Indice.ECART_DOUTEUX ? Indice.DOUTEUX : Indice.MAUVAIS;
+                if (scores[i] <= -Recherche.MAT + Recherche.PROFONDEUR_MAX) {
+                    qualite = Indice.MAUVAIS;
+                }
+                indices[rang] = new Indice(coups.getCoup(i), coups.getPrises(i), scores[i], profondeurs[i],
+                        qualite);
+            }
+            return indices;
+        }
+    }
+}
@@ -0,0 +1,468 @@
+package cstjean.mobile.dames.moteur;
+
+import cstjean.mobile.dames.damier.Coup;
+import cstjean.mobile.dames.damier.InstantanePartie;
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.damier.Variante;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Analyse d'une partie terminée : chaque coup joué est comparé au meilleur coup du moteur.
+ *
+ * <p>Chaque position de la partie, de la position de départ à la position finale, est cherchée
+ * par sa propre recherche à profondeur fixe ; les recherches s'exécutent en parallèle, une par
+ * cœur, et partagent une même table de transposition, si bien que les variantes communes à
+ * des positions voisines ne sont explorées qu'une fois. Le score du coup joué est l'opposé du
+ * score de la position suivante : un demi-coup est annoté dès que ses deux positions sont
+ * cherchées, sans attendre le reste de la partie.</p>
+ *
+ * <p>Les coups sont générés aux règles de {@link JeuDames} : une pièce prise par coup et aucune
+ * prise imposée. Le meilleur coup proposé est donc toujours jouable dans la partie, et un
+ * déplacement joué alors qu'une prise était possible n'est qu'une prise manquée.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class AnalysePartie {
+    /**
+     * Profondeur de recherche par défaut de chaque position.
+     */
+    public static final int PROFONDEUR_DEFAUT = 10;
+
+    /**
+     * Temps maximal par défaut de la recherche d'une position, en millisecondes.
+     */
+    public static final long BUDGET_DEFAUT = 150;
+
+    /**
+     * Borne des scores comparés : au-delà, la partie est jouée et les écarts entre gains ne comptent plus.
+     */
+    private static final int BORNE_SCORE = 1000;
+
+    /**
+     * Taille de la table de transposition partagée : 2^18 entrées de 16 octets.
+     */
+    private static final int LOG2_TAILLE_TABLE = 18;
+
+    /**
+     * Reçoit les annotations d'une analyse, sur le thread de l'exécuteur de rappel.
+     */
+    public interface Rappel {
+        /**
+         * Appelé pour chaque demi-coup dès qu'il est annoté, pas forcément dans l'ordre de la partie.
+         *
+         * @param annotation L'annotation du demi-coup.
+         */
+        void coupAnalyse(AnnotationCoup annotation);
+
+        /**
+         * Appelé quand une analyse non annulée se termine, après le dernier {@link #coupAnalyse}.
+         *
+         * @param annotations Les annotations, dans l'ordre de la partie.
+         */
+        void analyseTerminee(AnnotationCoup[] annotations);
+    }
+
+    /**
+     * Threads de calcul.
+     */
+    private final ExecutorService executeur;
+
+    /**
+     * Exécuteur recevant les rappels.
+     */
+    private final Executor rappels;
+
+    /**
+     * Variante jouée.
+     */
+    private final Variante variante;
+
+    /**
+     * Table de transposition partagée par toutes les recherches.
+     */
+    private final TableTransposition table = new TableTransposition(LOG2_TAILLE_TABLE);
+
+    /**
+     * Recherches créées, une par thread de calcul, pour pouvoir toutes les arrêter.
+     */
+    private final List<Recherche> recherches = new ArrayList<>();
+
+    /**
+     * Recherche et position de travail du thread courant.
+     */
+    private final ThreadLocal<Travail> travaux = new ThreadLocal<Travail>() {
+        @Override
+        protected Travail initialValue() {
+            Recherche recherche = new Recherche(variante, new EvaluationClassique(variante), table);
+            synchronized (recherches) {
+                recherches.add(recherche);
+            }
+            return new Travail(recherche, new Position(variante), new GenerateurCoups(variante));
+        }
+    };
+
+    /**
+     * Numéro de l'analyse courante ; une analyse dont le numéro n'est plus courant est annulée.
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * État propre à un thread de calcul.
+     */
+    private static final class Travail {
+        /**
+         * Recherche du thread.
+         */
+        final Recherche recherche;
+
+        /**
+         * Position de travail du thread.
+         */
+        final Position position;
+
+        /**
+         * Générateur des coups de la position, pour repérer les prises possibles.
+         */
+        final GenerateurCoups generateur;
+
+        /**
+         * Liste des coups de la position.
+         */
+        final ListeCoups coups = new ListeCoups();
+
+        /**
+         * Construit l'état d'un thread.
+         *
+         * @param recherche  La recherche.
+         * @param position   La position de travail.
+         * @param generateur Le générateur de coups.
+         */
+        Travail(Recherche recherche, Position position, GenerateurCoups generateur) {
+            this.recherche = recherche;
+            this.position = position;
+            this.generateur = generateur;
+        }
+    }
+
+    /**
+     * Construit une analyse utilisant un thread par cœur disponible.
+     *
+     * @param variante La variante jouée.
+     * @param rappels  L'exécuteur sur lequel les annotations sont remises.
+     */
+    public AnalysePartie(Variante variante, Executor rappels) {
+        this(variante, rappels, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construit une analyse.
+     *
+     * @param variante La variante jouée.
+     * @param rappels  L'exécuteur sur lequel les annotations sont remises.
+     * @param nbFils   Le nombre de threads de calcul.
+     */
+    public AnalysePartie(Variante variante, Executor rappels, int nbFils) {
+        this.variante = variante;
+        this.rappels = rappels;
+        final AtomicInteger numero = new AtomicInteger();
+        this.executeur = Executors.newFixedThreadPool(Math.max(1, nbFils), tache -> {
+            Thread thread = new Thread(tache, "analyse-" + numero.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+    }
+
+    /**
+     * Lance l'analyse d'une partie en annulant l'analyse en cours. Les annotations sont remises
+     * au rappel à mesure, sauf si l'analyse a été annulée entre-temps.
+     *
+     * @param partie       La partie ; son historique est copié, elle peut continuer d'être modifiée.
+     * @param profondeur   La profondeur de recherche de chaque position.
+     * @param budgetMillis Le temps maximal de la recherche d'une position, en millisecondes.
+     * @param rappel       Le destinataire des annotations.
+     * @throws IllegalArgumentException Si un coup de l'historique n'est pas jouable.
+     */
+    public void analyser(JeuDames partie, int profondeur, long budgetMillis, final Rappel rappel) {
+        final int requete = annulerRequete();
+        final Analyse analyse = new Analyse(partie, profondeur, budgetMillis);
+        if (analyse.nbCoups == 0) {
+            rappels.execute(() -> rappel.analyseTerminee(new AnnotationCoup[0]));
+            return;
+        }
+        for (int i = 0; i <= analyse.nbCoups; i++) {
+            final int index = i;
+            executeur.execute(() -> {
+                if (!analyse.chercher(index, requete)) {
+                    return;
+                }
+                for (final AnnotationCoup annotation : analyse.terminer(index)) {
+                    rappels.execute(() -> {
+                        if (requete == generation.get()) {
+                            rappel.coupAnalyse(annotation);
+                        }
+                    });
+                }
+                if (analyse.restants.decrementAndGet() == 0 && requete == generation.get()) {
+                    final AnnotationCoup[] annotations = analyse.annotations.clone();
+                    rappels.execute(() -> {
+                        if (requete == generation.get()) {
+                            rappel.analyseTerminee(annotations);
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    /**
+     * Analyse une partie et attend le résultat.
+     *
+     * @param partie       La partie ; son historique est copié.
+     * @param profondeur   La profondeur de recherche de chaque position.
+     * @param budgetMillis Le temps maximal de la recherche d'une position, en millisecondes.
+     * @return Les annotations, dans l'ordre de la partie ; vide si l'analyse a été annulée.
+     * @throws InterruptedException Si le thread appelant est interrompu pendant l'attente.
+     */
+    public AnnotationCoup[] analyser(JeuDames partie, int profondeur, long budgetMillis)
+            throws InterruptedException {
+        final int requete = annulerRequete();
+        final Analyse analyse = new Analyse(partie, profondeur, budgetMillis);
+        final CountDownLatch fin = new CountDownLatch(analyse.nbCoups + 1);
+        for (int i = 0; i <= analyse.nbCoups; i++) {
+            final int index = i;
+            executeur.execute(() -> {
+                try {
+                    if (analyse.chercher(index, requete)) {
+                        analyse.terminer(index);
+                    }
+                } finally {
+                    fin.countDown();
+                }
+            });
+        }
+        fin.await();
+        return requete == generation.get() ? analyse.annotations.clone() : new AnnotationCoup[0];
+    }
+
+    /**
+     * Annule l'analyse en cours ; ses rappels ne seront plus appelés.
+     */
+    public void annuler() {
+        annulerRequete();
+    }
+
+    /**
+     * Annule l'analyse en cours et arrête les threads de calcul.
+     */
+    public void fermer() {
+        annulerRequete();
+        executeur.shutdownNow();
+    }
+
+    /**
+     * Annule l'analyse courante, arrête ses recherches et en ouvre une nouvelle.
+     *
+     * @return Le numéro de la nouvelle analyse.
+     */
+    private int annulerRequete() {
+        synchronized (recherches) {
+            int requete = generation.incrementAndGet();
+            for (Recherche recherche : recherches) {
+                recherche.arreter();
+            }
+            return requete;
+        }
+    }
+
+    /**
+     * Prépare une recherche pour une analyse, sous le verrou des annulations : une annulation
+     * ne peut donc pas survenir entre la vérification de l'analyse et l'armement.
+     *
+     * @param recherche La recherche du thread courant.
+     * @param requete   Le numéro de l'analyse.
+     * @return false si l'analyse a été annulée.
+     */
+    private boolean armer(Recherche recherche, int requete) {
+        synchronized (recherches) {
+            if (requete != generation.get()) {
+                return false;
+            }
+            recherche.armer();
+            return true;
+        }
+    }
+
+    /**
+     * Ramène un score dans les bornes comparées.
+     *
+     * @param score Le score.
+     * @return Le score borné.
+     */
+    private static int borner(int score) {
+        return Math.max(-BORNE_SCORE, Math.min(BORNE_SCORE, score));
+    }
+
+    /**
+     * Analyse d'une partie : ses positions et leurs résultats, remplis par les threads de calcul.
+     */
+    private final class Analyse {
+        /**
+         * Les coups de la partie.
+         */
+        final int[] coups;
+
+        /**
+         * Le nombre de coups.
+         */
+        final int nbCoups;
+
+        /**
+         * Les positions de la partie, position de départ et position finale comprises.
+         */
+        final InstantanePartie[] positions;
+
+        /**
+         * La profondeur de recherche de chaque position.
+         */
+        final int profondeur;
+
+        /**
+         * Le temps maximal de la recherche d'une position.
+         */
+        final long budgetMillis;
+
+        /**
+         * Le meilleur coup de chaque position.
+         */
+        final int[] meilleursCoups;
+
+        /**
+         * Le score de chaque position, du point de vue du joueur au trait.
+         */
+        final int[] scores;
+
+        /**
+         * Pour chaque position, true si une prise y est possible.
+         */
+        final boolean[] prisesPossibles;
+
+        /**
+         * Pour chaque position, true quand sa recherche est terminée ; protégé par l'analyse.
+         */
+        final boolean[] cherchees;
+
+        /**
+         * Les annotations des demi-coups, remplies à mesure ; protégées par l'analyse.
+         */
+        final AnnotationCoup[] annotations;
+
+        /**
+         * Le nombre de positions restant à chercher.
+         */
+        final AtomicInteger restants;
+
+        /**
+         * Rejoue la partie pour en relever les positions.
+         *
+         * @param partie       La partie.
+         * @param profondeur   La profondeur de recherche.
+         * @param budgetMillis Le temps maximal par position.
+         */
+        Analyse(JeuDames partie, int profondeur, long budgetMillis) {
+            this.profondeur = profondeur;
+            this.budgetMillis = budgetMillis;
+            coups = partie.getCoups();
+            nbCoups = coups.length;
+            positions = new InstantanePartie[nbCoups + 1];
+            JeuDames jeu = new JeuDames(variante);
+            positions[0] = jeu.getInstantane();
+            for (int i = 0; i < nbCoups; i++) {
+                jeu.jouer(coups[i]);
+                positions[i + 1] = jeu.getInstantane();
+            }
+            meilleursCoups = new int[nbCoups + 1];
+            scores = new int[nbCoups + 1];
+            prisesPossibles = new boolean[nbCoups + 1];
+            cherchees = new boolean[nbCoups + 1];
+            annotations = new AnnotationCoup[nbCoups];
+            restants = new AtomicInteger(nbCoups + 1);
+        }
+
+        /**
+         * Cherche une position sur le thread courant, sauf si l'analyse a été annulée.
+         *
+         * @param index   L'indice de la position.
+         * @param requete Le numéro de l'analyse.
+         * @return false si l'analyse a été annulée avant la recherche.
+         */
+        boolean chercher(int index, int requete) {
+            if (requete != generation.get()) {
+                return false;
+            }
+            Travail travail = travaux.get();
+            Position position = travail.position;
+            position.copier(positions[index]);
+            int nb = travail.generateur.generer(position, travail.coups);
+            boolean prise = false;
+            for (int i = 0; i < nb && !prise; i++) {
+                prise = travail.coups.getPrises(i) != 0;
+            }
+            if (!armer(travail.recherche, requete)) {
+                return false;
+            }
+            ResultatRecherche resultat = travail.recherche.explorer(position, profondeur, budgetMillis);
+            synchronized (this) {
+                meilleursCoups[index] = resultat.getCoup();
+                scores[index] = resultat.getScore();
+                prisesPossibles[index] = prise;
+            }
+            return true;
+        }
+
+        /**
+         * Marque une position comme cherchée et annote les demi-coups qui en dépendent.
+         *
+         * @param index L'indice de la position.
+         * @return Les annotations devenues disponibles : zéro, une ou deux.
+         */
+        synchronized List<AnnotationCoup> terminer(int index) {
+            cherchees[index] = true;
+            List<AnnotationCoup> nouvelles = new ArrayList<>(2);
+            if (index > 0 && cherchees[index - 1]) {
+                nouvelles.add(annoter(index - 1));
+            }
+            if (index < nbCoups && cherchees[index + 1]) {
+                nouvelles.add(annoter(index));
+            }
+            return nouvelles;
+        }
+
+        /**
+         * Annote un demi-coup dont les deux positions sont cherchées.
+         *
+         * @param demiCoup Le demi-coup.
+         * @return L'annotation.
+         */
+        private AnnotationCoup annoter(int demiCoup) {
+            int coup = coups[demiCoup];
+            int meilleur = meilleursCoups[demiCoup];
+            int scoreMeilleur = scores[demiCoup];
+            // La position suivante est au trait de l'adversaire.
+            int scoreJoue = -scores[demiCoup + 1];
+            // Le moteur suit les règles de JeuDames : le meilleur coup est comparable au coup joué.
+            boolean memeCoup = Coup.identite(coup) == Coup.identite(meilleur);
+            int perte = memeCoup ? 0 : Math.max(0, borner(scoreMeilleur) - borner(scoreJoue));
+            AnnotationCoup annotation = new AnnotationCoup(demiCoup, coup, meilleur, scoreMeilleur, scoreJoue,
+                    perte, prisesPossibles[demiCoup] && Coup.nbPrises(coup) == 0);
+            annotations[demiCoup] = annotation;
+            return annotation;
+        }
+    }
+}
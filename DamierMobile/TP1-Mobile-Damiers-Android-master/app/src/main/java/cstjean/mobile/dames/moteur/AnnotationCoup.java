@@ -0,0 +1,168 @@
+package cstjean.mobile.dames.moteur;
+
+import cstjean.mobile.dames.damier.Coup;
+
+/**
+ * Annotation d'un coup joué, produite par {@link AnalysePartie} : le meilleur coup selon le
+ * moteur, le score du coup joué et la perte qu'il a concédée.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class AnnotationCoup {
+    /**
+     * Perte à partir de laquelle un coup est une erreur ; un peu moins qu'un pion.
+     */
+    public static final int SEUIL_ERREUR = Indice.ECART_DOUTEUX;
+
+    /**
+     * Perte à partir de laquelle un coup est une gaffe ; environ deux pions.
+     */
+    public static final int SEUIL_GAFFE = 200;
+
+    /**
+     * Le demi-coup, à partir de 0.
+     */
+    private final int demiCoup;
+
+    /**
+     * Le coup joué, tel qu'enregistré dans l'historique de la partie.
+     */
+    private final int coupJoue;
+
+    /**
+     * Le meilleur coup selon le moteur.
+     */
+    private final int meilleurCoup;
+
+    /**
+     * Le score du meilleur coup, du point de vue du joueur qui a joué.
+     */
+    private final int scoreMeilleur;
+
+    /**
+     * Le score du coup joué, du point de vue du joueur qui a joué.
+     */
+    private final int scoreJoue;
+
+    /**
+     * Le terrain concédé par le coup joué, jamais négatif.
+     */
+    private final int perte;
+
+    /**
+     * true si une prise était possible et que le coup joué n'en est pas une.
+     */
+    private final boolean priseManquee;
+
+    /**
+     * Construit une annotation.
+     *
+     * @param demiCoup      Le demi-coup.
+     * @param coupJoue      Le coup joué.
+     * @param meilleurCoup  Le meilleur coup selon le moteur.
+     * @param scoreMeilleur Le score du meilleur coup.
+     * @param scoreJoue     Le score du coup joué.
+     * @param perte         La perte concédée.
+     * @param priseManquee  true si une prise a été manquée.
+     */
+    AnnotationCoup(int demiCoup, int coupJoue, int meilleurCoup, int scoreMeilleur, int scoreJoue, int perte,
+                   boolean priseManquee) {
+        this.demiCoup = demiCoup;
+        this.coupJoue = coupJoue;
+        this.meilleurCoup = meilleurCoup;
+        this.scoreMeilleur = scoreMeilleur;
+        this.scoreJoue = scoreJoue;
+        this.perte = perte;
+        this.priseManquee = priseManquee;
+    }
+
+    /**
+     * Retourne le demi-coup annoté.
+     *
+     * @return L'indice du coup dans l'historique de la partie.
+     */
+    public int getDemiCoup() {
+        return demiCoup;
+    }
+
+    /**
+     * Retourne le coup joué.
+     *
+     * @return Le coup (voir {@link Coup}).
+     */
+    public int getCoupJoue() {
+        return coupJoue;
+    }
+
+    /**
+     * Retourne le meilleur coup selon le moteur.
+     *
+     * @return Le coup (voir {@link Coup}).
+     */
+    public int getMeilleurCoup() {
+        return meilleurCoup;
+    }
+
+    /**
+     * Retourne le score du meilleur coup, du point de vue du joueur qui a joué.
+     *
+     * @return Le score.
+     */
+    public int getScoreMeilleur() {
+        return scoreMeilleur;
+    }
+
+    /**
+     * Retourne le score du coup joué, du point de vue du joueur qui a joué.
+     *
+     * @return Le score.
+     */
+    public int getScoreJoue() {
+        return scoreJoue;
+    }
+
+    /**
+     * Retourne le terrain concédé par le coup joué par rapport au meilleur coup.
+     *
+     * @return La perte, jamais négative.
+     */
+    public int getPerte() {
+        return perte;
+    }
+
+    /**
+     * Indique si le coup joué est une erreur.
+     *
+     * @return true si la perte atteint {@link #SEUIL_ERREUR}.
+     */
+    public boolean estErreur() {
+        return perte >= SEUIL_ERREUR;
+    }
+
+    /**
+     * Indique si le coup joué est une gaffe.
+     *
+     * @return true si la perte atteint {@link #SEUIL_GAFFE}.
+     */
+    public boolean estGaffe() {
+        return perte >= SEUIL_GAFFE;
+    }
+
+    /**
+     * Indique si une prise était possible et que le coup joué n'en est pas une.
+     *
+     * @return true si une prise a été manquée.
+     */
+    public boolean estPriseManquee() {
+        return priseManquee;
+    }
+
+    @Override
+    public String toString() {
+        String marque = estGaffe() ? "??" : estErreur() ? "?" : "";
+        return (demiCoup / 2 + 1) + (demiCoup % 2 == 0 ? ". " : "... ") + Coup.notation(coupJoue) + marque
+                + " (" + scoreJoue + ", meilleur " + Coup.notation(meilleurCoup) + " " + scoreMeilleur
+                + ", perte " + perte + ")"
+                + (priseManquee ? " prise manquée" : "");
+    }
+}
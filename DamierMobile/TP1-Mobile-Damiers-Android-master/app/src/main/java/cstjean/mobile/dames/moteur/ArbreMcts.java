@@ -0,0 +1,348 @@
+package cstjean.mobile.dames.moteur;
+
+import cstjean.mobile.dames.damier.Variante;
+
+/**
+ * Arbre de recherche Monte-Carlo (UCT) d'un seul thread.
+ *
+ * <p>Les nœuds sont des indices dans des tableaux primitifs : coup et pièces prises menant
+ * au nœud, premier enfant et nombre d'enfants (les enfants d'un nœud sont contigus, créés
+ * tous ensemble à l'expansion), nombre de visites et gains. Les gains sont comptés en
+ * demi-points pour le joueur qui a joué le coup menant au nœud : 2 pour une victoire,
+ * 1 pour une nulle.</p>
+ *
+ * <p>Chaque simulation repart d'une copie de la racine dans une position de travail et joue
+ * des coups aléatoires : aucune allocation n'a lieu une fois la pile d'annulation agrandie.
+ * Quand l'arbre est plein, les feuilles ne sont plus développées mais les simulations
+ * continuent.</p>
+ *
+ * <p>Le développement et les simulations tirent leurs coups du générateur aux règles de
+ * {@code JeuDames} : une pièce prise par coup et aucune prise imposée. Le coup retenu peut
+ * donc toujours être joué dans la partie.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+final class ArbreMcts {
+    /**
+     * Nombre d'enfants d'un nœud pas encore développé.
+     */
+    private static final int NON_DEVELOPPE = -1;
+
+    /**
+     * Longueur maximale d'une simulation, en demi-coups ; au-delà, l'évaluation tranche.
+     */
+    private static final int LONGUEUR_SIMULATION = 160;
+
+    /**
+     * Écart d'évaluation, en centièmes de pion, à partir duquel une simulation interrompue
+     * est comptée comme gagnée.
+     */
+    private static final int SEUIL_GAIN = 150;
+
+    /**
+     * Constante d'exploration de la formule UCT.
+     */
+    private static final double EXPLORATION = 1.2;
+
+    /**
+     * Coup menant à chaque nœud.
+     */
+    private final int[] coups;
+
+    /**
+     * Pièces prises par le coup menant à chaque nœud.
+     */
+    private final long[] prises;
+
+    /**
+     * Premier enfant de chaque nœud.
+     */
+    private final int[] premiersEnfants;
+
+    /**
+     * Nombre d'enfants de chaque nœud, ou {@link #NON_DEVELOPPE}.
+     */
+    private final int[] nbEnfants;
+
+    /**
+     * Nombre de visites de chaque nœud.
+     */
+    private final int[] visites;
+
+    /**
+     * Demi-points gagnés par le joueur ayant joué le coup menant à chaque nœud.
+     */
+    private final long[] gains;
+
+    /**
+     * Chemin de la sélection courante, racine comprise.
+     */
+    private final int[] chemin = new int[Recherche.PROFONDEUR_MAX * 4];
+
+    /**
+     * Position de départ.
+     */
+    private final Position racine;
+
+    /**
+     * Position de travail des simulations.
+     */
+    private final Position position;
+
+    /**
+     * Générateur des coups, aux règles de {@code JeuDames}.
+     */
+    private final GenerateurCoups generateur;
+
+    /**
+     * Liste de coups de travail.
+     */
+    private final ListeCoups liste = new ListeCoups();
+
+    /**
+     * Évaluation des simulations interrompues.
+     */
+    private final Evaluateur evaluateur;
+
+    /**
+     * Nombre de nœuds utilisés.
+     */
+    private int nbNoeuds;
+
+    /**
+     * Graine du générateur pseudo-aléatoire, rétablie à chaque nouvelle position.
+     */
+    private final long graine;
+
+    /**
+     * État du générateur pseudo-aléatoire (xorshift).
+     */
+    private long alea;
+
+    /**
+     * Nombre de simulations effectuées.
+     */
+    private long nbSimulations;
+
+    /**
+     * Construit un arbre vide.
+     *
+     * @param variante   La variante jouée.
+     * @param capacite   Le nombre maximal de nœuds.
+     * @param evaluateur L'évaluation des simulations interrompues.
+     * @param graine     La graine du générateur pseudo-aléatoire, non nulle.
+     */
+    ArbreMcts(Variante variante, int capacite, Evaluateur evaluateur, long graine) {
+        coups = new int[capacite];
+        prises = new long[capacite];
+        premiersEnfants = new int[capacite];
+        nbEnfants = new int[capacite];
+        visites = new int[capacite];
+        gains = new long[capacite];
+        racine = new Position(variante);
+        position = new Position(variante);
+        generateur = new GenerateurCoups(variante);
+        this.evaluateur = evaluateur;
+        this.graine = graine != 0 ? graine : 0x9E3779B97F4A7C15L;
+        alea = this.graine;
+    }
+
+    /**
+     * Vide l'arbre et le place sur une nouvelle position. Le générateur repart de sa graine :
+     * un même nombre de simulations depuis une même position donne le même arbre.
+     *
+     * @param depart La position de départ ; elle est copiée.
+     */
+    void reinitialiser(Position depart) {
+        racine.copier(depart);
+        nbNoeuds = 1;
+        nbEnfants[0] = NON_DEVELOPPE;
+        visites[0] = 0;
+        gains[0] = 0;
+        nbSimulations = 0;
+        alea = graine;
+    }
+
+    /**
+     * Effectue une itération : sélection, expansion, simulation et rétropropagation.
+     */
+    void iterer() {
+        position.copier(racine);
+        int noeud = 0;
+        int longueur = 0;
+        chemin[longueur++] = noeud;
+        while (nbEnfants[noeud] > 0 && longueur < chemin.length) {
+            noeud = selectionner(noeud);
+            position.jouer(coups[noeud], prises[noeud]);
+            chemin[longueur++] = noeud;
+        }
+        if (nbEnfants[noeud] == NON_DEVELOPPE && (visites[noeud] > 0 || noeud == 0)) {
+            developper(noeud);
+            if (nbEnfants[noeud] > 0 && longueur < chemin.length) {
+                noeud = premiersEnfants[noeud] + (int) suivant(nbEnfants[noeud]);
+                position.jouer(coups[noeud], prises[noeud]);
+                chemin[longueur++] = noeud;
+            }
+        }
+        // Le joueur au trait au nœud final n'a pas joué le coup qui y mène.
+        int traitFinal = position.getTrait();
+        int resultat = simuler();
+        nbSimulations++;
+        for (int i = longueur - 1; i >= 0; i--) {
+            int n = chemin[i];
+            int joueur = (longueur - 1 - i) % 2 == 0 ? 1 - traitFinal : traitFinal;
+            visites[n]++;
+            gains[n] += joueur == Position.BLANC ? resultat : 2 - resultat;
+        }
+    }
+
+    /**
+     * Retourne le nombre d'enfants de la racine.
+     *
+     * @return Le nombre de coups de la racine, 0 si elle n'est pas encore développée.
+     */
+    int getNbCoupsRacine() {
+        return Math.max(nbEnfants[0], 0);
+    }
+
+    /**
+     * Retourne le coup d'un enfant de la racine.
+     *
+     * @param index L'indice de l'enfant, dans l'ordre du générateur.
+     * @return Le coup encodé.
+     */
+    int getCoupRacine(int index) {
+        return coups[premiersEnfants[0] + index];
+    }
+
+    /**
+     * Retourne les pièces prises par le coup d'un enfant de la racine.
+     *
+     * @param index L'indice de l'enfant.
+     * @return Le masque des pièces prises.
+     */
+    long getPrisesRacine(int index) {
+        return prises[premiersEnfants[0] + index];
+    }
+
+    /**
+     * Retourne le nombre de visites d'un enfant de la racine.
+     *
+     * @param index L'indice de l'enfant.
+     * @return Le nombre de visites.
+     */
+    int getVisitesRacine(int index) {
+        return visites[premiersEnfants[0] + index];
+    }
+
+    /**
+     * Retourne les demi-points gagnés par un enfant de la racine, pour le joueur au trait.
+     *
+     * @param index L'indice de l'enfant.
+     * @return Les demi-points gagnés.
+     */
+    long getGainsRacine(int index) {
+        return gains[premiersEnfants[0] + index];
+    }
+
+    /**
+     * Retourne le nombre de simulations effectuées depuis la réinitialisation.
+     *
+     * @return Le nombre de simulations.
+     */
+    long getNbSimulations() {
+        return nbSimulations;
+    }
+
+    /**
+     * Retourne le nombre de nœuds utilisés.
+     *
+     * @return Le nombre de nœuds.
+     */
+    int getNbNoeuds() {
+        return nbNoeuds;
+    }
+
+    /**
+     * Choisit l'enfant maximisant la borne UCT ; un enfant jamais visité est choisi d'abord.
+     *
+     * @param noeud Le nœud parent, développé.
+     * @return L'enfant choisi.
+     */
+    private int selectionner(int noeud) {
+        int premier = premiersEnfants[noeud];
+        int fin = premier + nbEnfants[noeud];
+        double logParent = Math.log(Math.max(visites[noeud], 1));
+        int meilleur = premier;
+        double meilleureBorne = Double.NEGATIVE_INFINITY;
+        for (int enfant = premier; enfant < fin; enfant++) {
+            int v = visites[enfant];
+            if (v == 0) {
+                return enfant;
+            }
+            double borne = gains[enfant] / (2.0 * v) + EXPLORATION * Math.sqrt(logParent / v);
+            if (borne > meilleureBorne) {
+                meilleureBorne = borne;
+                meilleur = enfant;
+            }
+        }
+        return meilleur;
+    }
+
+    /**
+     * Crée les enfants d'un nœud, si l'arbre a encore la place.
+     *
+     * @param noeud Le nœud dont la position est celle de travail.
+     */
+    private void developper(int noeud) {
+        int nbCoups = generateur.generer(position, liste);
+        if (nbNoeuds + nbCoups > coups.length) {
+            return;
+        }
+        premiersEnfants[noeud] = nbNoeuds;
+        for (int i = 0; i < nbCoups; i++) {
+            int enfant = nbNoeuds++;
+            coups[enfant] = liste.getCoup(i);
+            prises[enfant] = liste.getPrises(i);
+            nbEnfants[enfant] = NON_DEVELOPPE;
+            visites[enfant] = 0;
+            gains[enfant] = 0;
+        }
+        nbEnfants[noeud] = nbCoups;
+    }
+
+    /**
+     * Joue des coups aléatoires depuis la position de travail jusqu'à la fin de la partie
+     * ou la longueur maximale.
+     *
+     * @return Le résultat pour les blancs, en demi-points : 2, 1 ou 0.
+     */
+    private int simuler() {
+        for (int ply = 0; ply < LONGUEUR_SIMULATION; ply++) {
+            int nbCoups = generateur.generer(position, liste);
+            if (nbCoups == 0) {
+                return position.getTrait() == Position.BLANC ? 0 : 2;
+            }
+            int index = (int) suivant(nbCoups);
+            position.jouer(liste.getCoup(index), liste.getPrises(index));
+        }
+        int score = evaluateur.evaluer(position);
+        if (position.getTrait() == Position.NOIR) {
+            score = -score;
+        }
+        return score >= SEUIL_GAIN ? 2 : score <= -SEUIL_GAIN ? 0 : 1;
+    }
+
+    /**
+     * Tire un entier pseudo-aléatoire.
+     *
+     * @param borne La borne exclue, positive.
+     * @return Un entier dans [0, borne).
+     */
+    private long suivant(int borne) {
+        alea ^= alea << 13;
+        alea ^= alea >>> 7;
+        alea ^= alea << 17;
+        return ((alea >>> 33) * borne) >>> 31;
+    }
+}
@@ -0,0 +1,439 @@
+package cstjean.mobile.dames.moteur;
+
+import cstjean.mobile.dames.damier.Coup;
+import java.util.Arrays;
+
+/**
+ * Arbre des variantes d'une partie : ligne principale et variantes secondaires.
+ *
+ * <p>Les nœuds sont stockés dans des tableaux primitifs parallèles (coup, pièces prises,
+ * parent, premier enfant, frère suivant, profondeur) ; un nœud n'est qu'un indice. Les lignes
+ * qui commencent par les mêmes coups partagent leurs nœuds. Le premier enfant d'un nœud
+ * continue la ligne principale, ses frères sont les variantes.</p>
+ *
+ * <p>L'arbre tient un curseur et la position correspondante : se déplacer annule les coups
+ * jusqu'à l'ancêtre commun puis joue ceux qui mènent au nœud visé, sans rejouer la partie.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class ArbreVariantes {
+    /**
+     * Indice de la racine : la position de départ, sans coup.
+     */
+    public static final int RACINE = 0;
+
+    /**
+     * Valeur d'un lien absent.
+     */
+    public static final int AUCUN = -1;
+
+    /**
+     * Coup menant à chaque nœud.
+     */
+    private int[] coups;
+
+    /**
+     * Pièces prises par le coup menant à chaque nœud.
+     */
+    private long[] prises;
+
+    /**
+     * Parent de chaque nœud.
+     */
+    private int[] parents;
+
+    /**
+     * Premier enfant de chaque nœud.
+     */
+    private int[] premiersEnfants;
+
+    /**
+     * Frère suivant de chaque nœud.
+     */
+    private int[] freresSuivants;
+
+    /**
+     * Distance de chaque nœud à la racine.
+     */
+    private int[] profondeurs;
+
+    /**
+     * Nombre de nœuds.
+     */
+    private int nbNoeuds;
+
+    /**
+     * Position du nœud courant.
+     */
+    private final Position position;
+
+    /**
+     * Nœud courant.
+     */
+    private int curseur = RACINE;
+
+    /**
+     * Chemin de travail pour descendre vers un nœud.
+     */
+    private int[] chemin = new int[64];
+
+    /**
+     * Construit un arbre dont la racine est une position.
+     *
+     * @param depart La position de départ ; elle est copiée.
+     */
+    public ArbreVariantes(Position depart) {
+        position = new Position(depart.getVariante());
+        position.copier(depart);
+        int capacite = 256;
+        coups = new int[capacite];
+        prises = new long[capacite];
+        parents = new int[capacite];
+        premiersEnfants = new int[capacite];
+        freresSuivants = new int[capacite];
+        profondeurs = new int[capacite];
+        parents[RACINE] = AUCUN;
+        premiersEnfants[RACINE] = AUCUN;
+        freresSuivants[RACINE] = AUCUN;
+        nbNoeuds = 1;
+    }
+
+    /**
+     * Joue un coup depuis le nœud courant : l'enfant correspondant est réutilisé s'il existe,
+     * sinon il est ajouté après ses frères. Le curseur avance sur cet enfant.
+     *
+     * @param coup       Le coup encodé.
+     * @param masquePris Les pièces prises.
+     * @return L'indice du nœud atteint.
+     */
+    public int jouer(int coup, long masquePris) {
+        int enfant = trouverEnfant(curseur, coup, masquePris);
+        if (enfant == AUCUN) {
+            enfant = creer(curseur, coup, masquePris);
+        }
+        position.jouer(coup, masquePris);
+        curseur = enfant;
+        return enfant;
+    }
+
+    /**
+     * Ajoute une ligne de coups à partir d'un nœud, par exemple une variante principale
+     * retournée par le moteur. Le curseur reste sur le nœud de départ.
+     *
+     * @param noeud       Le nœud de départ.
+     * @param lignesCoups Les coups de la ligne.
+     * @param lignePrises Les pièces prises par chaque coup.
+     * @param longueur    Le nombre de coups.
+     * @return Le dernier nœud de la ligne.
+     * @throws IllegalArgumentException Si le nœud a été retiré de l'arbre.
+     */
+    public int ajouterLigne(int noeud, int[] lignesCoups, long[] lignePrises, int longueur) {
+        verifierAtteignable(noeud);
+        int courant = noeud;
+        for (int i = 0; i < longueur; i++) {
+            int enfant = trouverEnfant(courant, lignesCoups[i], lignePrises[i]);
+            courant = enfant != AUCUN ? enfant : creer(courant, lignesCoups[i], lignePrises[i]);
+        }
+        return courant;
+    }
+
+    /**
+     * Déplace le curseur sur un nœud en annulant puis en jouant les coups nécessaires.
+     *
+     * @param noeud Le nœud visé.
+     * @throws IllegalArgumentException Si le nœud a été retiré de l'arbre.
+     */
+    public void allerA(int noeud) {
+        verifierAtteignable(noeud);
+        int cible = noeud;
+        int longueur = 0;
+        while (profondeurs[cible] > profondeurs[curseur]) {
+            longueur = empilerChemin(cible, longueur);
+            cible = parents[cible];
+        }
+        while (profondeurs[curseur] > profondeurs[cible]) {
+            reculer();
+        }
+        while (curseur != cible) {
+            reculer();
+            longueur = empilerChemin(cible, longueur);
+            cible = parents[cible];
+        }
+        for (int i = longueur - 1; i >= 0; i--) {
+            position.jouer(coups[chemin[i]], prises[chemin[i]]);
+            curseur = chemin[i];
+        }
+    }
+
+    /**
+     * Recule le curseur d'un coup.
+     *
+     * @return false si le curseur est déjà à la racine.
+     */
+    public boolean reculer() {
+        if (curseur == RACINE) {
+            return false;
+        }
+        position.annuler();
+        curseur = parents[curseur];
+        return true;
+    }
+
+    /**
+     * Avance le curseur sur la suite de la ligne principale du nœud courant.
+     *
+     * @return false si le nœud courant n'a pas d'enfant.
+     */
+    public boolean avancer() {
+        int enfant = premiersEnfants[curseur];
+        if (enfant == AUCUN) {
+            return false;
+        }
+        position.jouer(coups[enfant], prises[enfant]);
+        curseur = enfant;
+        return true;
+    }
+
+    /**
+     * Fait d'une variante la suite principale de son parent.
+     *
+     * @param noeud Le nœud à placer en premier parmi ses frères.
+     */
+    public void promouvoir(int noeud) {
+        int parent = parents[noeud];
+        if (parent == AUCUN || premiersEnfants[parent] == noeud) {
+            return;
+        }
+        int precedent = premiersEnfants[parent];
+        while (freresSuivants[precedent] != noeud) {
+            precedent = freresSuivants[precedent];
+        }
+        freresSuivants[precedent] = freresSuivants[noeud];
+        freresSuivants[noeud] = premiersEnfants[parent];
+        premiersEnfants[parent] = noeud;
+    }
+
+    /**
+     * Détache un nœud et ses descendants de l'arbre. Leurs entrées restent allouées mais
+     * ne sont plus atteignables ; le curseur remonte s'il se trouvait dans la branche retirée.
+     *
+     * @param noeud Le nœud à retirer, autre que la racine.
+     * @throws IllegalArgumentException Si le nœud est la racine ou a déjà été retiré.
+     */
+    public void retirer(int noeud) {
+        if (noeud == RACINE) {
+            throw new IllegalArgumentException("La racine ne peut pas être retirée.");
+        }
+        verifierAtteignable(noeud);
+        for (int n = curseur; n != AUCUN; n = parents[n]) {
+            if (n == noeud) {
+                allerA(parents[noeud]);
+                break;
+            }
+        }
+        int parent = parents[noeud];
+        if (premiersEnfants[parent] == noeud) {
+            premiersEnfants[parent] = freresSuivants[noeud];
+        } else {
+            int precedent = premiersEnfants[parent];
+            while (freresSuivants[precedent] != noeud) {
+                precedent = freresSuivants[precedent];
+            }
+            freresSuivants[precedent] = freresSuivants[noeud];
+        }
+        parents[noeud] = AUCUN;
+    }
+
+    /**
+     * Indique si un nœud fait encore partie de l'arbre : ni lui ni un de ses ancêtres n'a été
+     * retiré.
+     *
+     * @param noeud L'indice du nœud.
+     * @return true si le nœud est atteignable depuis la racine.
+     */
+    public boolean estAtteignable(int noeud) {
+        if (noeud < 0 || noeud >= nbNoeuds) {
+            return false;
+        }
+        int n = noeud;
+        while (n != RACINE) {
+            n = parents[n];
+            if (n == AUCUN) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retourne la position du nœud courant. Elle ne doit être modifiée qu'à travers l'arbre.
+     *
+     * @return La position courante.
+     */
+    public Position getPosition() {
+        return position;
+    }
+
+    /**
+     * Retourne le nœud courant.
+     *
+     * @return L'indice du nœud courant.
+     */
+    public int getCurseur() {
+        return curseur;
+    }
+
+    /**
+     * Retourne le nombre de nœuds alloués.
+     *
+     * @return Le nombre de nœuds, racine comprise.
+     */
+    public int getNbNoeuds() {
+        return nbNoeuds;
+    }
+
+    /**
+     * Retourne le coup menant à un nœud.
+     *
+     * @param noeud L'indice du nœud.
+     * @return Le coup encodé, ou {@link Coup#AUCUN} pour la racine.
+     */
+    public int getCoup(int noeud) {
+        return coups[noeud];
+    }
+
+    /**
+     * Retourne les pièces prises par le coup menant à un nœud.
+     *
+     * @param noeud L'indice du nœud.
+     * @return Le masque des pièces prises.
+     */
+    public long getPrises(int noeud) {
+        return prises[noeud];
+    }
+
+    /**
+     * Retourne le parent d'un nœud.
+     *
+     * @param noeud L'indice du nœud.
+     * @return Le parent, ou {@link #AUCUN}.
+     */
+    public int getParent(int noeud) {
+        return parents[noeud];
+    }
+
+    /**
+     * Retourne le premier enfant d'un nœud : la suite de sa ligne principale.
+     *
+     * @param noeud L'indice du nœud.
+     * @return Le premier enfant, ou {@link #AUCUN}.
+     */
+    public int getPremierEnfant(int noeud) {
+        return premiersEnfants[noeud];
+    }
+
+    /**
+     * Retourne le frère suivant d'un nœud : la variante suivante.
+     *
+     * @param noeud L'indice du nœud.
+     * @return Le frère suivant, ou {@link #AUCUN}.
+     */
+    public int getFrereSuivant(int noeud) {
+        return freresSuivants[noeud];
+    }
+
+    /**
+     * Retourne la distance d'un nœud à la racine.
+     *
+     * @param noeud L'indice du nœud.
+     * @return Le nombre de demi-coups depuis la racine.
+     */
+    public int getProfondeur(int noeud) {
+        return profondeurs[noeud];
+    }
+
+    /**
+     * Vérifie qu'un nœud existe et fait encore partie de l'arbre.
+     *
+     * @param noeud L'indice du nœud.
+     * @throws IndexOutOfBoundsException Si l'indice ne désigne aucun nœud alloué.
+     * @throws IllegalArgumentException  Si le nœud a été retiré de l'arbre.
+     */
+    private void verifierAtteignable(int noeud) {
+        if (noeud < 0 || noeud >= nbNoeuds) {
+            throw new IndexOutOfBoundsException("Nœud " + noeud + " sur " + nbNoeuds);
+        }
+        if (!estAtteignable(noeud)) {
+            throw new IllegalArgumentException("Le nœud " + noeud + " a été retiré de l'arbre.");
+        }
+    }
+
+    /**
+     * Cherche l'enfant d'un nœud atteint par un coup.
+     *
+     * @param parent     Le nœud parent.
+     * @param coup       Le coup encodé.
+     * @param masquePris Les pièces prises.
+     * @return L'enfant, ou {@link #AUCUN}.
+     */
+    private int trouverEnfant(int parent, int coup, long masquePris) {
+        for (int enfant = premiersEnfants[parent]; enfant != AUCUN; enfant = freresSuivants[enfant]) {
+            if (coups[enfant] == coup && prises[enfant] == masquePris) {
+                return enfant;
+            }
+        }
+        return AUCUN;
+    }
+
+    /**
+     * Crée un nœud et l'ajoute après les enfants existants de son parent.
+     *
+     * @param parent     Le nœud parent.
+     * @param coup       Le coup encodé.
+     * @param masquePris Les pièces prises.
+     * @return L'indice du nouveau nœud.
+     */
+    private int creer(int parent, int coup, long masquePris) {
+        if (nbNoeuds == coups.length) {
+            int capacite = 2 * nbNoeuds;
+            coups = Arrays.copyOf(coups, capacite);
+            prises = Arrays.copyOf(prises, capacite);
+            parents = Arrays.copyOf(parents, capacite);
+            premiersEnfants = Arrays.copyOf(premiersEnfants, capacite);
+            freresSuivants = Arrays.copyOf(freresSuivants, capacite);
+            profondeurs = Arrays.copyOf(profondeurs, capacite);
+        }
+        int noeud = nbNoeuds++;
+        coups[noeud] = coup;
+        prises[noeud] = masquePris;
+        parents[noeud] = parent;
+        premiersEnfants[noeud] = AUCUN;
+        freresSuivants[noeud] = AUCUN;
+        profondeurs[noeud] = profondeurs[parent] + 1;
+        if (premiersEnfants[parent] == AUCUN) {
+            premiersEnfants[parent] = noeud;
+        } else {
+            int dernier = premiersEnfants[parent];
+            while (freresSuivants[dernier] != AUCUN) {
+                dernier = freresSuivants[dernier];
+            }
+            freresSuivants[dernier] = noeud;
+        }
+        return noeud;
+    }
+
+    /**
+     * Ajoute un nœud au chemin de descente.
+     *
+     * @param noeud    Le nœud.
+     * @param longueur La longueur actuelle du chemin.
+     * @return La nouvelle longueur.
+     */
+    private int empilerChemin(int noeud, int longueur) {
+        if (longueur == chemin.length) {
+            chemin = Arrays.copyOf(chemin, 2 * longueur);
+        }
+        chemin[longueur] = noeud;
+        return longueur + 1;
+    }
+}
@@ -0,0 +1,16 @@
+package cstjean.mobile.dames.moteur;
+
+/**
+ * Fonction d'évaluation statique utilisée par la recherche.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public interface Evaluateur {
+    /**
+     * Évalue une position du point de vue du joueur au trait.
+     *
+     * @param position La position.
+     * @return Le score, en centièmes de pion ; positif si le joueur au trait est avantagé.
+     */
+    int evaluer(Position position);
+}
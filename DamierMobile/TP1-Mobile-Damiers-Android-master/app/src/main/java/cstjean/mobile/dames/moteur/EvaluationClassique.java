@@ -0,0 +1,274 @@
+package cstjean.mobile.dames.moteur;
+
+import cstjean.mobile.dames.damier.Variante;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * Évaluation par termes pondérés : matériel, avancement des pions, occupation du centre
+ * et garde de la rangée arrière. Chaque terme se calcule par comptage de bits sur des
+ * masques précalculés pour la variante.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class EvaluationClassique implements Evaluateur {
+    /**
+     * Indice du poids d'un pion.
+     */
+    public static final int PION = 0;
+
+    /**
+     * Indice du poids d'une dame.
+     */
+    public static final int DAME = 1;
+
+    /**
+     * Indice du poids de chaque rangée d'avancement d'un pion.
+     */
+    public static final int AVANCEMENT = 2;
+
+    /**
+     * Indice du poids d'un pion au centre.
+     */
+    public static final int CENTRE = 3;
+
+    /**
+     * Indice du poids d'un pion resté sur sa rangée arrière.
+     */
+    public static final int ARRIERE = 4;
+
+    /**
+     * Nombre de paramètres de l'évaluation.
+     */
+    public static final int NB_PARAMETRES = 5;
+
+    /**
+     * Noms des paramètres dans un fichier de paramètres, par indice.
+     */
+    public static final String[] NOMS_PARAMETRES = {"pion", "dame", "avancement", "centre", "arriere"};
+
+    /**
+     * Paramètres par défaut, en centièmes de pion.
+     */
+    private static final int[] PARAMETRES_DEFAUT = {100, 320, 3, 6, 8};
+
+    /**
+     * Poids des termes.
+     */
+    private final int[] parametres;
+
+    /**
+     * Cases de chaque ligne, de haut en bas.
+     */
+    private final long[] lignes;
+
+    /**
+     * Cases centrales.
+     */
+    private final long centre;
+
+    /**
+     * Rangée arrière des blancs.
+     */
+    private final long arriereBlancs;
+
+    /**
+     * Rangée arrière des noirs.
+     */
+    private final long arriereNoirs;
+
+    /**
+     * Construit l'évaluation avec ses paramètres par défaut.
+     *
+     * @param variante La variante jouée.
+     */
+    public EvaluationClassique(Variante variante) {
+        this(variante, PARAMETRES_DEFAUT);
+    }
+
+    /**
+     * Construit l'évaluation avec des paramètres donnés.
+     *
+     * @param variante   La variante jouée.
+     * @param parametres Les poids des termes, indexés par {@link #PION}, {@link #DAME}, etc. ; ils sont copiés.
+     */
+    public EvaluationClassique(Variante variante, int[] parametres) {
+        if (parametres.length != NB_PARAMETRES) {
+            throw new IllegalArgumentException("L'évaluation attend " + NB_PARAMETRES + " paramètres.");
+        }
+        this.parametres = parametres.clone();
+        int taille = variante.getTaille();
+        lignes = new long[taille];
+        long masqueCentre = 0;
+        for (int position = 1; position <= variante.getNbCases(); position++) {
+            int ligne = variante.getLigne(position);
+            int colonne = variante.getColonne(position);
+            lignes[ligne] |= variante.getBit(position);
+            if (ligne >= 2 && ligne < taille - 2 && colonne >= 2 && colonne < taille - 2) {
+                masqueCentre |= variante.getBit(position);
+            }
+        }
+        centre = masqueCentre;
+        arriereNoirs = lignes[0];
+        arriereBlancs = lignes[taille - 1];
+    }
+
+    /**
+     * Retourne une copie des paramètres par défaut.
+     *
+     * @return Les poids par défaut.
+     */
+    public static int[] getParametresDefaut() {
+        return PARAMETRES_DEFAUT.clone();
+    }
+
+    @Override
+    public int evaluer(Position position) {
+        int score = evaluerBlancs(position);
+        return position.getTrait() == Position.BLANC ? score : -score;
+    }
+
+    /**
+     * Évalue une position du point de vue des blancs.
+     *
+     * @param position La position.
+     * @return Le score ; positif si les blancs sont avantagés.
+     */
+    public int evaluerBlancs(Position position) {
+        return evaluerBlancs(position.getBlancs(), position.getNoirs(), position.getDames());
+    }
+
+    /**
+     * Évalue une position décrite par ses masques, du point de vue des blancs.
+     *
+     * @param blancs Les pièces blanches.
+     * @param noirs  Les pièces noires.
+     * @param dames  Les dames des deux camps.
+     * @return Le score ; positif si les blancs sont avantagés.
+     */
+    public int evaluerBlancs(long blancs, long noirs, long dames) {
+        long pionsBlancs = blancs & ~dames;
+        long pionsNoirs = noirs & ~dames;
+        int score = parametres[PION] * (Long.bitCount(pionsBlancs) - Long.bitCount(pionsNoirs))
+                + parametres[DAME] * (Long.bitCount(blancs & dames) - Long.bitCount(noirs & dames));
+        score += parametres[AVANCEMENT] * avancement(pionsBlancs, pionsNoirs);
+        score += parametres[CENTRE] * (Long.bitCount(pionsBlancs & centre) - Long.bitCount(pionsNoirs & centre));
+        score += parametres[ARRIERE] * (Long.bitCount(pionsBlancs & arriereBlancs)
+                - Long.bitCount(pionsNoirs & arriereNoirs));
+        return score;
+    }
+
+    /**
+     * Calcule les termes de l'évaluation, du point de vue des blancs : le score est la somme
+     * des termes multipliés par les paramètres de même indice.
+     *
+     * @param blancs Les pièces blanches.
+     * @param noirs  Les pièces noires.
+     * @param dames  Les dames des deux camps.
+     * @param termes Le tableau de {@link #NB_PARAMETRES} termes à remplir.
+     */
+    public void calculerTermes(long blancs, long noirs, long dames, int[] termes) {
+        long pionsBlancs = blancs & ~dames;
+        long pionsNoirs = noirs & ~dames;
+        termes[PION] = Long.bitCount(pionsBlancs) - Long.bitCount(pionsNoirs);
+        termes[DAME] = Long.bitCount(blancs & dames) - Long.bitCount(noirs & dames);
+        termes[AVANCEMENT] = avancement(pionsBlancs, pionsNoirs);
+        termes[CENTRE] = Long.bitCount(pionsBlancs & centre) - Long.bitCount(pionsNoirs & centre);
+        termes[ARRIERE] = Long.bitCount(pionsBlancs & arriereBlancs) - Long.bitCount(pionsNoirs & arriereNoirs);
+    }
+
+    /**
+     * Calcule le poids de chaque case pour un pion d'une couleur : matériel, avancement,
+     * centre et rangée arrière confondus. Le score d'un camp est la somme des poids de ses
+     * pions plus le poids de ses dames.
+     *
+     * @param couleur {@link Position#BLANC} ou {@link Position#NOIR}.
+     * @param nbCases Le nombre de cases de la variante.
+     * @return Les poids, indexés par case - 1.
+     */
+    int[] calculerPoidsCases(int couleur, int nbCases) {
+        int[] poids = new int[nbCases];
+        int derniere = lignes.length - 1;
+        long arriere = couleur == Position.BLANC ? arriereBlancs : arriereNoirs;
+        for (int ligne = 0; ligne <= derniere; ligne++) {
+            int rangees = couleur == Position.BLANC ? derniere - ligne : ligne;
+            for (long cases = lignes[ligne]; cases != 0; cases &= cases - 1) {
+                long bit = cases & -cases;
+                poids[Long.numberOfTrailingZeros(bit)] = parametres[PION] + parametres[AVANCEMENT] * rangees
+                        + ((centre & bit) != 0 ? parametres[CENTRE] : 0)
+                        + ((arriere & bit) != 0 ? parametres[ARRIERE] : 0);
+            }
+        }
+        return poids;
+    }
+
+    /**
+     * Retourne une copie des paramètres de l'évaluation.
+     *
+     * @return Les poids des termes.
+     */
+    public int[] getParametres() {
+        return parametres.clone();
+    }
+
+    /**
+     * Lit des paramètres écrits par {@link #ecrireParametres(int[], OutputStream)}. Un paramètre
+     * absent du fichier garde sa valeur par défaut.
+     *
+     * @param flux Le flux du fichier ; il n'est pas fermé.
+     * @return Les paramètres.
+     * @throws IOException Si le flux ne peut pas être lu ou contient une valeur invalide.
+     */
+    public static int[] chargerParametres(InputStream flux) throws IOException {
+        Properties proprietes = new Properties();
+        proprietes.load(flux);
+        int[] parametres = getParametresDefaut();
+        for (int i = 0; i < NB_PARAMETRES; i++) {
+            String valeur = proprietes.getProperty(NOMS_PARAMETRES[i]);
+            if (valeur != null) {
+                try {
+                    parametres[i] = Integer.parseInt(valeur.trim());
+                } catch (NumberFormatException e) {
+                    throw new IOException("Valeur invalide pour " + NOMS_PARAMETRES[i] + " : " + valeur, e);
+                }
+            }
+        }
+        return parametres;
+    }
+
+    /**
+     * Écrit des paramètres dans un fichier de propriétés, une ligne par paramètre.
+     *
+     * @param parametres Les paramètres.
+     * @param flux       Le flux de destination ; il n'est pas fermé.
+     * @throws IOException Si l'écriture échoue.
+     */
+    public static void ecrireParametres(int[] parametres, OutputStream flux) throws IOException {
+        StringBuilder texte = new StringBuilder("# Paramètres de l'évaluation classique, en centièmes de pion\n");
+        for (int i = 0; i < NB_PARAMETRES; i++) {
+            texte.append(NOMS_PARAMETRES[i]).append('=').append(parametres[i]).append('\n');
+        }
+        flux.write(texte.toString().getBytes("ISO-8859-1"));
+        flux.flush();
+    }
+
+    /**
+     * Calcule le terme d'avancement : rangées parcourues par les pions blancs moins celles
+     * parcourues par les pions noirs.
+     *
+     * @param pionsBlancs Les pions blancs.
+     * @param pionsNoirs  Les pions noirs.
+     * @return Le terme d'avancement.
+     */
+    private int avancement(long pionsBlancs, long pionsNoirs) {
+        int avancement = 0;
+        int derniere = lignes.length - 1;
+        for (int ligne = 0; ligne <= derniere; ligne++) {
+            avancement += Long.bitCount(pionsBlancs & lignes[ligne]) * (derniere - ligne)
+                    - Long.bitCount(pionsNoirs & lignes[ligne]) * ligne;
+        }
+        return avancement;
+    }
+}
@@ -0,0 +1,89 @@
+package cstjean.mobile.dames.moteur;
+
+import cstjean.mobile.dames.damier.Variante;
+
+/**
+ * Évaluation par un {@link ReseauNeuronal} quantifié, en arithmétique entière.
+ *
+ * <p>L'accumulateur de la première couche est mis à jour par différence avec la position
+ * évaluée précédemment ; seules les couches suivantes, petites, sont recalculées à chaque
+ * évaluation. Une instance tient donc un état et ne doit servir qu'à une recherche à la fois.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class EvaluationNeuronale implements Evaluateur {
+    /**
+     * Le réseau.
+     */
+    private final ReseauNeuronal reseau;
+
+    /**
+     * Les accumulateurs de la première couche.
+     */
+    private final AccumulateurNeuronal accumulateur;
+
+    /**
+     * Activations des deux accumulateurs, joueur au trait d'abord.
+     */
+    private final byte[] activations;
+
+    /**
+     * Construit l'évaluation.
+     *
+     * @param variante La variante jouée.
+     * @param reseau   Le réseau, partageable entre plusieurs évaluations.
+     */
+    public EvaluationNeuronale(Variante variante, ReseauNeuronal reseau) {
+        if (reseau.nbCases != variante.getNbCases()) {
+            throw new IllegalArgumentException("Le réseau compte " + reseau.nbCases + " cases, la variante "
+                    + variante + " en compte " + variante.getNbCases() + ".");
+        }
+        this.reseau = reseau;
+        this.accumulateur = new AccumulateurNeuronal(reseau);
+        this.activations = new byte[2 * reseau.taille1];
+    }
+
+    @Override
+    public int evaluer(Position position) {
+        accumulateur.synchroniser(position.getBlancs(), position.getNoirs(), position.getDames());
+        int taille1 = reseau.taille1;
+        activer(accumulateur.getValeurs(position.getTrait()), 0);
+        activer(accumulateur.getValeurs(1 - position.getTrait()), taille1);
+
+        byte[] poids2 = reseau.poids2;
+        int largeur = 2 * taille1;
+        int sortie = reseau.biais3;
+        for (int j = 0; j < reseau.taille2; j++) {
+            int somme = reseau.biais2[j];
+            int debut = j * largeur;
+            for (int i = 0; i < largeur; i++) {
+                somme += activations[i] * poids2[debut + i];
+            }
+            int cachee = Math.min(Math.max(somme >> reseau.decalage2, 0), ReseauNeuronal.ACTIVATION_MAX);
+            sortie += cachee * reseau.poids3[j];
+        }
+        return sortie / reseau.diviseurSortie;
+    }
+
+    /**
+     * Retourne l'accumulateur, pour l'alimenter directement pièce par pièce.
+     *
+     * @return L'accumulateur.
+     */
+    public AccumulateurNeuronal getAccumulateur() {
+        return accumulateur;
+    }
+
+    /**
+     * Borne un accumulateur à [0, 127] dans le tableau des activations.
+     *
+     * @param valeurs Les valeurs de l'accumulateur.
+     * @param debut   La position de destination dans les activations.
+     */
+    private void activer(short[] valeurs, int debut) {
+        for (int i = 0; i < valeurs.length; i++) {
+            int valeur = valeurs[i];
+            activations[debut + i] = (byte) (valeur < 0 ? 0 : Math.min(valeur, ReseauNeuronal.ACTIVATION_MAX));
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package cstjean.mobile.dames.moteur;
+
+import cstjean.mobile.dames.damier.Coup;
+import cstjean.mobile.dames.damier.Pion;
+import cstjean.mobile.dames.damier.Variante;
+import cstjean.mobile.dames.metriques.Metriques;
+
+/**
+ * Génère les coups légaux d'une position.
+ *
+ * <p>Par défaut, les règles sont celles de {@link cstjean.mobile.dames.damier.JeuDames} :
+ * un coup prend au plus une pièce, puis le trait passe, et la prise n'est jamais obligatoire.
+ * Un pion qui termine sa prise sur la rangée de promotion est promu. Tout le moteur, le
+ * serveur et le stockage génèrent leurs coups ainsi, pour jouer la même partie que l'application.</p>
+ *
+ * <p>Avec les règles officielles de la variante, la prise est obligatoire ; une rafle se
+ * poursuit tant qu'une autre prise est possible, les pièces prises restent sur le damier
+ * jusqu'à la fin du coup et ne peuvent pas être sautées deux fois. Lorsque la variante impose
+ * la prise majoritaire, seules les rafles prenant le plus de pièces sont retenues. Un pion qui
+ * traverse la rangée de promotion pendant une rafle sans s'y arrêter reste un pion.</p>
+ *
+ * <p>La génération travaille sur les masques de la position et les tables de la variante,
+ * sans allocation ; une instance par thread.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class GenerateurCoups {
+    /**
+     * Couleurs des pions, indexées par joueur au trait.
+     */
+    private static final Pion.CouleurPion[] COULEURS = Pion.CouleurPion.values();
+
+    /**
+     * La variante dont les règles sont appliquées.
+     */
+    private final Variante variante;
+
+    /**
+     * true pour les règles officielles : prise obligatoire, en rafle.
+     */
+    private final boolean priseObligatoire;
+
+    /**
+     * Directions de déplacement des pions, par couleur.
+     */
+    private final int[][] directionsPion = new int[2][];
+
+    /**
+     * Directions de prise des pions, par couleur.
+     */
+    private final int[][] directionsPrise = new int[2][];
+
+    /**
+     * Liste recevant les coups en cours de génération.
+     */
+    private ListeCoups liste;
+
+    /**
+     * Couleur du joueur au trait pendant la génération.
+     */
+    private int couleur;
+
+    /**
+     * Nombre de pièces prises par les rafles retenues jusqu'ici.
+     */
+    private int maxPrises;
+
+    /**
+     * Construit un générateur pour une variante, selon les règles de JeuDames.
+     *
+     * @param variante La variante jouée.
+     */
+    public GenerateurCoups(Variante variante) {
+        this(variante, false);
+    }
+
+    /**
+     * Construit un générateur pour une variante.
+     *
+     * @param variante         La variante jouée.
+     * @param priseObligatoire true pour les règles officielles de la variante (prise obligatoire,
+     *                         en rafle), false pour celles de JeuDames.
+     */
+    public GenerateurCoups(Variante variante, boolean priseObligatoire) {
+        this.variante = variante;
+        this.priseObligatoire = priseObligatoire;
+        for (Pion.CouleurPion c : COULEURS) {
+            directionsPion[c.ordinal()] = variante.getDirectionsPion(c);
+            directionsPrise[c.ordinal()] = variante.getDirectionsPrisePion(c);
+        }
+    }
+
+    /**
+     * Remplit une liste avec les coups légaux d'une position.
+     *
+     * @param position La position.
+     * @param coups    La liste à remplir ; elle est vidée au préalable.
+     * @return Le nombre de coups générés.
+     */
+    public int generer(Position position, ListeCoups coups) {
+        coups.vider();
+        liste = coups;
+        couleur = position.getTrait();
+        maxPrises = 0;
+        genererPrises(position);
+        if (!priseObligatoire || coups.getTaille() == 0) {
+            genererDeplacements(position);
+        }
+        liste = null;
+        Metriques.coupsGeneres(coups.getTaille());
+        return coups.getTaille();
+    }
+
+    /**
+     * Remplit une liste avec les seules prises légales d'une position.
+     *
+     * @param position La position.
+     * @param coups    La liste à remplir ; elle est vidée au préalable.
+     * @return Le nombre de prises générées.
+     */
+    public int genererPrises(Position position, ListeCoups coups) {
+        coups.vider();
+        liste = coups;
+        couleur = position.getTrait();
+        maxPrises = 0;
+        genererPrises(position);
+        liste = null;
+        Metriques.coupsGeneres(coups.getTaille());
+        return coups.getTaille();
+    }
+
+    /**
+     * Indique si le générateur applique les règles officielles de la variante.
+     *
+     * @return true si la prise est obligatoire et se poursuit en rafle, false pour les règles de JeuDames.
+     */
+    public boolean estPriseObligatoire() {
+        return priseObligatoire;
+    }
+
+    /**
+     * Indique si le joueur au trait a au moins une prise, donc si la position n'est pas calme.
+     *
+     * @param position La position.
+     * @return true si une prise est possible.
+     */
+    public boolean aPrise(Position position) {
+        int joueur = position.getTrait();
+        long amis = position.getPieces(joueur);
+        long adversaires = position.getPieces(joueur ^ 1);
+        long occupation = amis | adversaires;
+        long dames = position.getDames();
+        for (long pieces = amis; pieces != 0; pieces &= pieces - 1) {
+            int depart = Long.numberOfTrailingZeros(pieces) + 1;
+            if ((dames & variante.getBit(depart)) != 0) {
+                for (int direction = 0; direction < Variante.NB_DIRECTIONS; direction++) {
+                    if (variante.getPrisesDame(depart, direction, occupation, adversaires) != 0) {
+                        return true;
+                    }
+                }
+            } else {
+                for (int direction : directionsPrise[joueur]) {
+                    int voisin = variante.getVoisin(depart, direction);
+                    int saut = variante.getSaut(depart, direction);
+                    if (saut != 0 && (adversaires & variante.getBit(voisin)) != 0
+                            && (occupation & variante.getBit(saut)) == 0) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Génère toutes les prises du joueur au trait : les rafles complètes avec les règles
+     * officielles, une pièce prise par coup sinon.
+     *
+     * @param position La position.
+     */
+    private void genererPrises(Position position) {
+        long amis = position.getPieces(couleur);
+        long adversaires = position.getPieces(couleur ^ 1);
+        long dames = position.getDames();
+        for (long pieces = amis; pieces != 0; pieces &= pieces - 1) {
+            int depart = Long.numberOfTrailingZeros(pieces) + 1;
+            // La pièce qui prend libère sa case de départ pendant toute la rafle.
+            long occupation = (amis | adversaires) & ~variante.getBit(depart);
+            if ((dames & variante.getBit(depart)) != 0) {
+                prisesDame(depart, depart, occupation, adversaires, 0, 0);
+            } else {
+                prisesPion(depart, depart, occupation, adversaires, 0, 0);
+            }
+        }
+    }
+
+    /**
+     * Prolonge récursivement la rafle d'un pion ; sans prise obligatoire, chaque saut est un coup.
+     *
+     * @param depart      La case de départ de la rafle.
+     * @param courante    La case où se trouve le pion.
+     * @param occupation  Les cases occupées, pièces déjà prises comprises.
+     * @param adversaires Les pièces adverses.
+     * @param prises      Les pièces déjà prises.
+     * @param nbPrises    Le nombre de pièces déjà prises.
+     */
+    private void prisesPion(int depart, int courante, long occupation, long adversaires, long prises, int nbPrises) {
+        boolean prolongee = false;
+        for (int direction : directionsPrise[couleur]) {
+            int saut = variante.getSaut(courante, direction);
+            if (saut == 0) {
+                continue;
+            }
+            long bitPris = variante.getBit(variante.getVoisin(courante, direction));
+            if ((adversaires & bitPris) == 0 || (prises & bitPris) != 0
+                    || (occupation & variante.getBit(saut)) != 0) {
+                continue;
+            }
+            prolongee = true;
+            if (priseObligatoire) {
+                prisesPion(depart, saut, occupation, adversaires, prises | bitPris, nbPrises + 1);
+            } else {
+                ajouterPrise(depart, saut, variante.estPromotion(COULEURS[couleur], saut), bitPris, 1);
+            }
+        }
+        if (!prolongee && nbPrises > 0) {
+            ajouterPrise(depart, courante, variante.estPromotion(COULEURS[couleur], courante),
+                    prises, nbPrises);
+        }
+    }
+
+    /**
+     * Prolonge récursivement la rafle d'une dame ; sans prise obligatoire, chaque prise est un coup.
+     *
+     * @param depart      La case de départ de la rafle.
+     * @param courante    La case où se trouve la dame.
+     * @param occupation  Les cases occupées, pièces déjà prises comprises.
+     * @param adversaires Les pièces adverses.
+     * @param prises      Les pièces déjà prises.
+     * @param nbPrises    Le nombre de pièces déjà prises.
+     */
+    private void prisesDame(int depart, int courante, long occupation, long adversaires, long prises, int nbPrises) {
+        boolean prolongee = false;
+        for (int direction = 0; direction < Variante.NB_DIRECTIONS; direction++) {
+            int bloqueur = variante.getPremierBloqueur(courante, direction, occupation);
+            if (bloqueur == 0) {
+                continue;
+            }
+            long bitPris = variante.getBit(bloqueur);
+            if ((adversaires & bitPris) == 0 || (prises & bitPris) != 0) {
+                continue;
+            }
+            for (long arrivees = variante.getGlissement(bloqueur, direction, occupation); arrivees != 0;
+                    arrivees &= arrivees - 1) {
+                prolongee = true;
+                int arrivee = Long.numberOfTrailingZeros(arrivees) + 1;
+                if (priseObligatoire) {
+                    prisesDame(depart, arrivee, occupation, adversaires, prises | bitPris, nbPrises + 1);
+                } else {
+                    ajouterPrise(depart, arrivee, false, bitPris, 1);
+                }
+            }
+        }
+        if (!prolongee && nbPrises > 0) {
+            ajouterPrise(depart, courante, false, prises, nbPrises);
+        }
+    }
+
+    /**
+     * Ajoute une rafle terminée, en appliquant la prise majoritaire et en écartant les doublons
+     * (une dame peut prendre les mêmes pièces dans un ordre différent).
+     *
+     * @param depart    La case de départ.
+     * @param arrivee   La case d'arrivée.
+     * @param promotion true si le pion est promu.
+     * @param prises    Les pièces prises.
+     * @param nbPrises  Le nombre de pièces prises.
+     */
+    private void ajouterPrise(int depart, int arrivee, boolean promotion, long prises, int nbPrises) {
+        if (priseObligatoire && variante.aPriseMajoritaire()) {
+            if (nbPrises < maxPrises) {
+                return;
+            }
+            if (nbPrises > maxPrises) {
+                maxPrises = nbPrises;
+                liste.vider();
+            }
+        }
+        int coup = Coup.encoder(depart, arrivee, promotion, nbPrises);
+        if (liste.indexDe(coup, prises) < 0) {
+            liste.ajouter(coup, prises);
+        }
+    }
+
+    /**
+     * Génère les déplacements sans prise du joueur au trait.
+     *
+     * @param position La position.
+     */
+    private void genererDeplacements(Position position) {
+        long amis = position.getPieces(couleur);
+        long occupation = position.getOccupation();
+        long dames = position.getDames();
+        Pion.CouleurPion couleurPion = COULEURS[couleur];
+        for (long pieces = amis; pieces != 0; pieces &= pieces - 1) {
+            int depart = Long.numberOfTrailingZeros(pieces) + 1;
+            if ((dames & variante.getBit(depart)) != 0) {
+                for (long arrivees = variante.getDeplacementsDame(depart, occupation); arrivees != 0;
+                        arrivees &= arrivees - 1) {
+                    liste.ajouter(Coup.encoder(depart, Long.numberOfTrailingZeros(arrivees) + 1, false, 0), 0);
+                }
+            } else {
+                for (int direction : directionsPion[couleur]) {
+                    int arrivee = variante.getVoisin(depart, direction);
+                    if (arrivee != 0 && (occupation & variante.getBit(arrivee)) == 0) {
+                        liste.ajouter(Coup.encoder(depart, arrivee, variante.estPromotion(couleurPion, arrivee),
+                                0), 0);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package cstjean.mobile.dames.moteur;
+
+import cstjean.mobile.dames.damier.Coup;
+
+/**
+ * Coup possible du joueur au trait, avec son score et sa qualité relative au meilleur coup.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class Indice {
+    /**
+     * Le coup est le meilleur ou en est très proche.
+     */
+    public static final int BON = 0;
+
+    /**
+     * Le coup concède un peu de terrain.
+     */
+    public static final int DOUTEUX = 1;
+
+    /**
+     * Le coup perd du matériel ou la partie.
+     */
+    public static final int MAUVAIS = 2;
+
+    /**
+     * Écart maximal avec le meilleur score pour un bon coup.
+     */
+    static final int ECART_BON = 15;
+
+    /**
+     * Écart maximal avec le meilleur score pour un coup douteux ; un peu moins qu'un pion.
+     */
+    static final int ECART_DOUTEUX = 80;
+
+    /**
+     * Le coup encodé.
+     */
+    private final int coup;
+
+    /**
+     * Les pièces prises par le coup.
+     */
+    private final long prises;
+
+    /**
+     * Le score du coup, du point de vue du joueur au trait.
+     */
+    private final int score;
+
+    /**
+     * La profondeur complète atteinte après le coup.
+     */
+    private final int profondeur;
+
+    /**
+     * La qualité du coup : {@link #BON}, {@link #DOUTEUX} ou {@link #MAUVAIS}.
+     */
+    private final int qualite;
+
+    /**
+     * Construit un indice.
+     *
+     * @param coup       Le coup encodé.
+     * @param prises     Les pièces prises.
+     * @param score      Le score du coup.
+     * @param profondeur La profondeur atteinte.
+     * @param qualite    La qualité du coup.
+     */
+    Indice(int coup, long prises, int score, int profondeur, int qualite) {
+        this.coup = coup;
+        this.prises = prises;
+        this.score = score;
+        this.profondeur = profondeur;
+        this.qualite = qualite;
+    }
+
+    /**
+     * Retourne le coup encodé.
+     *
+     * @return Le coup (voir {@link Coup}).
+     */
+    public int getCoup() {
+        return coup;
+    }
+
+    /**
+     * Retourne les pièces prises par le coup.
+     *
+     * @return Le masque des pièces prises.
+     */
+    public long getPrises() {
+        return prises;
+    }
+
+    /**
+     * Retourne le score du coup, du point de vue du joueur au trait.
+     *
+     * @return Le score.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Retourne la profondeur complète atteinte après le coup.
+     *
+     * @return La profondeur.
+     */
+    public int getProfondeur() {
+        return profondeur;
+    }
+
+    /**
+     * Retourne la qualité du coup.
+     *
+     * @return {@link #BON}, {@link #DOUTEUX} ou {@link #MAUVAIS}.
+     */
+    public int getQualite() {
+        return qualite;
+    }
+
+    @Override
+    public String toString() {
+        return Coup.notation(coup) + " " + score + " (profondeur " + profondeur + ")";
+    }
+}
@@ -0,0 +1,163 @@
+package cstjean.mobile.dames.moteur;
+
+import cstjean.mobile.dames.damier.Coup;
+
+/**
+ * Liste de coups réutilisable, stockée dans des tableaux primitifs parallèles :
+ * les coups encodés (voir {@link Coup}) et les masques des pièces prises.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class ListeCoups {
+    /**
+     * Nombre maximal de coups d'une position.
+     */
+    public static final int CAPACITE = 256;
+
+    /**
+     * Coups encodés.
+     */
+    private final int[] coups = new int[CAPACITE];
+
+    /**
+     * Masques des pièces prises par chaque coup.
+     */
+    private final long[] prises = new long[CAPACITE];
+
+    /**
+     * Nombre de coups présents.
+     */
+    private int taille;
+
+    /**
+     * Vide la liste sans libérer ses tableaux.
+     */
+    public void vider() {
+        taille = 0;
+    }
+
+    /**
+     * Ajoute un coup à la fin de la liste.
+     *
+     * @param coup       Le coup encodé.
+     * @param masquePris Le masque des pièces prises.
+     */
+    public void ajouter(int coup, long masquePris) {
+        coups[taille] = coup;
+        prises[taille] = masquePris;
+        taille++;
+    }
+
+    /**
+     * Retourne le nombre de coups présents.
+     *
+     * @return La taille de la liste.
+     */
+    public int getTaille() {
+        return taille;
+    }
+
+    /**
+     * Retourne un coup de la liste.
+     *
+     * @param index L'indice du coup.
+     * @return Le coup encodé.
+     */
+    public int getCoup(int index) {
+        return coups[index];
+    }
+
+    /**
+     * Retourne le masque des pièces prises par un coup de la liste.
+     *
+     * @param index L'indice du coup.
+     * @return Le masque des pièces prises.
+     */
+    public long getPrises(int index) {
+        return prises[index];
+    }
+
+    /**
+     * Échange deux coups de la liste, pour les trier.
+     *
+     * @param i L'indice du premier coup.
+     * @param j L'indice du second coup.
+     */
+    public void echanger(int i, int j) {
+        int coup = coups[i];
+        coups[i] = coups[j];
+        coups[j] = coup;
+        long masque = prises[i];
+        prises[i] = prises[j];
+        prises[j] = masque;
+    }
+
+    /**
+     * Cherche un coup dans la liste.
+     *
+     * @param coup       Le coup encodé.
+     * @param masquePris Le masque des pièces prises.
+     * @return L'indice du coup, ou -1 s'il est absent.
+     */
+    public int indexDe(int coup, long masquePris) {
+        for (int i = 0; i < taille; i++) {
+            if (coups[i] == coup && prises[i] == masquePris) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Cherche le premier coup de la liste allant d'une case à une autre.
+     *
+     * @param depart  La case de départ.
+     * @param arrivee La case d'arrivée.
+     * @return L'indice du coup, ou -1 s'il est absent.
+     */
+    public int indexDe(int depart, int arrivee) {
+        for (int i = 0; i < taille; i++) {
+            if (Coup.depart(coups[i]) == depart && Coup.arrivee(coups[i]) == arrivee) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Réduit un coup de la liste à sa forme compacte de 16 bits ; le rang de la rafle est
+     * compté parmi les coups précédents de la liste reliant les mêmes cases.
+     *
+     * @param index L'indice du coup.
+     * @return Le coup compact (voir {@link Coup#compacter(int, int)}).
+     */
+    public short compacter(int index) {
+        int coup = coups[index];
+        int sequence = 0;
+        for (int i = 0; i < index; i++) {
+            if (Coup.depart(coups[i]) == Coup.depart(coup) && Coup.arrivee(coups[i]) == Coup.arrivee(coup)) {
+                sequence++;
+            }
+        }
+        return Coup.compacter(coup, sequence);
+    }
+
+    /**
+     * Retrouve dans la liste le coup correspondant à un coup compact produit par
+     * {@link #compacter(int)} sur une liste générée pour la même position.
+     *
+     * @param compact Le coup compact.
+     * @return L'indice du coup, ou -1 s'il est absent.
+     */
+    public int indexDe(short compact) {
+        int depart = Coup.departCompact(compact);
+        int arrivee = Coup.arriveeCompact(compact);
+        int sequence = Coup.sequenceCompact(compact);
+        for (int i = 0; i < taille; i++) {
+            if (Coup.depart(coups[i]) == depart && Coup.arrivee(coups[i]) == arrivee && sequence-- == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,209 @@
+package cstjean.mobile.dames.moteur;
+
+import cstjean.mobile.dames.damier.Coup;
+import cstjean.mobile.dames.damier.InstantanePartie;
+import cstjean.mobile.dames.damier.Variante;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moteur Monte-Carlo (UCT), alternative à la recherche alpha-bêta.
+ *
+ * <p>Le moteur est parallélisé à la racine : chaque thread fait croître son propre
+ * {@link ArbreMcts} depuis la même position, sans synchronisation, puis les visites et les
+ * gains des coups de la racine sont additionnés. Le coup retenu est le plus visité.
+ * Les arbres sont alloués une fois pour toutes et réutilisés d'une recherche à l'autre.</p>
+ *
+ * <p>Une instance n'effectue qu'une recherche à la fois.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class MoteurMcts {
+    /**
+     * Nombre de nœuds par défaut de chaque arbre.
+     */
+    public static final int CAPACITE_DEFAUT = 1 << 18;
+
+    /**
+     * Arbres, un par thread.
+     */
+    private final ArbreMcts[] arbres;
+
+    /**
+     * Threads de recherche.
+     */
+    private final ExecutorService executeur;
+
+    /**
+     * Demande d'arrêt, posée par un autre thread.
+     */
+    private volatile boolean arret;
+
+    /**
+     * Construit un moteur utilisant un thread par cœur disponible.
+     *
+     * @param variante La variante jouée.
+     */
+    public MoteurMcts(Variante variante) {
+        this(variante, Runtime.getRuntime().availableProcessors(), CAPACITE_DEFAUT);
+    }
+
+    /**
+     * Construit un moteur.
+     *
+     * @param variante La variante jouée.
+     * @param nbFils   Le nombre de threads, donc d'arbres.
+     * @param capacite Le nombre maximal de nœuds de chaque arbre.
+     */
+    public MoteurMcts(Variante variante, int nbFils, int capacite) {
+        arbres = new ArbreMcts[Math.max(1, nbFils)];
+        for (int i = 0; i < arbres.length; i++) {
+            arbres[i] = new ArbreMcts(variante, capacite, new EvaluationClassique(variante),
+                    0x9E3779B97F4A7C15L * (i + 1));
+        }
+        final AtomicInteger numero = new AtomicInteger();
+        executeur = Executors.newFixedThreadPool(arbres.length, tache -> {
+            Thread thread = new Thread(tache, "mcts-" + numero.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+    }
+
+    /**
+     * Cherche le meilleur coup d'un instantané de partie.
+     *
+     * @param instantane   La position.
+     * @param budgetMillis Le temps alloué, en millisecondes.
+     * @return Le coup le plus visité et les statistiques.
+     * @throws InterruptedException Si le thread appelant est interrompu pendant l'attente.
+     */
+    public ResultatMcts chercher(InstantanePartie instantane, long budgetMillis) throws InterruptedException {
+        return chercher(Position.depuis(instantane), budgetMillis, 0);
+    }
+
+    /**
+     * Cherche le meilleur coup d'un instantané de partie dans un budget de temps ou de simulations.
+     *
+     * @param instantane        La position.
+     * @param budgetMillis      Le temps alloué, en millisecondes, ou 0 pour ne pas le limiter.
+     * @param budgetSimulations Le nombre de simulations de chaque arbre, ou 0 pour ne pas le limiter.
+     * @return Le coup le plus visité et les statistiques.
+     * @throws InterruptedException Si le thread appelant est interrompu pendant l'attente.
+     */
+    public ResultatMcts chercher(InstantanePartie instantane, long budgetMillis, long budgetSimulations)
+            throws InterruptedException {
+        return chercher(Position.depuis(instantane), budgetMillis, budgetSimulations);
+    }
+
+    /**
+     * Cherche le meilleur coup d'une position.
+     *
+     * @param depart       La position ; elle est copiée dans chaque arbre.
+     * @param budgetMillis Le temps alloué, en millisecondes.
+     * @return Le coup le plus visité et les statistiques.
+     * @throws InterruptedException Si le thread appelant est interrompu pendant l'attente.
+     */
+    public ResultatMcts chercher(Position depart, long budgetMillis) throws InterruptedException {
+        return chercher(depart, budgetMillis, 0);
+    }
+
+    /**
+     * Cherche le meilleur coup d'une position dans un budget de temps ou de simulations. Chaque
+     * arbre tire ses simulations d'une graine fixe : avec un budget de simulations seul, le
+     * résultat ne dépend pas de la vitesse de la machine.
+     *
+     * @param depart            La position ; elle est copiée dans chaque arbre.
+     * @param budgetMillis      Le temps alloué, en millisecondes, ou 0 pour ne pas le limiter.
+     * @param budgetSimulations Le nombre de simulations de chaque arbre, ou 0 pour ne pas le limiter.
+     * @return Le coup le plus visité et les statistiques.
+     * @throws IllegalArgumentException Si aucun des deux budgets n'est donné.
+     * @throws InterruptedException     Si le thread appelant est interrompu pendant l'attente.
+     */
+    public ResultatMcts chercher(Position depart, long budgetMillis, final long budgetSimulations)
+            throws InterruptedException {
+        if (budgetMillis <= 0 && budgetSimulations <= 0) {
+            throw new IllegalArgumentException("La recherche doit avoir un budget de temps ou de simulations.");
+        }
+        arret = false;
+        long debut = System.nanoTime();
+        final long echeance = budgetMillis > 0 ? debut + budgetMillis * 1_000_000L : Long.MAX_VALUE;
+        final long simulations = budgetSimulations > 0 ? budgetSimulations : Long.MAX_VALUE;
+        final CountDownLatch fin = new CountDownLatch(arbres.length);
+        for (final ArbreMcts arbre : arbres) {
+            arbre.reinitialiser(depart);
+            executeur.execute(() -> {
+                try {
+                    // L'horloge n'est consultée que toutes les 64 simulations.
+                    long faites = 0;
+                    do {
+                        long lot = Math.min(64, simulations - faites);
+                        for (int i = 0; i < lot; i++) {
+                            arbre.iterer();
+                        }
+                        faites += lot;
+                    } while (!arret && faites < simulations && System.nanoTime() < echeance);
+                } finally {
+                    fin.countDown();
+                }
+            });
+        }
+        fin.await();
+        long duree = System.nanoTime() - debut;
+
+        long nbSimulations = 0;
+        for (ArbreMcts arbre : arbres) {
+            nbSimulations += arbre.getNbSimulations();
+        }
+        int nbCoups = arbres[0].getNbCoupsRacine();
+        int meilleur = -1;
+        long meilleuresVisites = -1;
+        long meilleursGains = 0;
+        for (int i = 0; i < nbCoups; i++) {
+            long visites = 0;
+            long gains = 0;
+            for (ArbreMcts arbre : arbres) {
+                // Tous les arbres développent la racine dans l'ordre du générateur.
+                visites += arbre.getVisitesRacine(i);
+                gains += arbre.getGainsRacine(i);
+            }
+            if (visites > meilleuresVisites) {
+                meilleur = i;
+                meilleuresVisites = visites;
+                meilleursGains = gains;
+            }
+        }
+        if (meilleur < 0) {
+            return new ResultatMcts(Coup.AUCUN, 0, 0, 0, nbSimulations, duree);
+        }
+        return new ResultatMcts(arbres[0].getCoupRacine(meilleur), arbres[0].getPrisesRacine(meilleur),
+                meilleuresVisites == 0 ? 0.5 : meilleursGains / (2.0 * meilleuresVisites), meilleuresVisites,
+                nbSimulations, duree);
+    }
+
+    /**
+     * Demande l'arrêt de la recherche en cours. Peut être appelée depuis n'importe quel thread.
+     */
+    public void arreter() {
+        arret = true;
+    }
+
+    /**
+     * Arrête les threads de recherche. Le moteur ne peut plus servir.
+     */
+    public void fermer() {
+        arret = true;
+        executeur.shutdownNow();
+    }
+
+    /**
+     * Retourne le nombre d'arbres, donc de threads.
+     *
+     * @return Le nombre de threads.
+     */
+    public int getNbFils() {
+        return arbres.length;
+    }
+}
@@ -0,0 +1,354 @@
+package cstjean.mobile.dames.moteur;
+
+import cstjean.mobile.dames.damier.Coup;
+import cstjean.mobile.dames.damier.Damier;
+import cstjean.mobile.dames.damier.InstantanePartie;
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.damier.Pion;
+import cstjean.mobile.dames.damier.RegleNulle;
+import cstjean.mobile.dames.damier.Variante;
+import cstjean.mobile.dames.damier.Zobrist;
+
+/**
+ * Position de jeu réduite à des types primitifs, pour le moteur de recherche.
+ *
+ * <p>Les pièces sont décrites par trois masques d'occupation (pièces blanches, pièces noires
+ * et dames des deux camps), le joueur au trait et la clé de Zobrist, identique à celle de
+ * {@link JeuDames#getCle()}. Jouer un coup empile les trois masques et la clé, quatre mots,
+ * dans un tableau primitif ; l'annuler les restaure. Aucune allocation n'a lieu tant que la
+ * pile ne grandit pas.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class Position {
+    /**
+     * Trait aux blancs.
+     */
+    public static final int BLANC = 0;
+
+    /**
+     * Trait aux noirs.
+     */
+    public static final int NOIR = 1;
+
+    /**
+     * Nombre de mots empilés par coup joué.
+     */
+    private static final int MOTS_PAR_COUP = 4;
+
+    /**
+     * La variante jouée.
+     */
+    private final Variante variante;
+
+    /**
+     * Suivi des positions jouées, pour détecter les répétitions.
+     */
+    private final RegleNulle regleNulle = new RegleNulle();
+
+    /**
+     * Pièces blanches.
+     */
+    private long blancs;
+
+    /**
+     * Pièces noires.
+     */
+    private long noirs;
+
+    /**
+     * Dames des deux camps.
+     */
+    private long dames;
+
+    /**
+     * Joueur au trait : {@link #BLANC} ou {@link #NOIR}.
+     */
+    private int trait;
+
+    /**
+     * Clé de Zobrist de la position, trait compris.
+     */
+    private long cle;
+
+    /**
+     * États précédant chaque coup joué : blancs, noirs, dames et clé.
+     */
+    private long[] pile = new long[MOTS_PAR_COUP * 64];
+
+    /**
+     * Nombre de coups empilés.
+     */
+    private int hauteur;
+
+    /**
+     * Construit une position vide.
+     *
+     * @param variante La variante jouée ; elle doit supporter les masques d'occupation.
+     */
+    public Position(Variante variante) {
+        if (!variante.supporteMasques()) {
+            throw new IllegalArgumentException("La variante " + variante
+                    + " compte plus de 64 cases et ne peut pas être représentée par des masques.");
+        }
+        this.variante = variante;
+        regleNulle.reinitialiser(0);
+    }
+
+    /**
+     * Construit la position courante d'une partie.
+     *
+     * @param jeu La partie.
+     * @return Une nouvelle position indépendante de la partie.
+     */
+    public static Position depuis(JeuDames jeu) {
+        Damier damier = jeu.getDamier();
+        Position position = new Position(damier.getVariante());
+        position.definir(damier.getMasque(Pion.CouleurPion.blanc), damier.getMasque(Pion.CouleurPion.noir),
+                damier.getMasque(2) | damier.getMasque(3), jeu.getTour());
+        return position;
+    }
+
+    /**
+     * Construit une position à partir d'un instantané de partie.
+     *
+     * @param instantane L'instantané, lu depuis n'importe quel fil.
+     * @return Une nouvelle position.
+     */
+    public static Position depuis(InstantanePartie instantane) {
+        Position position = new Position(instantane.getVariante());
+        position.copier(instantane);
+        return position;
+    }
+
+    /**
+     * Remplace le contenu de la position et vide son historique.
+     *
+     * @param masqueBlancs Les pièces blanches.
+     * @param masqueNoirs  Les pièces noires.
+     * @param masqueDames  Les dames des deux camps.
+     * @param joueur       Le joueur au trait.
+     */
+    public void definir(long masqueBlancs, long masqueNoirs, long masqueDames, int joueur) {
+        blancs = masqueBlancs;
+        noirs = masqueNoirs;
+        dames = masqueDames;
+        trait = joueur;
+        cle = joueur == NOIR ? Zobrist.TRAIT_NOIR : 0;
+        cle ^= cleMasque(blancs & ~dames, 0) ^ cleMasque(noirs & ~dames, 1)
+                ^ cleMasque(blancs & dames, 2) ^ cleMasque(noirs & dames, 3);
+        hauteur = 0;
+        regleNulle.reinitialiser(cle);
+    }
+
+    /**
+     * Copie l'état d'une autre position de même variante, sans son historique.
+     *
+     * @param autre La position copiée.
+     */
+    public void copier(Position autre) {
+        blancs = autre.blancs;
+        noirs = autre.noirs;
+        dames = autre.dames;
+        trait = autre.trait;
+        cle = autre.cle;
+        hauteur = 0;
+        regleNulle.reinitialiser(cle);
+    }
+
+    /**
+     * Copie un instantané de partie de même variante, sans recalculer la clé.
+     *
+     * @param instantane L'instantané copié.
+     */
+    public void copier(InstantanePartie instantane) {
+        blancs = instantane.getBlancs();
+        noirs = instantane.getNoirs();
+        dames = instantane.getDames();
+        trait = instantane.getTour();
+        cle = instantane.getCle();
+        hauteur = 0;
+        regleNulle.reinitialiser(cle);
+    }
+
+    /**
+     * Joue un coup légal.
+     *
+     * @param coup       Le coup encodé.
+     * @param masquePris Le masque des pièces prises.
+     */
+    public void jouer(int coup, long masquePris) {
+        if (hauteur * MOTS_PAR_COUP == pile.length) {
+            long[] agrandie = new long[pile.length * 2];
+            System.arraycopy(pile, 0, agrandie, 0, pile.length);
+            pile = agrandie;
+        }
+        int sommet = hauteur * MOTS_PAR_COUP;
+        pile[sommet] = blancs;
+        pile[sommet + 1] = noirs;
+        pile[sommet + 2] = dames;
+        pile[sommet + 3] = cle;
+        hauteur++;
+
+        int depart = Coup.depart(coup);
+        int arrivee = Coup.arrivee(coup);
+        long bitDepart = variante.getBit(depart);
+        long bitArrivee = variante.getBit(arrivee);
+        boolean dame = (dames & bitDepart) != 0;
+        int typeDepart = (dame ? 2 : 0) + trait;
+        int typeArrivee = (dame || Coup.estPromotion(coup) ? 2 : 0) + trait;
+        cle ^= Zobrist.cle(depart, typeDepart) ^ Zobrist.cle(arrivee, typeArrivee);
+        if (masquePris != 0) {
+            int couleurPrise = trait ^ 1;
+            cle ^= cleMasque(masquePris & ~dames, couleurPrise) ^ cleMasque(masquePris & dames, 2 + couleurPrise);
+            dames &= ~masquePris;
+        }
+        if (trait == BLANC) {
+            blancs ^= bitDepart | bitArrivee;
+            noirs &= ~masquePris;
+        } else {
+            noirs ^= bitDepart | bitArrivee;
+            blancs &= ~masquePris;
+        }
+        if (dame) {
+            dames ^= bitDepart | bitArrivee;
+        } else if (Coup.estPromotion(coup)) {
+            dames |= bitArrivee;
+        }
+        trait ^= 1;
+        cle ^= Zobrist.TRAIT_NOIR;
+        regleNulle.jouer(cle, !dame || masquePris != 0, masquePris != 0 || Coup.estPromotion(coup));
+    }
+
+    /**
+     * Annule le dernier coup joué.
+     */
+    public void annuler() {
+        hauteur--;
+        int sommet = hauteur * MOTS_PAR_COUP;
+        blancs = pile[sommet];
+        noirs = pile[sommet + 1];
+        dames = pile[sommet + 2];
+        cle = pile[sommet + 3];
+        trait ^= 1;
+        regleNulle.annuler();
+    }
+
+    /**
+     * Indique si la position courante s'est déjà présentée depuis le dernier coup irréversible.
+     *
+     * @return true si la position est une répétition.
+     */
+    public boolean estRepetition() {
+        return regleNulle.estRepetition();
+    }
+
+    /**
+     * Détermine si la position est nulle selon les règles de répétition et de finale.
+     *
+     * @return La règle de nulle qui s'applique (voir {@link RegleNulle}), ou {@link RegleNulle#AUCUNE}.
+     */
+    public int getRaisonNulle() {
+        long dames = getDames();
+        return regleNulle.raisonNulle(Long.bitCount(getBlancs() & ~dames), Long.bitCount(getBlancs() & dames),
+                Long.bitCount(getNoirs() & ~dames), Long.bitCount(getNoirs() & dames));
+    }
+
+    /**
+     * Retourne la variante jouée.
+     *
+     * @return La variante.
+     */
+    public Variante getVariante() {
+        return variante;
+    }
+
+    /**
+     * Retourne les pièces blanches.
+     *
+     * @return Le masque des pièces blanches.
+     */
+    public long getBlancs() {
+        return blancs;
+    }
+
+    /**
+     * Retourne les pièces noires.
+     *
+     * @return Le masque des pièces noires.
+     */
+    public long getNoirs() {
+        return noirs;
+    }
+
+    /**
+     * Retourne les dames des deux camps.
+     *
+     * @return Le masque des dames.
+     */
+    public long getDames() {
+        return dames;
+    }
+
+    /**
+     * Retourne les pièces d'un camp.
+     *
+     * @param joueur {@link #BLANC} ou {@link #NOIR}.
+     * @return Le masque des pièces du camp.
+     */
+    public long getPieces(int joueur) {
+        return joueur == BLANC ? blancs : noirs;
+    }
+
+    /**
+     * Retourne les cases occupées.
+     *
+     * @return Le masque des cases occupées.
+     */
+    public long getOccupation() {
+        return blancs | noirs;
+    }
+
+    /**
+     * Retourne le joueur au trait.
+     *
+     * @return {@link #BLANC} ou {@link #NOIR}.
+     */
+    public int getTrait() {
+        return trait;
+    }
+
+    /**
+     * Retourne la clé de Zobrist de la position, trait compris.
+     *
+     * @return La clé.
+     */
+    public long getCle() {
+        return cle;
+    }
+
+    /**
+     * Retourne le nombre de coups joués depuis la dernière définition de la position.
+     *
+     * @return La hauteur de la pile d'annulation.
+     */
+    public int getHauteur() {
+        return hauteur;
+    }
+
+    /**
+     * Combine les clés de Zobrist de toutes les pièces d'un masque.
+     *
+     * @param masque Les cases occupées par des pièces du même type.
+     * @param type   Le code du type de pièce.
+     * @return La combinaison des clés.
+     */
+    private static long cleMasque(long masque, int type) {
+        long resultat = 0;
+        while (masque != 0) {
+            resultat ^= Zobrist.cle(Long.numberOfTrailingZeros(masque) + 1, type);
+            masque &= masque - 1;
+        }
+        return resultat;
+    }
+}
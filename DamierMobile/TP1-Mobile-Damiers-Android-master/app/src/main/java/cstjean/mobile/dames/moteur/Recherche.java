@@ -0,0 +1,375 @@
+package cstjean.mobile.dames.moteur;
+
+import cstjean.mobile.dames.damier.Coup;
+import cstjean.mobile.dames.damier.Variante;
+import cstjean.mobile.dames.metriques.Metriques;
+import cstjean.mobile.dames.metriques.StatistiquesRecherche;
+import cstjean.mobile.dames.metriques.TraceurRecherche;
+
+/**
+ * Recherche alpha-bêta à approfondissement itératif avec table de transposition.
+ *
+ * <p>Les coups suivent les règles de JeuDames (voir {@link GenerateurCoups}) : une prise n'est
+ * pas obligatoire. Au-delà de la profondeur demandée, la recherche se prolonge par les seules
+ * prises jusqu'à une position calme ; le joueur au trait peut aussi s'en tenir à l'évaluation
+ * statique de la position, puisqu'il peut toujours jouer un coup calme.
+ * La recherche s'interrompt quand son échéance est dépassée ou que {@link #arreter()} est
+ * appelée depuis un autre thread ; le résultat est alors celui de la dernière itération
+ * terminée. Une instance n'effectue qu'une recherche à la fois.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class Recherche {
+    /**
+     * Score d'une partie gagnée au trait, diminué de la distance au gain.
+     */
+    public static final int MAT = 30000;
+
+    /**
+     * Profondeur maximale, prolongations de prises comprises.
+     */
+    public static final int PROFONDEUR_MAX = 64;
+
+    /**
+     * Borne supérieure des scores.
+     */
+    private static final int INFINI = MAT + 1;
+
+    /**
+     * L'horloge est consultée tous les 1024 nœuds.
+     */
+    private static final int INTERVALLE_HORLOGE = 1023;
+
+    /**
+     * Générateur des coups.
+     */
+    private final GenerateurCoups generateur;
+
+    /**
+     * Évaluation des positions calmes.
+     */
+    private final Evaluateur evaluateur;
+
+    /**
+     * Table de transposition, éventuellement partagée avec d'autres recherches.
+     */
+    private final TableTransposition table;
+
+    /**
+     * Listes de coups préallouées, une par demi-coup de profondeur.
+     */
+    private final ListeCoups[] listes = new ListeCoups[PROFONDEUR_MAX + 1];
+
+    /**
+     * Statistiques de la recherche en cours.
+     */
+    private final StatistiquesRecherche statistiques = new StatistiquesRecherche();
+
+    /**
+     * Position explorée ; restaurée à la fin de la recherche.
+     */
+    private Position position;
+
+    /**
+     * Échéance de la recherche, en nanosecondes.
+     */
+    private long echeance;
+
+    /**
+     * Demande d'arrêt, posée par l'horloge ou par un autre thread.
+     */
+    private volatile boolean arret;
+
+    /**
+     * Construit une recherche.
+     *
+     * @param variante   La variante jouée.
+     * @param evaluateur L'évaluation des positions calmes.
+     * @param table      La table de transposition.
+     */
+    public Recherche(Variante variante, Evaluateur evaluateur, TableTransposition table) {
+        this.generateur = new GenerateurCoups(variante);
+        this.evaluateur = evaluateur;
+        this.table = table;
+        for (int i = 0; i < listes.length; i++) {
+            listes[i] = new ListeCoups();
+        }
+    }
+
+    /**
+     * Cherche le meilleur coup d'une position.
+     *
+     * @param depart        La position ; elle est explorée sur place et restaurée à la fin.
+     * @param profondeurMax La profondeur maximale des itérations.
+     * @param budgetMillis  Le temps alloué en millisecondes, ou 0 pour ne pas limiter le temps.
+     * @return Le résultat de la dernière itération terminée.
+     */
+    public ResultatRecherche chercher(Position depart, int profondeurMax, long budgetMillis) {
+        arret = false;
+        return explorer(depart, profondeurMax, budgetMillis);
+    }
+
+    /**
+     * Lève une demande d'arrêt antérieure, avant un appel à {@link #explorer(Position, int, long)}.
+     */
+    void armer() {
+        arret = false;
+    }
+
+    /**
+     * Cherche le meilleur coup d'une position sans lever une demande d'arrêt déjà posée,
+     * pour qu'un appelant puisse armer la recherche sous son propre verrou.
+     *
+     * @param depart        La position ; elle est explorée sur place et restaurée à la fin.
+     * @param profondeurMax La profondeur maximale des itérations.
+     * @param budgetMillis  Le temps alloué en millisecondes, ou 0 pour ne pas limiter le temps.
+     * @return Le résultat de la dernière itération terminée.
+     */
+    ResultatRecherche explorer(Position depart, int profondeurMax, long budgetMillis) {
+        position = depart;
+        statistiques.demarrer();
+        long maintenant = System.nanoTime();
+        echeance = budgetMillis > 0 ? maintenant + budgetMillis * 1_000_000L : Long.MAX_VALUE;
+        TraceurRecherche traceur = Metriques.getTraceur();
+
+        ListeCoups racine = listes[0];
+        int nbCoups = generateur.generer(position, racine);
+        statistiques.coupsGeneres(nbCoups);
+        if (nbCoups == 0) {
+            statistiques.terminer();
+            return new ResultatRecherche(Coup.AUCUN, 0, -MAT, 0, 0, statistiques.getDureeNanos());
+        }
+        int meilleur = 0;
+        int meilleurScore = -INFINI;
+        int limite = Math.min(profondeurMax, PROFONDEUR_MAX);
+        for (int profondeur = 1; profondeur <= limite; profondeur++) {
+            traceur.debutIteration(profondeur);
+            racine.echanger(0, meilleur);
+            meilleur = 0;
+            int alpha = -INFINI;
+            int meilleurIteration = -1;
+            for (int i = 0; i < nbCoups; i++) {
+                position.jouer(racine.getCoup(i), racine.getPrises(i));
+                int score = -negamax(profondeur - 1, 1, -INFINI, -alpha);
+                position.annuler();
+                if (arret) {
+                    break;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    meilleurIteration = i;
+                }
+            }
+            traceur.finIteration(profondeur, statistiques.getNoeuds(), alpha);
+            if (arret) {
+                // Les coups entièrement examinés avant l'arrêt, dont l'ancien meilleur, restent fiables.
+                if (meilleurIteration >= 0) {
+                    meilleur = meilleurIteration;
+                    meilleurScore = alpha;
+                }
+                break;
+            }
+            meilleur = meilleurIteration;
+            meilleurScore = alpha;
+            statistiques.setProfondeur(profondeur);
+            table.enregistrer(position.getCle(), profondeur, meilleurScore, TableTransposition.EXACT,
+                    racine.getCoup(meilleur));
+            if (nbCoups == 1 || Math.abs(meilleurScore) >= MAT - PROFONDEUR_MAX) {
+                break;
+            }
+        }
+        statistiques.terminer();
+        return new ResultatRecherche(racine.getCoup(meilleur), racine.getPrises(meilleur),
+                meilleurScore == -INFINI ? 0 : meilleurScore, statistiques.getProfondeur(),
+                statistiques.getNoeuds(), statistiques.getDureeNanos());
+    }
+
+    /**
+     * Demande l'arrêt de la recherche en cours. Peut être appelée depuis n'importe quel thread.
+     */
+    public void arreter() {
+        arret = true;
+    }
+
+    /**
+     * Retourne les statistiques de la dernière recherche.
+     *
+     * @return Les statistiques.
+     */
+    public StatistiquesRecherche getStatistiques() {
+        return statistiques;
+    }
+
+    /**
+     * Retourne la table de transposition utilisée.
+     *
+     * @return La table.
+     */
+    public TableTransposition getTable() {
+        return table;
+    }
+
+    /**
+     * Recherche alpha-bêta d'un nœud.
+     *
+     * @param profondeur La profondeur restante ; négative pendant les prolongations de prises.
+     * @param ply        La distance à la racine.
+     * @param alpha      La borne inférieure.
+     * @param beta       La borne supérieure.
+     * @return Le score du nœud, du point de vue du joueur au trait.
+     */
+    private int negamax(int profondeur, int ply, int alpha, int beta) {
+        statistiques.noeud();
+        if ((statistiques.getNoeuds() & INTERVALLE_HORLOGE) == 0 && System.nanoTime() > echeance) {
+            arret = true;
+        }
+        if (arret) {
+            return 0;
+        }
+        if (position.estRepetition()) {
+            return 0;
+        }
+        if (position.getPieces(position.getTrait()) == 0) {
+            return -MAT + ply;
+        }
+        if (ply >= PROFONDEUR_MAX) {
+            return evaluateur.evaluer(position);
+        }
+        if (profondeur <= 0) {
+            return prolonger(ply, alpha, beta);
+        }
+
+        long cle = position.getCle();
+        long entree = table.sonder(cle);
+        statistiques.sondage(entree != 0);
+        int coupTable = Coup.AUCUN;
+        if (entree != 0) {
+            coupTable = TableTransposition.getCoup(entree);
+            if (TableTransposition.getProfondeur(entree) >= Math.max(profondeur, 0)) {
+                int score = depuisTable(TableTransposition.getScore(entree), ply);
+                int type = TableTransposition.getType(entree);
+                if (type == TableTransposition.EXACT
+                        || type == TableTransposition.BORNE_INF && score >= beta
+                        || type == TableTransposition.BORNE_SUP && score <= alpha) {
+                    return score;
+                }
+            }
+        }
+
+        ListeCoups coups = listes[ply];
+        int nbCoups = generateur.generer(position, coups);
+        statistiques.coupsGeneres(nbCoups);
+        if (nbCoups == 0) {
+            return -MAT + ply;
+        }
+        if (coupTable != Coup.AUCUN) {
+            for (int i = 1; i < nbCoups; i++) {
+                if (coups.getCoup(i) == coupTable) {
+                    coups.echanger(0, i);
+                    break;
+                }
+            }
+        }
+
+        int alphaOrigine = alpha;
+        int meilleurScore = -INFINI;
+        int meilleurCoup = Coup.AUCUN;
+        for (int i = 0; i < nbCoups; i++) {
+            position.jouer(coups.getCoup(i), coups.getPrises(i));
+            int score = -negamax(profondeur - 1, ply + 1, -beta, -alpha);
+            position.annuler();
+            if (arret) {
+                return 0;
+            }
+            if (score > meilleurScore) {
+                meilleurScore = score;
+                meilleurCoup = coups.getCoup(i);
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        int type = meilleurScore <= alphaOrigine ? TableTransposition.BORNE_SUP
+                : meilleurScore >= beta ? TableTransposition.BORNE_INF : TableTransposition.EXACT;
+        table.enregistrer(cle, Math.max(profondeur, 0), versTable(meilleurScore, ply), type, meilleurCoup);
+        return meilleurScore;
+    }
+
+    /**
+     * Prolonge la recherche par les seules prises, au-delà de la profondeur demandée. Le joueur
+     * au trait n'étant jamais forcé de prendre, l'évaluation statique sert de borne inférieure.
+     *
+     * @param ply   La distance à la racine.
+     * @param alpha La borne inférieure.
+     * @param beta  La borne supérieure.
+     * @return Le score du nœud, du point de vue du joueur au trait.
+     */
+    private int prolonger(int ply, int alpha, int beta) {
+        int statique = evaluateur.evaluer(position);
+        if (statique >= beta || ply >= PROFONDEUR_MAX) {
+            return statique;
+        }
+        alpha = Math.max(alpha, statique);
+        ListeCoups prises = listes[ply];
+        int nbPrises = generateur.genererPrises(position, prises);
+        statistiques.coupsGeneres(nbPrises);
+        int meilleurScore = statique;
+        for (int i = 0; i < nbPrises; i++) {
+            position.jouer(prises.getCoup(i), prises.getPrises(i));
+            statistiques.noeud();
+            int score = position.getPieces(position.getTrait()) == 0 ? MAT - ply - 1
+                    : -prolonger(ply + 1, -beta, -alpha);
+            position.annuler();
+            if (arret) {
+                return 0;
+            }
+            if (score > meilleurScore) {
+                meilleurScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return meilleurScore;
+    }
+
+    /**
+     * Rend un score de gain indépendant de la distance à la racine avant de l'enregistrer.
+     *
+     * @param score Le score vu depuis la racine.
+     * @param ply   La distance à la racine.
+     * @return Le score vu depuis le nœud.
+     */
+    private static int versTable(int score, int ply) {
+        if (score >= MAT - PROFONDEUR_MAX) {
+            return score + ply;
+        }
+        if (score <= -MAT + PROFONDEUR_MAX) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    /**
+     * Ramène un score de gain lu dans la table à la distance courante de la racine.
+     *
+     * @param score Le score vu depuis le nœud.
+     * @param ply   La distance à la racine.
+     * @return Le score vu depuis la racine.
+     */
+    private static int depuisTable(int score, int ply) {
+        if (score >= MAT - PROFONDEUR_MAX) {
+            return score - ply;
+        }
+        if (score <= -MAT + PROFONDEUR_MAX) {
+            return score + ply;
+        }
+        return score;
+    }
+}
@@ -0,0 +1,254 @@
+package cstjean.mobile.dames.moteur;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Poids quantifiés d'un réseau d'évaluation à accumulateur incrémental (type NNUE).
+ *
+ * <p>Architecture : les entrées sont indexées par (type de pièce, case) du point de vue de
+ * chaque joueur, la case étant retournée pour les noirs. La première couche, en entiers de
+ * 16 bits, produit un accumulateur par point de vue ; les deux accumulateurs, joueur au trait
+ * d'abord, passent par une activation bornée à [0, 127] puis par une couche cachée et une
+ * couche de sortie en entiers de 8 bits. Toute l'inférence se fait en arithmétique entière.</p>
+ *
+ * <p>Format du fichier, en gros-boutiste : magique, nombre de cases, taille de l'accumulateur,
+ * taille de la couche cachée, décalage de la couche cachée et diviseur de sortie (six entiers),
+ * puis les poids et biais de la première couche (entiers de 16 bits), ceux de la couche
+ * cachée (poids de 8 bits, biais de 32 bits) et ceux de la sortie (idem).</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class ReseauNeuronal {
+    /**
+     * Nombre magique d'un fichier de poids : « DNN1 ».
+     */
+    public static final int MAGIQUE = 0x444E4E31;
+
+    /**
+     * Nombre de types de pièces d'un point de vue : pion du joueur, pion adverse,
+     * dame du joueur, dame adverse.
+     */
+    public static final int NB_TYPES = 4;
+
+    /**
+     * Borne supérieure des activations.
+     */
+    static final int ACTIVATION_MAX = 127;
+
+    /**
+     * Nombre de cases de la variante.
+     */
+    final int nbCases;
+
+    /**
+     * Taille de l'accumulateur d'un point de vue.
+     */
+    final int taille1;
+
+    /**
+     * Taille de la couche cachée.
+     */
+    final int taille2;
+
+    /**
+     * Décalage à droite appliqué aux sommes de la couche cachée.
+     */
+    final int decalage2;
+
+    /**
+     * Diviseur ramenant la sortie en centièmes de pion.
+     */
+    final int diviseurSortie;
+
+    /**
+     * Poids de la première couche, une ligne de {@link #taille1} valeurs par entrée.
+     */
+    final short[] poids1;
+
+    /**
+     * Biais de la première couche.
+     */
+    final short[] biais1;
+
+    /**
+     * Poids de la couche cachée, une ligne de 2 × {@link #taille1} valeurs par neurone.
+     */
+    final byte[] poids2;
+
+    /**
+     * Biais de la couche cachée.
+     */
+    final int[] biais2;
+
+    /**
+     * Poids de la sortie.
+     */
+    final byte[] poids3;
+
+    /**
+     * Biais de la sortie.
+     */
+    final int biais3;
+
+    /**
+     * Construit un réseau à partir de ses poids, qui ne sont pas copiés.
+     *
+     * @param nbCases        Le nombre de cases de la variante.
+     * @param poids1         Les poids de la première couche ({@code 4 × nbCases × taille1}).
+     * @param biais1         Les biais de la première couche ({@code taille1}).
+     * @param poids2         Les poids de la couche cachée ({@code taille2 × 2 × taille1}).
+     * @param biais2         Les biais de la couche cachée ({@code taille2}).
+     * @param poids3         Les poids de la sortie ({@code taille2}).
+     * @param biais3         Le biais de la sortie.
+     * @param decalage2      Le décalage à droite des sommes de la couche cachée.
+     * @param diviseurSortie Le diviseur ramenant la sortie en centièmes de pion.
+     */
+    public ReseauNeuronal(int nbCases, short[] poids1, short[] biais1, byte[] poids2, int[] biais2,
+                          byte[] poids3, int biais3, int decalage2, int diviseurSortie) {
+        this.nbCases = nbCases;
+        this.taille1 = biais1.length;
+        this.taille2 = biais2.length;
+        if (poids1.length != NB_TYPES * nbCases * taille1 || poids2.length != taille2 * 2 * taille1
+                || poids3.length != taille2 || diviseurSortie <= 0 || decalage2 < 0 || decalage2 > 31) {
+            throw new IllegalArgumentException("Dimensions du réseau incohérentes.");
+        }
+        this.poids1 = poids1;
+        this.biais1 = biais1;
+        this.poids2 = poids2;
+        this.biais2 = biais2;
+        this.poids3 = poids3;
+        this.biais3 = biais3;
+        this.decalage2 = decalage2;
+        this.diviseurSortie = diviseurSortie;
+    }
+
+    /**
+     * Lit un réseau depuis un flux, par exemple un fichier des ressources de l'application.
+     *
+     * @param flux Le flux, lu jusqu'au bout mais pas fermé.
+     * @return Le réseau.
+     * @throws IOException Si le flux ne peut pas être lu ou n'est pas un fichier de poids valide.
+     */
+    public static ReseauNeuronal charger(InputStream flux) throws IOException {
+        ByteArrayOutputStream contenu = new ByteArrayOutputStream();
+        byte[] bloc = new byte[8192];
+        for (int lus = flux.read(bloc); lus >= 0; lus = flux.read(bloc)) {
+            contenu.write(bloc, 0, lus);
+        }
+        try {
+            return charger(ByteBuffer.wrap(contenu.toByteArray()));
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            throw new IOException("Fichier de poids invalide.", e);
+        }
+    }
+
+    /**
+     * Lit un réseau depuis un tampon écrit par {@link #ecrire(ByteBuffer)}.
+     *
+     * @param tampon Le tampon source.
+     * @return Le réseau.
+     * @throws IllegalArgumentException Si l'en-tête est invalide ou annonce plus de poids que le tampon n'en contient.
+     */
+    public static ReseauNeuronal charger(ByteBuffer tampon) {
+        if (tampon.getInt() != MAGIQUE) {
+            throw new IllegalArgumentException("Ce n'est pas un fichier de poids.");
+        }
+        int nbCases = tampon.getInt();
+        int taille1 = tampon.getInt();
+        int taille2 = tampon.getInt();
+        int decalage2 = tampon.getInt();
+        int diviseurSortie = tampon.getInt();
+        // Chaque produit est borné par la taille du tampon avant de calculer la taille totale,
+        // pour qu'un en-tête corrompu ne fasse ni déborder les calculs ni allouer de tableau géant.
+        int reste = tampon.remaining();
+        if (nbCases <= 0 || taille1 <= 0 || taille2 <= 0
+                || (long) nbCases * taille1 > reste || (long) taille2 * taille1 > reste
+                || ((long) NB_TYPES * nbCases * taille1 + taille1) * Short.BYTES + 2L * taille2 * taille1
+                + (long) taille2 * (Integer.BYTES + 1) + Integer.BYTES > reste) {
+            throw new IllegalArgumentException("Dimensions du réseau invalides.");
+        }
+        short[] poids1 = new short[NB_TYPES * nbCases * taille1];
+        tampon.asShortBuffer().get(poids1);
+        tampon.position(tampon.position() + poids1.length * Short.BYTES);
+        short[] biais1 = new short[taille1];
+        tampon.asShortBuffer().get(biais1);
+        tampon.position(tampon.position() + biais1.length * Short.BYTES);
+        byte[] poids2 = new byte[taille2 * 2 * taille1];
+        tampon.get(poids2);
+        int[] biais2 = new int[taille2];
+        tampon.asIntBuffer().get(biais2);
+        tampon.position(tampon.position() + biais2.length * Integer.BYTES);
+        byte[] poids3 = new byte[taille2];
+        tampon.get(poids3);
+        int biais3 = tampon.getInt();
+        return new ReseauNeuronal(nbCases, poids1, biais1, poids2, biais2, poids3, biais3, decalage2,
+                diviseurSortie);
+    }
+
+    /**
+     * Retourne le nombre d'octets écrits par {@link #ecrire(ByteBuffer)}.
+     *
+     * @return La taille du fichier de poids.
+     */
+    public int getTailleOctets() {
+        return 6 * Integer.BYTES + (poids1.length + biais1.length) * Short.BYTES + poids2.length
+                + biais2.length * Integer.BYTES + poids3.length + Integer.BYTES;
+    }
+
+    /**
+     * Écrit le réseau dans le format lu par {@link #charger(ByteBuffer)}.
+     *
+     * @param tampon Le tampon de destination.
+     */
+    public void ecrire(ByteBuffer tampon) {
+        tampon.putInt(MAGIQUE).putInt(nbCases).putInt(taille1).putInt(taille2).putInt(decalage2)
+                .putInt(diviseurSortie);
+        tampon.asShortBuffer().put(poids1);
+        tampon.position(tampon.position() + poids1.length * Short.BYTES);
+        tampon.asShortBuffer().put(biais1);
+        tampon.position(tampon.position() + biais1.length * Short.BYTES);
+        tampon.put(poids2);
+        tampon.asIntBuffer().put(biais2);
+        tampon.position(tampon.position() + biais2.length * Integer.BYTES);
+        tampon.put(poids3);
+        tampon.putInt(biais3);
+    }
+
+    /**
+     * Retourne le nombre de cases de la variante du réseau.
+     *
+     * @return Le nombre de cases.
+     */
+    public int getNbCases() {
+        return nbCases;
+    }
+
+    /**
+     * Retourne la taille de l'accumulateur d'un point de vue.
+     *
+     * @return Le nombre de neurones de la première couche.
+     */
+    public int getTailleAccumulateur() {
+        return taille1;
+    }
+
+    /**
+     * Retourne l'indice d'une entrée du point de vue d'un joueur.
+     *
+     * @param perspective Le joueur ({@link Position#BLANC} ou {@link Position#NOIR}).
+     * @param numeroCase  La case, de 1 au nombre de cases.
+     * @param code        Le code de la pièce (0 pion blanc, 1 pion noir, 2 dame blanche, 3 dame noire).
+     * @return L'indice de l'entrée.
+     */
+    int entree(int perspective, int numeroCase, int code) {
+        if (perspective == Position.BLANC) {
+            return code * nbCases + numeroCase - 1;
+        }
+        // Du point de vue des noirs, le damier est retourné et les couleurs échangées.
+        return (code ^ 1) * nbCases + nbCases - numeroCase;
+    }
+}
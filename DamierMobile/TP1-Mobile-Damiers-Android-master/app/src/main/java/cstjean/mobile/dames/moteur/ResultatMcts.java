@@ -0,0 +1,130 @@
+package cstjean.mobile.dames.moteur;
+
+import cstjean.mobile.dames.damier.Coup;
+
+/**
+ * Résultat d'une recherche Monte-Carlo : coup le plus visité et statistiques des simulations.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class ResultatMcts {
+    /**
+     * Le coup le plus visité, ou {@link Coup#AUCUN} si la position n'a aucun coup.
+     */
+    private final int coup;
+
+    /**
+     * Le masque des pièces prises par ce coup.
+     */
+    private final long prises;
+
+    /**
+     * Le taux de gain estimé du coup pour le joueur au trait, entre 0 et 1.
+     */
+    private final double tauxGain;
+
+    /**
+     * Le nombre de visites du coup, tous arbres confondus.
+     */
+    private final long visites;
+
+    /**
+     * Le nombre total de simulations.
+     */
+    private final long nbSimulations;
+
+    /**
+     * La durée de la recherche, en nanosecondes.
+     */
+    private final long dureeNanos;
+
+    /**
+     * Construit un résultat.
+     *
+     * @param coup          Le coup le plus visité.
+     * @param prises        Les pièces prises par ce coup.
+     * @param tauxGain      Le taux de gain estimé.
+     * @param visites       Le nombre de visites du coup.
+     * @param nbSimulations Le nombre total de simulations.
+     * @param dureeNanos    La durée, en nanosecondes.
+     */
+    public ResultatMcts(int coup, long prises, double tauxGain, long visites, long nbSimulations,
+                        long dureeNanos) {
+        this.coup = coup;
+        this.prises = prises;
+        this.tauxGain = tauxGain;
+        this.visites = visites;
+        this.nbSimulations = nbSimulations;
+        this.dureeNanos = dureeNanos;
+    }
+
+    /**
+     * Retourne le coup le plus visité.
+     *
+     * @return Le coup encodé.
+     */
+    public int getCoup() {
+        return coup;
+    }
+
+    /**
+     * Retourne les pièces prises par le coup.
+     *
+     * @return Le masque des pièces prises.
+     */
+    public long getPrises() {
+        return prises;
+    }
+
+    /**
+     * Retourne le taux de gain estimé du coup pour le joueur au trait.
+     *
+     * @return Un taux entre 0 et 1 ; une nulle compte pour une demie.
+     */
+    public double getTauxGain() {
+        return tauxGain;
+    }
+
+    /**
+     * Retourne le nombre de visites du coup.
+     *
+     * @return Le nombre de visites.
+     */
+    public long getVisites() {
+        return visites;
+    }
+
+    /**
+     * Retourne le nombre total de simulations.
+     *
+     * @return Le nombre de simulations.
+     */
+    public long getNbSimulations() {
+        return nbSimulations;
+    }
+
+    /**
+     * Retourne la durée de la recherche.
+     *
+     * @return La durée, en nanosecondes.
+     */
+    public long getDureeNanos() {
+        return dureeNanos;
+    }
+
+    /**
+     * Retourne le débit de simulations, à comparer aux nœuds par seconde de {@link Recherche}.
+     *
+     * @return Le nombre de simulations par seconde.
+     */
+    public double getSimulationsParSeconde() {
+        return dureeNanos == 0 ? 0 : nbSimulations * 1e9 / dureeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return (coup == Coup.AUCUN ? "aucun coup" : Coup.notation(coup))
+                + String.format(" gain %.3f, %d visites, %d simulations (%.0f/s)",
+                tauxGain, visites, nbSimulations, getSimulationsParSeconde());
+    }
+}
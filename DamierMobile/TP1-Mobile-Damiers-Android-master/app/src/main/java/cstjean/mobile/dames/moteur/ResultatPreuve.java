@@ -0,0 +1,177 @@
+package cstjean.mobile.dames.moteur;
+
+import cstjean.mobile.dames.damier.Coup;
+
+/**
+ * Résultat d'une recherche de preuve : statut et, si le gain est prouvé, la ligne gagnante.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class ResultatPreuve {
+    /**
+     * Le joueur au trait gagne par force.
+     */
+    public static final int PROUVE = 0;
+
+    /**
+     * Le joueur au trait ne peut pas forcer le gain dans la limite de profondeur.
+     */
+    public static final int REFUTE = 1;
+
+    /**
+     * Le budget a été épuisé avant la preuve ou la réfutation.
+     */
+    public static final int INCONNU = 2;
+
+    /**
+     * Le statut : {@link #PROUVE}, {@link #REFUTE} ou {@link #INCONNU}.
+     */
+    private final int statut;
+
+    /**
+     * Les coups de la ligne gagnante, en alternance attaquant et défenseur.
+     */
+    private final int[] ligne;
+
+    /**
+     * Les pièces prises par chaque coup de la ligne.
+     */
+    private final long[] prises;
+
+    /**
+     * La ligne mène jusqu'à une position où le défenseur n'a plus de coup.
+     */
+    private final boolean ligneComplete;
+
+    /**
+     * Le nombre de nœuds développés.
+     */
+    private final long noeuds;
+
+    /**
+     * La durée de la recherche, en nanosecondes.
+     */
+    private final long dureeNanos;
+
+    /**
+     * Construit un résultat.
+     *
+     * @param statut     Le statut.
+     * @param ligne      Les coups de la ligne gagnante ; vide si le gain n'est pas prouvé.
+     * @param prises     Les pièces prises par chaque coup.
+     * @param noeuds     Le nombre de nœuds développés.
+     * @param dureeNanos La durée, en nanosecondes.
+     */
+    public ResultatPreuve(int statut, int[] ligne, long[] prises, long noeuds, long dureeNanos) {
+        this(statut, ligne, prises, true, noeuds, dureeNanos);
+    }
+
+    /**
+     * Construit un résultat dont la ligne gagnante peut être tronquée.
+     *
+     * @param statut        Le statut.
+     * @param ligne         Les coups de la ligne gagnante ; vide si le gain n'est pas prouvé.
+     * @param prises        Les pièces prises par chaque coup.
+     * @param ligneComplete false si la ligne a été tronquée faute de budget.
+     * @param noeuds        Le nombre de nœuds développés.
+     * @param dureeNanos    La durée, en nanosecondes.
+     */
+    public ResultatPreuve(int statut, int[] ligne, long[] prises, boolean ligneComplete, long noeuds,
+                          long dureeNanos) {
+        this.statut = statut;
+        this.ligne = ligne;
+        this.prises = prises;
+        this.ligneComplete = ligneComplete;
+        this.noeuds = noeuds;
+        this.dureeNanos = dureeNanos;
+    }
+
+    /**
+     * Retourne le statut de la recherche.
+     *
+     * @return {@link #PROUVE}, {@link #REFUTE} ou {@link #INCONNU}.
+     */
+    public int getStatut() {
+        return statut;
+    }
+
+    /**
+     * Indique si le gain est prouvé.
+     *
+     * @return true si le joueur au trait gagne par force.
+     */
+    public boolean estProuve() {
+        return statut == PROUVE;
+    }
+
+    /**
+     * Retourne la longueur de la ligne gagnante.
+     *
+     * @return Le nombre de demi-coups, 0 si le gain n'est pas prouvé.
+     */
+    public int getLongueur() {
+        return ligne.length;
+    }
+
+    /**
+     * Indique si la ligne gagnante va jusqu'au bout. Le gain reste prouvé quand elle est
+     * tronquée : seule sa reconstitution, qui redéveloppe les positions évincées de la table,
+     * a manqué de budget.
+     *
+     * @return true si la ligne mène à une position où le défenseur n'a plus de coup.
+     */
+    public boolean estLigneComplete() {
+        return ligneComplete;
+    }
+
+    /**
+     * Retourne un coup de la ligne gagnante.
+     *
+     * @param index L'indice du demi-coup.
+     * @return Le coup encodé.
+     */
+    public int getCoup(int index) {
+        return ligne[index];
+    }
+
+    /**
+     * Retourne les pièces prises par un coup de la ligne gagnante.
+     *
+     * @param index L'indice du demi-coup.
+     * @return Le masque des pièces prises.
+     */
+    public long getPrises(int index) {
+        return prises[index];
+    }
+
+    /**
+     * Retourne le nombre de nœuds développés.
+     *
+     * @return Le nombre de nœuds.
+     */
+    public long getNoeuds() {
+        return noeuds;
+    }
+
+    /**
+     * Retourne la durée de la recherche.
+     *
+     * @return La durée, en nanosecondes.
+     */
+    public long getDureeNanos() {
+        return dureeNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder texte = new StringBuilder(statut == PROUVE ? "gain prouvé :"
+                : statut == REFUTE ? "pas de gain forcé" : "non prouvé dans le budget");
+        for (int coup : ligne) {
+            texte.append(' ').append(Coup.notation(coup));
+        }
+        if (!ligneComplete) {
+            texte.append(" … (ligne tronquée)");
+        }
+        return texte.append(" (").append(noeuds).append(" nœuds)").toString();
+    }
+}
@@ -0,0 +1,119 @@
+package cstjean.mobile.dames.moteur;
+
+import cstjean.mobile.dames.damier.Coup;
+
+/**
+ * Résultat d'une recherche : meilleur coup, score et statistiques.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class ResultatRecherche {
+    /**
+     * Le meilleur coup trouvé, ou {@link Coup#AUCUN} si la position n'a aucun coup.
+     */
+    private final int coup;
+
+    /**
+     * Le masque des pièces prises par le meilleur coup.
+     */
+    private final long prises;
+
+    /**
+     * Le score du meilleur coup, du point de vue du joueur au trait.
+     */
+    private final int score;
+
+    /**
+     * La profondeur complète atteinte.
+     */
+    private final int profondeur;
+
+    /**
+     * Le nombre de nœuds visités.
+     */
+    private final long noeuds;
+
+    /**
+     * La durée de la recherche, en nanosecondes.
+     */
+    private final long dureeNanos;
+
+    /**
+     * Construit un résultat.
+     *
+     * @param coup       Le meilleur coup.
+     * @param prises     Les pièces prises par le meilleur coup.
+     * @param score      Le score.
+     * @param profondeur La profondeur atteinte.
+     * @param noeuds     Le nombre de nœuds visités.
+     * @param dureeNanos La durée, en nanosecondes.
+     */
+    public ResultatRecherche(int coup, long prises, int score, int profondeur, long noeuds, long dureeNanos) {
+        this.coup = coup;
+        this.prises = prises;
+        this.score = score;
+        this.profondeur = profondeur;
+        this.noeuds = noeuds;
+        this.dureeNanos = dureeNanos;
+    }
+
+    /**
+     * Retourne le meilleur coup.
+     *
+     * @return Le coup encodé, ou {@link Coup#AUCUN}.
+     */
+    public int getCoup() {
+        return coup;
+    }
+
+    /**
+     * Retourne les pièces prises par le meilleur coup.
+     *
+     * @return Le masque des pièces prises.
+     */
+    public long getPrises() {
+        return prises;
+    }
+
+    /**
+     * Retourne le score du meilleur coup.
+     *
+     * @return Le score, du point de vue du joueur au trait.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Retourne la profondeur complète atteinte.
+     *
+     * @return La profondeur.
+     */
+    public int getProfondeur() {
+        return profondeur;
+    }
+
+    /**
+     * Retourne le nombre de nœuds visités.
+     *
+     * @return Le nombre de nœuds.
+     */
+    public long getNoeuds() {
+        return noeuds;
+    }
+
+    /**
+     * Retourne la durée de la recherche.
+     *
+     * @return La durée, en nanosecondes.
+     */
+    public long getDureeNanos() {
+        return dureeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return (coup == Coup.AUCUN ? "aucun coup" : Coup.notation(coup)) + " score=" + score
+                + " profondeur=" + profondeur + " noeuds=" + noeuds;
+    }
+}
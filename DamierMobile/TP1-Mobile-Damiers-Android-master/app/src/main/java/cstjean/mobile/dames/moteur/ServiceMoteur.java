@@ -0,0 +1,268 @@
+package cstjean.mobile.dames.moteur;
+
+import cstjean.mobile.dames.damier.InstantanePartie;
+import cstjean.mobile.dames.damier.Variante;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Exécute les recherches du moteur sur un thread d'arrière-plan dédié.
+ *
+ * <p>Une seule recherche tourne à la fois : en lancer une nouvelle annule la précédente.
+ * Chaque recherche travaille sur sa propre copie de la position et dispose d'un budget
+ * de temps ; son résultat est remis par l'exécuteur de rappel fourni à la construction
+ * (sur Android, le {@code Handler} du thread principal), sauf si elle a été annulée entre-temps.</p>
+ *
+ * <p>Pendant que l'humain réfléchit, {@link #ponderer(Position)} explore sa position sans
+ * limite de temps, ou {@link #ponderer(InstantanePartie, long)} dans un budget donné : la table
+ * de transposition, partagée par toutes les recherches du service, est ainsi déjà remplie quand
+ * la recherche suivante démarre.</p>
+ *
+ * <p>Les requêtes peuvent aussi porter sur un {@link InstantanePartie} : il est immuable,
+ * donc c'est le thread d'arrière-plan qui le copie dans sa propre position de travail,
+ * sans allocation.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public class ServiceMoteur {
+    /**
+     * Taille de la table de transposition : 2^18 entrées de 16 octets.
+     */
+    private static final int LOG2_TAILLE_TABLE = 18;
+
+    /**
+     * Reçoit le résultat d'une recherche, sur le thread de l'exécuteur de rappel.
+     */
+    public interface Rappel {
+        /**
+         * Appelé quand une recherche non annulée se termine.
+         *
+         * @param resultat Le résultat de la recherche.
+         */
+        void resultat(ResultatRecherche resultat);
+    }
+
+    /**
+     * Thread d'arrière-plan exécutant les recherches.
+     */
+    private final ExecutorService executeur = Executors.newSingleThreadExecutor(tache -> {
+        Thread thread = new Thread(tache, "moteur-dames");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    /**
+     * Exécuteur recevant les rappels.
+     */
+    private final Executor rappels;
+
+    /**
+     * Recherche utilisée par le thread d'arrière-plan.
+     */
+    private final Recherche recherche;
+
+    /**
+     * Position dans laquelle le thread d'arrière-plan copie les instantanés reçus.
+     */
+    private final Position positionTravail;
+
+    /**
+     * La variante jouée.
+     */
+    private final Variante variante;
+
+    /**
+     * Numéro de la requête courante ; une requête dont le numéro n'est plus courant est annulée.
+     */
+    private volatile int generation;
+
+    /**
+     * Tâche de la requête courante.
+     */
+    private Future<?> tache;
+
+    /**
+     * Construit un service pour une variante.
+     *
+     * @param variante La variante jouée.
+     * @param rappels  L'exécuteur sur lequel les résultats sont remis.
+     */
+    public ServiceMoteur(Variante variante, Executor rappels) {
+        this(variante, rappels, EvaluationClassique.getParametresDefaut());
+    }
+
+    /**
+     * Construit un service dont l'évaluation utilise des paramètres réglés.
+     *
+     * @param variante   La variante jouée.
+     * @param rappels    L'exécuteur sur lequel les résultats sont remis.
+     * @param parametres Les paramètres de l'évaluation classique (voir
+     *                   {@link EvaluationClassique#chargerParametres(java.io.InputStream)}).
+     */
+    public ServiceMoteur(Variante variante, Executor rappels, int[] parametres) {
+        this.variante = variante;
+        this.rappels = rappels;
+        this.recherche = new Recherche(variante, new EvaluationClassique(variante, parametres),
+                new TableTransposition(LOG2_TAILLE_TABLE));
+        this.positionTravail = new Position(variante);
+    }
+
+    /**
+     * Lance la recherche du meilleur coup d'une position, en annulant la requête en cours.
+     *
+     * @param position      La position ; elle est copiée et peut être modifiée dès le retour.
+     * @param profondeurMax La profondeur maximale.
+     * @param budgetMillis  Le temps alloué, en millisecondes.
+     * @param rappel        Le destinataire du résultat.
+     */
+    public synchronized void chercher(Position position, int profondeurMax, long budgetMillis, Rappel rappel) {
+        lancer(copier(position), null, profondeurMax, budgetMillis, rappel);
+    }
+
+    /**
+     * Lance la recherche du meilleur coup d'un instantané de partie, en annulant la requête en cours.
+     * L'instantané est copié dans la position de travail sur le thread d'arrière-plan.
+     *
+     * @param instantane    L'instantané publié par la partie.
+     * @param profondeurMax La profondeur maximale.
+     * @param budgetMillis  Le temps alloué, en millisecondes.
+     * @param rappel        Le destinataire du résultat.
+     */
+    public synchronized void chercher(InstantanePartie instantane, int profondeurMax, long budgetMillis,
+                                      Rappel rappel) {
+        lancer(null, instantane, profondeurMax, budgetMillis, rappel);
+    }
+
+    /**
+     * Explore une position sans limite de temps ni rappel, jusqu'à la prochaine requête ou annulation.
+     *
+     * @param position La position où l'humain est au trait ; elle est copiée.
+     */
+    public synchronized void ponderer(Position position) {
+        lancer(copier(position), null, Recherche.PROFONDEUR_MAX, 0, null);
+    }
+
+    /**
+     * Explore un instantané de partie sans limite de temps ni rappel, jusqu'à la prochaine
+     * requête ou annulation.
+     *
+     * @param instantane L'instantané où l'humain est au trait.
+     */
+    public synchronized void ponderer(InstantanePartie instantane) {
+        ponderer(instantane, 0);
+    }
+
+    /**
+     * Explore un instantané de partie sans rappel, jusqu'à épuisement du budget ou jusqu'à la
+     * prochaine requête ou annulation. Un joueur qui laisse l'application ouverte sans jouer
+     * n'occupe ainsi pas un cœur indéfiniment.
+     *
+     * @param instantane   L'instantané où l'humain est au trait.
+     * @param budgetMillis Le temps alloué, en millisecondes ; 0 pour aucune limite.
+     */
+    public synchronized void ponderer(InstantanePartie instantane, long budgetMillis) {
+        lancer(null, instantane, Recherche.PROFONDEUR_MAX, budgetMillis, null);
+    }
+
+    /**
+     * Annule la requête en cours ; son rappel ne sera pas appelé.
+     */
+    public synchronized void annuler() {
+        annulerRequete();
+    }
+
+    /**
+     * Annule la requête en cours et arrête le thread d'arrière-plan. Le service ne peut plus servir.
+     */
+    public synchronized void fermer() {
+        annulerRequete();
+        executeur.shutdownNow();
+    }
+
+    /**
+     * Retourne la variante jouée.
+     *
+     * @return La variante.
+     */
+    public Variante getVariante() {
+        return variante;
+    }
+
+    /**
+     * Annule la requête courante et en ouvre une nouvelle.
+     *
+     * @return Le numéro de la nouvelle requête.
+     */
+    private int annulerRequete() {
+        generation++;
+        if (tache != null) {
+            tache.cancel(false);
+            recherche.arreter();
+            tache = null;
+        }
+        return generation;
+    }
+
+    /**
+     * Prépare la recherche d'une requête, sous le verrou du service : une annulation
+     * ne peut donc pas survenir entre la vérification de la requête et l'armement.
+     *
+     * @param requete Le numéro de la requête.
+     * @return false si la requête a été annulée avant de démarrer.
+     */
+    private synchronized boolean armer(int requete) {
+        if (requete != generation) {
+            return false;
+        }
+        recherche.armer();
+        return true;
+    }
+
+    /**
+     * Soumet une requête au thread d'arrière-plan, en annulant la requête en cours.
+     *
+     * @param copie         Une copie de la position à explorer, ou null pour partir de l'instantané.
+     * @param instantane    L'instantané à copier dans la position de travail si la copie est absente.
+     * @param profondeurMax La profondeur maximale.
+     * @param budgetMillis  Le temps alloué, en millisecondes ; 0 pour aucune limite.
+     * @param rappel        Le destinataire du résultat, ou null pour ne rien remettre.
+     */
+    private void lancer(final Position copie, final InstantanePartie instantane, final int profondeurMax,
+                        final long budgetMillis, final Rappel rappel) {
+        final int requete = annulerRequete();
+        tache = executeur.submit(() -> {
+            if (!armer(requete)) {
+                return;
+            }
+            Position position = copie;
+            if (position == null) {
+                positionTravail.copier(instantane);
+                position = positionTravail;
+            }
+            final ResultatRecherche resultat = recherche.explorer(position, profondeurMax, budgetMillis);
+            if (rappel != null && requete == generation) {
+                rappels.execute(() -> {
+                    // Une annulation a pu survenir pendant le transfert vers le thread de rappel.
+                    if (requete == generation) {
+                        rappel.resultat(resultat);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Copie une position pour le thread d'arrière-plan.
+     *
+     * @param position La position.
+     * @return Une copie indépendante.
+     */
+    private Position copier(Position position) {
+        Position copie = new Position(position.getVariante());
+        copie.copier(position);
+        return copie;
+    }
+}
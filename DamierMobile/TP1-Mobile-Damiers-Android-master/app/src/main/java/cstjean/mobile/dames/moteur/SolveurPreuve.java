@@ -0,0 +1,417 @@
+package cstjean.mobile.dames.moteur;
+
+import cstjean.mobile.dames.damier.InstantanePartie;
+import cstjean.mobile.dames.damier.Variante;
+import java.util.Arrays;
+
+/**
+ * Solveur de problèmes « les blancs jouent et gagnent » par nombres de preuve en profondeur
+ * d'abord (df-pn).
+ *
+ * <p>Le joueur au trait à la racine est l'attaquant ; il gagne quand son adversaire n'a plus
+ * de coup. Chaque position porte un nombre de preuve (pn) et un nombre de réfutation (dn) :
+ * le solveur descend toujours vers la position la plus facile à prouver ou à réfuter, sous
+ * des seuils qui lui évitent de remonter à la racine entre deux développements. Les
+ * combinaisons, où le défenseur n'a que peu de coups utiles, se prouvent ainsi en visitant
+ * très peu de nœuds.</p>
+ *
+ * <p>Les nombres sont conservés dans une table de taille fixe, par paquets de deux entrées :
+ * en cas de collision, l'entrée ayant coûté le moins de travail est remplacée. Une répétition
+ * ou la limite de profondeur comptent comme un échec de l'attaquant ; une réfutation ne vaut
+ * donc que dans cette limite.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class SolveurPreuve {
+    /**
+     * Profondeur maximale par défaut, en demi-coups.
+     */
+    public static final int PROFONDEUR_DEFAUT = 60;
+
+    /**
+     * Nombre maximal de nœuds quand aucun budget n'est donné. Une table trop petite peut
+     * évincer un enfant aussitôt développé : sans cette limite, son parent le redévelopperait
+     * indéfiniment.
+     */
+    public static final long LIMITE_NOEUDS = 50_000_000;
+
+    /**
+     * Valeur infinie des nombres de preuve ; les sommes sont saturées à cette valeur.
+     */
+    private static final int INFINI = Integer.MAX_VALUE / 4;
+
+    /**
+     * L'horloge est consultée tous les 1024 nœuds.
+     */
+    private static final int INTERVALLE_HORLOGE = 1023;
+
+    /**
+     * Générateur des coups.
+     */
+    private final GenerateurCoups generateur;
+
+    /**
+     * Listes de coups préallouées, une par demi-coup de profondeur.
+     */
+    private final ListeCoups[] listes;
+
+    /**
+     * Profondeur maximale des lignes examinées.
+     */
+    private final int profondeurMax;
+
+    /**
+     * Clés des entrées de la table.
+     */
+    private final long[] cles;
+
+    /**
+     * Nombre de preuve de chaque entrée.
+     */
+    private final int[] pns;
+
+    /**
+     * Nombre de réfutation de chaque entrée.
+     */
+    private final int[] dns;
+
+    /**
+     * Nombre de nœuds développés sous chaque entrée, pour choisir l'entrée remplacée.
+     */
+    private final int[] travaux;
+
+    /**
+     * Masque ramenant une clé au premier indice de son paquet.
+     */
+    private final int masque;
+
+    /**
+     * Position explorée.
+     */
+    private Position position;
+
+    /**
+     * Joueur cherchant à gagner.
+     */
+    private int attaquant;
+
+    /**
+     * Nombre de nœuds développés.
+     */
+    private long noeuds;
+
+    /**
+     * Nombre maximal de nœuds de la recherche courante.
+     */
+    private long limiteNoeuds;
+
+    /**
+     * Échéance de la recherche courante, en nanosecondes.
+     */
+    private long echeance;
+
+    /**
+     * Le budget est épuisé.
+     */
+    private boolean arret;
+
+    /**
+     * La dernière ligne extraite mène à une position où le défenseur n'a plus de coup.
+     */
+    private boolean ligneComplete;
+
+    /**
+     * Construit un solveur.
+     *
+     * @param variante      La variante jouée.
+     * @param log2Taille    Le logarithme en base 2 du nombre d'entrées de la table.
+     * @param profondeurMax La profondeur maximale des lignes, en demi-coups.
+     */
+    public SolveurPreuve(Variante variante, int log2Taille, int profondeurMax) {
+        this.generateur = new GenerateurCoups(variante);
+        this.profondeurMax = profondeurMax;
+        this.listes = new ListeCoups[profondeurMax + 1];
+        for (int i = 0; i < listes.length; i++) {
+            listes[i] = new ListeCoups();
+        }
+        int taille = 1 << log2Taille;
+        cles = new long[taille];
+        pns = new int[taille];
+        dns = new int[taille];
+        travaux = new int[taille];
+        masque = (taille - 1) & ~1;
+    }
+
+    /**
+     * Cherche un gain forcé pour le joueur au trait d'un instantané de partie.
+     *
+     * @param instantane   La position.
+     * @param budgetNoeuds Le nombre maximal de nœuds développés, ou 0 pour {@link #LIMITE_NOEUDS}.
+     * @param budgetMillis Le temps alloué en millisecondes, ou 0 pour ne pas le limiter.
+     * @return Le statut et, si le gain est prouvé, la ligne gagnante.
+     */
+    public ResultatPreuve resoudre(InstantanePartie instantane, long budgetNoeuds, long budgetMillis) {
+        return resoudre(Position.depuis(instantane), budgetNoeuds, budgetMillis);
+    }
+
+    /**
+     * Cherche un gain forcé pour le joueur au trait.
+     *
+     * @param depart       La position ; elle est explorée sur place et restaurée à la fin.
+     * @param budgetNoeuds Le nombre maximal de nœuds développés, ou 0 pour {@link #LIMITE_NOEUDS}.
+     * @param budgetMillis Le temps alloué en millisecondes, ou 0 pour ne pas le limiter.
+     * @return Le statut et, si le gain est prouvé, la ligne gagnante.
+     */
+    public ResultatPreuve resoudre(Position depart, long budgetNoeuds, long budgetMillis) {
+        long debut = System.nanoTime();
+        position = depart;
+        attaquant = depart.getTrait();
+        noeuds = 0;
+        limiteNoeuds = budgetNoeuds > 0 ? budgetNoeuds : LIMITE_NOEUDS;
+        echeance = budgetMillis > 0 ? debut + budgetMillis * 1_000_000L : Long.MAX_VALUE;
+        arret = false;
+        vider();
+
+        long cle = position.getCle();
+        developper(0, INFINI, INFINI);
+        int statut = ResultatPreuve.INCONNU;
+        int[] ligne = new int[0];
+        long[] prises = new long[0];
+        boolean complete = true;
+        int index = trouver(cle);
+        if (!arret && index >= 0 && pns[index] == 0) {
+            statut = ResultatPreuve.PROUVE;
+            ligne = new int[profondeurMax];
+            prises = new long[profondeurMax];
+            int longueur = extraireLigne(ligne, prises);
+            ligne = Arrays.copyOf(ligne, longueur);
+            prises = Arrays.copyOf(prises, longueur);
+            complete = ligneComplete;
+        } else if (!arret && index >= 0 && dns[index] == 0) {
+            statut = ResultatPreuve.REFUTE;
+        }
+        return new ResultatPreuve(statut, ligne, prises, complete, noeuds, System.nanoTime() - debut);
+    }
+
+    /**
+     * Développe une position jusqu'à ce que son nombre de preuve ou de réfutation atteigne
+     * son seuil, puis l'enregistre dans la table.
+     *
+     * @param ply     La distance à la racine.
+     * @param seuilPn Le seuil du nombre de preuve.
+     * @param seuilDn Le seuil du nombre de réfutation.
+     */
+    private void developper(int ply, int seuilPn, int seuilDn) {
+        noeuds++;
+        if ((noeuds & INTERVALLE_HORLOGE) == 0 && System.nanoTime() > echeance || noeuds > limiteNoeuds) {
+            arret = true;
+        }
+        if (arret) {
+            return;
+        }
+        long cle = position.getCle();
+        boolean ou = position.getTrait() == attaquant;
+        ListeCoups coups = listes[ply];
+        int nbCoups = generateur.generer(position, coups);
+        if (nbCoups == 0) {
+            // Le joueur au trait a perdu.
+            enregistrer(cle, ou ? INFINI : 0, ou ? 0 : INFINI, 1);
+            return;
+        }
+        if (ply >= profondeurMax) {
+            enregistrer(cle, INFINI, 0, 1);
+            return;
+        }
+        long noeudsDebut = noeuds;
+        while (true) {
+            int pn = ou ? INFINI : 0;
+            int dn = ou ? 0 : INFINI;
+            int meilleur = -1;
+            int meilleurPn = 0;
+            int meilleurDn = 0;
+            int second = INFINI;
+            for (int i = 0; i < nbCoups; i++) {
+                long valeurs = lireEnfant(coups, i);
+                int enfantPn = (int) (valeurs >>> 32);
+                int enfantDn = (int) valeurs;
+                // À un nœud OU, on descend vers le plus petit pn ; à un nœud ET, vers le plus petit dn.
+                int critere = ou ? enfantPn : enfantDn;
+                if (meilleur < 0 || critere < (ou ? meilleurPn : meilleurDn)) {
+                    if (meilleur >= 0) {
+                        second = ou ? meilleurPn : meilleurDn;
+                    }
+                    meilleur = i;
+                    meilleurPn = enfantPn;
+                    meilleurDn = enfantDn;
+                } else if (critere < second) {
+                    second = critere;
+                }
+                if (ou) {
+                    pn = Math.min(pn, enfantPn);
+                    dn = Math.min(INFINI, dn + enfantDn);
+                } else {
+                    pn = Math.min(INFINI, pn + enfantPn);
+                    dn = Math.min(dn, enfantDn);
+                }
+            }
+            if (pn >= seuilPn || dn >= seuilDn || arret) {
+                if (!arret) {
+                    enregistrer(cle, pn, dn, (int) Math.min(Integer.MAX_VALUE, noeuds - noeudsDebut + 1));
+                }
+                return;
+            }
+            int enfantSeuilPn;
+            int enfantSeuilDn;
+            if (ou) {
+                enfantSeuilPn = Math.min(seuilPn, second + 1);
+                enfantSeuilDn = seuilDn - dn + meilleurDn;
+            } else {
+                enfantSeuilPn = seuilPn - pn + meilleurPn;
+                enfantSeuilDn = Math.min(seuilDn, second + 1);
+            }
+            position.jouer(coups.getCoup(meilleur), coups.getPrises(meilleur));
+            developper(ply + 1, enfantSeuilPn, enfantSeuilDn);
+            position.annuler();
+        }
+    }
+
+    /**
+     * Lit les nombres d'un enfant : ceux de la table, (1, 1) s'il est inconnu, ou une
+     * réfutation s'il répète une position de la ligne.
+     *
+     * @param coups La liste des coups du parent.
+     * @param index L'indice du coup menant à l'enfant.
+     * @return Le nombre de preuve dans les 32 bits de poids fort, celui de réfutation dans les autres.
+     */
+    private long lireEnfant(ListeCoups coups, int index) {
+        position.jouer(coups.getCoup(index), coups.getPrises(index));
+        long valeurs;
+        if (position.estRepetition()) {
+            valeurs = (long) INFINI << 32;
+        } else {
+            int entree = trouver(position.getCle());
+            valeurs = entree < 0 ? 1L << 32 | 1 : (long) pns[entree] << 32 | dns[entree];
+        }
+        position.annuler();
+        return valeurs;
+    }
+
+    /**
+     * Reconstitue la ligne gagnante à partir de la table. Une position dont les enfants ont
+     * été évincés de la table est prouvée à nouveau ; si le budget ne le permet plus, la ligne
+     * s'arrête là et {@link #ligneComplete} reste faux.
+     *
+     * @param ligne  Les coups de la ligne, remplis.
+     * @param prises Les pièces prises par chaque coup, remplies.
+     * @return La longueur de la ligne.
+     */
+    private int extraireLigne(int[] ligne, long[] prises) {
+        int longueur = 0;
+        ligneComplete = false;
+        while (longueur < profondeurMax) {
+            ListeCoups coups = listes[longueur];
+            int nbCoups = generateur.generer(position, coups);
+            if (nbCoups == 0) {
+                ligneComplete = true;
+                break;
+            }
+            int choix = choisir(coups, nbCoups);
+            if (choix < 0) {
+                developper(longueur, INFINI, INFINI);
+                generateur.generer(position, coups);
+                choix = choisir(coups, nbCoups);
+                if (choix < 0) {
+                    break;
+                }
+            }
+            ligne[longueur] = coups.getCoup(choix);
+            prises[longueur] = coups.getPrises(choix);
+            position.jouer(ligne[longueur], prises[longueur]);
+            longueur++;
+        }
+        for (int i = 0; i < longueur; i++) {
+            position.annuler();
+        }
+        return longueur;
+    }
+
+    /**
+     * Choisit le coup de la ligne gagnante : pour l'attaquant, un coup prouvé ; pour le
+     * défenseur, celui dont la preuve a coûté le plus de travail, donc la plus longue résistance.
+     *
+     * @param coups   Les coups de la position.
+     * @param nbCoups Le nombre de coups.
+     * @return L'indice du coup, ou -1 si un enfant nécessaire manque dans la table.
+     */
+    private int choisir(ListeCoups coups, int nbCoups) {
+        boolean ou = position.getTrait() == attaquant;
+        int choix = -1;
+        int travailChoix = -1;
+        for (int i = 0; i < nbCoups; i++) {
+            position.jouer(coups.getCoup(i), coups.getPrises(i));
+            int entree = trouver(position.getCle());
+            position.annuler();
+            boolean prouve = entree >= 0 && pns[entree] == 0;
+            if (ou && prouve) {
+                return i;
+            }
+            if (!ou) {
+                if (!prouve) {
+                    return -1;
+                }
+                if (travaux[entree] > travailChoix) {
+                    choix = i;
+                    travailChoix = travaux[entree];
+                }
+            }
+        }
+        return choix;
+    }
+
+    /**
+     * Cherche une position dans la table.
+     *
+     * @param cle La clé de la position.
+     * @return L'indice de l'entrée, ou -1 si la position est absente.
+     */
+    private int trouver(long cle) {
+        int index = (int) cle & masque;
+        if (cles[index] == cle) {
+            return index;
+        }
+        return cles[index + 1] == cle ? index + 1 : -1;
+    }
+
+    /**
+     * Enregistre les nombres d'une position. Si son paquet est plein, l'entrée ayant coûté
+     * le moins de travail est remplacée.
+     *
+     * @param cle     La clé de la position.
+     * @param pn      Le nombre de preuve.
+     * @param dn      Le nombre de réfutation.
+     * @param travail Le nombre de nœuds développés sous la position.
+     */
+    private void enregistrer(long cle, int pn, int dn, int travail) {
+        int index = trouver(cle);
+        if (index < 0) {
+            index = (int) cle & masque;
+            if (travaux[index + 1] < travaux[index]) {
+                index++;
+            }
+        } else {
+            travail = Math.max(travail, travaux[index]);
+        }
+        cles[index] = cle;
+        pns[index] = pn;
+        dns[index] = dn;
+        travaux[index] = travail;
+    }
+
+    /**
+     * Vide la table.
+     */
+    private void vider() {
+        Arrays.fill(cles, 0);
+        Arrays.fill(travaux, 0);
+    }
+}
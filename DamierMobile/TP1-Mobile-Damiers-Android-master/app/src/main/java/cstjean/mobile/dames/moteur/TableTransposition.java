@@ -0,0 +1,150 @@
+package cstjean.mobile.dames.moteur;
+
+import cstjean.mobile.dames.damier.Coup;
+import java.util.Arrays;
+
+/**
+ * Table de transposition à adressage direct, dans deux tableaux primitifs.
+ *
+ * <p>Chaque entrée tient dans un mot de 64 bits : score (16 bits), profondeur (8 bits),
+ * type de borne (2 bits), meilleur coup (20 bits) et un bit de présence. La clé est
+ * enregistrée combinée par ou exclusif avec ce mot : une écriture concurrente à moitié
+ * faite ne passe pas la vérification de la clé, ce qui permet de partager la table entre
+ * plusieurs threads sans verrou.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class TableTransposition {
+    /**
+     * Le score enregistré est exact.
+     */
+    public static final int EXACT = 0;
+
+    /**
+     * Le score enregistré est une borne inférieure (coupure bêta).
+     */
+    public static final int BORNE_INF = 1;
+
+    /**
+     * Le score enregistré est une borne supérieure (aucun coup n'a dépassé alpha).
+     */
+    public static final int BORNE_SUP = 2;
+
+    /**
+     * Bit marquant une entrée occupée, pour qu'une entrée ne vaille jamais 0.
+     */
+    private static final long PRESENT = 1L << 63;
+
+    /**
+     * Décalage ramenant les scores à des valeurs positives sur 16 bits.
+     */
+    private static final int DECALAGE_SCORE = 1 << 15;
+
+    /**
+     * Clés combinées avec les données.
+     */
+    private final long[] cles;
+
+    /**
+     * Données des entrées.
+     */
+    private final long[] donnees;
+
+    /**
+     * Masque ramenant une clé à un indice.
+     */
+    private final int masque;
+
+    /**
+     * Construit une table vide.
+     *
+     * @param log2Taille Le logarithme en base 2 du nombre d'entrées.
+     */
+    public TableTransposition(int log2Taille) {
+        cles = new long[1 << log2Taille];
+        donnees = new long[1 << log2Taille];
+        masque = (1 << log2Taille) - 1;
+    }
+
+    /**
+     * Cherche une position dans la table.
+     *
+     * @param cle La clé de la position.
+     * @return Les données de l'entrée, ou 0 si la position est absente.
+     */
+    public long sonder(long cle) {
+        int index = (int) cle & masque;
+        long entree = donnees[index];
+        return (cles[index] ^ entree) == cle ? entree : 0;
+    }
+
+    /**
+     * Enregistre le résultat de la recherche d'une position. Une entrée plus profonde
+     * d'une même position est conservée.
+     *
+     * @param cle        La clé de la position.
+     * @param profondeur La profondeur de recherche.
+     * @param score      Le score.
+     * @param type       {@link #EXACT}, {@link #BORNE_INF} ou {@link #BORNE_SUP}.
+     * @param coup       Le meilleur coup, ou {@link Coup#AUCUN}.
+     */
+    public void enregistrer(long cle, int profondeur, int score, int type, int coup) {
+        int index = (int) cle & masque;
+        long ancienne = donnees[index];
+        if ((cles[index] ^ ancienne) == cle && getProfondeur(ancienne) > profondeur) {
+            return;
+        }
+        long entree = PRESENT | (score + DECALAGE_SCORE) | (long) profondeur << 16 | (long) type << 24
+                | (long) coup << 26;
+        donnees[index] = entree;
+        cles[index] = cle ^ entree;
+    }
+
+    /**
+     * Vide la table.
+     */
+    public void vider() {
+        Arrays.fill(cles, 0);
+        Arrays.fill(donnees, 0);
+    }
+
+    /**
+     * Extrait le score d'une entrée.
+     *
+     * @param entree Les données de l'entrée.
+     * @return Le score.
+     */
+    public static int getScore(long entree) {
+        return (int) (entree & 0xFFFF) - DECALAGE_SCORE;
+    }
+
+    /**
+     * Extrait la profondeur d'une entrée.
+     *
+     * @param entree Les données de l'entrée.
+     * @return La profondeur.
+     */
+    public static int getProfondeur(long entree) {
+        return (int) (entree >>> 16 & 0xFF);
+    }
+
+    /**
+     * Extrait le type de borne d'une entrée.
+     *
+     * @param entree Les données de l'entrée.
+     * @return Le type de borne.
+     */
+    public static int getType(long entree) {
+        return (int) (entree >>> 24 & 0x3);
+    }
+
+    /**
+     * Extrait le meilleur coup d'une entrée.
+     *
+     * @param entree Les données de l'entrée.
+     * @return Le coup encodé, ou {@link Coup#AUCUN}.
+     */
+    public static int getCoup(long entree) {
+        return (int) (entree >>> 26 & 0xFFFFF);
+    }
+}
@@ -0,0 +1,135 @@
+package cstjean.mobile.dames.reseau;
+
+import cstjean.mobile.dames.damier.Coup;
+import cstjean.mobile.dames.damier.InstantanePartie;
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.damier.Variante;
+import cstjean.mobile.dames.moteur.GenerateurCoups;
+import cstjean.mobile.dames.moteur.ListeCoups;
+import cstjean.mobile.dames.moteur.Position;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Mesure le débit d'une {@link DiffusionPartie} vers de nombreux spectateurs dans le même processus.
+ *
+ * <p>Les positions sont tirées de parties aléatoires avant la mesure : seuls l'encodage et la
+ * remise des trames sont chronométrés. Un spectateur sur huit est lent et refuse trois offres
+ * sur quatre, pour exercer les lots ; un sur dix s'abonne à mi-parcours.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class BancDiffusion {
+    /**
+     * Classe utilitaire.
+     */
+    private BancDiffusion() {
+    }
+
+    /**
+     * Spectateur qui ne fait que compter les octets reçus.
+     */
+    private static final class Compteur implements DiffusionPartie.Spectateur {
+        /**
+         * Vrai si le spectateur refuse trois offres sur quatre.
+         */
+        private final boolean lent;
+
+        /**
+         * Nombre d'offres reçues.
+         */
+        private int nbOffres;
+
+        /**
+         * Nombre d'octets acceptés.
+         */
+        private long nbOctets;
+
+        /**
+         * Construit un compteur.
+         *
+         * @param lent Vrai pour un spectateur lent.
+         */
+        Compteur(boolean lent) {
+            this.lent = lent;
+        }
+
+        @Override
+        public boolean offrir(ByteBuffer trames) {
+            if (lent && (nbOffres++ & 3) != 0) {
+                return false;
+            }
+            nbOctets += trames.remaining();
+            trames.position(trames.limit());
+            return true;
+        }
+    }
+
+    /**
+     * Tire les positions successives de parties aléatoires jouées bout à bout.
+     *
+     * @param variante La variante.
+     * @param nbCoups  Le nombre de positions.
+     * @param graine   La graine du tirage.
+     * @return Les positions.
+     */
+    static InstantanePartie[] tirerPositions(Variante variante, int nbCoups, long graine) {
+        GenerateurCoups generateur = new GenerateurCoups(variante);
+        ListeCoups coups = new ListeCoups();
+        Random aleatoire = new Random(graine);
+        InstantanePartie[] positions = new InstantanePartie[nbCoups];
+        JeuDames jeu = new JeuDames(variante);
+        for (int i = 0; i < nbCoups; i++) {
+            int coup = generateur.generer(Position.depuis(jeu), coups) > 0
+                    ? coups.getCoup(aleatoire.nextInt(coups.getTaille())) : Coup.AUCUN;
+            if (coup == Coup.AUCUN || jeu.getNbCoups() >= 200) {
+                jeu = new JeuDames(variante);
+            } else {
+                jeu.jouer(coup);
+            }
+            positions[i] = jeu.getInstantane();
+        }
+        return positions;
+    }
+
+    /**
+     * Mesure la diffusion de positions aléatoires et affiche le débit obtenu. Arguments,
+     * facultatifs : nombre de spectateurs (10 000 par défaut) et nombre de coups (2 000).
+     *
+     * @param arguments Les arguments de la ligne de commande.
+     */
+    public static void main(String[] arguments) {
+        int nbSpectateurs = arguments.length > 0 ? Integer.parseInt(arguments[0]) : 10_000;
+        int nbCoups = arguments.length > 1 ? Integer.parseInt(arguments[1]) : 2_000;
+        Variante variante = Variante.INTERNATIONALE;
+        InstantanePartie[] positions = tirerPositions(variante, nbCoups, 1);
+
+        DiffusionPartie diffusion = new DiffusionPartie(new JeuDames(variante).getInstantane());
+        Compteur[] spectateurs = new Compteur[nbSpectateurs];
+        for (int i = 0; i < nbSpectateurs; i++) {
+            spectateurs[i] = new Compteur(i % 8 == 7);
+            if (i % 10 != 9) {
+                diffusion.abonner(spectateurs[i]);
+            }
+        }
+        long debut = System.nanoTime();
+        for (int i = 0; i < nbCoups; i++) {
+            if (i == nbCoups / 2) {
+                for (int j = 9; j < nbSpectateurs; j += 10) {
+                    diffusion.abonner(spectateurs[j]);
+                }
+            }
+            diffusion.publier(positions[i]);
+        }
+        long duree = System.nanoTime() - debut;
+
+        long octets = 0;
+        for (Compteur spectateur : spectateurs) {
+            octets += spectateur.nbOctets;
+        }
+        System.out.println(String.format("%d coups vers %d spectateurs en %.2f s : %.0f remises/s"
+                        + " (%d lots), %.1f Mo/s, %.0f coups/s", nbCoups, nbSpectateurs, duree / 1e9,
+                diffusion.getNbRemises() * 1e9 / duree, diffusion.getNbLots(), octets * 1e3 / duree,
+                nbCoups * 1e9 / duree));
+    }
+}
@@ -0,0 +1,410 @@
+package cstjean.mobile.dames.reseau;
+
+import cstjean.mobile.dames.damier.Coup;
+import cstjean.mobile.dames.damier.InstantanePartie;
+import cstjean.mobile.dames.damier.JeuDames;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Diffusion d'une partie à ses spectateurs par trames binaires, décodées par {@link LecteurDiffusion}.
+ *
+ * <p>Chaque coup publié est encodé une seule fois en une trame delta : les cases dont le contenu
+ * a changé, avec leur nouveau contenu, et le coup encodé (voir {@link Coup}). Toutes les
+ * {@link #PERIODE_DEFAUT} trames delta, un instantané complet de la position est inséré dans le
+ * flux : un spectateur qui arrive en cours de partie part du dernier instantané. Les trames,
+ * en lecture seule, sont remises telles quelles à tous les spectateurs ; chacun n'en reçoit
+ * qu'une vue ({@link ByteBuffer#duplicate()}) avec sa propre position de lecture.</p>
+ *
+ * <p>Un spectateur qui refuse une trame a pris du retard : les trames suivantes lui sont remises
+ * ensemble, dans un seul tampon, dès qu'il les accepte de nouveau. Un spectateur en retard
+ * d'un instantané repart de celui-ci et saute les trames delta qui le précèdent. Un même lot
+ * est partagé par les spectateurs qui ont le même retard lors d'une diffusion.</p>
+ *
+ * <p>Disposition des trames, grand-boutistes :</p>
+ * <ul>
+ *     <li>delta : type ({@link #DELTA}), numéro de séquence (int), coup (int), joueur au trait
+ *     (octet), nombre de coups joués (short), nombre de cases changées (octet), puis pour chaque
+ *     case son numéro et son contenu (octets) : un code de pièce ou {@link #VIDE} ;</li>
+ *     <li>instantané : type ({@link #INSTANTANE}), numéro de séquence (int), dernier coup (int),
+ *     joueur au trait (octet), nombre de coups joués (short), puis les masques des pions blancs, des pions noirs,
+ *     des dames blanches et des dames noires (long).</li>
+ * </ul>
+ *
+ * <p>Les méthodes sont synchronisées : la partie peut être publiée depuis son thread pendant
+ * que des spectateurs s'abonnent depuis un autre.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class DiffusionPartie {
+    /**
+     * Type de trame : les cases changées par un coup.
+     */
+    public static final int DELTA = 1;
+
+    /**
+     * Type de trame : la position complète.
+     */
+    public static final int INSTANTANE = 2;
+
+    /**
+     * Contenu d'une case vide dans une trame delta.
+     */
+    public static final int VIDE = 4;
+
+    /**
+     * Nombre de trames delta entre deux instantanés, par défaut.
+     */
+    public static final int PERIODE_DEFAUT = 32;
+
+    /**
+     * Taille d'une trame delta sans ses cases.
+     */
+    static final int TAILLE_ENTETE_DELTA = 1 + Integer.BYTES + Integer.BYTES + 1 + Short.BYTES + 1;
+
+    /**
+     * Taille d'une trame instantané.
+     */
+    static final int TAILLE_INSTANTANE = 1 + Integer.BYTES + Integer.BYTES + 1 + Short.BYTES + 4 * Long.BYTES;
+
+    /**
+     * Nombre de trames conservées pour les spectateurs en retard ; une puissance de deux.
+     */
+    private static final int CAPACITE_JOURNAL = 256;
+
+    /**
+     * Reçoit les trames de la diffusion.
+     */
+    public interface Spectateur {
+        /**
+         * Propose une ou plusieurs trames consécutives. Appelé sous le verrou de la diffusion :
+         * ne doit pas bloquer.
+         *
+         * @param trames Une vue en lecture seule des trames, à lire sans délai ou à conserver.
+         * @return true si les trames sont acceptées, false si le spectateur est en retard ;
+         * elles lui seront proposées de nouveau avec les suivantes.
+         */
+        boolean offrir(ByteBuffer trames);
+    }
+
+    /**
+     * Nombre de trames delta entre deux instantanés.
+     */
+    private final int periode;
+
+    /**
+     * Dernières trames encodées, par numéro de séquence modulo la capacité.
+     */
+    private final ByteBuffer[] journal = new ByteBuffer[CAPACITE_JOURNAL];
+
+    /**
+     * Lots encodés pendant la diffusion en cours, par premier et dernier numéro de séquence.
+     */
+    private final Map<Long, ByteBuffer> lots = new HashMap<>();
+
+    /**
+     * Numéro de séquence de la dernière trame.
+     */
+    private int sequence;
+
+    /**
+     * Numéro de séquence du dernier instantané.
+     */
+    private int sequenceInstantane;
+
+    /**
+     * Nombre de trames delta depuis le dernier instantané.
+     */
+    private int deltasDepuisInstantane;
+
+    /**
+     * La dernière position publiée.
+     */
+    private InstantanePartie precedent;
+
+    /**
+     * Les spectateurs abonnés.
+     */
+    private Spectateur[] spectateurs = new Spectateur[16];
+
+    /**
+     * Numéro de la prochaine trame attendue par chaque spectateur.
+     */
+    private int[] prochaines = new int[16];
+
+    /**
+     * Nombre de spectateurs abonnés.
+     */
+    private int nbSpectateurs;
+
+    /**
+     * Nombre de remises acceptées par les spectateurs.
+     */
+    private long nbRemises;
+
+    /**
+     * Nombre de remises acceptées regroupant plusieurs trames.
+     */
+    private long nbLots;
+
+    /**
+     * Nombre d'octets remis aux spectateurs.
+     */
+    private long nbOctets;
+
+    /**
+     * Ouvre la diffusion d'une partie avec un instantané toutes les {@value #PERIODE_DEFAUT} trames delta.
+     *
+     * @param depart La position courante de la partie.
+     */
+    public DiffusionPartie(InstantanePartie depart) {
+        this(depart, PERIODE_DEFAUT);
+    }
+
+    /**
+     * Ouvre la diffusion d'une partie.
+     *
+     * @param depart  La position courante de la partie.
+     * @param periode Le nombre de trames delta entre deux instantanés.
+     */
+    public DiffusionPartie(InstantanePartie depart, int periode) {
+        if (periode < 1 || periode >= CAPACITE_JOURNAL) {
+            throw new IllegalArgumentException("Période d'instantané invalide : " + periode);
+        }
+        this.periode = periode;
+        precedent = depart;
+        ajouterInstantane(depart);
+    }
+
+    /**
+     * Publie la position suivant un coup, ou une annulation, et la diffuse aux spectateurs.
+     *
+     * @param instantane La nouvelle position de la partie.
+     */
+    public synchronized void publier(InstantanePartie instantane) {
+        ajouter(encoderDelta(precedent, instantane, sequence + 1));
+        precedent = instantane;
+        if (++deltasDepuisInstantane >= periode) {
+            ajouterInstantane(instantane);
+        }
+        diffuser();
+    }
+
+    /**
+     * Publie la position courante d'une partie.
+     *
+     * @param jeu La partie.
+     */
+    public void publier(JeuDames jeu) {
+        publier(jeu.getInstantane());
+    }
+
+    /**
+     * Abonne un spectateur ; il reçoit aussitôt le dernier instantané et les trames qui le suivent.
+     *
+     * @param spectateur Le spectateur.
+     */
+    public synchronized void abonner(Spectateur spectateur) {
+        if (nbSpectateurs == spectateurs.length) {
+            spectateurs = Arrays.copyOf(spectateurs, nbSpectateurs * 2);
+            prochaines = Arrays.copyOf(prochaines, nbSpectateurs * 2);
+        }
+        spectateurs[nbSpectateurs] = spectateur;
+        prochaines[nbSpectateurs] = sequenceInstantane;
+        lots.clear();
+        remettre(nbSpectateurs++);
+    }
+
+    /**
+     * Désabonne un spectateur.
+     *
+     * @param spectateur Le spectateur.
+     * @return false s'il n'était pas abonné.
+     */
+    public synchronized boolean desabonner(Spectateur spectateur) {
+        for (int i = 0; i < nbSpectateurs; i++) {
+            if (spectateurs[i] == spectateur) {
+                nbSpectateurs--;
+                spectateurs[i] = spectateurs[nbSpectateurs];
+                prochaines[i] = prochaines[nbSpectateurs];
+                spectateurs[nbSpectateurs] = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Propose de nouveau leurs trames manquantes aux spectateurs en retard. Appelée à chaque
+     * publication ; à appeler aussi quand un spectateur peut de nouveau recevoir.
+     */
+    public synchronized void diffuser() {
+        lots.clear();
+        for (int i = 0; i < nbSpectateurs; i++) {
+            if (prochaines[i] <= sequence) {
+                remettre(i);
+            }
+        }
+    }
+
+    /**
+     * Retourne le nombre de spectateurs abonnés.
+     *
+     * @return Le nombre de spectateurs.
+     */
+    public synchronized int getNbSpectateurs() {
+        return nbSpectateurs;
+    }
+
+    /**
+     * Retourne le numéro de séquence de la dernière trame.
+     *
+     * @return Le numéro de séquence.
+     */
+    public synchronized int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Retourne le nombre de remises acceptées par les spectateurs.
+     *
+     * @return Le nombre de remises.
+     */
+    public synchronized long getNbRemises() {
+        return nbRemises;
+    }
+
+    /**
+     * Retourne le nombre de remises acceptées regroupant plusieurs trames.
+     *
+     * @return Le nombre de lots.
+     */
+    public synchronized long getNbLots() {
+        return nbLots;
+    }
+
+    /**
+     * Retourne le nombre d'octets remis aux spectateurs.
+     *
+     * @return Le nombre d'octets.
+     */
+    public synchronized long getNbOctets() {
+        return nbOctets;
+    }
+
+    /**
+     * Propose à un spectateur toutes les trames qui lui manquent.
+     *
+     * @param index L'indice du spectateur.
+     */
+    private void remettre(int index) {
+        // Un instantané rend inutiles les trames qui le précèdent.
+        int debut = Math.max(prochaines[index], sequenceInstantane);
+        ByteBuffer trames = debut == sequence ? journal[debut & (CAPACITE_JOURNAL - 1)] : lot(debut);
+        if (spectateurs[index].offrir(trames.duplicate())) {
+            prochaines[index] = sequence + 1;
+            nbRemises++;
+            nbOctets += trames.remaining();
+            if (debut < sequence) {
+                nbLots++;
+            }
+        }
+    }
+
+    /**
+     * Retourne le lot des trames d'un numéro de séquence à la dernière, encodé une fois par diffusion.
+     *
+     * @param debut Le numéro de la première trame.
+     * @return Les trames, bout à bout, en lecture seule.
+     */
+    private ByteBuffer lot(int debut) {
+        Long cle = ((long) debut << Integer.SIZE) | sequence;
+        ByteBuffer lot = lots.get(cle);
+        if (lot == null) {
+            int taille = 0;
+            for (int s = debut; s <= sequence; s++) {
+                taille += journal[s & (CAPACITE_JOURNAL - 1)].remaining();
+            }
+            ByteBuffer tampon = ByteBuffer.allocate(taille);
+            for (int s = debut; s <= sequence; s++) {
+                tampon.put(journal[s & (CAPACITE_JOURNAL - 1)].duplicate());
+            }
+            tampon.flip();
+            lot = tampon.asReadOnlyBuffer();
+            lots.put(cle, lot);
+        }
+        return lot;
+    }
+
+    /**
+     * Ajoute un instantané de la position au journal.
+     *
+     * @param instantane La position.
+     */
+    private void ajouterInstantane(InstantanePartie instantane) {
+        ajouter(encoderInstantane(instantane, sequence + 1));
+        sequenceInstantane = sequence;
+        deltasDepuisInstantane = 0;
+    }
+
+    /**
+     * Ajoute la trame suivante au journal.
+     *
+     * @param trame La trame, numérotée à la suite de la précédente.
+     */
+    private void ajouter(ByteBuffer trame) {
+        sequence++;
+        journal[sequence & (CAPACITE_JOURNAL - 1)] = trame;
+    }
+
+    /**
+     * Encode les cases changées entre deux positions.
+     *
+     * @param avant  La position précédente.
+     * @param apres  La nouvelle position.
+     * @param numero Le numéro de séquence de la trame.
+     * @return La trame, en lecture seule.
+     */
+    static ByteBuffer encoderDelta(InstantanePartie avant, InstantanePartie apres, int numero) {
+        long changees = 0;
+        for (int code = 0; code < 4; code++) {
+            changees |= avant.getMasque(code) ^ apres.getMasque(code);
+        }
+        ByteBuffer trame = ByteBuffer.allocate(TAILLE_ENTETE_DELTA + 2 * Long.bitCount(changees));
+        trame.put((byte) DELTA).putInt(numero).putInt(apres.getDernierCoup()).put((byte) apres.getTour())
+                .putShort((short) apres.getNbCoups()).put((byte) Long.bitCount(changees));
+        for (long reste = changees; reste != 0; reste &= reste - 1) {
+            long bit = reste & -reste;
+            int contenu = VIDE;
+            for (int code = 0; code < 4; code++) {
+                if ((apres.getMasque(code) & bit) != 0) {
+                    contenu = code;
+                }
+            }
+            trame.put((byte) (Long.numberOfTrailingZeros(bit) + 1)).put((byte) contenu);
+        }
+        trame.flip();
+        return trame.asReadOnlyBuffer();
+    }
+
+    /**
+     * Encode une position complète.
+     *
+     * @param instantane La position.
+     * @param numero     Le numéro de séquence de la trame.
+     * @return La trame, en lecture seule.
+     */
+    static ByteBuffer encoderInstantane(InstantanePartie instantane, int numero) {
+        ByteBuffer trame = ByteBuffer.allocate(TAILLE_INSTANTANE);
+        trame.put((byte) INSTANTANE).putInt(numero).putInt(instantane.getDernierCoup())
+                .put((byte) instantane.getTour())
+                .putShort((short) instantane.getNbCoups());
+        for (int code = 0; code < 4; code++) {
+            trame.putLong(instantane.getMasque(code));
+        }
+        trame.flip();
+        return trame.asReadOnlyBuffer();
+    }
+}
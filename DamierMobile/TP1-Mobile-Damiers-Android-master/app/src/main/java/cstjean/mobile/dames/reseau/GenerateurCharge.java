@@ -0,0 +1,420 @@
+package cstjean.mobile.dames.reseau;
+
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.damier.Variante;
+import cstjean.mobile.dames.metriques.Histogramme;
+import cstjean.mobile.dames.moteur.GenerateurCoups;
+import cstjean.mobile.dames.moteur.ListeCoups;
+import cstjean.mobile.dames.moteur.Position;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Générateur de charge pour le {@link ServeurParties} : des connexions jouant chacune de
+ * nombreuses sessions en parallèle, par coups légaux tirés au hasard.
+ *
+ * <p>Chaque session a au plus une requête en cours ; dès sa réponse, la requête suivante de la
+ * session est envoyée. Le serveur répondant dans l'ordre des requêtes d'une connexion, les
+ * réponses sont appariées aux sessions par une file par connexion. Les positions des sessions
+ * sont suivies côté client dans des tableaux parallèles, comme sur le serveur, pour tirer des
+ * coups légaux ; une partie terminée est quittée et remplacée par une nouvelle. La latence de
+ * chaque coup, de l'envoi à la réponse, est comptée dans un {@link Histogramme}.</p>
+ *
+ * <p>Tout le client tourne sur le thread appelant, par un {@link Selector} non bloquant.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class GenerateurCharge {
+    /**
+     * Taille des tampons d'une connexion ; chaque session y a au plus une trame en attente.
+     */
+    private static final int TAILLE_TAMPON = 1 << 16;
+
+    /**
+     * L'adresse du serveur.
+     */
+    private final InetSocketAddress adresse;
+
+    /**
+     * Nombre de connexions.
+     */
+    private final int nbConnexions;
+
+    /**
+     * Nombre de sessions par connexion.
+     */
+    private final int sessionsParConnexion;
+
+    /**
+     * Tirage des coups.
+     */
+    private final Random hasard;
+
+    /**
+     * Position de travail du tirage.
+     */
+    private final Position position;
+
+    /**
+     * Générateur de coups de la variante.
+     */
+    private final GenerateurCoups generateur;
+
+    /**
+     * Liste de travail du générateur.
+     */
+    private final ListeCoups liste = new ListeCoups();
+
+    /**
+     * Pièces blanches de la position de départ.
+     */
+    private final long blancsDepart;
+
+    /**
+     * Pièces noires de la position de départ.
+     */
+    private final long noirsDepart;
+
+    /**
+     * Précision de l'histogramme des latences : 32 sous-intervalles par puissance de deux,
+     * soit des centiles à 3 % près.
+     */
+    private static final int PRECISION_LATENCES = 5;
+
+    /**
+     * Latence des coups, en nanosecondes.
+     */
+    private final Histogramme latences = new Histogramme(PRECISION_LATENCES);
+
+    /**
+     * Numéro attribué par le serveur à chaque session locale.
+     */
+    private int[] numeros;
+
+    /**
+     * Pièces blanches de chaque session locale.
+     */
+    private long[] blancs;
+
+    /**
+     * Pièces noires de chaque session locale.
+     */
+    private long[] noirs;
+
+    /**
+     * Dames de chaque session locale.
+     */
+    private long[] dames;
+
+    /**
+     * Joueur au trait de chaque session locale.
+     */
+    private byte[] traits;
+
+    /**
+     * Type de la requête en cours de chaque session locale.
+     */
+    private byte[] requetes;
+
+    /**
+     * Instant d'envoi de la requête en cours de chaque session locale, en nanosecondes.
+     */
+    private long[] envois;
+
+    /**
+     * Nombre de coups acceptés.
+     */
+    private long nbCoups;
+
+    /**
+     * Nombre de parties terminées.
+     */
+    private long nbParties;
+
+    /**
+     * Nombre de refus.
+     */
+    private long nbRefus;
+
+    /**
+     * État d'une connexion du générateur.
+     */
+    private static final class Connexion {
+        /**
+         * Le canal.
+         */
+        final SocketChannel canal;
+
+        /**
+         * Les octets reçus et pas encore traités.
+         */
+        final ByteBuffer entree = ByteBuffer.allocate(TAILLE_TAMPON);
+
+        /**
+         * Les requêtes en attente d'envoi.
+         */
+        final ByteBuffer sortie = ByteBuffer.allocate(TAILLE_TAMPON);
+
+        /**
+         * Sessions locales des requêtes sans réponse, dans l'ordre d'envoi.
+         */
+        final int[] file;
+
+        /**
+         * Indice de la plus ancienne requête sans réponse dans la file.
+         */
+        int tete;
+
+        /**
+         * Nombre de requêtes sans réponse.
+         */
+        int nbEnAttente;
+
+        /**
+         * Construit l'état d'une connexion.
+         *
+         * @param canal    Le canal.
+         * @param capacite Le nombre de sessions de la connexion.
+         */
+        Connexion(SocketChannel canal, int capacite) {
+            this.canal = canal;
+            file = new int[capacite];
+        }
+    }
+
+    /**
+     * Prépare un générateur de charge.
+     *
+     * @param variante             La variante jouée par le serveur.
+     * @param adresse              L'adresse du serveur.
+     * @param nbConnexions         Le nombre de connexions.
+     * @param sessionsParConnexion Le nombre de sessions jouées en parallèle par connexion.
+     * @param graine               La graine du tirage des coups.
+     */
+    public GenerateurCharge(Variante variante, InetSocketAddress adresse, int nbConnexions,
+                            int sessionsParConnexion, long graine) {
+        if (nbConnexions < 1 || sessionsParConnexion < 1
+                || sessionsParConnexion * Protocole.TAILLE_TRAME > TAILLE_TAMPON) {
+            throw new IllegalArgumentException("Paramètres de charge invalides.");
+        }
+        this.adresse = adresse;
+        this.nbConnexions = nbConnexions;
+        this.sessionsParConnexion = sessionsParConnexion;
+        hasard = new Random(graine);
+        position = new Position(variante);
+        generateur = new GenerateurCoups(variante);
+        position.copier(new JeuDames(variante).getInstantane());
+        blancsDepart = position.getBlancs();
+        noirsDepart = position.getNoirs();
+    }
+
+    /**
+     * Ouvre les connexions, joue pendant la durée demandée puis ferme les connexions.
+     *
+     * @param dureeMillis La durée de l'essai, en millisecondes.
+     * @return Le rapport de l'essai.
+     * @throws IOException Si une connexion échoue.
+     */
+    public RapportCharge executer(long dureeMillis) throws IOException {
+        int nbSessions = nbConnexions * sessionsParConnexion;
+        numeros = new int[nbSessions];
+        blancs = new long[nbSessions];
+        noirs = new long[nbSessions];
+        dames = new long[nbSessions];
+        traits = new byte[nbSessions];
+        requetes = new byte[nbSessions];
+        envois = new long[nbSessions];
+        nbCoups = 0;
+        nbParties = 0;
+        nbRefus = 0;
+        latences.reinitialiser();
+        Connexion[] connexions = new Connexion[nbConnexions];
+        try (Selector selecteur = Selector.open()) {
+            try {
+                for (int c = 0; c < nbConnexions; c++) {
+                    SocketChannel canal = SocketChannel.open(adresse);
+                    canal.socket().setTcpNoDelay(true);
+                    canal.configureBlocking(false);
+                    connexions[c] = new Connexion(canal, sessionsParConnexion);
+                    canal.register(selecteur, SelectionKey.OP_READ, connexions[c]);
+                    for (int s = 0; s < sessionsParConnexion; s++) {
+                        envoyer(connexions[c], c * sessionsParConnexion + s, Protocole.CREER, Protocole.SEUL,
+                                (short) 0);
+                    }
+                    vider(connexions[c], canal.keyFor(selecteur));
+                }
+                long debut = System.nanoTime();
+                long fin = debut + dureeMillis * 1_000_000L;
+                long maintenant;
+                while ((maintenant = System.nanoTime()) < fin) {
+                    selecteur.select(Math.max(1, (fin - maintenant) / 1_000_000L));
+                    Iterator<SelectionKey> cles = selecteur.selectedKeys().iterator();
+                    while (cles.hasNext()) {
+                        SelectionKey cle = cles.next();
+                        cles.remove();
+                        Connexion connexion = (Connexion) cle.attachment();
+                        if (cle.isReadable()) {
+                            lire(connexion);
+                        }
+                        vider(connexion, cle);
+                    }
+                }
+                return new RapportCharge(nbCoups, nbParties, nbRefus, System.nanoTime() - debut,
+                        latences.getCentile(0.5), latences.getCentile(0.99));
+            } finally {
+                for (Connexion connexion : connexions) {
+                    if (connexion != null) {
+                        connexion.canal.close();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Lance un essai de charge et affiche son rapport. Sans adresse, un serveur est lancé
+     * dans le même processus. Arguments : variante, connexions, sessions par connexion,
+     * durée en secondes, puis éventuellement hôte et port.
+     *
+     * @param arguments Les arguments de la ligne de commande.
+     * @throws IOException Si une connexion échoue.
+     */
+    public static void main(String[] arguments) throws IOException {
+        if (arguments.length < 4) {
+            System.err.println("Usage : GenerateurCharge <variante> <connexions> <sessions> <secondes> [hote port]");
+            return;
+        }
+        Variante variante = Variante.valueOf(arguments[0]);
+        int connexions = Integer.parseInt(arguments[1]);
+        int sessions = Integer.parseInt(arguments[2]);
+        long duree = Long.parseLong(arguments[3]) * 1000;
+        if (arguments.length >= 6) {
+            InetSocketAddress adresse = new InetSocketAddress(arguments[4], Integer.parseInt(arguments[5]));
+            System.out.println(new GenerateurCharge(variante, adresse, connexions, sessions, 1).executer(duree));
+            return;
+        }
+        try (ServeurParties serveur = new ServeurParties(variante, new InetSocketAddress("127.0.0.1", 0))) {
+            serveur.demarrer();
+            InetSocketAddress adresse = new InetSocketAddress("127.0.0.1", serveur.getPort());
+            System.out.println(new GenerateurCharge(variante, adresse, connexions, sessions, 1).executer(duree));
+        }
+    }
+
+    /**
+     * Lit les réponses disponibles d'une connexion et envoie la requête suivante de chaque session.
+     *
+     * @param connexion La connexion.
+     * @throws IOException Si la lecture échoue ou si le serveur a fermé la connexion.
+     */
+    private void lire(Connexion connexion) throws IOException {
+        ByteBuffer entree = connexion.entree;
+        if (connexion.canal.read(entree) < 0) {
+            throw new IOException("Connexion fermée par le serveur.");
+        }
+        entree.flip();
+        while (entree.remaining() >= Protocole.TAILLE_TRAME) {
+            int type = entree.get();
+            int parametre = entree.get();
+            entree.getShort();
+            int numero = entree.getInt();
+            int session = connexion.file[connexion.tete];
+            connexion.tete = (connexion.tete + 1) % connexion.file.length;
+            connexion.nbEnAttente--;
+            switch (type) {
+                case Protocole.CREER:
+                    numeros[session] = numero;
+                    blancs[session] = blancsDepart;
+                    noirs[session] = noirsDepart;
+                    dames[session] = 0;
+                    traits[session] = Position.BLANC;
+                    jouer(connexion, session);
+                    break;
+                case Protocole.JOUER:
+                    nbCoups++;
+                    latences.enregistrer(System.nanoTime() - envois[session]);
+                    if (parametre == Protocole.EN_COURS) {
+                        jouer(connexion, session);
+                    } else {
+                        nbParties++;
+                        envoyer(connexion, session, Protocole.QUITTER, 0, (short) 0);
+                    }
+                    break;
+                case Protocole.REFUS:
+                    nbRefus++;
+                    if (requetes[session] == Protocole.JOUER) {
+                        envoyer(connexion, session, Protocole.QUITTER, 0, (short) 0);
+                    } else {
+                        envoyer(connexion, session, Protocole.CREER, Protocole.SEUL, (short) 0);
+                    }
+                    break;
+                default:
+                    // Session quittée : une nouvelle partie commence.
+                    envoyer(connexion, session, Protocole.CREER, Protocole.SEUL, (short) 0);
+                    break;
+            }
+        }
+        entree.compact();
+    }
+
+    /**
+     * Tire un coup légal dans une session, le joue sur la copie locale et l'envoie au serveur.
+     *
+     * @param connexion La connexion de la session.
+     * @param session   La session locale.
+     */
+    private void jouer(Connexion connexion, int session) {
+        position.definir(blancs[session], noirs[session], dames[session], traits[session]);
+        int nb = generateur.generer(position, liste);
+        if (nb == 0) {
+            envoyer(connexion, session, Protocole.QUITTER, 0, (short) 0);
+            return;
+        }
+        int index = hasard.nextInt(nb);
+        short compact = liste.compacter(index);
+        position.jouer(liste.getCoup(index), liste.getPrises(index));
+        blancs[session] = position.getBlancs();
+        noirs[session] = position.getNoirs();
+        dames[session] = position.getDames();
+        traits[session] = (byte) position.getTrait();
+        envois[session] = System.nanoTime();
+        envoyer(connexion, session, Protocole.JOUER, 0, compact);
+    }
+
+    /**
+     * Ajoute une requête d'une session aux envois en attente de sa connexion.
+     *
+     * @param connexion La connexion.
+     * @param session   La session locale.
+     * @param type      Le type de trame.
+     * @param parametre Le paramètre.
+     * @param coup      Le coup compact.
+     */
+    private void envoyer(Connexion connexion, int session, int type, int parametre, short coup) {
+        Protocole.ecrire(connexion.sortie, type, parametre, coup, type == Protocole.CREER ? 0 : numeros[session]);
+        requetes[session] = (byte) type;
+        connexion.file[(connexion.tete + connexion.nbEnAttente) % connexion.file.length] = session;
+        connexion.nbEnAttente++;
+    }
+
+    /**
+     * Écrit autant de requêtes en attente que le canal en accepte.
+     *
+     * @param connexion La connexion.
+     * @param cle       La clé de son canal.
+     * @throws IOException Si l'écriture échoue.
+     */
+    private static void vider(Connexion connexion, SelectionKey cle) throws IOException {
+        ByteBuffer sortie = connexion.sortie;
+        sortie.flip();
+        connexion.canal.write(sortie);
+        boolean reste = sortie.hasRemaining();
+        sortie.compact();
+        cle.interestOps(reste ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+}
@@ -0,0 +1,210 @@
+package cstjean.mobile.dames.reseau;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reconstitue la position d'une partie à partir des trames de sa {@link DiffusionPartie}.
+ *
+ * <p>Le lecteur se synchronise sur le premier instantané reçu, puis applique les trames delta
+ * dans l'ordre. Une trame delta manquante le désynchronise jusqu'à l'instantané suivant ; les
+ * trames déjà appliquées, reçues de nouveau, sont ignorées.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class LecteurDiffusion {
+    /**
+     * Masques des pièces, par code de pièce.
+     */
+    private final long[] masques = new long[4];
+
+    /**
+     * Numéro de séquence de la dernière trame appliquée.
+     */
+    private int sequence;
+
+    /**
+     * Vrai si la position reflète la dernière trame appliquée.
+     */
+    private boolean synchronise;
+
+    /**
+     * Joueur au trait.
+     */
+    private int tour;
+
+    /**
+     * Nombre de coups joués.
+     */
+    private int nbCoups;
+
+    /**
+     * Dernier coup joué, encodé.
+     */
+    private int dernierCoup;
+
+    /**
+     * Nombre de trames appliquées.
+     */
+    private long nbTrames;
+
+    /**
+     * Applique toutes les trames complètes d'un tampon, de sa position à sa limite. Une trame
+     * coupée par une lecture partielle reste dans le tampon, à sa position, pour être complétée
+     * par la lecture suivante.
+     *
+     * @param trames Les trames, bout à bout.
+     * @throws IllegalArgumentException Si une trame est d'un type inconnu.
+     */
+    public void appliquer(ByteBuffer trames) {
+        while (trames.hasRemaining()) {
+            int debut = trames.position();
+            int type = trames.get(debut);
+            int taille;
+            if (type == DiffusionPartie.INSTANTANE) {
+                taille = DiffusionPartie.TAILLE_INSTANTANE;
+            } else if (type == DiffusionPartie.DELTA) {
+                if (trames.remaining() < DiffusionPartie.TAILLE_ENTETE_DELTA) {
+                    return;
+                }
+                int nbCases = trames.get(debut + DiffusionPartie.TAILLE_ENTETE_DELTA - 1) & 0xFF;
+                taille = DiffusionPartie.TAILLE_ENTETE_DELTA + 2 * nbCases;
+            } else {
+                throw new IllegalArgumentException("Type de trame inconnu : " + type);
+            }
+            if (trames.remaining() < taille) {
+                return;
+            }
+            trames.get();
+            int numero = trames.getInt();
+            if (type == DiffusionPartie.INSTANTANE) {
+                lireInstantane(trames, numero);
+            } else {
+                lireDelta(trames, numero);
+            }
+        }
+    }
+
+    /**
+     * Lit le reste d'une trame instantané.
+     *
+     * @param trame  La trame, après son numéro de séquence.
+     * @param numero Son numéro de séquence.
+     */
+    private void lireInstantane(ByteBuffer trame, int numero) {
+        int coup = trame.getInt();
+        int tourLu = trame.get();
+        int nbCoupsLu = trame.getShort() & 0xFFFF;
+        if (synchronise && numero <= sequence) {
+            trame.position(trame.position() + 4 * Long.BYTES);
+            return;
+        }
+        for (int code = 0; code < 4; code++) {
+            masques[code] = trame.getLong();
+        }
+        dernierCoup = coup;
+        tour = tourLu;
+        nbCoups = nbCoupsLu;
+        sequence = numero;
+        synchronise = true;
+        nbTrames++;
+    }
+
+    /**
+     * Lit le reste d'une trame delta.
+     *
+     * @param trame  La trame, après son numéro de séquence.
+     * @param numero Son numéro de séquence.
+     */
+    private void lireDelta(ByteBuffer trame, int numero) {
+        int coup = trame.getInt();
+        int tourLu = trame.get();
+        int nbCoupsLu = trame.getShort() & 0xFFFF;
+        int nbCases = trame.get() & 0xFF;
+        if (!synchronise || numero != sequence + 1) {
+            trame.position(trame.position() + 2 * nbCases);
+            if (numero > sequence + 1) {
+                synchronise = false;
+            }
+            return;
+        }
+        for (int i = 0; i < nbCases; i++) {
+            long bit = 1L << (trame.get() - 1);
+            int contenu = trame.get();
+            for (int code = 0; code < 4; code++) {
+                masques[code] &= ~bit;
+            }
+            if (contenu != DiffusionPartie.VIDE) {
+                masques[contenu] |= bit;
+            }
+        }
+        dernierCoup = coup;
+        tour = tourLu;
+        nbCoups = nbCoupsLu;
+        sequence = numero;
+        nbTrames++;
+    }
+
+    /**
+     * Retourne le masque des cases occupées par un type de pièce.
+     *
+     * @param code Le code de la pièce.
+     * @return Le masque.
+     */
+    public long getMasque(int code) {
+        return masques[code];
+    }
+
+    /**
+     * Retourne le joueur au trait.
+     *
+     * @return 0 pour les blancs, 1 pour les noirs.
+     */
+    public int getTour() {
+        return tour;
+    }
+
+    /**
+     * Retourne le nombre de coups joués.
+     *
+     * @return Le nombre de coups.
+     */
+    public int getNbCoups() {
+        return nbCoups;
+    }
+
+    /**
+     * Retourne le dernier coup joué.
+     *
+     * @return Le coup encodé, ou {@link cstjean.mobile.dames.damier.Coup#AUCUN}.
+     */
+    public int getDernierCoup() {
+        return dernierCoup;
+    }
+
+    /**
+     * Retourne le numéro de séquence de la dernière trame appliquée.
+     *
+     * @return Le numéro de séquence.
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Indique si la position reflète la diffusion, sans trame manquante depuis le dernier instantané.
+     *
+     * @return true si le lecteur est synchronisé.
+     */
+    public boolean estSynchronise() {
+        return synchronise;
+    }
+
+    /**
+     * Retourne le nombre de trames appliquées.
+     *
+     * @return Le nombre de trames.
+     */
+    public long getNbTrames() {
+        return nbTrames;
+    }
+}
@@ -0,0 +1,149 @@
+package cstjean.mobile.dames.reseau;
+
+import cstjean.mobile.dames.damier.Coup;
+import java.nio.ByteBuffer;
+
+/**
+ * Protocole binaire du {@link ServeurParties}.
+ *
+ * <p>Les requêtes et les réponses sont des trames de {@value #TAILLE_TRAME} octets, grand-boutistes :</p>
+ * <ul>
+ *     <li>octet 0 : type de trame ;</li>
+ *     <li>octet 1 : paramètre (mode de création, état de la partie ou raison d'un refus) ;</li>
+ *     <li>octets 2 et 3 : coup compact (voir {@link Coup#compacter(int, int)}) ;</li>
+ *     <li>octets 4 à 7 : numéro de session.</li>
+ * </ul>
+ *
+ * <p>Le serveur traite les trames d'une connexion dans l'ordre et y répond dans le même ordre :
+ * un client peut envoyer plusieurs requêtes sans attendre et apparier les réponses par leur rang.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class Protocole {
+    /**
+     * Taille d'une trame, en octets.
+     */
+    public static final int TAILLE_TRAME = 8;
+
+    /**
+     * Requête : créer une session. Réponse : la session créée.
+     */
+    public static final int CREER = 1;
+
+    /**
+     * Requête : prendre les noirs d'une session qui attend un adversaire. Réponse : la session rejointe.
+     */
+    public static final int REJOINDRE = 2;
+
+    /**
+     * Requête : jouer un coup. Réponse : le coup accepté et l'état de la partie.
+     */
+    public static final int JOUER = 3;
+
+    /**
+     * Requête : quitter une session, qui est détruite. Réponse et avis à l'adversaire : la session fermée.
+     */
+    public static final int QUITTER = 4;
+
+    /**
+     * Réponse : la requête est refusée ; le paramètre en donne la raison.
+     */
+    public static final int REFUS = 5;
+
+    /**
+     * Avis : l'adversaire a joué un coup ; le paramètre donne l'état de la partie.
+     */
+    public static final int COUP_ADVERSE = 6;
+
+    /**
+     * Mode de création : le créateur joue les deux couleurs.
+     */
+    public static final int SEUL = 0;
+
+    /**
+     * Mode de création : le créateur joue les blancs et attend un adversaire.
+     */
+    public static final int ADVERSAIRE = 1;
+
+    /**
+     * État : la partie continue.
+     */
+    public static final int EN_COURS = 0;
+
+    /**
+     * État : les blancs ont gagné.
+     */
+    public static final int GAIN_BLANCS = 1;
+
+    /**
+     * État : les noirs ont gagné.
+     */
+    public static final int GAIN_NOIRS = 2;
+
+    /**
+     * État : la partie est nulle.
+     */
+    public static final int NULLE = 3;
+
+    /**
+     * Raison : la requête est acceptée.
+     */
+    public static final int ACCEPTE = 0;
+
+    /**
+     * Raison : la session n'existe pas.
+     */
+    public static final int SESSION_INCONNUE = 1;
+
+    /**
+     * Raison : la connexion ne joue pas la couleur au trait, ou pas dans cette session.
+     */
+    public static final int PAS_VOTRE_TOUR = 2;
+
+    /**
+     * Raison : le coup n'est pas légal dans la position.
+     */
+    public static final int COUP_ILLEGAL = 3;
+
+    /**
+     * Raison : la partie est terminée.
+     */
+    public static final int PARTIE_TERMINEE = 4;
+
+    /**
+     * Raison : la session a déjà ses deux joueurs.
+     */
+    public static final int PLACE_PRISE = 5;
+
+    /**
+     * Raison : le serveur n'a plus de session libre.
+     */
+    public static final int SERVEUR_PLEIN = 6;
+
+    /**
+     * Raison : le type de trame ou son paramètre est inconnu.
+     */
+    public static final int REQUETE_INVALIDE = 7;
+
+    /**
+     * Classe utilitaire.
+     */
+    private Protocole() {
+    }
+
+    /**
+     * Écrit une trame à la position courante d'un tampon.
+     *
+     * @param tampon    Le tampon ; il doit rester {@value #TAILLE_TRAME} octets.
+     * @param type      Le type de trame.
+     * @param parametre Le paramètre.
+     * @param coup      Le coup compact, ou 0.
+     * @param session   Le numéro de session, ou 0.
+     */
+    public static void ecrire(ByteBuffer tampon, int type, int parametre, short coup, int session) {
+        tampon.put((byte) type);
+        tampon.put((byte) parametre);
+        tampon.putShort(coup);
+        tampon.putInt(session);
+    }
+}
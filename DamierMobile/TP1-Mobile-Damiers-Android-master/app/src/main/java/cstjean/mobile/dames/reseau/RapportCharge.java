@@ -0,0 +1,130 @@
+package cstjean.mobile.dames.reseau;
+
+/**
+ * Résultat d'un essai de charge du {@link GenerateurCharge}.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class RapportCharge {
+    /**
+     * Nombre de coups acceptés par le serveur.
+     */
+    private final long nbCoups;
+
+    /**
+     * Nombre de parties menées à leur fin.
+     */
+    private final long nbParties;
+
+    /**
+     * Nombre de requêtes refusées par le serveur.
+     */
+    private final long nbRefus;
+
+    /**
+     * Durée de l'essai, en nanosecondes.
+     */
+    private final long dureeNanos;
+
+    /**
+     * Borne supérieure de la latence médiane d'un coup, en nanosecondes.
+     */
+    private final long latenceMediane;
+
+    /**
+     * Borne supérieure du 99e centile de la latence d'un coup, en nanosecondes.
+     */
+    private final long latenceP99;
+
+    /**
+     * Construit un rapport.
+     *
+     * @param nbCoups        Le nombre de coups acceptés.
+     * @param nbParties      Le nombre de parties terminées.
+     * @param nbRefus        Le nombre de refus.
+     * @param dureeNanos     La durée de l'essai.
+     * @param latenceMediane La latence médiane.
+     * @param latenceP99     Le 99e centile de la latence.
+     */
+    RapportCharge(long nbCoups, long nbParties, long nbRefus, long dureeNanos, long latenceMediane,
+                  long latenceP99) {
+        this.nbCoups = nbCoups;
+        this.nbParties = nbParties;
+        this.nbRefus = nbRefus;
+        this.dureeNanos = dureeNanos;
+        this.latenceMediane = latenceMediane;
+        this.latenceP99 = latenceP99;
+    }
+
+    /**
+     * Retourne le nombre de coups acceptés par le serveur.
+     *
+     * @return Le nombre de coups.
+     */
+    public long getNbCoups() {
+        return nbCoups;
+    }
+
+    /**
+     * Retourne le nombre de parties menées à leur fin.
+     *
+     * @return Le nombre de parties.
+     */
+    public long getNbParties() {
+        return nbParties;
+    }
+
+    /**
+     * Retourne le nombre de requêtes refusées par le serveur.
+     *
+     * @return Le nombre de refus.
+     */
+    public long getNbRefus() {
+        return nbRefus;
+    }
+
+    /**
+     * Retourne la durée de l'essai.
+     *
+     * @return La durée en nanosecondes.
+     */
+    public long getDureeNanos() {
+        return dureeNanos;
+    }
+
+    /**
+     * Retourne le débit de coups.
+     *
+     * @return Le nombre de coups acceptés par seconde.
+     */
+    public double getCoupsParSeconde() {
+        return dureeNanos == 0 ? 0 : nbCoups * 1e9 / dureeNanos;
+    }
+
+    /**
+     * Retourne une borne supérieure de la latence médiane d'un coup, de l'envoi à la réponse.
+     *
+     * @return La latence en nanosecondes, arrondie à la borne de son intervalle d'histogramme,
+     *         au plus 1/32 au-dessus de la valeur exacte.
+     */
+    public long getLatenceMediane() {
+        return latenceMediane;
+    }
+
+    /**
+     * Retourne une borne supérieure du 99e centile de la latence d'un coup.
+     *
+     * @return La latence en nanosecondes, arrondie à la borne de son intervalle d'histogramme,
+     *         au plus 1/32 au-dessus de la valeur exacte.
+     */
+    public long getLatenceP99() {
+        return latenceP99;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d coups en %.1f s : %.0f coups/s, latence p50 < %d µs, p99 < %d µs,"
+                        + " %d parties, %d refus", nbCoups, dureeNanos / 1e9, getCoupsParSeconde(),
+                latenceMediane / 1000, latenceP99 / 1000, nbParties, nbRefus);
+    }
+}
@@ -0,0 +1,536 @@
+package cstjean.mobile.dames.reseau;
+
+import cstjean.mobile.dames.damier.Variante;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Serveur de parties sans interface : des milliers de sessions simultanées, jouées par des
+ * clients connectés en TCP selon le {@link Protocole}.
+ *
+ * <p>Un seul thread multiplexe toutes les connexions par un {@link Selector} en mode non
+ * bloquant : il lit les trames reçues, valide chaque coup dans la {@link TableSessions} et
+ * écrit les réponses dans le tampon de sortie de chaque connexion, vidé à la fin du traitement
+ * de ses trames. Les sessions appartenant à ce seul thread, aucun verrou n'est nécessaire.
+ * Une connexion dont les réponses en attente dépassent {@value #MAX_EN_ATTENTE} octets ne lit
+ * plus ses réponses : elle est fermée, comme toutes ses sessions.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class ServeurParties implements Closeable {
+    /**
+     * Taille initiale des tampons d'une connexion.
+     */
+    private static final int TAILLE_TAMPON = 1 << 12;
+
+    /**
+     * Nombre maximal d'octets en attente d'envoi pour une connexion.
+     */
+    private static final int MAX_EN_ATTENTE = 1 << 20;
+
+    /**
+     * Le sélecteur des connexions.
+     */
+    private final Selector selecteur;
+
+    /**
+     * La socket d'écoute.
+     */
+    private final ServerSocketChannel ecoute;
+
+    /**
+     * Les sessions ; accédées par le seul thread du serveur.
+     */
+    private final TableSessions sessions;
+
+    /**
+     * Le thread du serveur.
+     */
+    private final Thread boucle;
+
+    /**
+     * Connexions ouvertes, par numéro moins un.
+     */
+    private Connexion[] connexions = new Connexion[64];
+
+    /**
+     * Numéros de connexion libérés.
+     */
+    private int[] numerosLibres = new int[64];
+
+    /**
+     * Nombre de numéros libérés.
+     */
+    private int nbNumerosLibres;
+
+    /**
+     * Nombre de numéros déjà attribués au moins une fois.
+     */
+    private int nbNumeros;
+
+    /**
+     * Connexions à fermer à la fin du tour de boucle.
+     */
+    private final List<Connexion> aFermer = new ArrayList<>();
+
+    /**
+     * Nombre de coups joués depuis le démarrage.
+     */
+    private volatile long nbCoupsJoues;
+
+    /**
+     * Nombre de sessions ouvertes, publié à chaque changement.
+     */
+    private volatile int nbSessions;
+
+    /**
+     * Nombre de connexions ouvertes, publié à chaque changement.
+     */
+    private volatile int nbConnexions;
+
+    /**
+     * true quand la fermeture du serveur est demandée.
+     */
+    private volatile boolean fermeture;
+
+    /**
+     * État d'une connexion cliente.
+     */
+    private static final class Connexion {
+        /**
+         * Le numéro de la connexion, à partir de 1.
+         */
+        final int numero;
+
+        /**
+         * Le canal.
+         */
+        final SocketChannel canal;
+
+        /**
+         * La clé du canal auprès du sélecteur.
+         */
+        final SelectionKey cle;
+
+        /**
+         * Les octets reçus et pas encore traités.
+         */
+        final ByteBuffer entree = ByteBuffer.allocate(TAILLE_TAMPON);
+
+        /**
+         * Les réponses en attente d'envoi.
+         */
+        ByteBuffer sortie = ByteBuffer.allocate(TAILLE_TAMPON);
+
+        /**
+         * true une fois la connexion fermée.
+         */
+        boolean fermee;
+
+        /**
+         * Construit l'état d'une connexion.
+         *
+         * @param numero Le numéro.
+         * @param canal  Le canal.
+         * @param cle    La clé du canal.
+         */
+        Connexion(int numero, SocketChannel canal, SelectionKey cle) {
+            this.numero = numero;
+            this.canal = canal;
+            this.cle = cle;
+        }
+    }
+
+    /**
+     * Ouvre un serveur sans le démarrer.
+     *
+     * @param variante La variante jouée dans toutes les sessions.
+     * @param adresse  L'adresse d'écoute ; le port 0 en choisit un libre.
+     * @throws IOException Si l'adresse ne peut pas être liée.
+     */
+    public ServeurParties(Variante variante, InetSocketAddress adresse) throws IOException {
+        sessions = new TableSessions(variante, 1024);
+        selecteur = Selector.open();
+        ecoute = ServerSocketChannel.open();
+        try {
+            ecoute.bind(adresse, 1024);
+            ecoute.configureBlocking(false);
+            ecoute.register(selecteur, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            ecoute.close();
+            selecteur.close();
+            throw e;
+        }
+        boucle = new Thread(this::executer, "serveur-parties");
+        boucle.setDaemon(true);
+    }
+
+    /**
+     * Démarre le thread du serveur.
+     */
+    public void demarrer() {
+        boucle.start();
+    }
+
+    /**
+     * Retourne le port d'écoute.
+     *
+     * @return Le port.
+     */
+    public int getPort() {
+        return ecoute.socket().getLocalPort();
+    }
+
+    /**
+     * Retourne le nombre de coups joués depuis le démarrage.
+     *
+     * @return Le nombre de coups acceptés.
+     */
+    public long getNbCoupsJoues() {
+        return nbCoupsJoues;
+    }
+
+    /**
+     * Retourne le nombre de sessions ouvertes.
+     *
+     * @return Le nombre de sessions.
+     */
+    public int getNbSessions() {
+        return nbSessions;
+    }
+
+    /**
+     * Retourne le nombre de connexions ouvertes.
+     *
+     * @return Le nombre de connexions.
+     */
+    public int getNbConnexions() {
+        return nbConnexions;
+    }
+
+    /**
+     * Arrête le serveur et ferme toutes les connexions.
+     *
+     * @throws IOException Si la fermeture de la socket d'écoute échoue.
+     */
+    @Override
+    public void close() throws IOException {
+        fermeture = true;
+        if (boucle.isAlive()) {
+            selecteur.wakeup();
+            try {
+                boucle.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            selecteur.close();
+            ecoute.close();
+        }
+    }
+
+    /**
+     * Lance un serveur et le laisse tourner. Arguments : variante, port.
+     *
+     * @param arguments Les arguments de la ligne de commande.
+     * @throws IOException Si le port ne peut pas être ouvert.
+     * @throws InterruptedException Si le thread principal est interrompu.
+     */
+    public static void main(String[] arguments) throws IOException, InterruptedException {
+        if (arguments.length < 2) {
+            System.err.println("Usage : ServeurParties <variante> <port>");
+            return;
+        }
+        ServeurParties serveur = new ServeurParties(Variante.valueOf(arguments[0]),
+                new InetSocketAddress(Integer.parseInt(arguments[1])));
+        serveur.demarrer();
+        System.out.println("Serveur à l'écoute sur le port " + serveur.getPort());
+        serveur.boucle.join();
+    }
+
+    /**
+     * Boucle du serveur : attend les événements des connexions et les traite.
+     */
+    private void executer() {
+        try {
+            while (!fermeture) {
+                selecteur.select();
+                Iterator<SelectionKey> cles = selecteur.selectedKeys().iterator();
+                while (cles.hasNext()) {
+                    SelectionKey cle = cles.next();
+                    cles.remove();
+                    if (!cle.isValid()) {
+                        continue;
+                    }
+                    if (cle.isAcceptable()) {
+                        try {
+                            accepter();
+                        } catch (IOException e) {
+                            // Connexion refusée, par exemple faute de descripteurs : les autres continuent.
+                        }
+                        continue;
+                    }
+                    Connexion connexion = (Connexion) cle.attachment();
+                    try {
+                        if (cle.isReadable()) {
+                            lire(connexion);
+                        }
+                        if (!connexion.fermee && cle.isWritable()) {
+                            vider(connexion);
+                        }
+                    } catch (IOException e) {
+                        aFermer.add(connexion);
+                    }
+                }
+                // Une connexion fermée peut en faire fermer d'autres en avisant leurs adversaires.
+                while (!aFermer.isEmpty()) {
+                    fermer(aFermer.remove(aFermer.size() - 1));
+                }
+            }
+        } catch (IOException e) {
+            // Le sélecteur est inutilisable : le serveur s'arrête.
+        } finally {
+            for (Connexion connexion : connexions) {
+                if (connexion != null) {
+                    fermerCanal(connexion);
+                }
+            }
+            try {
+                selecteur.close();
+                ecoute.close();
+            } catch (IOException e) {
+                // Rien de plus à libérer.
+            }
+        }
+    }
+
+    /**
+     * Accepte les connexions en attente.
+     *
+     * @throws IOException Si le sélecteur ne peut pas enregistrer une connexion.
+     */
+    private void accepter() throws IOException {
+        SocketChannel canal;
+        while ((canal = ecoute.accept()) != null) {
+            try {
+                canal.configureBlocking(false);
+                canal.socket().setTcpNoDelay(true);
+            } catch (IOException e) {
+                canal.close();
+                throw e;
+            }
+            int numero = nbNumerosLibres > 0 ? numerosLibres[--nbNumerosLibres] : ++nbNumeros;
+            if (numero > connexions.length) {
+                connexions = Arrays.copyOf(connexions, connexions.length * 2);
+                numerosLibres = Arrays.copyOf(numerosLibres, numerosLibres.length * 2);
+            }
+            SelectionKey cle = canal.register(selecteur, SelectionKey.OP_READ);
+            Connexion connexion = new Connexion(numero, canal, cle);
+            cle.attach(connexion);
+            connexions[numero - 1] = connexion;
+            nbConnexions++;
+        }
+    }
+
+    /**
+     * Lit les octets disponibles d'une connexion, traite ses trames complètes et envoie les réponses.
+     *
+     * @param connexion La connexion.
+     * @throws IOException Si la lecture ou l'écriture échoue.
+     */
+    private void lire(Connexion connexion) throws IOException {
+        ByteBuffer entree = connexion.entree;
+        int lus = connexion.canal.read(entree);
+        if (lus < 0) {
+            aFermer.add(connexion);
+            return;
+        }
+        entree.flip();
+        while (entree.remaining() >= Protocole.TAILLE_TRAME && !connexion.fermee) {
+            traiter(connexion, entree.get(), entree.get(), entree.getShort(), entree.getInt());
+        }
+        entree.compact();
+        if (!connexion.fermee) {
+            vider(connexion);
+        }
+    }
+
+    /**
+     * Traite une trame reçue.
+     *
+     * @param connexion La connexion émettrice.
+     * @param type      Le type de trame.
+     * @param parametre Le paramètre.
+     * @param coup      Le coup compact.
+     * @param session   Le numéro de session.
+     */
+    private void traiter(Connexion connexion, int type, int parametre, short coup, int session) {
+        int raison;
+        switch (type) {
+            case Protocole.CREER:
+                if (parametre != Protocole.SEUL && parametre != Protocole.ADVERSAIRE) {
+                    raison = Protocole.REQUETE_INVALIDE;
+                    break;
+                }
+                int creee = sessions.creer(connexion.numero, parametre == Protocole.SEUL ? connexion.numero : 0);
+                if (creee < 0) {
+                    raison = Protocole.SERVEUR_PLEIN;
+                    break;
+                }
+                nbSessions = sessions.getNbSessions();
+                envoyer(connexion, Protocole.CREER, parametre, (short) 0, creee);
+                return;
+            case Protocole.REJOINDRE:
+                raison = sessions.rejoindre(session, connexion.numero);
+                if (raison == Protocole.ACCEPTE) {
+                    envoyer(connexion, Protocole.REJOINDRE, 0, (short) 0, session);
+                    aviser(sessions.getAdversaire(session, connexion.numero), Protocole.REJOINDRE, 0, (short) 0,
+                            session);
+                    return;
+                }
+                break;
+            case Protocole.JOUER:
+                raison = sessions.jouer(session, connexion.numero, coup);
+                if (raison == Protocole.ACCEPTE) {
+                    nbCoupsJoues++;
+                    int etat = sessions.getEtat(session);
+                    envoyer(connexion, Protocole.JOUER, etat, coup, session);
+                    aviser(sessions.getAdversaire(session, connexion.numero), Protocole.COUP_ADVERSE, etat, coup,
+                            session);
+                    return;
+                }
+                break;
+            case Protocole.QUITTER:
+                if (!sessions.estJoueur(session, connexion.numero)) {
+                    raison = Protocole.SESSION_INCONNUE;
+                    break;
+                }
+                int adversaire = sessions.getAdversaire(session, connexion.numero);
+                sessions.fermer(session);
+                nbSessions = sessions.getNbSessions();
+                envoyer(connexion, Protocole.QUITTER, 0, (short) 0, session);
+                aviser(adversaire, Protocole.QUITTER, 0, (short) 0, session);
+                return;
+            default:
+                raison = Protocole.REQUETE_INVALIDE;
+                break;
+        }
+        envoyer(connexion, Protocole.REFUS, raison, coup, session);
+    }
+
+    /**
+     * Avise l'adversaire d'un joueur et lui envoie aussitôt l'avis.
+     *
+     * @param numero    La connexion de l'adversaire, ou 0 s'il n'y en a pas.
+     * @param type      Le type de trame.
+     * @param parametre Le paramètre.
+     * @param coup      Le coup compact.
+     * @param session   Le numéro de session.
+     */
+    private void aviser(int numero, int type, int parametre, short coup, int session) {
+        if (numero == 0) {
+            return;
+        }
+        Connexion adversaire = connexions[numero - 1];
+        envoyer(adversaire, type, parametre, coup, session);
+        try {
+            vider(adversaire);
+        } catch (IOException e) {
+            aFermer.add(adversaire);
+        }
+    }
+
+    /**
+     * Ajoute une trame aux réponses en attente d'une connexion. Une connexion qui a trop de
+     * réponses en attente est fermée et la trame est perdue.
+     *
+     * @param connexion La connexion.
+     * @param type      Le type de trame.
+     * @param parametre Le paramètre.
+     * @param coup      Le coup compact.
+     * @param session   Le numéro de session.
+     */
+    private void envoyer(Connexion connexion, int type, int parametre, short coup, int session) {
+        if (connexion.fermee) {
+            return;
+        }
+        ByteBuffer sortie = connexion.sortie;
+        if (sortie.remaining() < Protocole.TAILLE_TRAME) {
+            if (sortie.capacity() >= MAX_EN_ATTENTE) {
+                aFermer.add(connexion);
+                return;
+            }
+            ByteBuffer agrandie = ByteBuffer.allocate(sortie.capacity() * 2);
+            sortie.flip();
+            agrandie.put(sortie);
+            connexion.sortie = agrandie;
+            sortie = agrandie;
+        }
+        Protocole.ecrire(sortie, type, parametre, coup, session);
+    }
+
+    /**
+     * Écrit autant de réponses en attente que le canal en accepte et ne s'intéresse à
+     * l'écriture que s'il en reste.
+     *
+     * @param connexion La connexion.
+     * @throws IOException Si l'écriture échoue.
+     */
+    private void vider(Connexion connexion) throws IOException {
+        if (connexion.fermee) {
+            return;
+        }
+        ByteBuffer sortie = connexion.sortie;
+        sortie.flip();
+        connexion.canal.write(sortie);
+        boolean reste = sortie.hasRemaining();
+        sortie.compact();
+        connexion.cle.interestOps(reste ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    /**
+     * Ferme une connexion et toutes ses sessions, en avisant les adversaires.
+     *
+     * @param connexion La connexion.
+     */
+    private void fermer(Connexion connexion) {
+        if (connexion.fermee) {
+            return;
+        }
+        fermerCanal(connexion);
+        connexions[connexion.numero - 1] = null;
+        numerosLibres[nbNumerosLibres++] = connexion.numero;
+        nbConnexions--;
+        for (int session : sessions.getSessions(connexion.numero)) {
+            int adversaire = sessions.getAdversaire(session, connexion.numero);
+            sessions.fermer(session);
+            aviser(adversaire, Protocole.QUITTER, 0, (short) 0, session);
+        }
+        nbSessions = sessions.getNbSessions();
+    }
+
+    /**
+     * Ferme le canal d'une connexion.
+     *
+     * @param connexion La connexion.
+     */
+    private static void fermerCanal(Connexion connexion) {
+        connexion.fermee = true;
+        connexion.cle.cancel();
+        try {
+            connexion.canal.close();
+        } catch (IOException e) {
+            // La connexion est abandonnée de toute façon.
+        }
+    }
+}
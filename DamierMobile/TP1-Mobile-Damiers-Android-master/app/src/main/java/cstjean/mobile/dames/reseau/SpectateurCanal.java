@@ -0,0 +1,120 @@
+package cstjean.mobile.dames.reseau;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Spectateur d'une {@link DiffusionPartie} à l'autre bout d'une connexion TCP.
+ *
+ * <p>Le canal est mis en mode non bloquant. Les trames que le canal n'accepte pas en entier
+ * restent en attente, sans copie : tant qu'elles ne sont pas parties, le spectateur refuse les
+ * suivantes, que la diffusion lui regroupera plus tard. Le propriétaire appelle {@link #vider()}
+ * quand le canal redevient disponible en écriture, puis {@link DiffusionPartie#diffuser()}.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class SpectateurCanal implements DiffusionPartie.Spectateur, Closeable {
+    /**
+     * Le canal vers le spectateur.
+     */
+    private final SocketChannel canal;
+
+    /**
+     * Le reste des dernières trames acceptées, ou null si tout est parti.
+     */
+    private ByteBuffer enAttente;
+
+    /**
+     * Vrai si le canal a été fermé, par erreur d'écriture ou par {@link #close()}.
+     */
+    private boolean ferme;
+
+    /**
+     * Construit un spectateur sur une connexion ouverte.
+     *
+     * @param canal La connexion.
+     * @throws IOException Si le canal ne peut pas passer en mode non bloquant.
+     */
+    public SpectateurCanal(SocketChannel canal) throws IOException {
+        this.canal = canal;
+        canal.configureBlocking(false);
+    }
+
+    /**
+     * Écrit les trames si le canal a fini d'écrire les précédentes. Une erreur d'écriture ferme
+     * le canal ; les trames sont alors acceptées et perdues.
+     *
+     * @param trames Les trames.
+     * @return false si des trames précédentes attendent encore.
+     */
+    @Override
+    public synchronized boolean offrir(ByteBuffer trames) {
+        if (ferme) {
+            return true;
+        }
+        if (!vider()) {
+            return false;
+        }
+        try {
+            canal.write(trames);
+        } catch (IOException e) {
+            fermer();
+            return true;
+        }
+        if (trames.hasRemaining()) {
+            enAttente = trames;
+        }
+        return true;
+    }
+
+    /**
+     * Écrit ce que le canal accepte des trames en attente.
+     *
+     * @return true s'il ne reste rien en attente.
+     */
+    public synchronized boolean vider() {
+        if (enAttente == null || ferme) {
+            return true;
+        }
+        try {
+            canal.write(enAttente);
+        } catch (IOException e) {
+            fermer();
+            return true;
+        }
+        if (enAttente.hasRemaining()) {
+            return false;
+        }
+        enAttente = null;
+        return true;
+    }
+
+    /**
+     * Indique si le canal a été fermé ; le spectateur peut alors être désabonné.
+     *
+     * @return true si le canal est fermé.
+     */
+    public synchronized boolean estFerme() {
+        return ferme;
+    }
+
+    @Override
+    public synchronized void close() {
+        fermer();
+    }
+
+    /**
+     * Ferme le canal et abandonne les trames en attente.
+     */
+    private void fermer() {
+        ferme = true;
+        enAttente = null;
+        try {
+            canal.close();
+        } catch (IOException ignored) {
+            // Le canal est inutilisable de toute façon.
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package cstjean.mobile.dames.reseau;
+
+import cstjean.mobile.dames.damier.Coup;
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.damier.RegleNulle;
+import cstjean.mobile.dames.damier.Variante;
+import cstjean.mobile.dames.moteur.GenerateurCoups;
+import cstjean.mobile.dames.moteur.ListeCoups;
+import cstjean.mobile.dames.moteur.Position;
+import java.util.Arrays;
+
+/**
+ * Sessions de jeu du {@link ServeurParties}, rangées en tableaux parallèles.
+ *
+ * <p>Une session tient en une quarantaine d'octets : ses trois masques, le joueur au trait,
+ * l'état de la partie, les compteurs des règles de nulle et les connexions des deux joueurs.
+ * Chaque coup reçu est validé sur une position de travail unique par le générateur de coups
+ * du moteur, aux règles de l'application ({@code JeuDames}) : une pièce prise par coup et
+ * aucune prise imposée. La session est ensuite remise à jour à partir de la position
+ * obtenue. Faute d'historique, la nulle par répétition n'est pas détectée ; les règles des
+ * 25, 16 et 5 coups le sont.</p>
+ *
+ * <p>Le numéro d'une session combine l'indice de sa case et une version incrémentée à chaque
+ * réutilisation de la case, si bien qu'un numéro périmé ne désigne jamais une nouvelle session.
+ * La table n'est pas synchronisée : elle appartient au thread du serveur.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+final class TableSessions {
+    /**
+     * Nombre de bits de l'indice de case dans un numéro de session.
+     */
+    private static final int BITS_CASE = 20;
+
+    /**
+     * Nombre maximal de sessions simultanées.
+     */
+    static final int MAX_SESSIONS = 1 << BITS_CASE;
+
+    /**
+     * Masque de la version dans un numéro de session, pour que le numéro reste positif.
+     */
+    private static final int MASQUE_VERSION = (1 << (Integer.SIZE - 1 - BITS_CASE)) - 1;
+
+    /**
+     * Plafond des compteurs de nulle, au-delà de toutes les limites des règles.
+     */
+    private static final int PLAFOND_COMPTEUR = Byte.MAX_VALUE;
+
+    /**
+     * Position de travail de la validation.
+     */
+    private final Position position;
+
+    /**
+     * Générateur de coups de la variante, aux règles de {@code JeuDames}.
+     */
+    private final GenerateurCoups generateur;
+
+    /**
+     * Liste de travail du générateur.
+     */
+    private final ListeCoups liste = new ListeCoups();
+
+    /**
+     * Pièces blanches de la position de départ.
+     */
+    private final long blancsDepart;
+
+    /**
+     * Pièces noires de la position de départ.
+     */
+    private final long noirsDepart;
+
+    /**
+     * Pièces blanches de chaque session.
+     */
+    private long[] blancs;
+
+    /**
+     * Pièces noires de chaque session.
+     */
+    private long[] noirs;
+
+    /**
+     * Dames de chaque session.
+     */
+    private long[] dames;
+
+    /**
+     * Joueur au trait de chaque session.
+     */
+    private byte[] traits;
+
+    /**
+     * État de la partie de chaque session (voir {@link Protocole#EN_COURS}).
+     */
+    private byte[] etats;
+
+    /**
+     * Demi-coups réversibles consécutifs de chaque session, plafonnés.
+     */
+    private byte[] reversibles;
+
+    /**
+     * Demi-coups depuis le dernier changement de matériel de chaque session, plafonnés.
+     */
+    private byte[] depuisMateriel;
+
+    /**
+     * Connexion jouant les blancs de chaque session ; 0 pour une case libre.
+     */
+    private int[] joueursBlancs;
+
+    /**
+     * Connexion jouant les noirs de chaque session ; 0 tant qu'aucun adversaire n'a rejoint.
+     */
+    private int[] joueursNoirs;
+
+    /**
+     * Version de chaque case.
+     */
+    private int[] versions;
+
+    /**
+     * Pile des cases libérées.
+     */
+    private int[] libres;
+
+    /**
+     * Nombre de cases libérées dans la pile.
+     */
+    private int nbLibres;
+
+    /**
+     * Nombre de cases déjà utilisées au moins une fois.
+     */
+    private int nbCases;
+
+    /**
+     * Nombre de sessions ouvertes.
+     */
+    private int nbSessions;
+
+    /**
+     * Crée une table vide.
+     *
+     * @param variante La variante jouée.
+     * @param capacite Le nombre initial de sessions.
+     * @throws IllegalArgumentException Si la variante compte plus de 64 cases.
+     */
+    TableSessions(Variante variante, int capacite) {
+        Coup.verifierCompactable(variante);
+        position = new Position(variante);
+        generateur = new GenerateurCoups(variante);
+        position.copier(new JeuDames(variante).getInstantane());
+        blancsDepart = position.getBlancs();
+        noirsDepart = position.getNoirs();
+        int taille = Math.max(16, Math.min(capacite, MAX_SESSIONS));
+        blancs = new long[taille];
+        noirs = new long[taille];
+        dames = new long[taille];
+        traits = new byte[taille];
+        etats = new byte[taille];
+        reversibles = new byte[taille];
+        depuisMateriel = new byte[taille];
+        joueursBlancs = new int[taille];
+        joueursNoirs = new int[taille];
+        versions = new int[taille];
+        libres = new int[taille];
+    }
+
+    /**
+     * Ouvre une session sur la position de départ.
+     *
+     * @param joueurBlancs La connexion jouant les blancs, non nulle.
+     * @param joueurNoirs  La connexion jouant les noirs, ou 0 pour attendre un adversaire.
+     * @return Le numéro de la session, ou -1 si la table est pleine.
+     */
+    int creer(int joueurBlancs, int joueurNoirs) {
+        int indice;
+        if (nbLibres > 0) {
+            indice = libres[--nbLibres];
+        } else if (nbCases < MAX_SESSIONS) {
+            if (nbCases == blancs.length) {
+                agrandir();
+            }
+            indice = nbCases++;
+        } else {
+            return -1;
+        }
+        blancs[indice] = blancsDepart;
+        noirs[indice] = noirsDepart;
+        dames[indice] = 0;
+        traits[indice] = Position.BLANC;
+        etats[indice] = Protocole.EN_COURS;
+        reversibles[indice] = 0;
+        depuisMateriel[indice] = 0;
+        joueursBlancs[indice] = joueurBlancs;
+        joueursNoirs[indice] = joueurNoirs;
+        nbSessions++;
+        return (versions[indice] << BITS_CASE) | indice;
+    }
+
+    /**
+     * Donne les noirs d'une session qui attend un adversaire.
+     *
+     * @param session   Le numéro de session.
+     * @param connexion La connexion qui rejoint.
+     * @return {@link Protocole#ACCEPTE} ou la raison du refus.
+     */
+    int rejoindre(int session, int connexion) {
+        int indice = indice(session);
+        if (indice < 0) {
+            return Protocole.SESSION_INCONNUE;
+        }
+        if (joueursNoirs[indice] != 0) {
+            return Protocole.PLACE_PRISE;
+        }
+        joueursNoirs[indice] = connexion;
+        return Protocole.ACCEPTE;
+    }
+
+    /**
+     * Valide et joue un coup dans une session.
+     *
+     * @param session   Le numéro de session.
+     * @param connexion La connexion qui joue.
+     * @param compact   Le coup compact.
+     * @return {@link Protocole#ACCEPTE} ou la raison du refus.
+     */
+    int jouer(int session, int connexion, short compact) {
+        int indice = indice(session);
+        if (indice < 0) {
+            return Protocole.SESSION_INCONNUE;
+        }
+        if (etats[indice] != Protocole.EN_COURS) {
+            return Protocole.PARTIE_TERMINEE;
+        }
+        int trait = traits[indice];
+        if ((trait == Position.BLANC ? joueursBlancs[indice] : joueursNoirs[indice]) != connexion) {
+            return Protocole.PAS_VOTRE_TOUR;
+        }
+        position.definir(blancs[indice], noirs[indice], dames[indice], trait);
+        generateur.generer(position, liste);
+        int index = liste.indexDe(compact);
+        if (index < 0) {
+            return Protocole.COUP_ILLEGAL;
+        }
+        int coup = liste.getCoup(index);
+        long prises = liste.getPrises(index);
+        boolean dame = (dames[indice] & position.getVariante().getBit(Coup.depart(coup))) != 0;
+        position.jouer(coup, prises);
+        blancs[indice] = position.getBlancs();
+        noirs[indice] = position.getNoirs();
+        dames[indice] = position.getDames();
+        traits[indice] = (byte) position.getTrait();
+        reversibles[indice] = !dame || prises != 0 ? 0 : incrementer(reversibles[indice]);
+        depuisMateriel[indice] = prises != 0 || Coup.estPromotion(coup) ? 0 : incrementer(depuisMateriel[indice]);
+        etats[indice] = (byte) evaluerEtat(indice);
+        return Protocole.ACCEPTE;
+    }
+
+    /**
+     * Ferme une session et libère sa case.
+     *
+     * @param session Le numéro de session.
+     * @return false si la session n'existe pas.
+     */
+    boolean fermer(int session) {
+        int indice = indice(session);
+        if (indice < 0) {
+            return false;
+        }
+        joueursBlancs[indice] = 0;
+        joueursNoirs[indice] = 0;
+        versions[indice] = (versions[indice] + 1) & MASQUE_VERSION;
+        libres[nbLibres++] = indice;
+        nbSessions--;
+        return true;
+    }
+
+    /**
+     * Indique si une connexion joue dans une session.
+     *
+     * @param session   Le numéro de session.
+     * @param connexion La connexion.
+     * @return true si elle joue l'une des deux couleurs.
+     */
+    boolean estJoueur(int session, int connexion) {
+        int indice = indice(session);
+        return indice >= 0 && (joueursBlancs[indice] == connexion || joueursNoirs[indice] == connexion);
+    }
+
+    /**
+     * Retourne l'adversaire d'une connexion dans une session.
+     *
+     * @param session   Le numéro de session.
+     * @param connexion La connexion.
+     * @return La connexion adverse, ou 0 s'il n'y en a pas ou si la connexion joue les deux couleurs.
+     */
+    int getAdversaire(int session, int connexion) {
+        int indice = indice(session);
+        if (indice < 0) {
+            return 0;
+        }
+        int adversaire = joueursBlancs[indice] == connexion ? joueursNoirs[indice] : joueursBlancs[indice];
+        return adversaire == connexion ? 0 : adversaire;
+    }
+
+    /**
+     * Retourne l'état de la partie d'une session ouverte.
+     *
+     * @param session Le numéro de session.
+     * @return L'état (voir {@link Protocole#EN_COURS}).
+     */
+    int getEtat(int session) {
+        return etats[session & (MAX_SESSIONS - 1)];
+    }
+
+    /**
+     * Retourne les sessions où joue une connexion. Parcourt toute la table : à réserver aux
+     * déconnexions.
+     *
+     * @param connexion La connexion.
+     * @return Les numéros des sessions.
+     */
+    int[] getSessions(int connexion) {
+        int[] trouvees = new int[8];
+        int nb = 0;
+        for (int indice = 0; indice < nbCases; indice++) {
+            if (joueursBlancs[indice] == connexion || joueursNoirs[indice] == connexion) {
+                if (nb == trouvees.length) {
+                    trouvees = Arrays.copyOf(trouvees, nb * 2);
+                }
+                trouvees[nb++] = (versions[indice] << BITS_CASE) | indice;
+            }
+        }
+        return Arrays.copyOf(trouvees, nb);
+    }
+
+    /**
+     * Retourne le nombre de sessions ouvertes.
+     *
+     * @return Le nombre de sessions.
+     */
+    int getNbSessions() {
+        return nbSessions;
+    }
+
+    /**
+     * Retrouve la case d'une session ouverte.
+     *
+     * @param session Le numéro de session.
+     * @return L'indice de la case, ou -1 si la session n'existe pas ou plus.
+     */
+    private int indice(int session) {
+        int indice = session & (MAX_SESSIONS - 1);
+        if (session < 0 || indice >= nbCases || joueursBlancs[indice] == 0
+                || versions[indice] != session >>> BITS_CASE) {
+            return -1;
+        }
+        return indice;
+    }
+
+    /**
+     * Détermine l'état d'une partie après un coup, position de travail à jour.
+     *
+     * @param indice La case de la session.
+     * @return L'état de la partie.
+     */
+    private int evaluerEtat(int indice) {
+        if (generateur.generer(position, liste) == 0) {
+            return position.getTrait() == Position.BLANC ? Protocole.GAIN_NOIRS : Protocole.GAIN_BLANCS;
+        }
+        long b = blancs[indice];
+        long n = noirs[indice];
+        long d = dames[indice];
+        int raison = RegleNulle.raisonNulle(reversibles[indice], depuisMateriel[indice], Long.bitCount(b & ~d),
+                Long.bitCount(b & d), Long.bitCount(n & ~d), Long.bitCount(n & d));
+        return raison == RegleNulle.AUCUNE ? Protocole.EN_COURS : Protocole.NULLE;
+    }
+
+    /**
+     * Incrémente un compteur de nulle sans dépasser son plafond.
+     *
+     * @param compteur Le compteur.
+     * @return Le compteur incrémenté.
+     */
+    private static byte incrementer(byte compteur) {
+        return (byte) Math.min(PLAFOND_COMPTEUR, compteur + 1);
+    }
+
+    /**
+     * Double la capacité des tableaux.
+     */
+    private void agrandir() {
+        int taille = Math.min(MAX_SESSIONS, blancs.length * 2);
+        blancs = Arrays.copyOf(blancs, taille);
+        noirs = Arrays.copyOf(noirs, taille);
+        dames = Arrays.copyOf(dames, taille);
+        traits = Arrays.copyOf(traits, taille);
+        etats = Arrays.copyOf(etats, taille);
+        reversibles = Arrays.copyOf(reversibles, taille);
+        depuisMateriel = Arrays.copyOf(depuisMateriel, taille);
+        joueursBlancs = Arrays.copyOf(joueursBlancs, taille);
+        joueursNoirs = Arrays.copyOf(joueursNoirs, taille);
+        versions = Arrays.copyOf(versions, taille);
+        libres = Arrays.copyOf(libres, taille);
+    }
+}
@@ -0,0 +1,319 @@
+package cstjean.mobile.dames.stockage;
+
+import cstjean.mobile.dames.damier.Coup;
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.damier.Variante;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Archive de parties sur disque, consultée par projection en mémoire.
+ *
+ * <p>Le fichier, construit par {@link ConstructeurArchive}, contient à la suite :</p>
+ * <ul>
+ *     <li>un en-tête de {@value #TAILLE_EN_TETE} octets : identifiant, version, variante,
+ *     nombre de parties, nombre de coups, nombre d'entrées d'index, début de la table
+ *     des parties et début de l'index ;</li>
+ *     <li>les coups compacts ({@link Coup#compacter(int, int)}) de toutes les parties, bout à bout ;</li>
+ *     <li>la table des parties : le rang du premier coup de chaque partie, plus le nombre total de coups ;</li>
+ *     <li>l'index : une entrée de {@value #TAILLE_ENTREE} octets (clé de Zobrist, numéro de partie)
+ *     par position distincte de chaque partie, triée par clé non signée puis par partie.</li>
+ * </ul>
+ *
+ * <p>Rien n'est chargé dans le tas : le fichier est projeté par segments et une recherche
+ * de position est une recherche dichotomique dans l'index, suivie de la lecture des entrées
+ * de même clé. Les lectures sont absolues, si bien qu'une archive ouverte peut être
+ * interrogée par plusieurs threads à la fois.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class ArchiveParties implements Closeable {
+    /**
+     * Identifiant du format, en tête de l'archive.
+     */
+    static final int MAGIQUE = 0x44415243;
+
+    /**
+     * Version du format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Taille de l'en-tête.
+     */
+    static final int TAILLE_EN_TETE = 48;
+
+    /**
+     * Taille d'une entrée de l'index : clé et numéro de partie.
+     */
+    static final int TAILLE_ENTREE = Long.BYTES + Integer.BYTES;
+
+    /**
+     * Logarithme en base 2 de la taille d'un segment projeté.
+     */
+    private static final int BITS_SEGMENT = 30;
+
+    /**
+     * Chevauchement des segments, pour qu'une valeur ne soit jamais coupée entre deux segments.
+     */
+    private static final int CHEVAUCHEMENT = 16;
+
+    /**
+     * Canal du fichier.
+     */
+    private final FileChannel canal;
+
+    /**
+     * Segments projetés du fichier.
+     */
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * La variante des parties.
+     */
+    private final Variante variante;
+
+    /**
+     * Nombre de parties.
+     */
+    private final int nbParties;
+
+    /**
+     * Nombre d'entrées de l'index.
+     */
+    private final long nbEntrees;
+
+    /**
+     * Début de la table des parties.
+     */
+    private final long debutParties;
+
+    /**
+     * Début de l'index.
+     */
+    private final long debutIndex;
+
+    /**
+     * Ouvre une archive.
+     *
+     * @param fichier Le fichier de l'archive.
+     * @throws IOException Si le fichier ne peut pas être lu ou n'est pas une archive valide.
+     */
+    public ArchiveParties(File fichier) throws IOException {
+        // RandomAccessFile plutôt que FileChannel.open, qui demande l'API 26.
+        canal = new RandomAccessFile(fichier, "r").getChannel();
+        try {
+            long taille = canal.size();
+            segments = new MappedByteBuffer[(int) ((taille + (1L << BITS_SEGMENT) - 1) >>> BITS_SEGMENT)];
+            for (int i = 0; i < segments.length; i++) {
+                long debut = (long) i << BITS_SEGMENT;
+                segments[i] = canal.map(FileChannel.MapMode.READ_ONLY, debut,
+                        Math.min((1L << BITS_SEGMENT) + CHEVAUCHEMENT, taille - debut));
+            }
+            if (taille < TAILLE_EN_TETE || getInt(0) != MAGIQUE || getInt(4) != VERSION) {
+                throw new IOException("Archive de parties invalide : " + fichier);
+            }
+            int ordinal = getInt(8);
+            if (ordinal < 0 || ordinal >= Variante.values().length) {
+                throw new IOException("Variante inconnue dans l'archive " + fichier + " : " + ordinal);
+            }
+            variante = Variante.values()[ordinal];
+            nbParties = getInt(12);
+            nbEntrees = getLong(24);
+            debutParties = getLong(32);
+            debutIndex = getLong(40);
+            if (nbParties < 0 || nbEntrees < 0 || debutParties < TAILLE_EN_TETE || debutParties > taille
+                    || debutIndex < debutParties + (nbParties + 1L) * Long.BYTES
+                    || debutIndex + nbEntrees * TAILLE_ENTREE > taille) {
+                throw new IOException("En-tête d'archive incohérent : " + fichier);
+            }
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Compte les parties ayant atteint une position.
+     *
+     * @param cle La clé de la position, joueur au trait compris (voir {@link JeuDames#getCle()}).
+     * @return Le nombre de parties.
+     */
+    public int compter(long cle) {
+        long entree = premiereEntree(cle);
+        long fin = entree;
+        while (fin < nbEntrees && getCle(fin) == cle) {
+            fin++;
+        }
+        return (int) (fin - entree);
+    }
+
+    /**
+     * Cherche les parties ayant atteint une position.
+     *
+     * @param cle     La clé de la position, joueur au trait compris (voir {@link JeuDames#getCle()}).
+     * @param parties Reçoit les numéros des parties, en ordre croissant, dans la limite de sa taille.
+     * @return Le nombre total de parties ayant atteint la position, qui peut dépasser la taille du tableau.
+     */
+    public int chercher(long cle, int[] parties) {
+        int nb = 0;
+        for (long entree = premiereEntree(cle); entree < nbEntrees && getCle(entree) == cle; entree++) {
+            if (nb < parties.length) {
+                parties[nb] = getInt(debutIndex + entree * TAILLE_ENTREE + Long.BYTES);
+            }
+            nb++;
+        }
+        return nb;
+    }
+
+    /**
+     * Retourne le nombre de coups d'une partie.
+     *
+     * @param partie Le numéro de la partie.
+     * @return Le nombre de coups.
+     */
+    public int getLongueur(int partie) {
+        return (int) (debutCoup(partie + 1) - debutCoup(partie));
+    }
+
+    /**
+     * Retourne un coup d'une partie.
+     *
+     * @param partie Le numéro de la partie.
+     * @param index  L'indice du coup.
+     * @return Le coup compact.
+     */
+    public short getCoup(int partie, int index) {
+        if (index < 0 || index >= getLongueur(partie)) {
+            throw new IndexOutOfBoundsException("Coup " + index + " de la partie " + partie);
+        }
+        long position = TAILLE_EN_TETE + (debutCoup(partie) + index) * Short.BYTES;
+        return segments[(int) (position >>> BITS_SEGMENT)].getShort(decalage(position));
+    }
+
+    /**
+     * Rejoue une partie dans une nouvelle {@link JeuDames}.
+     *
+     * @param partie Le numéro de la partie.
+     * @return La partie rejouée.
+     * @throws IllegalArgumentException Si un coup enregistré n'est pas jouable.
+     */
+    public JeuDames rejouer(int partie) {
+        JeuDames jeu = new JeuDames(variante);
+        for (int i = 0; i < getLongueur(partie); i++) {
+            short coup = getCoup(partie, i);
+            jeu.jouer(Coup.departCompact(coup), Coup.arriveeCompact(coup));
+        }
+        return jeu;
+    }
+
+    /**
+     * Retourne la variante des parties.
+     *
+     * @return La variante.
+     */
+    public Variante getVariante() {
+        return variante;
+    }
+
+    /**
+     * Retourne le nombre de parties.
+     *
+     * @return Le nombre de parties.
+     */
+    public int getNbParties() {
+        return nbParties;
+    }
+
+    /**
+     * Retourne le nombre d'entrées de l'index.
+     *
+     * @return Le nombre de couples (position, partie) distincts.
+     */
+    public long getNbEntrees() {
+        return nbEntrees;
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    /**
+     * Retourne l'indice de la première entrée de l'index dont la clé n'est pas inférieure à une clé.
+     *
+     * @param cle La clé cherchée.
+     * @return L'indice de l'entrée, ou le nombre d'entrées si toutes sont inférieures.
+     */
+    private long premiereEntree(long cle) {
+        long bas = 0;
+        long haut = nbEntrees;
+        while (bas < haut) {
+            long milieu = (bas + haut) >>> 1;
+            // Comparaison non signée : Long.compareUnsigned demande l'API 26.
+            if ((getCle(milieu) ^ Long.MIN_VALUE) < (cle ^ Long.MIN_VALUE)) {
+                bas = milieu + 1;
+            } else {
+                haut = milieu;
+            }
+        }
+        return bas;
+    }
+
+    /**
+     * Retourne la clé d'une entrée de l'index.
+     *
+     * @param entree L'indice de l'entrée.
+     * @return La clé.
+     */
+    private long getCle(long entree) {
+        return getLong(debutIndex + entree * TAILLE_ENTREE);
+    }
+
+    /**
+     * Retourne le rang du premier coup d'une partie dans le flux de coups.
+     *
+     * @param partie Le numéro de la partie, ou le nombre de parties pour la fin du flux.
+     * @return Le rang du coup.
+     */
+    private long debutCoup(int partie) {
+        if (partie < 0 || partie > nbParties) {
+            throw new IndexOutOfBoundsException("Partie " + partie + " sur " + nbParties);
+        }
+        return getLong(debutParties + (long) partie * Long.BYTES);
+    }
+
+    /**
+     * Lit un entier long à une position du fichier.
+     *
+     * @param position La position.
+     * @return La valeur.
+     */
+    private long getLong(long position) {
+        return segments[(int) (position >>> BITS_SEGMENT)].getLong(decalage(position));
+    }
+
+    /**
+     * Lit un entier à une position du fichier.
+     *
+     * @param position La position.
+     * @return La valeur.
+     */
+    private int getInt(long position) {
+        return segments[(int) (position >>> BITS_SEGMENT)].getInt(decalage(position));
+    }
+
+    /**
+     * Ramène une position du fichier à son segment.
+     *
+     * @param position La position.
+     * @return La position dans le segment.
+     */
+    private static int decalage(long position) {
+        return (int) (position & ((1L << BITS_SEGMENT) - 1));
+    }
+}
@@ -0,0 +1,504 @@
+package cstjean.mobile.dames.stockage;
+
+import cstjean.mobile.dames.damier.Coup;
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.damier.Variante;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Construit une {@link ArchiveParties} en une passe sur les parties.
+ *
+ * <p>Chaque partie est rejouée avec les règles de {@link JeuDames} : ses coups compacts sont
+ * écrits à la suite dans le fichier de l'archive et la clé de chaque position atteinte est
+ * retenue avec le numéro de la partie. Ces entrées sont triées par paquets de taille fixe,
+ * écrits dans un fichier temporaire, puis fusionnées à la fermeture pour former l'index trié :
+ * la mémoire utilisée ne dépend pas du nombre de parties.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class ConstructeurArchive implements Closeable {
+    /**
+     * Nombre d'entrées d'index triées en mémoire avant d'être écrites en paquet.
+     */
+    private static final int ENTREES_PAR_PAQUET = 1 << 18;
+
+    /**
+     * Taille des tampons d'écriture et de lecture des paquets.
+     */
+    private static final int TAILLE_TAMPON = 64 * 1024;
+
+    /**
+     * La variante des parties.
+     */
+    private final Variante variante;
+
+    /**
+     * Le fichier de l'archive.
+     */
+    private final FileChannel canal;
+
+    /**
+     * Canal du fichier temporaire des paquets triés.
+     */
+    private final FileChannel paquets;
+
+    /**
+     * Le fichier temporaire des paquets, supprimé à la fermeture.
+     */
+    private final File fichierPaquets;
+
+    /**
+     * Tampon des coups en attente d'écriture.
+     */
+    private final ByteBuffer tamponCoups = ByteBuffer.allocateDirect(TAILLE_TAMPON);
+
+    /**
+     * Début de chaque partie dans le flux de coups, en nombre de coups.
+     */
+    private long[] debuts = new long[1024];
+
+    /**
+     * Nombre de parties ajoutées.
+     */
+    private int nbParties;
+
+    /**
+     * Nombre de coups écrits.
+     */
+    private long nbCoups;
+
+    /**
+     * Clés du paquet en cours.
+     */
+    private final long[] cles = new long[ENTREES_PAR_PAQUET];
+
+    /**
+     * Parties du paquet en cours.
+     */
+    private final int[] parties = new int[ENTREES_PAR_PAQUET];
+
+    /**
+     * Tableau de travail du tri des clés.
+     */
+    private final long[] clesTri = new long[ENTREES_PAR_PAQUET];
+
+    /**
+     * Tableau de travail du tri des parties.
+     */
+    private final int[] partiesTri = new int[ENTREES_PAR_PAQUET];
+
+    /**
+     * Nombre d'entrées du paquet en cours.
+     */
+    private int nbEntrees;
+
+    /**
+     * Taille de chaque paquet écrit, en entrées.
+     */
+    private int[] taillesPaquets = new int[16];
+
+    /**
+     * Nombre de paquets écrits.
+     */
+    private int nbPaquets;
+
+    /**
+     * Coups compacts de la partie en cours de validation.
+     */
+    private short[] coupsPartie = new short[256];
+
+    /**
+     * Clés des positions de la partie en cours de validation.
+     */
+    private long[] clesPartie = new long[257];
+
+    /**
+     * Crée une archive vide, en remplaçant le fichier s'il existe.
+     *
+     * @param fichier  Le fichier de l'archive.
+     * @param variante La variante des parties.
+     * @throws IOException              Si les fichiers ne peuvent pas être créés.
+     * @throws IllegalArgumentException Si la variante compte plus de 64 cases.
+     */
+    public ConstructeurArchive(File fichier, Variante variante) throws IOException {
+        Coup.verifierCompactable(variante);
+        this.variante = variante;
+        // RandomAccessFile plutôt que FileChannel.open, qui demande l'API 26.
+        canal = new RandomAccessFile(fichier, "rw").getChannel();
+        try {
+            canal.truncate(0);
+            canal.position(ArchiveParties.TAILLE_EN_TETE);
+            fichierPaquets = File.createTempFile("archive", ".paquets", fichier.getAbsoluteFile().getParentFile());
+            paquets = new RandomAccessFile(fichierPaquets, "rw").getChannel();
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Ajoute une partie jouée avec les règles de {@link JeuDames}.
+     *
+     * @param partie La partie ; elle n'est pas modifiée.
+     * @return Le numéro de la partie dans l'archive.
+     * @throws IOException Si l'écriture échoue.
+     */
+    public int ajouter(JeuDames partie) throws IOException {
+        int longueur = partie.getNbCoups();
+        reserverPartie(longueur);
+        for (int i = 0; i < longueur; i++) {
+            coupsPartie[i] = Coup.compacter(partie.getCoup(i), 0);
+        }
+        return ajouterValidee(longueur);
+    }
+
+    /**
+     * Ajoute toutes les parties d'un recueil, enregistrées à partir de {@link JeuDames}.
+     *
+     * @param recueil Le recueil.
+     * @throws IOException Si l'écriture échoue.
+     */
+    public void ajouter(RecueilParties recueil) throws IOException {
+        for (int partie = 0; partie < recueil.getNbParties(); partie++) {
+            int longueur = recueil.getLongueur(partie);
+            reserverPartie(longueur);
+            for (int i = 0; i < longueur; i++) {
+                coupsPartie[i] = recueil.getCoup(partie, i);
+            }
+            ajouterValidee(longueur);
+        }
+    }
+
+    /**
+     * Retourne le nombre de parties ajoutées.
+     *
+     * @return Le nombre de parties.
+     */
+    public int getNbParties() {
+        return nbParties;
+    }
+
+    /**
+     * Termine l'archive : écrit les débuts de parties, fusionne les paquets en index trié,
+     * puis écrit l'en-tête.
+     *
+     * @throws IOException Si l'écriture échoue.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            viderCoups();
+            ecrirePaquet();
+            long debutParties = canal.position();
+            ByteBuffer tampon = ByteBuffer.allocateDirect(TAILLE_TAMPON);
+            for (int i = 0; i <= nbParties; i++) {
+                if (tampon.remaining() < Long.BYTES) {
+                    ecrire(tampon);
+                }
+                tampon.putLong(i < nbParties ? debuts[i] : nbCoups);
+            }
+            ecrire(tampon);
+            long debutIndex = canal.position();
+            long nbIndex = fusionner(tampon);
+
+            tampon.clear();
+            tampon.putInt(ArchiveParties.MAGIQUE);
+            tampon.putInt(ArchiveParties.VERSION);
+            tampon.putInt(variante.ordinal());
+            tampon.putInt(nbParties);
+            tampon.putLong(nbCoups);
+            tampon.putLong(nbIndex);
+            tampon.putLong(debutParties);
+            tampon.putLong(debutIndex);
+            tampon.flip();
+            canal.write(tampon, 0);
+        } finally {
+            try {
+                paquets.close();
+                if (!fichierPaquets.delete()) {
+                    fichierPaquets.deleteOnExit();
+                }
+            } finally {
+                canal.close();
+            }
+        }
+    }
+
+    /**
+     * Rejoue la partie en cours de validation, puis l'écrit avec ses entrées d'index.
+     * Rien n'est écrit si un coup n'est pas jouable.
+     *
+     * @param longueur Le nombre de coups de la partie.
+     * @return Le numéro de la partie.
+     * @throws IOException Si l'écriture échoue.
+     * @throws IllegalArgumentException Si un coup n'est pas jouable.
+     */
+    private int ajouterValidee(int longueur) throws IOException {
+        JeuDames jeu = new JeuDames(variante);
+        clesPartie[0] = jeu.getCle();
+        for (int i = 0; i < longueur; i++) {
+            jeu.jouer(Coup.departCompact(coupsPartie[i]), Coup.arriveeCompact(coupsPartie[i]));
+            clesPartie[i + 1] = jeu.getCle();
+        }
+
+        if (nbParties == debuts.length) {
+            debuts = Arrays.copyOf(debuts, nbParties * 2);
+        }
+        debuts[nbParties] = nbCoups;
+        for (int i = 0; i < longueur; i++) {
+            if (!tamponCoups.hasRemaining()) {
+                viderCoups();
+            }
+            tamponCoups.putShort(coupsPartie[i]);
+        }
+        nbCoups += longueur;
+        for (int i = 0; i <= longueur; i++) {
+            if (nbEntrees == ENTREES_PAR_PAQUET) {
+                ecrirePaquet();
+            }
+            cles[nbEntrees] = clesPartie[i];
+            parties[nbEntrees] = nbParties;
+            nbEntrees++;
+        }
+        return nbParties++;
+    }
+
+    /**
+     * Garantit la place des coups et des clés d'une partie à valider.
+     *
+     * @param longueur Le nombre de coups de la partie.
+     */
+    private void reserverPartie(int longueur) {
+        if (longueur > coupsPartie.length) {
+            coupsPartie = new short[longueur];
+            clesPartie = new long[longueur + 1];
+        }
+    }
+
+    /**
+     * Écrit les coups en attente à la suite du fichier de l'archive.
+     *
+     * @throws IOException Si l'écriture échoue.
+     */
+    private void viderCoups() throws IOException {
+        ecrire(tamponCoups);
+    }
+
+    /**
+     * Écrit le contenu d'un tampon à la position courante de l'archive, puis le vide.
+     *
+     * @param tampon Le tampon rempli.
+     * @throws IOException Si l'écriture échoue.
+     */
+    private void ecrire(ByteBuffer tampon) throws IOException {
+        tampon.flip();
+        while (tampon.hasRemaining()) {
+            canal.write(tampon);
+        }
+        tampon.clear();
+    }
+
+    /**
+     * Trie le paquet en cours et l'écrit à la suite du fichier des paquets.
+     *
+     * @throws IOException Si l'écriture échoue.
+     */
+    private void ecrirePaquet() throws IOException {
+        if (nbEntrees == 0) {
+            return;
+        }
+        trier();
+        ByteBuffer tampon = ByteBuffer.allocateDirect(TAILLE_TAMPON / ArchiveParties.TAILLE_ENTREE
+                * ArchiveParties.TAILLE_ENTREE);
+        for (int i = 0; i < nbEntrees; i++) {
+            if (!tampon.hasRemaining()) {
+                ecrirePaquets(tampon);
+            }
+            tampon.putLong(cles[i]);
+            tampon.putInt(parties[i]);
+        }
+        ecrirePaquets(tampon);
+        if (nbPaquets == taillesPaquets.length) {
+            taillesPaquets = Arrays.copyOf(taillesPaquets, nbPaquets * 2);
+        }
+        taillesPaquets[nbPaquets++] = nbEntrees;
+        nbEntrees = 0;
+    }
+
+    /**
+     * Écrit le contenu d'un tampon à la suite du fichier des paquets, puis le vide.
+     *
+     * @param tampon Le tampon rempli.
+     * @throws IOException Si l'écriture échoue.
+     */
+    private void ecrirePaquets(ByteBuffer tampon) throws IOException {
+        tampon.flip();
+        while (tampon.hasRemaining()) {
+            paquets.write(tampon);
+        }
+        tampon.clear();
+    }
+
+    /**
+     * Trie le paquet en cours par clé non signée, par quatre passes stables de 16 bits :
+     * les entrées d'une même clé restent dans l'ordre croissant des parties.
+     */
+    private void trier() {
+        int[] compte = new int[1 << 16];
+        long[] sourceCles = cles;
+        int[] sourceParties = parties;
+        long[] destinationCles = clesTri;
+        int[] destinationParties = partiesTri;
+        for (int decalage = 0; decalage < Long.SIZE; decalage += 16) {
+            Arrays.fill(compte, 0);
+            for (int i = 0; i < nbEntrees; i++) {
+                compte[(int) (sourceCles[i] >>> decalage) & 0xFFFF]++;
+            }
+            int somme = 0;
+            for (int i = 0; i < compte.length; i++) {
+                int nb = compte[i];
+                compte[i] = somme;
+                somme += nb;
+            }
+            for (int i = 0; i < nbEntrees; i++) {
+                int place = compte[(int) (sourceCles[i] >>> decalage) & 0xFFFF]++;
+                destinationCles[place] = sourceCles[i];
+                destinationParties[place] = sourceParties[i];
+            }
+            long[] echangeCles = sourceCles;
+            sourceCles = destinationCles;
+            destinationCles = echangeCles;
+            int[] echangeParties = sourceParties;
+            sourceParties = destinationParties;
+            destinationParties = echangeParties;
+        }
+        // Quatre passes : le résultat est revenu dans les tableaux de départ.
+    }
+
+    /**
+     * Fusionne les paquets triés à la suite du fichier de l'archive, en éliminant les entrées
+     * répétées d'une même partie.
+     *
+     * @param tampon Un tampon d'écriture.
+     * @return Le nombre d'entrées de l'index.
+     * @throws IOException Si la lecture ou l'écriture échoue.
+     */
+    private long fusionner(ByteBuffer tampon) throws IOException {
+        PriorityQueue<Curseur> file = new PriorityQueue<>(Math.max(1, nbPaquets));
+        long debut = 0;
+        for (int i = 0; i < nbPaquets; i++) {
+            Curseur curseur = new Curseur(debut, taillesPaquets[i]);
+            if (curseur.avancer()) {
+                file.add(curseur);
+            }
+            debut += (long) taillesPaquets[i] * ArchiveParties.TAILLE_ENTREE;
+        }
+        tampon.clear();
+        long nbIndex = 0;
+        long derniereCle = 0;
+        int dernierePartie = -1;
+        while (!file.isEmpty()) {
+            Curseur curseur = file.poll();
+            if (curseur.cle != derniereCle || curseur.partie != dernierePartie) {
+                if (tampon.remaining() < ArchiveParties.TAILLE_ENTREE) {
+                    ecrire(tampon);
+                }
+                tampon.putLong(curseur.cle);
+                tampon.putInt(curseur.partie);
+                derniereCle = curseur.cle;
+                dernierePartie = curseur.partie;
+                nbIndex++;
+            }
+            if (curseur.avancer()) {
+                file.add(curseur);
+            }
+        }
+        ecrire(tampon);
+        return nbIndex;
+    }
+
+    /**
+     * Position de lecture dans un paquet trié pendant la fusion.
+     */
+    private final class Curseur implements Comparable<Curseur> {
+        /**
+         * Tampon de lecture du paquet.
+         */
+        private final ByteBuffer lecture = ByteBuffer.allocateDirect(TAILLE_TAMPON / ArchiveParties.TAILLE_ENTREE
+                * ArchiveParties.TAILLE_ENTREE);
+
+        /**
+         * Position de la prochaine lecture dans le fichier des paquets.
+         */
+        private long position;
+
+        /**
+         * Nombre d'entrées du paquet pas encore lues dans le tampon.
+         */
+        private long restantes;
+
+        /**
+         * Clé de l'entrée courante.
+         */
+        private long cle;
+
+        /**
+         * Partie de l'entrée courante.
+         */
+        private int partie;
+
+        /**
+         * Crée un curseur au début d'un paquet.
+         *
+         * @param position Le début du paquet dans le fichier des paquets.
+         * @param taille   Le nombre d'entrées du paquet.
+         */
+        Curseur(long position, int taille) {
+            this.position = position;
+            this.restantes = taille;
+            lecture.limit(0);
+        }
+
+        /**
+         * Passe à l'entrée suivante du paquet.
+         *
+         * @return false si le paquet est épuisé.
+         * @throws IOException Si la lecture échoue.
+         */
+        boolean avancer() throws IOException {
+            if (!lecture.hasRemaining()) {
+                if (restantes == 0) {
+                    return false;
+                }
+                int nb = (int) Math.min(restantes, lecture.capacity() / ArchiveParties.TAILLE_ENTREE);
+                lecture.clear();
+                lecture.limit(nb * ArchiveParties.TAILLE_ENTREE);
+                while (lecture.hasRemaining()) {
+                    if (paquets.read(lecture, position + lecture.position()) < 0) {
+                        throw new IOException("Paquet d'index tronqué.");
+                    }
+                }
+                lecture.flip();
+                position += lecture.limit();
+                restantes -= nb;
+            }
+            cle = lecture.getLong();
+            partie = lecture.getInt();
+            return true;
+        }
+
+        @Override
+        public int compareTo(Curseur autre) {
+            // Comparaison non signée : Long.compareUnsigned demande l'API 26.
+            int comparaison = Long.compare(cle ^ Long.MIN_VALUE, autre.cle ^ Long.MIN_VALUE);
+            return comparaison != 0 ? comparaison : Integer.compare(partie, autre.partie);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package cstjean.mobile.dames.stockage;
+
+import cstjean.mobile.dames.damier.Coup;
+
+/**
+ * Statistiques d'une continuation proposée par l'{@link ExplorateurOuvertures} :
+ * un coup jouable et les résultats des parties qui sont passées par la position obtenue.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class Continuation {
+    /**
+     * Le coup encodé (voir {@link Coup}).
+     */
+    private final int coup;
+
+    /**
+     * Nombre de parties passées par la position obtenue.
+     */
+    private final int parties;
+
+    /**
+     * Nombre de ces parties gagnées par les blancs.
+     */
+    private final int victoiresBlancs;
+
+    /**
+     * Nombre de ces parties nulles.
+     */
+    private final int nulles;
+
+    /**
+     * Nombre de ces parties gagnées par les noirs.
+     */
+    private final int victoiresNoirs;
+
+    /**
+     * Construit une continuation.
+     *
+     * @param coup            Le coup encodé.
+     * @param parties         Le nombre de parties.
+     * @param victoiresBlancs Le nombre de victoires des blancs.
+     * @param nulles          Le nombre de nulles.
+     * @param victoiresNoirs  Le nombre de victoires des noirs.
+     */
+    Continuation(int coup, int parties, int victoiresBlancs, int nulles, int victoiresNoirs) {
+        this.coup = coup;
+        this.parties = parties;
+        this.victoiresBlancs = victoiresBlancs;
+        this.nulles = nulles;
+        this.victoiresNoirs = victoiresNoirs;
+    }
+
+    /**
+     * Retourne le coup.
+     *
+     * @return Le coup encodé.
+     */
+    public int getCoup() {
+        return coup;
+    }
+
+    /**
+     * Retourne le nombre de parties passées par la position obtenue.
+     *
+     * @return Le nombre de parties.
+     */
+    public int getParties() {
+        return parties;
+    }
+
+    /**
+     * Retourne le nombre de victoires des blancs.
+     *
+     * @return Le nombre de parties gagnées par les blancs.
+     */
+    public int getVictoiresBlancs() {
+        return victoiresBlancs;
+    }
+
+    /**
+     * Retourne le nombre de nulles.
+     *
+     * @return Le nombre de parties nulles.
+     */
+    public int getNulles() {
+        return nulles;
+    }
+
+    /**
+     * Retourne le nombre de victoires des noirs.
+     *
+     * @return Le nombre de parties gagnées par les noirs.
+     */
+    public int getVictoiresNoirs() {
+        return victoiresNoirs;
+    }
+
+    /**
+     * Retourne le pourcentage de victoires des blancs.
+     *
+     * @return Le pourcentage, de 0 à 100.
+     */
+    public double getPourcentageBlancs() {
+        return pourcentage(victoiresBlancs);
+    }
+
+    /**
+     * Retourne le pourcentage de nulles.
+     *
+     * @return Le pourcentage, de 0 à 100.
+     */
+    public double getPourcentageNulles() {
+        return pourcentage(nulles);
+    }
+
+    /**
+     * Retourne le pourcentage de victoires des noirs.
+     *
+     * @return Le pourcentage, de 0 à 100.
+     */
+    public double getPourcentageNoirs() {
+        return pourcentage(victoiresNoirs);
+    }
+
+    /**
+     * Rapporte un nombre de parties au total.
+     *
+     * @param nb Le nombre de parties.
+     * @return Le pourcentage, de 0 à 100.
+     */
+    private double pourcentage(int nb) {
+        return parties == 0 ? 0 : 100.0 * nb / parties;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s : %d parties, %.1f / %.1f / %.1f", Coup.notation(coup), parties,
+                getPourcentageBlancs(), getPourcentageNulles(), getPourcentageNoirs());
+    }
+}
@@ -0,0 +1,205 @@
+package cstjean.mobile.dames.stockage;
+
+import cstjean.mobile.dames.damier.Coup;
+import cstjean.mobile.dames.damier.InstantanePartie;
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.damier.Variante;
+import java.util.Arrays;
+
+/**
+ * Positions de parties rejouées, rangées en tableaux parallèles pour être parcourues
+ * à la chaîne par {@link RequeteMotifs}.
+ *
+ * <p>Chaque position occupe trois masques, son joueur au trait, le numéro de sa partie et
+ * son demi-coup, soit 31 octets, sans objet par position. Les tableaux ne sont pas modifiés
+ * après la construction, si bien qu'un corpus peut être parcouru par plusieurs threads.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class CorpusPositions {
+    /**
+     * La variante des parties.
+     */
+    private final Variante variante;
+
+    /**
+     * Pièces blanches de chaque position.
+     */
+    private long[] blancs = new long[1024];
+
+    /**
+     * Pièces noires de chaque position.
+     */
+    private long[] noirs = new long[1024];
+
+    /**
+     * Dames de chaque position.
+     */
+    private long[] dames = new long[1024];
+
+    /**
+     * Joueur au trait de chaque position.
+     */
+    private byte[] traits = new byte[1024];
+
+    /**
+     * Partie de chaque position.
+     */
+    private int[] parties = new int[1024];
+
+    /**
+     * Demi-coup de chaque position dans sa partie.
+     */
+    private short[] demiCoups = new short[1024];
+
+    /**
+     * Nombre de positions.
+     */
+    private int nbPositions;
+
+    /**
+     * Crée un corpus vide.
+     *
+     * @param variante La variante des parties.
+     */
+    private CorpusPositions(Variante variante) {
+        this.variante = variante;
+    }
+
+    /**
+     * Rejoue toutes les parties d'une archive, position de départ comprise.
+     *
+     * @param archive L'archive.
+     * @return Le corpus de leurs positions.
+     * @throws IllegalArgumentException Si un coup enregistré n'est pas jouable.
+     */
+    public static CorpusPositions depuis(ArchiveParties archive) {
+        CorpusPositions corpus = new CorpusPositions(archive.getVariante());
+        for (int partie = 0; partie < archive.getNbParties(); partie++) {
+            JeuDames jeu = new JeuDames(archive.getVariante());
+            corpus.ajouter(jeu.getInstantane(), partie, 0);
+            for (int i = 0; i < archive.getLongueur(partie); i++) {
+                short coup = archive.getCoup(partie, i);
+                jeu.jouer(Coup.departCompact(coup), Coup.arriveeCompact(coup));
+                corpus.ajouter(jeu.getInstantane(), partie, i + 1);
+            }
+        }
+        corpus.ajuster();
+        return corpus;
+    }
+
+    /**
+     * Retourne la variante des parties.
+     *
+     * @return La variante.
+     */
+    public Variante getVariante() {
+        return variante;
+    }
+
+    /**
+     * Retourne le nombre de positions.
+     *
+     * @return Le nombre de positions.
+     */
+    public int getNbPositions() {
+        return nbPositions;
+    }
+
+    /**
+     * Retourne la partie d'une position.
+     *
+     * @param index L'indice de la position.
+     * @return Le numéro de la partie dans l'archive.
+     */
+    public int getPartie(int index) {
+        return parties[index];
+    }
+
+    /**
+     * Retourne le demi-coup d'une position dans sa partie.
+     *
+     * @param index L'indice de la position.
+     * @return Le nombre de coups joués avant la position.
+     */
+    public int getDemiCoup(int index) {
+        return demiCoups[index];
+    }
+
+    /**
+     * Retourne les pièces blanches de chaque position.
+     *
+     * @return Le tableau, à ne pas modifier.
+     */
+    long[] getBlancs() {
+        return blancs;
+    }
+
+    /**
+     * Retourne les pièces noires de chaque position.
+     *
+     * @return Le tableau, à ne pas modifier.
+     */
+    long[] getNoirs() {
+        return noirs;
+    }
+
+    /**
+     * Retourne les dames de chaque position.
+     *
+     * @return Le tableau, à ne pas modifier.
+     */
+    long[] getDames() {
+        return dames;
+    }
+
+    /**
+     * Retourne le joueur au trait de chaque position.
+     *
+     * @return Le tableau, à ne pas modifier.
+     */
+    byte[] getTraits() {
+        return traits;
+    }
+
+    /**
+     * Ajoute une position.
+     *
+     * @param instantane La position.
+     * @param partie     Le numéro de la partie.
+     * @param demiCoup   Le demi-coup de la position.
+     */
+    private void ajouter(InstantanePartie instantane, int partie, int demiCoup) {
+        if (nbPositions == blancs.length) {
+            int taille = (int) Math.min(Integer.MAX_VALUE - 8, nbPositions * 2L);
+            if (taille == nbPositions) {
+                throw new IllegalStateException("Corpus plein.");
+            }
+            blancs = Arrays.copyOf(blancs, taille);
+            noirs = Arrays.copyOf(noirs, taille);
+            dames = Arrays.copyOf(dames, taille);
+            traits = Arrays.copyOf(traits, taille);
+            parties = Arrays.copyOf(parties, taille);
+            demiCoups = Arrays.copyOf(demiCoups, taille);
+        }
+        blancs[nbPositions] = instantane.getBlancs();
+        noirs[nbPositions] = instantane.getNoirs();
+        dames[nbPositions] = instantane.getDames();
+        traits[nbPositions] = (byte) instantane.getTour();
+        parties[nbPositions] = partie;
+        demiCoups[nbPositions] = (short) demiCoup;
+        nbPositions++;
+    }
+
+    /**
+     * Ramène les tableaux au nombre de positions.
+     */
+    private void ajuster() {
+        blancs = Arrays.copyOf(blancs, nbPositions);
+        noirs = Arrays.copyOf(noirs, nbPositions);
+        dames = Arrays.copyOf(dames, nbPositions);
+        traits = Arrays.copyOf(traits, nbPositions);
+        parties = Arrays.copyOf(parties, nbPositions);
+        demiCoups = Arrays.copyOf(demiCoups, nbPositions);
+    }
+}
@@ -0,0 +1,331 @@
+package cstjean.mobile.dames.stockage;
+
+import cstjean.mobile.dames.damier.InstantanePartie;
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.damier.Variante;
+import cstjean.mobile.dames.moteur.GenerateurCoups;
+import cstjean.mobile.dames.moteur.ListeCoups;
+import cstjean.mobile.dames.moteur.Position;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Explorateur d'ouvertures : pour une position atteinte depuis la position de départ,
+ * les coups jouables avec le nombre de parties et les résultats de celles qui les ont suivis.
+ *
+ * <p>Les statistiques sont agrégées par position, dans une table à adressage ouvert hors du
+ * tas ({@link ByteBuffer#allocateDirect(int)}) indexée par la clé de Zobrist : chaque entrée
+ * de {@value #TAILLE_ENTREE} octets contient la clé puis le nombre de parties, de victoires
+ * des blancs, de nulles et de victoires des noirs. La table double lorsqu'elle est remplie
+ * aux trois quarts ; le tas ne grandit pas avec le nombre de parties.</p>
+ *
+ * <p>Une continuation compte toutes les parties passées par la position qu'elle produit, y
+ * compris celles qui l'ont atteinte par interversion de coups. Les méthodes sont synchronisées :
+ * des parties peuvent être ajoutées en arrière-plan pendant que l'interface consulte la table.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class ExplorateurOuvertures {
+    /**
+     * Nombre de demi-coups retenus par partie, par défaut.
+     */
+    public static final int PROFONDEUR_DEFAUT = 30;
+
+    /**
+     * Taille d'une entrée : clé et quatre compteurs.
+     */
+    private static final int TAILLE_ENTREE = Long.BYTES + 4 * Integer.BYTES;
+
+    /**
+     * Position du nombre de parties dans une entrée.
+     */
+    private static final int PARTIES = Long.BYTES;
+
+    /**
+     * Position du nombre de victoires des blancs dans une entrée.
+     */
+    private static final int BLANCS = PARTIES + Integer.BYTES;
+
+    /**
+     * Position du nombre de nulles dans une entrée.
+     */
+    private static final int NULLES = BLANCS + Integer.BYTES;
+
+    /**
+     * Position du nombre de victoires des noirs dans une entrée.
+     */
+    private static final int NOIRS = NULLES + Integer.BYTES;
+
+    /**
+     * La variante des parties.
+     */
+    private final Variante variante;
+
+    /**
+     * Nombre de demi-coups retenus par partie.
+     */
+    private final int profondeur;
+
+    /**
+     * Position de travail des explorations.
+     */
+    private final Position position;
+
+    /**
+     * Générateur de coups de la variante, aux règles de {@link JeuDames}.
+     */
+    private final GenerateurCoups generateur;
+
+    /**
+     * Liste de travail du générateur.
+     */
+    private final ListeCoups liste = new ListeCoups();
+
+    /**
+     * Clés des positions de la partie en cours d'ajout.
+     */
+    private final long[] clesPartie;
+
+    /**
+     * La table des entrées, hors du tas.
+     */
+    private ByteBuffer table;
+
+    /**
+     * Nombre d'entrées de la table moins un.
+     */
+    private int masque;
+
+    /**
+     * Nombre d'entrées occupées.
+     */
+    private int nbPositions;
+
+    /**
+     * Nombre de parties ajoutées.
+     */
+    private int nbParties;
+
+    /**
+     * Crée un explorateur vide retenant les {@value #PROFONDEUR_DEFAUT} premiers demi-coups.
+     *
+     * @param variante La variante des parties.
+     */
+    public ExplorateurOuvertures(Variante variante) {
+        this(variante, PROFONDEUR_DEFAUT, 16);
+    }
+
+    /**
+     * Crée un explorateur vide.
+     *
+     * @param variante   La variante des parties.
+     * @param profondeur Le nombre de demi-coups retenus par partie.
+     * @param log2Taille Le logarithme en base 2 du nombre initial d'entrées.
+     */
+    public ExplorateurOuvertures(Variante variante, int profondeur, int log2Taille) {
+        if (profondeur < 1 || log2Taille < 4 || log2Taille > 26) {
+            throw new IllegalArgumentException("Paramètres de l'explorateur invalides.");
+        }
+        this.variante = variante;
+        this.profondeur = profondeur;
+        position = new Position(variante);
+        generateur = new GenerateurCoups(variante);
+        clesPartie = new long[profondeur + 1];
+        table = ByteBuffer.allocateDirect((1 << log2Taille) * TAILLE_ENTREE);
+        masque = (1 << log2Taille) - 1;
+    }
+
+    /**
+     * Ajoute une partie jouée avec les règles de {@link JeuDames}. Chaque position distincte
+     * de ses premiers demi-coups, position de départ comprise, compte la partie et son résultat.
+     *
+     * @param partie   La partie ; elle n'est pas modifiée.
+     * @param resultat Le résultat pour les blancs : 1, 0 ou -1.
+     * @throws IllegalArgumentException Si un coup n'est pas jouable.
+     */
+    public synchronized void ajouter(JeuDames partie, int resultat) {
+        JeuDames jeu = new JeuDames(variante);
+        int nb = 0;
+        clesPartie[nb++] = jeu.getCle();
+        int longueur = Math.min(partie.getNbCoups(), profondeur);
+        for (int i = 0; i < longueur; i++) {
+            jeu.jouer(partie.getCoup(i));
+            long cle = jeu.getCle();
+            boolean nouvelle = true;
+            for (int j = 0; j < nb && nouvelle; j++) {
+                nouvelle = clesPartie[j] != cle;
+            }
+            if (nouvelle) {
+                clesPartie[nb++] = cle;
+            }
+        }
+        int compteur = resultat > 0 ? BLANCS : resultat < 0 ? NOIRS : NULLES;
+        for (int i = 0; i < nb; i++) {
+            int entree = reserver(clesPartie[i]);
+            incrementer(entree + PARTIES);
+            incrementer(entree + compteur);
+        }
+        nbParties++;
+    }
+
+    /**
+     * Lit les statistiques d'une position.
+     *
+     * @param cle     La clé de la position, joueur au trait compris.
+     * @param comptes Reçoit le nombre de parties, de victoires des blancs, de nulles et de victoires des noirs.
+     * @return false si aucune partie n'a atteint la position.
+     */
+    public synchronized boolean statistiques(long cle, int[] comptes) {
+        int entree = trouver(cle);
+        if (entree < 0) {
+            return false;
+        }
+        comptes[0] = table.getInt(entree + PARTIES);
+        comptes[1] = table.getInt(entree + BLANCS);
+        comptes[2] = table.getInt(entree + NULLES);
+        comptes[3] = table.getInt(entree + NOIRS);
+        return true;
+    }
+
+    /**
+     * Retourne les continuations jouées depuis une position, des plus jouées aux moins jouées.
+     * Les coups essayés sont ceux qu'accepte {@link JeuDames} : chaque prise d'une pièce et
+     * chaque déplacement, même quand une prise est possible.
+     *
+     * @param instantane La position.
+     * @return Les coups jouables déjà joués dans au moins une partie.
+     */
+    public synchronized List<Continuation> explorer(InstantanePartie instantane) {
+        position.copier(instantane);
+        List<Continuation> continuations = new ArrayList<>();
+        int nb = generateur.generer(position, liste);
+        for (int i = 0; i < nb; i++) {
+            position.jouer(liste.getCoup(i), liste.getPrises(i));
+            int entree = trouver(position.getCle());
+            position.annuler();
+            if (entree >= 0) {
+                continuations.add(new Continuation(liste.getCoup(i), table.getInt(entree + PARTIES),
+                        table.getInt(entree + BLANCS), table.getInt(entree + NULLES), table.getInt(entree + NOIRS)));
+            }
+        }
+        Collections.sort(continuations, (a, b) -> Integer.compare(b.getParties(), a.getParties()));
+        return continuations;
+    }
+
+    /**
+     * Retourne les continuations jouées depuis la position courante d'une partie.
+     *
+     * @param jeu La partie.
+     * @return Les coups jouables déjà joués dans au moins une partie.
+     */
+    public List<Continuation> explorer(JeuDames jeu) {
+        return explorer(jeu.getInstantane());
+    }
+
+    /**
+     * Retourne le nombre de parties ajoutées.
+     *
+     * @return Le nombre de parties.
+     */
+    public synchronized int getNbParties() {
+        return nbParties;
+    }
+
+    /**
+     * Retourne le nombre de positions distinctes de la table.
+     *
+     * @return Le nombre de positions.
+     */
+    public synchronized int getNbPositions() {
+        return nbPositions;
+    }
+
+    /**
+     * Retourne la mémoire occupée par la table hors du tas.
+     *
+     * @return La taille en octets.
+     */
+    public synchronized long getTailleOctets() {
+        return table.capacity();
+    }
+
+    /**
+     * Cherche l'entrée d'une clé.
+     *
+     * @param cle La clé.
+     * @return La position de l'entrée dans la table, ou -1 si la clé est absente.
+     */
+    private int trouver(long cle) {
+        long valeur = cle == 0 ? 1 : cle;
+        for (int i = (int) valeur & masque; ; i = (i + 1) & masque) {
+            long occupant = table.getLong(i * TAILLE_ENTREE);
+            if (occupant == valeur) {
+                return i * TAILLE_ENTREE;
+            }
+            if (occupant == 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Retourne l'entrée d'une clé, en la créant au besoin.
+     *
+     * @param cle La clé.
+     * @return La position de l'entrée dans la table.
+     */
+    private int reserver(long cle) {
+        if ((nbPositions + 1) * 4L > (masque + 1) * 3L) {
+            agrandir();
+        }
+        long valeur = cle == 0 ? 1 : cle;
+        for (int i = (int) valeur & masque; ; i = (i + 1) & masque) {
+            long occupant = table.getLong(i * TAILLE_ENTREE);
+            if (occupant == valeur) {
+                return i * TAILLE_ENTREE;
+            }
+            if (occupant == 0) {
+                table.putLong(i * TAILLE_ENTREE, valeur);
+                nbPositions++;
+                return i * TAILLE_ENTREE;
+            }
+        }
+    }
+
+    /**
+     * Incrémente un compteur de la table.
+     *
+     * @param index La position du compteur.
+     */
+    private void incrementer(int index) {
+        table.putInt(index, table.getInt(index) + 1);
+    }
+
+    /**
+     * Double la table en y replaçant toutes les entrées.
+     */
+    private void agrandir() {
+        ByteBuffer ancienne = table;
+        int nbEntrees = masque + 1;
+        if (nbEntrees * 2L * TAILLE_ENTREE > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Table des ouvertures pleine.");
+        }
+        table = ByteBuffer.allocateDirect(nbEntrees * 2 * TAILLE_ENTREE);
+        masque = nbEntrees * 2 - 1;
+        for (int e = 0; e < nbEntrees; e++) {
+            long valeur = ancienne.getLong(e * TAILLE_ENTREE);
+            if (valeur == 0) {
+                continue;
+            }
+            int i = (int) valeur & masque;
+            while (table.getLong(i * TAILLE_ENTREE) != 0) {
+                i = (i + 1) & masque;
+            }
+            for (int octet = 0; octet < TAILLE_ENTREE; octet += Integer.BYTES) {
+                table.putInt(i * TAILLE_ENTREE + octet, ancienne.getInt(e * TAILLE_ENTREE + octet));
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package cstjean.mobile.dames.stockage;
+
+import cstjean.mobile.dames.damier.Coup;
+import cstjean.mobile.dames.damier.Damier;
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.damier.Variante;
+import cstjean.mobile.dames.damier.Zobrist;
+import cstjean.mobile.dames.moteur.Position;
+import java.util.Arrays;
+
+/**
+ * Historique d'une partie permettant d'atteindre n'importe quel demi-coup en temps constant.
+ *
+ * <p>Les coups sont conservés sous leur forme encodée ({@link Coup}, tels que les enregistre
+ * {@link JeuDames}) et, tous les {@code intervalle} demi-coups, un repère mémorise les quatre
+ * masques de pions de la position. Se placer à un demi-coup restaure le repère précédent puis
+ * rejoue au plus {@code intervalle - 1} coups sur les masques, quelle que soit la longueur
+ * de la partie. Les coups sont ceux de {@link JeuDames} : une pièce prise au plus par coup,
+ * dont la case est enregistrée dans le coup. Une instance n'est pas partagée entre threads.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class HistoriqueReperes {
+    /**
+     * Intervalle entre deux repères, par défaut.
+     */
+    public static final int INTERVALLE_DEFAUT = 16;
+
+    /**
+     * La variante de la partie.
+     */
+    private final Variante variante;
+
+    /**
+     * Nombre de demi-coups entre deux repères.
+     */
+    private final int intervalle;
+
+    /**
+     * Joueur au trait dans la position de départ.
+     */
+    private final int traitDepart;
+
+    /**
+     * Coups encodés.
+     */
+    private int[] coups = new int[64];
+
+    /**
+     * Nombre de coups.
+     */
+    private int nbCoups;
+
+    /**
+     * Masques des repères, {@link Zobrist#NB_TYPES} par repère, indexés par code de pion.
+     * Le repère i décrit la position après i * intervalle demi-coups.
+     */
+    private long[] reperes = new long[Zobrist.NB_TYPES * 8];
+
+    /**
+     * Masques de la position après le dernier coup.
+     */
+    private final long[] courants = new long[Zobrist.NB_TYPES];
+
+    /**
+     * Masques de travail de {@link #positionner(int, Position)}.
+     */
+    private final long[] travail = new long[Zobrist.NB_TYPES];
+
+    /**
+     * Construit un historique vide à partir d'une position de départ.
+     *
+     * @param variante    La variante de la partie.
+     * @param intervalle  Le nombre de demi-coups entre deux repères.
+     * @param masques     Les masques de départ, indexés par code de pion ; ils sont copiés.
+     * @param traitDepart Le joueur au trait au départ.
+     */
+    public HistoriqueReperes(Variante variante, int intervalle, long[] masques, int traitDepart) {
+        if (intervalle < 1) {
+            throw new IllegalArgumentException("L'intervalle entre les repères doit être positif.");
+        }
+        this.variante = variante;
+        this.intervalle = intervalle;
+        this.traitDepart = traitDepart;
+        System.arraycopy(masques, 0, courants, 0, Zobrist.NB_TYPES);
+        System.arraycopy(masques, 0, reperes, 0, Zobrist.NB_TYPES);
+    }
+
+    /**
+     * Construit l'historique d'une partie en cours. La position de départ est retrouvée en
+     * annulant tous les coups d'une copie de la partie.
+     *
+     * @param jeu        La partie.
+     * @param intervalle Le nombre de demi-coups entre deux repères.
+     * @return L'historique de la partie.
+     */
+    public static HistoriqueReperes depuis(JeuDames jeu, int intervalle) {
+        JeuDames copie = JeuDames.restaurer(jeu.sauvegarder());
+        for (int i = 0; i < jeu.getNbCoups(); i++) {
+            copie.annulerDernierCoup();
+        }
+        Damier damier = copie.getDamier();
+        long[] masques = new long[Zobrist.NB_TYPES];
+        for (int code = 0; code < Zobrist.NB_TYPES; code++) {
+            masques[code] = damier.getMasque(code);
+        }
+        HistoriqueReperes historique = new HistoriqueReperes(damier.getVariante(), intervalle, masques,
+                copie.getTour());
+        for (int i = 0; i < jeu.getNbCoups(); i++) {
+            historique.ajouter(jeu.getCoup(i));
+        }
+        return historique;
+    }
+
+    /**
+     * Ajoute un coup à la fin de l'historique.
+     *
+     * @param coup Le coup encodé, tel que l'enregistre {@link JeuDames}.
+     */
+    public void ajouter(int coup) {
+        if (nbCoups == coups.length) {
+            coups = Arrays.copyOf(coups, 2 * nbCoups);
+        }
+        coups[nbCoups++] = coup;
+        appliquer(courants, coup);
+        if (nbCoups % intervalle == 0) {
+            int debut = nbCoups / intervalle * Zobrist.NB_TYPES;
+            if (debut + Zobrist.NB_TYPES > reperes.length) {
+                reperes = Arrays.copyOf(reperes, 2 * reperes.length);
+            }
+            System.arraycopy(courants, 0, reperes, debut, Zobrist.NB_TYPES);
+        }
+    }
+
+    /**
+     * Retire les coups qui suivent un demi-coup, par exemple après une annulation.
+     *
+     * @param longueur Le nombre de coups à conserver.
+     */
+    public void tronquer(int longueur) {
+        if (longueur < 0 || longueur > nbCoups) {
+            throw new IndexOutOfBoundsException("Longueur " + longueur + " sur " + nbCoups);
+        }
+        nbCoups = longueur;
+        positionner(longueur, courants);
+    }
+
+    /**
+     * Calcule les masques de la position après un nombre donné de demi-coups.
+     *
+     * @param ply     Le nombre de demi-coups joués, de 0 au nombre de coups.
+     * @param masques Le tableau recevant les masques, indexés par code de pion.
+     * @return Le joueur au trait dans cette position.
+     */
+    public int positionner(int ply, long[] masques) {
+        if (ply < 0 || ply > nbCoups) {
+            throw new IndexOutOfBoundsException("Demi-coup " + ply + " sur " + nbCoups);
+        }
+        int repere = ply / intervalle;
+        System.arraycopy(reperes, repere * Zobrist.NB_TYPES, masques, 0, Zobrist.NB_TYPES);
+        for (int i = repere * intervalle; i < ply; i++) {
+            appliquer(masques, coups[i]);
+        }
+        return (traitDepart + ply) & 1;
+    }
+
+    /**
+     * Place une position du moteur après un nombre donné de demi-coups, pour l'analyser.
+     *
+     * @param ply      Le nombre de demi-coups joués.
+     * @param position La position à définir ; son historique est vidé.
+     */
+    public void positionner(int ply, Position position) {
+        int trait = positionner(ply, travail);
+        position.definir(travail[0] | travail[2], travail[1] | travail[3], travail[2] | travail[3], trait);
+    }
+
+    /**
+     * Retourne le nombre de coups de l'historique.
+     *
+     * @return Le nombre de demi-coups.
+     */
+    public int getNbCoups() {
+        return nbCoups;
+    }
+
+    /**
+     * Retourne un coup de l'historique.
+     *
+     * @param index L'indice du coup.
+     * @return Le coup encodé.
+     */
+    public int getCoup(int index) {
+        return coups[index];
+    }
+
+    /**
+     * Retourne la variante de la partie.
+     *
+     * @return La variante.
+     */
+    public Variante getVariante() {
+        return variante;
+    }
+
+    /**
+     * Applique un coup de l'historique à des masques de pions.
+     *
+     * @param masques Les masques, indexés par code de pion.
+     * @param coup    Le coup encodé.
+     */
+    private void appliquer(long[] masques, int coup) {
+        long depart = variante.getBit(Coup.depart(coup));
+        long arrivee = variante.getBit(Coup.arrivee(coup));
+        if (Coup.casePrise(coup) != 0) {
+            long prise = ~variante.getBit(Coup.casePrise(coup));
+            for (int code = 0; code < Zobrist.NB_TYPES; code++) {
+                masques[code] &= prise;
+            }
+        }
+        for (int code = 0; code < Zobrist.NB_TYPES; code++) {
+            if ((masques[code] & depart) != 0) {
+                masques[code] &= ~depart;
+                // Un pion promu passe dans le masque des dames de sa couleur (code + 2).
+                masques[Coup.estPromotion(coup) ? code + 2 : code] |= arrivee;
+                return;
+            }
+        }
+    }
+}
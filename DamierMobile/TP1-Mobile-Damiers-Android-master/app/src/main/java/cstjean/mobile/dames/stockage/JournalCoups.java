@@ -0,0 +1,376 @@
+package cstjean.mobile.dames.stockage;
+
+import cstjean.mobile.dames.damier.Coup;
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.damier.Variante;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Journal des coups d'une partie, écrit en ajout seul dans un fichier projeté en mémoire.
+ *
+ * <p>Chaque action est un enregistrement de 4 octets écrit directement dans la projection :
+ * le coup encodé avec {@link Coup}, tel qu'il figure dans l'historique de la partie, ou
+ * {@link #ANNULATION} : aucune écriture système par coup. La projection est forcée sur le
+ * stockage tous les {@value #FORCER_TOUS} enregistrements ou toutes les secondes. Tous les
+ * {@code intervallePointControle} enregistrements, l'état complet de la partie
+ * ({@link JeuDames#ecrireEtat(ByteBuffer)}) est écrit dans un fichier de point de contrôle,
+ * remplacé de façon atomique ; la reprise restaure ce point de contrôle puis ne rejoue que
+ * les actions suivantes.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class JournalCoups implements Closeable {
+    /**
+     * Nom du fichier du journal.
+     */
+    public static final String FICHIER_JOURNAL = "partie.journal";
+
+    /**
+     * Nom du fichier du point de contrôle.
+     */
+    public static final String FICHIER_POINT_CONTROLE = "partie.etat";
+
+    /**
+     * Enregistrement d'une annulation du dernier coup ; aucun coup encodé ne lui est égal.
+     */
+    static final int ANNULATION = -1;
+
+    /**
+     * Identifiant du format, en tête du journal.
+     */
+    private static final int MAGIQUE = 0x444A524E;
+
+    /**
+     * Taille de l'en-tête : identifiant et variante.
+     */
+    private static final int TAILLE_EN_TETE = 8;
+
+    /**
+     * Taille d'un enregistrement.
+     */
+    private static final int TAILLE_ENREGISTREMENT = Integer.BYTES;
+
+    /**
+     * Taille initiale de la projection.
+     */
+    private static final int TAILLE_INITIALE = 16 * 1024;
+
+    /**
+     * Nombre d'enregistrements entre deux écritures forcées.
+     */
+    private static final int FORCER_TOUS = 32;
+
+    /**
+     * Délai maximal entre deux écritures forcées, en nanosecondes.
+     */
+    private static final long DELAI_FORCER = 1_000_000_000L;
+
+    /**
+     * Nombre d'enregistrements entre deux points de contrôle, par défaut.
+     */
+    private static final int INTERVALLE_POINT_CONTROLE = 128;
+
+    /**
+     * La partie journalisée.
+     */
+    private final JeuDames jeu;
+
+    /**
+     * Dossier contenant le journal et le point de contrôle.
+     */
+    private final File dossier;
+
+    /**
+     * Canal du fichier du journal.
+     */
+    private final FileChannel canal;
+
+    /**
+     * Projection du journal.
+     */
+    private MappedByteBuffer projection;
+
+    /**
+     * Tampon réutilisé pour écrire les points de contrôle.
+     */
+    private ByteBuffer tamponEtat = ByteBuffer.allocate(4096);
+
+    /**
+     * Nombre d'enregistrements du journal.
+     */
+    private int nbEnregistrements;
+
+    /**
+     * Nombre d'enregistrements non encore forcés.
+     */
+    private int nonForces;
+
+    /**
+     * Instant de la dernière écriture forcée, en nanosecondes.
+     */
+    private long dernierForcage = System.nanoTime();
+
+    /**
+     * Nombre d'enregistrements entre deux points de contrôle.
+     */
+    private int intervallePointControle = INTERVALLE_POINT_CONTROLE;
+
+    /**
+     * Ouvre le journal d'un dossier.
+     *
+     * @param dossier           Le dossier.
+     * @param jeu               La partie journalisée.
+     * @param nbEnregistrements Le nombre d'enregistrements déjà présents.
+     * @throws IOException Si le fichier ne peut pas être ouvert.
+     */
+    private JournalCoups(File dossier, JeuDames jeu, int nbEnregistrements) throws IOException {
+        this.dossier = dossier;
+        this.jeu = jeu;
+        this.nbEnregistrements = nbEnregistrements;
+        canal = new RandomAccessFile(new File(dossier, FICHIER_JOURNAL), "rw").getChannel();
+        projection = canal.map(FileChannel.MapMode.READ_WRITE, 0,
+                Math.max(TAILLE_INITIALE, Math.max(canal.size(), decalage(nbEnregistrements + 1))));
+    }
+
+    /**
+     * Commence un nouveau journal pour une partie, en remplaçant celui du dossier.
+     * L'état courant de la partie devient le premier point de contrôle.
+     *
+     * @param dossier Le dossier.
+     * @param jeu     La partie.
+     * @return Le journal ouvert.
+     * @throws IOException Si les fichiers ne peuvent pas être écrits.
+     */
+    public static JournalCoups ouvrir(File dossier, JeuDames jeu) throws IOException {
+        File fichier = new File(dossier, FICHIER_JOURNAL);
+        if (fichier.exists() && !fichier.delete()) {
+            throw new IOException("Impossible de remplacer le journal " + fichier);
+        }
+        JournalCoups journal = new JournalCoups(dossier, jeu, 0);
+        journal.projection.putInt(0, MAGIQUE);
+        journal.projection.putInt(Integer.BYTES, jeu.getDamier().getVariante().ordinal());
+        journal.ecrirePointControle();
+        return journal;
+    }
+
+    /**
+     * Reprend la partie journalisée dans un dossier : le dernier point de contrôle est
+     * restauré, puis les actions qui le suivent sont rejouées. Le journal reste ouvert
+     * pour les actions suivantes.
+     *
+     * @param dossier Le dossier.
+     * @return Le journal repris, ou null si le dossier ne contient pas de journal.
+     * @throws IOException Si les fichiers ne peuvent pas être lus ou sont corrompus.
+     */
+    public static JournalCoups reprendre(File dossier) throws IOException {
+        File fichier = new File(dossier, FICHIER_JOURNAL);
+        if (fichier.length() < TAILLE_EN_TETE) {
+            return null;
+        }
+        JeuDames jeu;
+        int debut;
+        try (RandomAccessFile lecteur = new RandomAccessFile(fichier, "r")) {
+            if (lecteur.readInt() != MAGIQUE) {
+                return null;
+            }
+            int ordinal = lecteur.readInt();
+            if (ordinal < 0 || ordinal >= Variante.values().length) {
+                throw new IOException("Variante inconnue dans le journal " + fichier + " : " + ordinal);
+            }
+            Variante variante = Variante.values()[ordinal];
+            File pointControle = new File(dossier, FICHIER_POINT_CONTROLE);
+            if (pointControle.exists()) {
+                byte[] octets = new byte[(int) pointControle.length()];
+                try (RandomAccessFile etat = new RandomAccessFile(pointControle, "r")) {
+                    etat.readFully(octets);
+                }
+                ByteBuffer tampon = ByteBuffer.wrap(octets);
+                try {
+                    debut = tampon.getInt();
+                    jeu = JeuDames.restaurer(tampon);
+                } catch (IllegalArgumentException | BufferUnderflowException e) {
+                    throw new IOException("Point de contrôle corrompu : " + pointControle, e);
+                }
+            } else {
+                debut = 0;
+                jeu = new JeuDames(variante);
+            }
+        }
+        JournalCoups journal = new JournalCoups(dossier, jeu, debut);
+        journal.rejouer();
+        return journal;
+    }
+
+    /**
+     * Supprime le journal et le point de contrôle d'un dossier, par exemple à la fin de la
+     * partie : {@link #reprendre(File)} ne trouvera plus de partie à reprendre.
+     *
+     * @param dossier Le dossier.
+     * @throws IOException Si un des fichiers ne peut pas être supprimé.
+     */
+    public static void supprimer(File dossier) throws IOException {
+        for (String nom : new String[] {FICHIER_JOURNAL, FICHIER_POINT_CONTROLE}) {
+            File fichier = new File(dossier, nom);
+            if (fichier.exists() && !fichier.delete()) {
+                throw new IOException("Impossible de supprimer " + fichier);
+            }
+        }
+    }
+
+    /**
+     * Enregistre le dernier coup joué dans la partie. À appeler après chaque coup réussi.
+     *
+     * @throws IOException Si le journal ne peut pas grandir ou le point de contrôle être écrit.
+     */
+    public void coupJoue() throws IOException {
+        ajouter(jeu.getDernierCoup());
+    }
+
+    /**
+     * Enregistre l'annulation du dernier coup. À appeler après chaque annulation réussie.
+     *
+     * @throws IOException Si le journal ne peut pas grandir ou le point de contrôle être écrit.
+     */
+    public void coupAnnule() throws IOException {
+        ajouter(ANNULATION);
+    }
+
+    /**
+     * Force l'écriture des enregistrements en attente sur le stockage.
+     */
+    public void forcer() {
+        projection.force();
+        nonForces = 0;
+        dernierForcage = System.nanoTime();
+    }
+
+    /**
+     * Force les enregistrements en attente et ferme le journal.
+     *
+     * @throws IOException Si le canal ne peut pas être fermé.
+     */
+    @Override
+    public void close() throws IOException {
+        forcer();
+        canal.close();
+    }
+
+    /**
+     * Retourne la partie journalisée.
+     *
+     * @return La partie.
+     */
+    public JeuDames getJeu() {
+        return jeu;
+    }
+
+    /**
+     * Retourne le nombre d'enregistrements du journal.
+     *
+     * @return Le nombre d'enregistrements.
+     */
+    public int getNbEnregistrements() {
+        return nbEnregistrements;
+    }
+
+    /**
+     * Change le nombre d'enregistrements entre deux points de contrôle.
+     *
+     * @param intervalle Le nouvel intervalle, au moins 1.
+     */
+    public void setIntervallePointControle(int intervalle) {
+        intervallePointControle = Math.max(1, intervalle);
+    }
+
+    /**
+     * Ajoute un enregistrement, puis force la projection ou écrit un point de contrôle si c'est le moment.
+     *
+     * @param enregistrement L'enregistrement encodé.
+     * @throws IOException Si le journal ne peut pas grandir ou le point de contrôle être écrit.
+     */
+    private void ajouter(int enregistrement) throws IOException {
+        if (decalage(nbEnregistrements + 1) > projection.capacity()) {
+            projection = canal.map(FileChannel.MapMode.READ_WRITE, 0, 2L * projection.capacity());
+        }
+        projection.putInt(decalage(nbEnregistrements), enregistrement);
+        nbEnregistrements++;
+        nonForces++;
+        if (nbEnregistrements % intervallePointControle == 0) {
+            ecrirePointControle();
+        } else if (nonForces >= FORCER_TOUS || System.nanoTime() - dernierForcage >= DELAI_FORCER) {
+            forcer();
+        }
+    }
+
+    /**
+     * Rejoue les enregistrements qui suivent le point de contrôle, jusqu'au premier enregistrement
+     * vide ou invalide.
+     */
+    private void rejouer() {
+        while (decalage(nbEnregistrements + 1) <= projection.capacity()) {
+            int enregistrement = projection.getInt(decalage(nbEnregistrements));
+            if (enregistrement == Coup.AUCUN) {
+                return;
+            } else if (enregistrement == ANNULATION) {
+                if (jeu.annulerDernierCoup() == Coup.AUCUN) {
+                    return;
+                }
+            } else {
+                try {
+                    jeu.jouer(enregistrement);
+                } catch (IllegalArgumentException ignored) {
+                    // Fin d'écriture interrompue : le reste du journal est ignoré.
+                    return;
+                }
+            }
+            nbEnregistrements++;
+        }
+    }
+
+    /**
+     * Écrit l'état courant de la partie dans le fichier de point de contrôle : le journal est
+     * d'abord forcé, puis l'état est écrit dans un fichier temporaire renommé à la fin.
+     *
+     * @throws IOException Si le fichier ne peut pas être écrit.
+     */
+    private void ecrirePointControle() throws IOException {
+        forcer();
+        int taille = Integer.BYTES + jeu.getTailleEtat();
+        if (tamponEtat.capacity() < taille) {
+            tamponEtat = ByteBuffer.allocate(Math.max(taille, 2 * tamponEtat.capacity()));
+        }
+        tamponEtat.clear();
+        tamponEtat.putInt(nbEnregistrements);
+        jeu.ecrireEtat(tamponEtat);
+        tamponEtat.flip();
+        File temporaire = new File(dossier, FICHIER_POINT_CONTROLE + ".tmp");
+        try (RandomAccessFile fichier = new RandomAccessFile(temporaire, "rw")) {
+            fichier.setLength(0);
+            FileChannel canalEtat = fichier.getChannel();
+            while (tamponEtat.hasRemaining()) {
+                canalEtat.write(tamponEtat);
+            }
+            canalEtat.force(true);
+        }
+        if (!temporaire.renameTo(new File(dossier, FICHIER_POINT_CONTROLE))) {
+            throw new IOException("Impossible de remplacer le point de contrôle dans " + dossier);
+        }
+    }
+
+    /**
+     * Retourne la position d'un enregistrement dans le fichier.
+     *
+     * @param index L'indice de l'enregistrement.
+     * @return Le décalage en octets.
+     */
+    private static int decalage(int index) {
+        return TAILLE_EN_TETE + index * TAILLE_ENREGISTREMENT;
+    }
+}
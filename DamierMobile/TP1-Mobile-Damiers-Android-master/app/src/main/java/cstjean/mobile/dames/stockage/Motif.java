@@ -0,0 +1,275 @@
+package cstjean.mobile.dames.stockage;
+
+import cstjean.mobile.dames.damier.Pion;
+import cstjean.mobile.dames.damier.Variante;
+
+/**
+ * Motif de position recherché par {@link RequeteMotifs} : des cases où un genre de pièce est
+ * exigé ou interdit, et éventuellement le joueur au trait.
+ *
+ * <p>Les genres sont les codes de {@link Pion#getCode()} (pion blanc, pion noir, dame blanche,
+ * dame noire), complétés par {@link #BLANCS}, {@link #NOIRS} et {@link #VIDE}. Le motif est
+ * compilé en masques sur les pièces blanches, noires et les dames : une position lui correspond
+ * si {@code (blancs & soinBlancs) == valeurBlancs}, de même pour les noirs et les dames, et si
+ * aucune pièce d'un genre interdit n'occupe une case interdite. Le test est une expression
+ * sans branchement d'une dizaine d'opérations. Les exigences s'additionnent : deux exigences
+ * contradictoires sur une même case donnent un motif auquel rien ne correspond.</p>
+ *
+ * <p>Par exemple, un avant-poste blanc sur 23 soutenu par 28 et 29 :
+ * {@code new Motif(variante).exiger(0, 23).exiger(Motif.BLANCS, 28, 29)}.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class Motif {
+    /**
+     * Genre : une pièce blanche quelconque.
+     */
+    public static final int BLANCS = 4;
+
+    /**
+     * Genre : une pièce noire quelconque.
+     */
+    public static final int NOIRS = 5;
+
+    /**
+     * Genre : une case vide.
+     */
+    public static final int VIDE = 6;
+
+    /**
+     * Trait indifférent.
+     */
+    public static final int TRAIT_INDIFFERENT = -1;
+
+    /**
+     * La variante des positions.
+     */
+    private final Variante variante;
+
+    /**
+     * Indice des bits des pièces blanches imposés par le motif, dans les masques compilés.
+     */
+    static final int SOIN_BLANCS = 0;
+
+    /**
+     * Indice de la valeur imposée des bits {@link #SOIN_BLANCS}.
+     */
+    static final int VALEUR_BLANCS = 1;
+
+    /**
+     * Indice des bits des pièces noires imposés par le motif.
+     */
+    static final int SOIN_NOIRS = 2;
+
+    /**
+     * Indice de la valeur imposée des bits {@link #SOIN_NOIRS}.
+     */
+    static final int VALEUR_NOIRS = 3;
+
+    /**
+     * Indice des bits des dames imposés par le motif.
+     */
+    static final int SOIN_DAMES = 4;
+
+    /**
+     * Indice de la valeur imposée des bits {@link #SOIN_DAMES}.
+     */
+    static final int VALEUR_DAMES = 5;
+
+    /**
+     * Indice des cases interdites au code de pièce 0 ; les codes suivants suivent.
+     */
+    static final int INTERDITS = 6;
+
+    /**
+     * Indice des cases qui ne doivent pas être vides.
+     */
+    static final int INTERDITS_VIDES = 10;
+
+    /**
+     * Indice du joueur au trait exigé, ou {@link #TRAIT_INDIFFERENT}.
+     */
+    static final int TRAIT = 11;
+
+    /**
+     * Les masques du motif, aux indices ci-dessus.
+     */
+    private final long[] masques = new long[TRAIT + 1];
+
+    /**
+     * true si deux exigences se contredisent : aucune position ne correspond.
+     */
+    private boolean impossible;
+
+    /**
+     * Crée un motif vide, auquel toute position correspond.
+     *
+     * @param variante La variante des positions.
+     */
+    public Motif(Variante variante) {
+        this.variante = variante;
+        masques[TRAIT] = TRAIT_INDIFFERENT;
+    }
+
+    /**
+     * Exige un genre de pièce sur des cases.
+     *
+     * @param genre Un code de pièce, {@link #BLANCS}, {@link #NOIRS} ou {@link #VIDE}.
+     * @param cases Les cases.
+     * @return Ce motif.
+     */
+    public Motif exiger(int genre, int... cases) {
+        long masque = masque(cases);
+        switch (genre) {
+            case 0:
+            case 2:
+                imposer(SOIN_BLANCS, masque, true);
+                imposer(SOIN_DAMES, masque, genre == 2);
+                break;
+            case 1:
+            case 3:
+                imposer(SOIN_NOIRS, masque, true);
+                imposer(SOIN_DAMES, masque, genre == 3);
+                break;
+            case BLANCS:
+                imposer(SOIN_BLANCS, masque, true);
+                break;
+            case NOIRS:
+                imposer(SOIN_NOIRS, masque, true);
+                break;
+            case VIDE:
+                imposer(SOIN_BLANCS, masque, false);
+                imposer(SOIN_NOIRS, masque, false);
+                break;
+            default:
+                throw new IllegalArgumentException("Genre de pièce invalide : " + genre);
+        }
+        return this;
+    }
+
+    /**
+     * Interdit un genre de pièce sur des cases.
+     *
+     * @param genre Un code de pièce, {@link #BLANCS}, {@link #NOIRS} ou {@link #VIDE}.
+     * @param cases Les cases.
+     * @return Ce motif.
+     */
+    public Motif interdire(int genre, int... cases) {
+        long masque = masque(cases);
+        switch (genre) {
+            case 0:
+            case 1:
+            case 2:
+            case 3:
+                masques[INTERDITS + genre] |= masque;
+                break;
+            case BLANCS:
+                imposer(SOIN_BLANCS, masque, false);
+                break;
+            case NOIRS:
+                imposer(SOIN_NOIRS, masque, false);
+                break;
+            case VIDE:
+                masques[INTERDITS_VIDES] |= masque;
+                break;
+            default:
+                throw new IllegalArgumentException("Genre de pièce invalide : " + genre);
+        }
+        return this;
+    }
+
+    /**
+     * Exige un joueur au trait.
+     *
+     * @param joueur 0 pour les blancs, 1 pour les noirs.
+     * @return Ce motif.
+     */
+    public Motif exigerTrait(int joueur) {
+        impossible |= masques[TRAIT] != TRAIT_INDIFFERENT && masques[TRAIT] != joueur;
+        masques[TRAIT] = joueur;
+        return this;
+    }
+
+    /**
+     * Indique si une position correspond au motif.
+     *
+     * @param blancs Les pièces blanches.
+     * @param noirs  Les pièces noires.
+     * @param dames  Les dames des deux camps.
+     * @param joueur Le joueur au trait.
+     * @return true si la position correspond.
+     */
+    public boolean correspond(long blancs, long noirs, long dames, int joueur) {
+        return !impossible && correspond(masques, blancs, noirs, dames, joueur);
+    }
+
+    /**
+     * Indique si une position correspond à un motif compilé. C'est le seul test de
+     * correspondance : {@link RequeteMotifs} l'applique à chaque position du corpus.
+     *
+     * @param masques Le motif compilé (voir {@link #compiler()}).
+     * @param blancs  Les pièces blanches.
+     * @param noirs   Les pièces noires.
+     * @param dames   Les dames des deux camps.
+     * @param joueur  Le joueur au trait.
+     * @return true si la position correspond.
+     */
+    static boolean correspond(long[] masques, long blancs, long noirs, long dames, int joueur) {
+        long ecart = ((blancs & masques[SOIN_BLANCS]) ^ masques[VALEUR_BLANCS])
+                | ((noirs & masques[SOIN_NOIRS]) ^ masques[VALEUR_NOIRS])
+                | ((dames & masques[SOIN_DAMES]) ^ masques[VALEUR_DAMES])
+                | (blancs & ~dames & masques[INTERDITS])
+                | (noirs & ~dames & masques[INTERDITS + 1])
+                | (blancs & dames & masques[INTERDITS + 2])
+                | (noirs & dames & masques[INTERDITS + 3])
+                | (~(blancs | noirs) & masques[INTERDITS_VIDES]);
+        int trait = (int) masques[TRAIT];
+        return ecart == 0 && (trait == TRAIT_INDIFFERENT || trait == joueur);
+    }
+
+    /**
+     * Retourne la variante des positions.
+     *
+     * @return La variante.
+     */
+    public Variante getVariante() {
+        return variante;
+    }
+
+    /**
+     * Fige le motif dans un tableau pour un parcours : soins et valeurs des blancs,
+     * des noirs et des dames, cases interdites par code, cases non vides, trait.
+     *
+     * @return Une copie des masques, ou null si aucune position ne peut correspondre.
+     */
+    long[] compiler() {
+        return impossible ? null : masques.clone();
+    }
+
+    /**
+     * Convertit des numéros de cases en masque.
+     *
+     * @param cases Les cases.
+     * @return Le masque.
+     */
+    private long masque(int[] cases) {
+        long masque = 0;
+        for (int c : cases) {
+            masque |= variante.getBit(c);
+        }
+        return masque;
+    }
+
+    /**
+     * Impose la présence ou l'absence de pièces d'une catégorie : blanches, noires ou dames.
+     *
+     * @param soin     L'indice des bits imposés de la catégorie, suivi de celui de leur valeur.
+     * @param masque   Les cases.
+     * @param presence true pour exiger une pièce de la catégorie, false pour l'interdire.
+     */
+    private void imposer(int soin, long masque, boolean presence) {
+        impossible |= (masques[soin] & masque & (masques[soin + 1] ^ (presence ? masque : 0))) != 0;
+        masques[soin] |= masque;
+        masques[soin + 1] = presence ? masques[soin + 1] | masque : masques[soin + 1] & ~masque;
+    }
+}
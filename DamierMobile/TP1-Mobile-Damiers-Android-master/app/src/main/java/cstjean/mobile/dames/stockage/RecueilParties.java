@@ -0,0 +1,196 @@
+package cstjean.mobile.dames.stockage;
+
+import cstjean.mobile.dames.damier.Coup;
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.damier.Variante;
+import cstjean.mobile.dames.moteur.GenerateurCoups;
+import cstjean.mobile.dames.moteur.ListeCoups;
+import cstjean.mobile.dames.moteur.Position;
+import java.util.Arrays;
+
+/**
+ * Recueil de parties en mémoire, à raison de deux octets par coup.
+ *
+ * <p>Les coups de toutes les parties sont mis bout à bout dans un seul tableau de {@code short}
+ * (forme compacte de {@link Coup}) et un tableau d'entiers donne le début de chaque partie :
+ * un million de parties de 80 coups tiennent dans environ 160 Mo, sans un objet par partie.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class RecueilParties {
+    /**
+     * La variante des parties.
+     */
+    private final Variante variante;
+
+    /**
+     * Coups compacts de toutes les parties.
+     */
+    private short[] coups = new short[1024];
+
+    /**
+     * Indice du premier coup de chaque partie ; l'entrée suivant la dernière partie
+     * marque la fin des coups.
+     */
+    private int[] debuts = new int[17];
+
+    /**
+     * Nombre de parties.
+     */
+    private int nbParties;
+
+    /**
+     * Construit un recueil vide.
+     *
+     * @param variante La variante des parties.
+     * @throws IllegalArgumentException Si la variante compte plus de 64 cases.
+     */
+    public RecueilParties(Variante variante) {
+        Coup.verifierCompactable(variante);
+        this.variante = variante;
+    }
+
+    /**
+     * Ajoute une partie jouée coup par coup dans une {@link JeuDames}. Une telle partie ne
+     * prend qu'une pièce par coup : le rang de rafle vaut toujours 0.
+     *
+     * @param jeu La partie.
+     * @return L'indice de la partie ajoutée.
+     */
+    public int ajouter(JeuDames jeu) {
+        int nbCoups = jeu.getNbCoups();
+        reserver(nbCoups);
+        int fin = debuts[nbParties];
+        for (int i = 0; i < nbCoups; i++) {
+            coups[fin + i] = Coup.compacter(jeu.getCoup(i), 0);
+        }
+        return terminerPartie(fin + nbCoups);
+    }
+
+    /**
+     * Ajoute une partie déjà compactée, par exemple avec {@link ListeCoups#compacter(int)}.
+     *
+     * @param partie   Les coups compacts.
+     * @param longueur Le nombre de coups à ajouter.
+     * @return L'indice de la partie ajoutée.
+     */
+    public int ajouter(short[] partie, int longueur) {
+        reserver(longueur);
+        int fin = debuts[nbParties];
+        System.arraycopy(partie, 0, coups, fin, longueur);
+        return terminerPartie(fin + longueur);
+    }
+
+    /**
+     * Retourne le nombre de parties.
+     *
+     * @return Le nombre de parties.
+     */
+    public int getNbParties() {
+        return nbParties;
+    }
+
+    /**
+     * Retourne le nombre de coups d'une partie.
+     *
+     * @param partie L'indice de la partie.
+     * @return Le nombre de coups.
+     */
+    public int getLongueur(int partie) {
+        return debuts[partie + 1] - debuts[partie];
+    }
+
+    /**
+     * Retourne un coup compact d'une partie.
+     *
+     * @param partie L'indice de la partie.
+     * @param index  L'indice du coup dans la partie.
+     * @return Le coup compact.
+     */
+    public short getCoup(int partie, int index) {
+        return coups[debuts[partie] + index];
+    }
+
+    /**
+     * Retourne la variante des parties.
+     *
+     * @return La variante.
+     */
+    public Variante getVariante() {
+        return variante;
+    }
+
+    /**
+     * Rejoue une partie dans une nouvelle {@link JeuDames}, pour l'afficher ou la reprendre.
+     *
+     * @param partie L'indice de la partie.
+     * @return La partie rejouée.
+     * @throws IllegalArgumentException Si un coup enregistré n'est pas jouable.
+     */
+    public JeuDames rejouer(int partie) {
+        JeuDames jeu = new JeuDames(variante);
+        for (int i = 0; i < getLongueur(partie); i++) {
+            short coup = getCoup(partie, i);
+            jeu.jouer(Coup.departCompact(coup), Coup.arriveeCompact(coup));
+        }
+        return jeu;
+    }
+
+    /**
+     * Rejoue une partie du moteur sur une position, en retrouvant chaque coup parmi les coups légaux.
+     *
+     * @param partie     L'indice de la partie.
+     * @param position   La position de départ de la partie ; les coups y sont joués.
+     * @param generateur Le générateur de coups de la variante.
+     * @param liste      Une liste de travail.
+     * @return Le nombre de coups joués ; inférieur à la longueur si un coup n'est pas légal.
+     */
+    public int rejouer(int partie, Position position, GenerateurCoups generateur, ListeCoups liste) {
+        int longueur = getLongueur(partie);
+        for (int i = 0; i < longueur; i++) {
+            generateur.generer(position, liste);
+            int index = liste.indexDe(getCoup(partie, i));
+            if (index < 0) {
+                return i;
+            }
+            position.jouer(liste.getCoup(index), liste.getPrises(index));
+        }
+        return longueur;
+    }
+
+    /**
+     * Retourne la mémoire occupée par les coups et les débuts de parties.
+     *
+     * @return La taille en octets des tableaux.
+     */
+    public long getTailleOctets() {
+        return (long) coups.length * Short.BYTES + (long) debuts.length * Integer.BYTES;
+    }
+
+    /**
+     * Garantit la place d'une partie de plus et de ses coups.
+     *
+     * @param nbCoups Le nombre de coups de la partie.
+     */
+    private void reserver(int nbCoups) {
+        int besoin = debuts[nbParties] + nbCoups;
+        if (besoin > coups.length) {
+            coups = Arrays.copyOf(coups, Math.max(besoin, 2 * coups.length));
+        }
+        if (nbParties + 2 > debuts.length) {
+            debuts = Arrays.copyOf(debuts, 2 * debuts.length);
+        }
+    }
+
+    /**
+     * Ferme la partie en cours d'ajout.
+     *
+     * @param fin L'indice suivant son dernier coup.
+     * @return L'indice de la partie.
+     */
+    private int terminerPartie(int fin) {
+        nbParties++;
+        debuts[nbParties] = fin;
+        return nbParties - 1;
+    }
+}
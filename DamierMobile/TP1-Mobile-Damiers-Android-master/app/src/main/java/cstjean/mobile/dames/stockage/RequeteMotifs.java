@@ -0,0 +1,170 @@
+package cstjean.mobile.dames.stockage;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Recherche des positions d'un {@link CorpusPositions} correspondant à un {@link Motif}.
+ *
+ * <p>Le corpus est découpé en tranches de {@value #POSITIONS_PAR_TRANCHE} positions que les
+ * threads de calcul se partagent au fil de l'eau ; chaque position est testée par le prédicat
+ * du motif compilé sur ses trois masques. Les correspondances sont remises au rappel dès
+ * qu'elles sont trouvées, depuis les threads de calcul et donc sans ordre garanti. Une exception
+ * levée par le rappel ou un thread de calcul arrête la recherche et est relancée à l'appelant.</p>
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public final class RequeteMotifs {
+    /**
+     * Reçoit les positions correspondant au motif, sur les threads de calcul.
+     */
+    public interface Rappel {
+        /**
+         * Appelé pour chaque position correspondante ; peut l'être par plusieurs threads à la fois.
+         *
+         * @param partie   Le numéro de la partie dans l'archive.
+         * @param demiCoup Le demi-coup de la position dans la partie.
+         */
+        void correspondance(int partie, int demiCoup);
+    }
+
+    /**
+     * Nombre de positions d'une tranche.
+     */
+    private static final int POSITIONS_PAR_TRANCHE = 1 << 16;
+
+    /**
+     * Nombre de threads de calcul.
+     */
+    private final int nbFils;
+
+    /**
+     * Les threads de calcul.
+     */
+    private final ExecutorService executeur;
+
+    /**
+     * Crée un moteur de requêtes utilisant un thread par cœur.
+     */
+    public RequeteMotifs() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Crée un moteur de requêtes.
+     *
+     * @param nbFils Le nombre de threads de calcul.
+     */
+    public RequeteMotifs(int nbFils) {
+        this.nbFils = Math.max(1, nbFils);
+        final AtomicInteger numero = new AtomicInteger();
+        executeur = Executors.newFixedThreadPool(this.nbFils, tache -> {
+            Thread thread = new Thread(tache, "motifs-" + numero.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Compte les positions correspondant à un motif.
+     *
+     * @param motif  Le motif.
+     * @param corpus Le corpus.
+     * @return Le nombre de positions correspondantes.
+     * @throws InterruptedException Si le thread appelant est interrompu pendant l'attente.
+     */
+    public long compter(Motif motif, CorpusPositions corpus) throws InterruptedException {
+        return chercher(motif, corpus, null);
+    }
+
+    /**
+     * Cherche les positions correspondant à un motif et les remet au rappel à mesure.
+     *
+     * @param motif  Le motif.
+     * @param corpus Le corpus.
+     * @param rappel Le rappel, ou null pour seulement compter.
+     * @return Le nombre de positions correspondantes.
+     * @throws InterruptedException Si le thread appelant est interrompu pendant l'attente.
+     * @throws RuntimeException     L'exception levée par le rappel ou un thread de calcul, le cas échéant.
+     */
+    public long chercher(Motif motif, final CorpusPositions corpus, final Rappel rappel)
+            throws InterruptedException {
+        if (motif.getVariante() != corpus.getVariante()) {
+            throw new IllegalArgumentException("Le motif et le corpus n'ont pas la même variante.");
+        }
+        final long[] masques = motif.compiler();
+        if (masques == null) {
+            return 0;
+        }
+        final int nbTranches = (corpus.getNbPositions() + POSITIONS_PAR_TRANCHE - 1) / POSITIONS_PAR_TRANCHE;
+        final AtomicInteger prochaine = new AtomicInteger();
+        final AtomicLong total = new AtomicLong();
+        final AtomicReference<Throwable> erreur = new AtomicReference<>();
+        final CountDownLatch fin = new CountDownLatch(nbFils);
+        for (int i = 0; i < nbFils; i++) {
+            executeur.execute(() -> {
+                try {
+                    long trouvees = 0;
+                    for (int tranche = prochaine.getAndIncrement(); tranche < nbTranches && erreur.get() == null;
+                         tranche = prochaine.getAndIncrement()) {
+                        int debut = tranche * POSITIONS_PAR_TRANCHE;
+                        int finTranche = Math.min(debut + POSITIONS_PAR_TRANCHE, corpus.getNbPositions());
+                        trouvees += parcourir(masques, corpus, debut, finTranche, rappel);
+                    }
+                    total.addAndGet(trouvees);
+                } catch (RuntimeException | Error e) {
+                    erreur.compareAndSet(null, e);
+                } finally {
+                    fin.countDown();
+                }
+            });
+        }
+        fin.await();
+        Throwable cause = erreur.get();
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        if (cause != null) {
+            throw (RuntimeException) cause;
+        }
+        return total.get();
+    }
+
+    /**
+     * Arrête les threads de calcul.
+     */
+    public void fermer() {
+        executeur.shutdownNow();
+    }
+
+    /**
+     * Teste les positions d'une tranche.
+     *
+     * @param masques Le motif compilé (voir {@link Motif#compiler()}).
+     * @param corpus  Le corpus.
+     * @param debut   L'indice de la première position.
+     * @param fin     L'indice suivant la dernière position.
+     * @param rappel  Le rappel, ou null.
+     * @return Le nombre de positions correspondantes.
+     */
+    private static long parcourir(long[] masques, CorpusPositions corpus, int debut, int fin, Rappel rappel) {
+        final long[] blancs = corpus.getBlancs();
+        final long[] noirs = corpus.getNoirs();
+        final long[] dames = corpus.getDames();
+        final byte[] traits = corpus.getTraits();
+        long trouvees = 0;
+        for (int i = debut; i < fin; i++) {
+            if (Motif.correspond(masques, blancs[i], noirs[i], dames[i], traits[i])) {
+                trouvees++;
+                if (rappel != null) {
+                    rappel.correspondance(corpus.getPartie(i), corpus.getDemiCoup(i));
+                }
+            }
+        }
+        return trouvees;
+    }
+}
@@ -0,0 +1,95 @@
+package cstjean.mobile.dames.dames;
+
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.moteur.GenerateurCoups;
+import cstjean.mobile.dames.moteur.ListeCoups;
+import cstjean.mobile.dames.moteur.Position;
+import java.util.Random;
+
+/**
+ * Joue des parties de test : à chaque demi-coup, un coup légal choisi par le test parmi ceux
+ * du générateur est joué dans la partie.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+final class PartiesAleatoires {
+    /**
+     * Choisit le coup d'un demi-coup.
+     */
+    interface Choix {
+        /**
+         * Choisit un coup parmi les coups légaux.
+         *
+         * @param coups Les coups légaux, au moins un.
+         * @param ply   L'indice du demi-coup, à partir de 0.
+         * @return L'indice du coup choisi dans la liste, ou -1 pour arrêter la partie.
+         */
+        int choisir(ListeCoups coups, int ply);
+    }
+
+    /**
+     * Suit la partie après chaque coup joué.
+     */
+    interface Suivi {
+        /**
+         * Appelé après chaque coup joué.
+         *
+         * @param jeu La partie.
+         * @param ply L'indice du demi-coup joué, à partir de 0.
+         */
+        void coupJoue(JeuDames jeu, int ply);
+    }
+
+    /**
+     * Classe utilitaire.
+     */
+    private PartiesAleatoires() {
+    }
+
+    /**
+     * Retourne un choix uniforme parmi les coups légaux.
+     *
+     * @param aleatoire Le générateur aléatoire.
+     * @return Le choix.
+     */
+    static Choix auHasard(Random aleatoire) {
+        return (coups, ply) -> aleatoire.nextInt(coups.getTaille());
+    }
+
+    /**
+     * Joue au plus {@code maxPly} demi-coups dans une partie, sans suivi.
+     *
+     * @param jeu    La partie.
+     * @param maxPly Le nombre maximal de demi-coups.
+     * @param choix  Le choix des coups.
+     * @return Le nombre de demi-coups joués.
+     */
+    static int jouer(JeuDames jeu, int maxPly, Choix choix) {
+        return jouer(jeu, maxPly, choix, (partie, ply) -> { });
+    }
+
+    /**
+     * Joue au plus {@code maxPly} demi-coups dans une partie. La partie s'arrête aussi quand le
+     * joueur au trait n'a plus de coup ou quand le choix retourne -1.
+     *
+     * @param jeu    La partie.
+     * @param maxPly Le nombre maximal de demi-coups.
+     * @param choix  Le choix des coups.
+     * @param suivi  Le suivi appelé après chaque coup.
+     * @return Le nombre de demi-coups joués.
+     */
+    static int jouer(JeuDames jeu, int maxPly, Choix choix, Suivi suivi) {
+        GenerateurCoups generateur = new GenerateurCoups(jeu.getDamier().getVariante());
+        ListeCoups coups = new ListeCoups();
+        int ply = 0;
+        while (ply < maxPly && generateur.generer(Position.depuis(jeu), coups) > 0) {
+            int index = choix.choisir(coups, ply);
+            if (index < 0) {
+                break;
+            }
+            jeu.jouer(coups.getCoup(index));
+            suivi.coupJoue(jeu, ply++);
+        }
+        return ply;
+    }
+}
@@ -0,0 +1,234 @@
+package cstjean.mobile.dames.dames;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.damier.Variante;
+import cstjean.mobile.dames.entrainement.EcrivainPositions;
+import cstjean.mobile.dames.entrainement.ExportateurPositions;
+import cstjean.mobile.dames.entrainement.FormatPositions;
+import cstjean.mobile.dames.entrainement.ReglageTexel;
+import cstjean.mobile.dames.moteur.EvaluationClassique;
+import cstjean.mobile.dames.moteur.EvaluationLot;
+import cstjean.mobile.dames.moteur.GenerateurCoups;
+import cstjean.mobile.dames.moteur.ListeCoups;
+import cstjean.mobile.dames.moteur.Position;
+import cstjean.mobile.dames.stockage.RecueilParties;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Classe de test pour les outils d'entraînement et de réglage de l'évaluation.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public class TestEntrainement {
+    /**
+     * Dossier temporaire des fichiers de positions.
+     */
+    private File dossier;
+
+    /**
+     * Crée le dossier temporaire.
+     *
+     * @throws IOException Si le dossier ne peut pas être créé.
+     */
+    @Before
+    public void setUp() throws IOException {
+        dossier = Files.createTempDirectory("entrainement").toFile();
+    }
+
+    /**
+     * Supprime le dossier temporaire.
+     */
+    @After
+    public void tearDown() {
+        File[] fichiers = dossier.listFiles();
+        if (fichiers != null) {
+            for (File fichier : fichiers) {
+                fichier.delete();
+            }
+        }
+        dossier.delete();
+    }
+
+    /**
+     * Teste que le réglage réduit l'erreur sur des positions étiquetées par une évaluation
+     * de référence, et que les paramètres obtenus se relisent depuis leur fichier.
+     *
+     * @throws IOException Si les fichiers ne peuvent pas être écrits.
+     */
+    @Test
+    public void testReglageTexel() throws IOException {
+        Variante variante = Variante.INTERNATIONALE;
+        EvaluationClassique reference = new EvaluationClassique(variante, new int[] {100, 250, 0, 0, 0});
+        File fichier = new File(dossier, "positions.bin");
+        GenerateurCoups generateur = new GenerateurCoups(variante);
+        ListeCoups coups = new ListeCoups();
+        Random aleatoire = new Random(3);
+        try (EcrivainPositions ecrivain = new EcrivainPositions(fichier, false)) {
+            for (int partie = 0; partie < 300; partie++) {
+                Position position = Position.depuis(new JeuDames());
+                for (int ply = 0; ply < 120 && generateur.generer(position, coups) > 0; ply++) {
+                    int index = aleatoire.nextInt(coups.getTaille());
+                    position.jouer(coups.getCoup(index), coups.getPrises(index));
+                    int score = reference.evaluerBlancs(position);
+                    int resultat = score > 0 ? 1 : score < 0 ? -1 : 0;
+                    ecrivain.ecrire(position.getBlancs(), position.getNoirs(), position.getDames(),
+                            position.getTrait(), resultat, score, ply + 1);
+                }
+            }
+            assertTrue(ecrivain.getNbEnregistrements() > 10_000);
+        }
+
+        try (ReglageTexel reglage = new ReglageTexel(variante, fichier, 2)) {
+            assertEquals(fichier.length() / 32, reglage.getNbPositions());
+            int[] depart = EvaluationClassique.getParametresDefaut();
+            int[] regles = reglage.regler(depart, 60, 2.0);
+            assertTrue(reglage.erreur(regles) < reglage.erreur(depart));
+
+            ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+            EvaluationClassique.ecrireParametres(regles, sortie);
+            int[] relus = EvaluationClassique.chargerParametres(new ByteArrayInputStream(sortie.toByteArray()));
+            assertArrayEquals(regles, relus);
+        }
+    }
+
+    /**
+     * Teste que l'évaluation par lots donne les mêmes scores que l'évaluation classique,
+     * y compris avec des paramètres négatifs et du point de vue du joueur au trait.
+     */
+    @Test
+    public void testEvaluationLot() {
+        Random aleatoire = new Random(5);
+        for (Variante variante : new Variante[] {Variante.ANGLAISE, Variante.INTERNATIONALE}) {
+            GenerateurCoups generateur = new GenerateurCoups(variante);
+            ListeCoups coups = new ListeCoups();
+            int taille = 5000;
+            long[] blancs = new long[taille];
+            long[] noirs = new long[taille];
+            long[] dames = new long[taille];
+            byte[] traits = new byte[taille];
+            int nb = 0;
+            while (nb < taille) {
+                Position position = Position.depuis(new JeuDames(variante));
+                for (int ply = 0; nb < taille && ply < 150 && generateur.generer(position, coups) > 0; ply++) {
+                    int index = aleatoire.nextInt(coups.getTaille());
+                    position.jouer(coups.getCoup(index), coups.getPrises(index));
+                    blancs[nb] = position.getBlancs();
+                    noirs[nb] = position.getNoirs();
+                    dames[nb] = position.getDames();
+                    traits[nb] = (byte) position.getTrait();
+                    nb++;
+                }
+            }
+
+            int[][] jeux = {
+                EvaluationClassique.getParametresDefaut(),
+                {aleatoire.nextInt(200), aleatoire.nextInt(400), -aleatoire.nextInt(20),
+                    aleatoire.nextInt(40) - 20, -aleatoire.nextInt(30)}
+            };
+            for (int[] parametres : jeux) {
+                EvaluationClassique evaluation = new EvaluationClassique(variante, parametres);
+                EvaluationLot lot = new EvaluationLot(variante, evaluation);
+                int[] scores = new int[taille];
+                lot.evaluerBlancs(blancs, noirs, dames, 0, taille, scores);
+                for (int i = 0; i < taille; i++) {
+                    assertEquals(evaluation.evaluerBlancs(blancs[i], noirs[i], dames[i]), scores[i]);
+                }
+                lot.evaluer(blancs, noirs, dames, traits, 10, taille - 10, scores);
+                for (int i = 10; i < taille; i++) {
+                    int attendu = evaluation.evaluerBlancs(blancs[i], noirs[i], dames[i]);
+                    assertEquals(traits[i] == Position.BLANC ? attendu : -attendu, scores[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Teste l'export des parties d'un recueil : positions sans doublon, relues telles quelles
+     * depuis le fichier, scores de l'évaluation statique et résultats des parties terminées.
+     *
+     * @throws IOException Si le fichier ne peut pas être écrit ou relu.
+     */
+    @Test
+    public void testExportateurPositions() throws IOException {
+        Variante variante = Variante.INTERNATIONALE;
+        RecueilParties recueil = new RecueilParties(variante);
+        GenerateurCoups generateur = new GenerateurCoups(variante);
+        ListeCoups coups = new ListeCoups();
+        Random aleatoire = new Random(8);
+        short[] partie = new short[400];
+        for (int i = 0; i < 40; i++) {
+            Position position = Position.depuis(new JeuDames());
+            int longueur = 0;
+            while (longueur < partie.length && generateur.generer(position, coups) > 0) {
+                int index = aleatoire.nextInt(coups.getTaille());
+                partie[longueur++] = coups.compacter(index);
+                position.jouer(coups.getCoup(index), coups.getPrises(index));
+            }
+            recueil.ajouter(partie, longueur);
+        }
+
+        File fichier = new File(dossier, "export.bin");
+        long ecrits;
+        try (ExportateurPositions exportateur = new ExportateurPositions(variante, fichier, false, 0, 16)) {
+            ecrits = exportateur.exporter(recueil);
+            assertTrue(ecrits > 1000);
+            assertEquals(ecrits, exportateur.getNbEnregistrements());
+            assertTrue(exportateur.getNbPartiesIgnorees() < recueil.getNbParties());
+            long doublons = exportateur.getNbDoublons();
+            assertEquals(0, exportateur.exporter(recueil));
+            assertTrue(exportateur.getNbDoublons() >= doublons + ecrits);
+        }
+
+        ByteBuffer tampon = ByteBuffer.wrap(Files.readAllBytes(fichier.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(ecrits * FormatPositions.TAILLE, tampon.capacity());
+        EvaluationClassique evaluation = new EvaluationClassique(variante);
+        Position initiale = Position.depuis(new JeuDames());
+        assertEquals(initiale.getBlancs(), FormatPositions.getBlancs(tampon, 0));
+        assertEquals(initiale.getNoirs(), FormatPositions.getNoirs(tampon, 0));
+        assertEquals(0, FormatPositions.getDemiCoup(tampon, 0));
+        Position position = new Position(variante);
+        Set<Long> cles = new HashSet<>();
+        for (int debut = 0; debut < tampon.capacity(); debut += FormatPositions.TAILLE) {
+            long blancs = FormatPositions.getBlancs(tampon, debut);
+            long noirs = FormatPositions.getNoirs(tampon, debut);
+            long dames = FormatPositions.getDames(tampon, debut);
+            position.definir(blancs, noirs, dames, FormatPositions.getTrait(tampon, debut));
+            assertTrue(cles.add(position.getCle()));
+            assertEquals(evaluation.evaluerBlancs(blancs, noirs, dames), FormatPositions.getScore(tampon, debut));
+            assertTrue(Math.abs(FormatPositions.getResultat(tampon, debut)) <= 1);
+        }
+
+        JeuDames jeu = new JeuDames();
+        assertTrue(jeu.deplacerPion(32, 28));
+        assertTrue(jeu.deplacerPion(19, 23));
+        assertTrue(jeu.capturerPion(28, 19));
+        File fichierJeu = new File(dossier, "jeu.bin");
+        try (ExportateurPositions exportateur = new ExportateurPositions(variante, fichierJeu, false, 2, 0)) {
+            assertEquals(4, exportateur.exporter(jeu, 1));
+        }
+        tampon = ByteBuffer.wrap(Files.readAllBytes(fichierJeu.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        int derniere = 3 * FormatPositions.TAILLE;
+        assertEquals(jeu.getInstantane().getBlancs(), FormatPositions.getBlancs(tampon, derniere));
+        assertEquals(jeu.getInstantane().getNoirs(), FormatPositions.getNoirs(tampon, derniere));
+        assertEquals(jeu.getTour(), FormatPositions.getTrait(tampon, derniere));
+        assertEquals(1, FormatPositions.getResultat(tampon, derniere));
+        assertEquals(3, FormatPositions.getDemiCoup(tampon, derniere));
+        assertTrue(FormatPositions.getScore(tampon, derniere) != FormatPositions.SANS_SCORE);
+    }
+}
@@ -1,8 +1,12 @@
 package cstjean.mobile.dames.dames;
 
+import cstjean.mobile.dames.damier.Coup;
 import cstjean.mobile.dames.damier.Dame;
+import cstjean.mobile.dames.damier.EcouteurPartie;
 import cstjean.mobile.dames.damier.JeuDames;
 import cstjean.mobile.dames.damier.Pion;
+import cstjean.mobile.dames.damier.RegleNulle;
+import java.util.Arrays;
 import junit.framework.TestCase;
 
 /**
@@ -146,6 +150,8 @@ public class TestJeuDame extends TestCase {
         // Placer un pion blanc en position 22 et un pion noir en position 18
         jeu.getDamier().ajouterPion(22, pionBlanc);
         jeu.getDamier().ajouterPion(18, pionNoir);
+        // La case d'arrivée d'une prise doit être libre
+        jeu.getDamier().enleverPion(13);
 
         // Capture du pion noir par le pion blanc (22 → 13)
         boolean capture = jeu.capturerPion(22, 13);
@@ -252,4 +258,282 @@ public class TestJeuDame extends TestCase {
         boolean fin = jeu4.estFinDePartie();
         assertTrue(fin); // Tous les pions sont enlevés, donc la partie est terminée
     }
+
+    /**
+     * Teste la détection de la triple répétition.
+     * Deux dames font des allers-retours ; la position mise en place se présente
+     * une troisième fois après huit demi-coups.
+     */
+    public void testTripleRepetition() {
+        JeuDames jeu = new JeuDames();
+        jeu.getDamier().enleverTousLesPions();
+        jeu.getDamier().ajouterPion(46, new Dame(Pion.CouleurPion.blanc));
+        jeu.getDamier().ajouterPion(36, new Pion(Pion.CouleurPion.blanc));
+        jeu.getDamier().ajouterPion(5, new Dame(Pion.CouleurPion.noir));
+        jeu.getDamier().ajouterPion(15, new Pion(Pion.CouleurPion.noir));
+        jeu.reinitialiserRegleNulle();
+
+        for (int i = 0; i < 2; i++) {
+            assertTrue(jeu.deplacerPion(46, 41));
+            assertTrue(jeu.deplacerPion(5, 10));
+            assertTrue(jeu.deplacerPion(41, 46));
+            assertFalse(jeu.estPartieNulle());
+            assertTrue(jeu.deplacerPion(10, 5));
+            assertEquals(i == 0 ? RegleNulle.AUCUNE : RegleNulle.REPETITION, jeu.getRaisonNulle());
+        }
+        assertEquals(8, jeu.getNbCoups());
+
+        // Un déplacement de pion est irréversible : la répétition ne compte plus.
+        assertTrue(jeu.deplacerPion(36, 31));
+        assertFalse(jeu.estPartieNulle());
+        jeu.annulerDernierCoup();
+        assertEquals(RegleNulle.REPETITION, jeu.getRaisonNulle());
+    }
+
+    /**
+     * Teste l'annulation au-delà des 256 demi-coups conservés par le suivi des nulles : chaque
+     * position retrouvée a la clé, les compteurs et les répétitions qu'elle avait à l'aller.
+     */
+    public void testAnnulationLongue() {
+        final JeuDames jeu = new JeuDames();
+        jeu.getDamier().enleverTousLesPions();
+        jeu.getDamier().ajouterPion(46, new Dame(Pion.CouleurPion.blanc));
+        jeu.getDamier().ajouterPion(36, new Pion(Pion.CouleurPion.blanc));
+        jeu.getDamier().ajouterPion(5, new Dame(Pion.CouleurPion.noir));
+        jeu.getDamier().ajouterPion(15, new Pion(Pion.CouleurPion.noir));
+        jeu.reinitialiserRegleNulle();
+
+        final int nbPly = 300;
+        final long[][] attendus = new long[nbPly + 1][];
+        attendus[0] = etatNulle(jeu);
+        // Sans prise, les quatre pièces restent sur le damier et la partie dure.
+        PartiesAleatoires.Choix sansPrise = (coups, ply) -> {
+            for (int i = 0; i < coups.getTaille(); i++) {
+                int candidat = (7 * ply + i) % coups.getTaille();
+                if (Coup.nbPrises(coups.getCoup(candidat)) == 0) {
+                    return candidat;
+                }
+            }
+            return -1;
+        };
+        assertEquals(nbPly, PartiesAleatoires.jouer(jeu, nbPly, sansPrise,
+                (partie, ply) -> attendus[ply + 1] = etatNulle(partie)));
+
+        for (int ply = nbPly - 1; ply >= 0; ply--) {
+            assertTrue(jeu.annulerDernierCoup() != Coup.AUCUN);
+            assertTrue("Demi-coup " + ply, Arrays.equals(attendus[ply], etatNulle(jeu)));
+        }
+        assertEquals(Coup.AUCUN, jeu.annulerDernierCoup());
+    }
+
+    /**
+     * Retourne l'état du suivi des nulles d'une partie, pour comparaison.
+     *
+     * @param jeu La partie.
+     * @return La clé, les deux compteurs, le nombre de répétitions et la raison de nulle.
+     */
+    private static long[] etatNulle(JeuDames jeu) {
+        RegleNulle regle = jeu.getRegleNulle();
+        return new long[] {jeu.getCle(), regle.getCoupsReversibles(), regle.getCoupsDepuisMateriel(),
+                regle.nbRepetitions(), jeu.getRaisonNulle()};
+    }
+
+    /**
+     * Teste la règle des 16 coups : trois dames contre une dame.
+     */
+    public void testRegleSeizeCoups() {
+        RegleNulle regle = new RegleNulle();
+        regle.reinitialiser(0);
+        for (int i = 1; i < 32; i++) {
+            regle.jouer(i, false, false);
+        }
+        assertEquals(RegleNulle.AUCUNE, regle.raisonNulle(0, 3, 0, 1));
+        regle.jouer(32, false, false);
+        assertEquals(RegleNulle.SEIZE_COUPS, regle.raisonNulle(0, 3, 0, 1));
+        assertEquals(RegleNulle.AUCUNE, regle.raisonNulle(0, 3, 1, 1));
+        regle.annuler();
+        assertEquals(31, regle.getCoupsDepuisMateriel());
+    }
+
+    /**
+     * Teste l'annulation d'un coup avec promotion : le pion revient à sa case,
+     * redevient un pion et la clé de la position est restaurée.
+     */
+    public void testAnnulerPromotion() {
+        JeuDames jeu = new JeuDames();
+        jeu.getDamier().enleverTousLesPions();
+        jeu.getDamier().ajouterPion(7, new Pion(Pion.CouleurPion.blanc));
+        long cleAvant = jeu.getCle();
+
+        assertTrue(jeu.deplacerPion(7, 1));
+        assertTrue(jeu.getDamier().getPion(1) instanceof Dame);
+        assertTrue(Coup.estPromotion(jeu.annulerDernierCoup()));
+
+        assertNull(jeu.getDamier().getPion(1));
+        assertFalse(jeu.getDamier().getPion(7) instanceof Dame);
+        assertEquals(0, jeu.getTour());
+        assertEquals(cleAvant, jeu.getCle());
+        assertEquals(Coup.AUCUN, jeu.annulerDernierCoup());
+    }
+
+    /**
+     * Teste les déplacements d'une dame dans une position encombrée : la dame ne traverse
+     * pas les pièces, ne prend pas deux pièces collées et peut s'arrêter sur n'importe quelle
+     * case libre après la pièce prise.
+     */
+    public void testDameBloquee() {
+        JeuDames jeu = new JeuDames();
+        jeu.getDamier().enleverTousLesPions();
+        jeu.getDamier().ajouterPion(46, new Dame(Pion.CouleurPion.blanc));
+        jeu.getDamier().ajouterPion(37, new Pion(Pion.CouleurPion.noir));
+        jeu.getDamier().ajouterPion(32, new Pion(Pion.CouleurPion.noir));
+
+        // Diagonale 46-5 : 41 libre, puis 37 et 32 noirs collés : pas de prise.
+        assertTrue(jeu.deplacementValideDame(46, 41));
+        assertFalse(jeu.deplacementValideDame(46, 28));
+        assertEquals(0, jeu.getPositionPriseDame(46, 28));
+        assertEquals(0, jeu.getPositionPriseDame(46, 23));
+        assertFalse(jeu.capturerPion(46, 28));
+
+        // Un pion blanc en 32 bloque l'arrivée derrière 37.
+        jeu.getDamier().ajouterPion(32, new Pion(Pion.CouleurPion.blanc));
+        assertEquals(0, jeu.getPositionPriseDame(46, 28));
+
+        jeu.getDamier().enleverPion(32);
+        assertEquals(37, jeu.getPositionPriseDame(46, 23));
+        assertTrue(jeu.deplacerPion(46, 19));
+        assertNull(jeu.getDamier().getPion(37));
+        assertTrue(jeu.getDamier().getPion(19) instanceof Dame);
+
+        jeu.annulerDernierCoup();
+        assertNotNull(jeu.getDamier().getPion(37));
+        assertTrue(jeu.getDamier().getPion(46) instanceof Dame);
+        long destinations = jeu.getDestinationsDame(46);
+        // 41 sans prise, puis 32, 28, 23, 19, 14, 10 et 5 en prenant 37.
+        assertEquals(8, Long.bitCount(destinations));
+    }
+
+    /**
+     * Teste les événements reçus par un écouteur abonné à la partie.
+     */
+    public void testEcouteurPartie() {
+        JeuDames jeu = new JeuDames();
+        final StringBuilder evenements = new StringBuilder();
+        jeu.setEcouteur(new EcouteurPartie() {
+            @Override
+            public void coupJoue(int depart, int arrivee) {
+                evenements.append("J").append(depart).append('-').append(arrivee).append(' ');
+            }
+
+            @Override
+            public void coupRefuse(int depart, int arrivee, int raison) {
+                evenements.append("R").append(raison).append(' ');
+            }
+
+            @Override
+            public void changementTour(int tour) {
+                evenements.append("T").append(tour).append(' ');
+            }
+        });
+
+        assertFalse(jeu.deplacerPion(18, 22));
+        assertFalse(jeu.deplacerPion(25, 20));
+        assertFalse(jeu.deplacerPion(33, 27));
+        assertTrue(jeu.deplacerPion(33, 28));
+        assertEquals("R" + EcouteurPartie.MAUVAIS_JOUEUR + " R" + EcouteurPartie.PAS_DE_PION
+                + " R" + EcouteurPartie.DEPLACEMENT_INVALIDE + " J33-28 T1 ", evenements.toString());
+
+        jeu.setEcouteur(null);
+        assertTrue(jeu.deplacerPion(18, 23));
+        assertEquals(40, jeu.nbPionsParCouleur(Pion.CouleurPion.blanc)
+                + jeu.nbPionsParCouleur(Pion.CouleurPion.noir));
+    }
+
+    /**
+     * Teste qu'une partie sauvegardée puis restaurée conserve sa position, son trait,
+     * son historique et le suivi des répétitions.
+     */
+    public void testSauvegarde() {
+        JeuDames jeu = new JeuDames();
+        assertTrue(jeu.deplacerPion(32, 28));
+        assertTrue(jeu.deplacerPion(19, 23));
+        assertTrue(jeu.capturerPion(28, 19));
+        jeu.getDamier().enleverTousLesPions();
+        jeu.getDamier().ajouterPion(46, new Dame(Pion.CouleurPion.blanc));
+        jeu.getDamier().ajouterPion(5, new Dame(Pion.CouleurPion.noir));
+        jeu.getRegleNulle().reinitialiser(jeu.getCle());
+        jeu.changerTour();
+        for (int i = 0; i < 2; i++) {
+            assertTrue(jeu.deplacerPion(46, 41));
+            assertTrue(jeu.deplacerPion(5, 10));
+            assertTrue(jeu.deplacerPion(41, 46));
+            assertTrue(jeu.deplacerPion(10, 5));
+        }
+
+        byte[] etat = jeu.sauvegarder();
+        assertEquals(jeu.getTailleEtat(), etat.length);
+        JeuDames restauree = JeuDames.restaurer(etat);
+        assertEquals(jeu.getCle(), restauree.getCle());
+        assertEquals(jeu.getTour(), restauree.getTour());
+        assertTrue(Arrays.equals(jeu.getCoups(), restauree.getCoups()));
+        assertEquals(jeu.getRegleNulle().getCoupsReversibles(), restauree.getRegleNulle().getCoupsReversibles());
+        assertEquals(2, restauree.getDamier().nbPions());
+
+        assertFalse(restauree.estPartieNulle());
+        assertTrue(restauree.deplacerPion(46, 41));
+        assertTrue(restauree.deplacerPion(5, 10));
+        assertTrue(restauree.deplacerPion(41, 46));
+        assertTrue(restauree.deplacerPion(10, 5));
+        assertEquals(RegleNulle.REPETITION, restauree.getRaisonNulle());
+        for (int i = 0; i < 4; i++) {
+            restauree.annulerDernierCoup();
+        }
+        assertEquals(jeu.getCle(), restauree.getCle());
+
+        // Le troisième octet, le joueur au trait, ne peut valoir que 0 ou 1.
+        etat[2] = 2;
+        boolean refuse = false;
+        try {
+            JeuDames.restaurer(etat);
+        } catch (IllegalArgumentException e) {
+            refuse = true;
+        }
+        assertTrue(refuse);
+    }
+
+    /**
+     * Teste l'encodage des coups de l'historique : une prise garde la case et le code
+     * de la pièce prise, et la forme compacte conserve le départ et l'arrivée.
+     */
+    public void testHistoriqueCoups() {
+        JeuDames jeu = new JeuDames();
+        assertEquals(Coup.AUCUN, jeu.getDernierCoup());
+        assertTrue(jeu.deplacerPion(32, 28));
+        assertTrue(jeu.deplacerPion(19, 23));
+        assertTrue(jeu.capturerPion(28, 19));
+        assertEquals(3, jeu.getNbCoups());
+        assertEquals("32-28", Coup.notation(jeu.getCoup(0)));
+
+        int prise = jeu.getDernierCoup();
+        assertEquals("28x19", Coup.notation(prise));
+        assertEquals(23, Coup.casePrise(prise));
+        assertEquals(Pion.CouleurPion.noir.ordinal(), Coup.codePris(prise));
+        assertEquals(Coup.encoder(28, 19, false, 1), Coup.identite(prise));
+
+        short compact = Coup.compacter(prise, 3);
+        assertEquals(28, Coup.departCompact(compact));
+        assertEquals(19, Coup.arriveeCompact(compact));
+        assertEquals(3, Coup.sequenceCompact(compact));
+        assertEquals(64, Coup.arriveeCompact(Coup.compacter(Coup.encoder(1, 64, false, 0), 15)));
+        assertEquals(15, Coup.sequenceCompact(Coup.compacter(Coup.encoder(1, 64, false, 0), 15)));
+
+        // Une case au-delà de 64 ne tient pas dans les 6 bits de la forme compacte.
+        boolean refuse = false;
+        try {
+            Coup.compacter(Coup.encoder(67, 61, false, 0), 0);
+        } catch (IllegalArgumentException e) {
+            refuse = true;
+        }
+        assertTrue(refuse);
+    }
 }
@@ -0,0 +1,116 @@
+package cstjean.mobile.dames.dames;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import cstjean.mobile.dames.damier.Coup;
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.stockage.JournalCoups;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Classe de test pour le journal des coups.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public class TestJournalCoups {
+    /**
+     * Dossier temporaire des fichiers du journal.
+     */
+    private File dossier;
+
+    /**
+     * Crée le dossier temporaire.
+     *
+     * @throws IOException Si le dossier ne peut pas être créé.
+     */
+    @Before
+    public void setUp() throws IOException {
+        dossier = Files.createTempDirectory("journal").toFile();
+    }
+
+    /**
+     * Supprime le dossier temporaire.
+     */
+    @After
+    public void tearDown() {
+        File[] fichiers = dossier.listFiles();
+        if (fichiers != null) {
+            for (File fichier : fichiers) {
+                fichier.delete();
+            }
+        }
+        dossier.delete();
+    }
+
+    /**
+     * Teste la reprise d'une partie interrompue sans fermeture du journal :
+     * point de contrôle restauré puis actions suivantes rejouées.
+     *
+     * @throws IOException Si les fichiers ne peuvent pas être écrits.
+     */
+    @Test
+    public void testReprise() throws IOException {
+        assertNull(JournalCoups.reprendre(dossier));
+
+        JeuDames jeu = new JeuDames();
+        JournalCoups journal = JournalCoups.ouvrir(dossier, jeu);
+        journal.setIntervallePointControle(4);
+        assertTrue(jeu.deplacerPion(32, 28));
+        journal.coupJoue();
+        assertTrue(jeu.deplacerPion(19, 23));
+        journal.coupJoue();
+        assertTrue(jeu.capturerPion(28, 19));
+        journal.coupJoue();
+        assertTrue(jeu.capturerPion(14, 23));
+        journal.coupJoue();
+        assertTrue(jeu.deplacerPion(33, 28));
+        journal.coupJoue();
+        assertTrue(jeu.deplacerPion(23, 29));
+        journal.coupJoue();
+        assertTrue(jeu.annulerDernierCoup() != Coup.AUCUN);
+        journal.coupAnnule();
+
+        JournalCoups repris = JournalCoups.reprendre(dossier);
+        assertNotNull(repris);
+        JeuDames reprise = repris.getJeu();
+        assertEquals(7, repris.getNbEnregistrements());
+        assertEquals(jeu.getCle(), reprise.getCle());
+        assertEquals(jeu.getTour(), reprise.getTour());
+        assertArrayEquals(jeu.getCoups(), reprise.getCoups());
+
+        assertTrue(reprise.deplacerPion(20, 24));
+        repris.coupJoue();
+        repris.close();
+        JeuDames finale = JournalCoups.reprendre(dossier).getJeu();
+        assertEquals(reprise.getCle(), finale.getCle());
+
+        // Une variante inconnue dans l'en-tête est signalée comme une corruption.
+        try (RandomAccessFile acces = new RandomAccessFile(new File(dossier, JournalCoups.FICHIER_JOURNAL), "rw")) {
+            acces.seek(4);
+            acces.writeInt(99);
+        }
+        boolean refusee = false;
+        try {
+            JournalCoups.reprendre(dossier);
+        } catch (IOException e) {
+            refusee = true;
+        }
+        assertTrue(refusee);
+
+        // Une partie terminée supprime son journal : le lancement suivant n'a rien à reprendre.
+        JournalCoups.supprimer(dossier);
+        assertFalse(new File(dossier, JournalCoups.FICHIER_POINT_CONTROLE).exists());
+        assertNull(JournalCoups.reprendre(dossier));
+    }
+}
@@ -0,0 +1,104 @@
+package cstjean.mobile.dames.dames;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import cstjean.mobile.dames.damier.Dame;
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.damier.Pion;
+import cstjean.mobile.dames.metriques.Histogramme;
+import cstjean.mobile.dames.metriques.Metriques;
+import cstjean.mobile.dames.metriques.StatistiquesRecherche;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Classe de test pour les métriques du moteur.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public class TestMetriques {
+
+    /**
+     * Désactive et remet à zéro les métriques après chaque test.
+     */
+    @After
+    public void tearDown() {
+        Metriques.activer(false);
+        Metriques.reinitialiser();
+    }
+
+    /**
+     * Teste que les compteurs ne bougent que lorsque les métriques sont actives.
+     */
+    @Test
+    public void testCompteurs() {
+        JeuDames jeu = new JeuDames();
+        jeu.getDamier().enleverTousLesPions();
+        jeu.getDamier().ajouterPion(46, new Dame(Pion.CouleurPion.blanc));
+
+        jeu.deplacementValideDame(46, 41);
+        assertEquals(0, Metriques.VALIDATIONS.sum());
+
+        Metriques.activer(true);
+        assertTrue(jeu.deplacerPion(46, 41));
+        jeu.annulerDernierCoup();
+        jeu.getDestinationsDame(46);
+        assertEquals(1, Metriques.VALIDATIONS.sum());
+        assertEquals(1, Metriques.ANNULATIONS.sum());
+        assertEquals(9, Metriques.COUPS_GENERES.sum());
+    }
+
+    /**
+     * Teste le calcul des statistiques d'une recherche et l'histogramme des durées.
+     */
+    @Test
+    public void testStatistiquesRecherche() {
+        Metriques.activer(true);
+        StatistiquesRecherche statistiques = new StatistiquesRecherche();
+        statistiques.demarrer();
+        for (int i = 0; i < 10; i++) {
+            statistiques.noeud();
+        }
+        statistiques.coupsGeneres(6);
+        statistiques.coupsGeneres(4);
+        statistiques.sondage(true);
+        statistiques.sondage(false);
+        statistiques.terminer();
+
+        assertEquals(5.0, statistiques.getFacteurBranchement(), 1e-9);
+        assertEquals(0.5, statistiques.getTauxSucces(), 1e-9);
+        assertEquals(10, Metriques.NOEUDS.sum());
+        assertEquals(1, Metriques.DUREES_RECHERCHE.getTotal());
+    }
+
+    /**
+     * Teste les intervalles et les centiles de l'histogramme.
+     */
+    @Test
+    public void testHistogramme() {
+        Histogramme histogramme = new Histogramme();
+        histogramme.enregistrer(0);
+        histogramme.enregistrer(1);
+        histogramme.enregistrer(5);
+        histogramme.enregistrer(1000);
+        assertEquals(1, histogramme.getCompte(0));
+        assertEquals(1, histogramme.getCompte(3));
+        assertEquals(4, histogramme.getTotal());
+        assertEquals(8, histogramme.getCentile(0.75));
+        assertEquals(1024, histogramme.getCentile(1.0));
+
+        // Avec quatre bits de précision, le centile est borné à 1/16 près.
+        Histogramme fin = new Histogramme(4);
+        assertEquals(1 + (Long.SIZE << 4), fin.getNbIntervalles());
+        fin.enregistrer(3);
+        fin.enregistrer(1000);
+        fin.enregistrer(1_000_000);
+        assertEquals(4, fin.getCentile(0.3));
+        assertEquals(1024, fin.getCentile(0.6));
+        long borne = fin.getCentile(1.0);
+        assertTrue(borne > 1_000_000 && borne <= 1_000_000 + 1_000_000 / 16);
+        fin.enregistrer(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, fin.getCentile(1.0));
+    }
+}
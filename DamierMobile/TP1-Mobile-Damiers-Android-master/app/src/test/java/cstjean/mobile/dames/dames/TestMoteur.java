@@ -0,0 +1,666 @@
+package cstjean.mobile.dames.dames;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import cstjean.mobile.dames.damier.Coup;
+import cstjean.mobile.dames.damier.Damier;
+import cstjean.mobile.dames.damier.InstantanePartie;
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.damier.Pion;
+import cstjean.mobile.dames.damier.Variante;
+import cstjean.mobile.dames.moteur.AnalyseIndices;
+import cstjean.mobile.dames.moteur.AnalysePartie;
+import cstjean.mobile.dames.moteur.AnnotationCoup;
+import cstjean.mobile.dames.moteur.ArbreVariantes;
+import cstjean.mobile.dames.moteur.EvaluationClassique;
+import cstjean.mobile.dames.moteur.EvaluationNeuronale;
+import cstjean.mobile.dames.moteur.GenerateurCoups;
+import cstjean.mobile.dames.moteur.Indice;
+import cstjean.mobile.dames.moteur.ListeCoups;
+import cstjean.mobile.dames.moteur.MoteurMcts;
+import cstjean.mobile.dames.moteur.Position;
+import cstjean.mobile.dames.moteur.Recherche;
+import cstjean.mobile.dames.moteur.ReseauNeuronal;
+import cstjean.mobile.dames.moteur.ResultatMcts;
+import cstjean.mobile.dames.moteur.ResultatPreuve;
+import cstjean.mobile.dames.moteur.ResultatRecherche;
+import cstjean.mobile.dames.moteur.ServiceMoteur;
+import cstjean.mobile.dames.moteur.SolveurPreuve;
+import cstjean.mobile.dames.moteur.TableTransposition;
+import cstjean.mobile.dames.stockage.RecueilParties;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+/**
+ * Classe de test pour le moteur : génération des coups, position et recherche.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public class TestMoteur {
+    /**
+     * Listes de coups par profondeur, pour le comptage des feuilles.
+     */
+    private final ListeCoups[] listes = new ListeCoups[8];
+
+    /**
+     * Teste le nombre de suites de coups depuis la position de départ internationale, selon
+     * les règles officielles, et la restauration de la clé après chaque annulation.
+     */
+    @Test
+    public void testPerft() {
+        for (int i = 0; i < listes.length; i++) {
+            listes[i] = new ListeCoups();
+        }
+        Position position = Position.depuis(new JeuDames());
+        GenerateurCoups generateur = new GenerateurCoups(Variante.INTERNATIONALE, true);
+        long cle = position.getCle();
+        assertEquals(9, perft(generateur, position, 1, 0));
+        assertEquals(81, perft(generateur, position, 2, 0));
+        assertEquals(658, perft(generateur, position, 3, 0));
+        assertEquals(4265, perft(generateur, position, 4, 0));
+        assertEquals(27117, perft(generateur, position, 5, 0));
+        assertEquals(cle, position.getCle());
+    }
+
+    /**
+     * Teste que le générateur propose exactement les coups que JeuDames accepte, au fil de
+     * parties aléatoires : prises d'une seule pièce, jamais obligatoires, promotions et dames comprises.
+     */
+    @Test
+    public void testReglesJeuDames() {
+        Random aleatoire = new Random(11);
+        GenerateurCoups generateur = new GenerateurCoups(Variante.INTERNATIONALE);
+        ListeCoups coups = new ListeCoups();
+        int[] prisesFacultatives = {0};
+        for (int partie = 0; partie < 10; partie++) {
+            PartiesAleatoires.jouer(new JeuDames(), 120, PartiesAleatoires.auHasard(aleatoire), (jeu, ply) -> {
+                long cle = jeu.getCle();
+                int nbCoups = generateur.generer(Position.depuis(jeu), coups);
+                Set<Integer> generes = new HashSet<>();
+                boolean prise = false;
+                boolean calme = false;
+                for (int i = 0; i < nbCoups; i++) {
+                    generes.add(Coup.identite(coups.getCoup(i)));
+                    prise |= Coup.nbPrises(coups.getCoup(i)) > 0;
+                    calme |= Coup.nbPrises(coups.getCoup(i)) == 0;
+                }
+                assertEquals(generes, coupsAcceptes(jeu));
+                assertEquals(cle, jeu.getCle());
+                if (prise && calme) {
+                    prisesFacultatives[0]++;
+                }
+            });
+        }
+        assertTrue(prisesFacultatives[0] > 0);
+    }
+
+    /**
+     * Essaie chaque coup du joueur au trait dans une partie, puis l'annule.
+     *
+     * @param jeu La partie.
+     * @return Les coups acceptés par la partie (voir {@link Coup#identite(int)}).
+     */
+    private static Set<Integer> coupsAcceptes(JeuDames jeu) {
+        Set<Integer> acceptes = new HashSet<>();
+        int nbCases = jeu.getDamier().getVariante().getNbCases();
+        for (int depart = 1; depart <= nbCases; depart++) {
+            if (!jeu.estDeTour(jeu.getDamier().getPion(depart))) {
+                continue;
+            }
+            for (int arrivee = 1; arrivee <= nbCases; arrivee++) {
+                if (jeu.capturerPion(depart, arrivee) || jeu.deplacerPion(depart, arrivee)) {
+                    acceptes.add(Coup.identite(jeu.annulerDernierCoup()));
+                }
+            }
+        }
+        return acceptes;
+    }
+
+    /**
+     * Teste que la clé de la position suit celle de la partie.
+     */
+    @Test
+    public void testCleCommePartie() {
+        JeuDames jeu = new JeuDames();
+        Position position = Position.depuis(jeu);
+        assertEquals(jeu.getCle(), position.getCle());
+
+        position.jouer(Coup.encoder(32, 28, false, 0), 0);
+        jeu.deplacerPion(32, 28);
+        assertEquals(jeu.getCle(), position.getCle());
+        assertEquals(Position.NOIR, position.getTrait());
+        position.annuler();
+        assertEquals(Position.depuis(new JeuDames()).getCle(), position.getCle());
+    }
+
+    /**
+     * Teste que les instantanés publiés par la partie restent cohérents pour un autre fil.
+     */
+    @Test
+    public void testInstantanes() throws InterruptedException {
+        final JeuDames jeu = new JeuDames();
+        final AtomicBoolean fini = new AtomicBoolean();
+        final AtomicInteger incoherences = new AtomicInteger();
+        final AtomicInteger lectures = new AtomicInteger();
+        final CountDownLatch premiereLecture = new CountDownLatch(1);
+        Thread lecteur = new Thread(() -> {
+            Position position = new Position(Variante.INTERNATIONALE);
+            while (!fini.get()) {
+                InstantanePartie instantane = jeu.getInstantane();
+                position.definir(instantane.getBlancs(), instantane.getNoirs(), instantane.getDames(),
+                        instantane.getTour());
+                if (position.getCle() != instantane.getCle()) {
+                    incoherences.incrementAndGet();
+                }
+                lectures.incrementAndGet();
+                premiereLecture.countDown();
+            }
+        });
+        lecteur.start();
+        // Les coups ne sont joués qu'une fois le lecteur en marche.
+        assertTrue(premiereLecture.await(5, TimeUnit.SECONDS));
+
+        InstantanePartie depart = jeu.getInstantane();
+        PartiesAleatoires.jouer(jeu, 30, (coups, ply) -> ply % coups.getTaille(), (partie, ply) -> {
+            InstantanePartie instantane = partie.getInstantane();
+            assertEquals(partie.getCle(), instantane.getCle());
+            assertEquals(partie.getNbCoups(), instantane.getNbCoups());
+            assertEquals(partie.getDernierCoup(), instantane.getDernierCoup());
+            assertEquals(Position.depuis(partie).getCle(), Position.depuis(instantane).getCle());
+        });
+        while (jeu.annulerDernierCoup() != Coup.AUCUN) {
+            assertEquals(jeu.getCle(), jeu.getInstantane().getCle());
+        }
+        fini.set(true);
+        lecteur.join();
+
+        assertEquals(0, incoherences.get());
+        assertTrue(lectures.get() > 0);
+        assertEquals(depart.getCle(), jeu.getInstantane().getCle());
+        assertEquals(0, depart.getNbCoups());
+    }
+
+    /**
+     * Teste le classement parallèle des coups du joueur au trait.
+     */
+    @Test
+    public void testIndices() throws InterruptedException {
+        JeuDames jeu = new JeuDames();
+        Damier damier = jeu.getDamier();
+        damier.enleverTousLesPions();
+        damier.ajouterPion(26, new Pion(Pion.CouleurPion.blanc));
+        damier.ajouterPion(40, new Pion(Pion.CouleurPion.blanc));
+        damier.ajouterPion(16, new Pion(Pion.CouleurPion.noir));
+        damier.ajouterPion(2, new Pion(Pion.CouleurPion.noir));
+        jeu.publierInstantane();
+
+        AnalyseIndices analyse = new AnalyseIndices(Variante.INTERNATIONALE, Runnable::run, 2);
+        // Profondeur fixe et pas de limite de temps : le classement ne dépend pas de la machine.
+        Indice[] indices = analyse.calculer(jeu.getInstantane(), 8, 0);
+        assertEquals(3, indices.length);
+        assertEquals(Indice.BON, indices[0].getQualite());
+        for (int i = 1; i < indices.length; i++) {
+            assertTrue(indices[i - 1].getScore() >= indices[i].getScore());
+        }
+        // 26-21 laisse le pion en prise.
+        assertEquals("26-21", Coup.notation(indices[2].getCoup()));
+        assertEquals(Indice.MAUVAIS, indices[2].getQualite());
+
+        // Les prises simples et les déplacements sont classés, comme JeuDames les accepte.
+        damier.enleverTousLesPions();
+        damier.ajouterPion(32, new Pion(Pion.CouleurPion.blanc));
+        damier.ajouterPion(33, new Pion(Pion.CouleurPion.blanc));
+        damier.ajouterPion(28, new Pion(Pion.CouleurPion.noir));
+        damier.ajouterPion(3, new Pion(Pion.CouleurPion.noir));
+        jeu.publierInstantane();
+        indices = analyse.calculer(jeu.getInstantane(), 4, 0);
+        Set<Integer> classes = new HashSet<>();
+        for (Indice indice : indices) {
+            classes.add(Coup.identite(indice.getCoup()));
+        }
+        assertEquals(4, classes.size());
+        assertEquals(coupsAcceptes(jeu), classes);
+
+        // Un pion noir seul, blancs au trait : aucun coup à classer.
+        damier.enleverTousLesPions();
+        damier.ajouterPion(3, new Pion(Pion.CouleurPion.noir));
+        jeu.publierInstantane();
+        assertEquals(0, analyse.calculer(jeu.getInstantane(), 4, 0).length);
+
+        final CountDownLatch fin = new CountDownLatch(1);
+        final AtomicReference<Indice[]> recus = new AtomicReference<>();
+        analyse.calculer(new JeuDames().getInstantane(), 200, resultats -> {
+            recus.set(resultats);
+            fin.countDown();
+        });
+        assertTrue(fin.await(5, TimeUnit.SECONDS));
+        assertEquals(9, recus.get().length);
+        analyse.fermer();
+    }
+
+    /**
+     * Teste l'annotation parallèle d'une partie terminée.
+     */
+    @Test
+    public void testAnalysePartie() throws InterruptedException {
+        JeuDames jeu = new JeuDames();
+        // 3. 34-29 ne reprend pas le pion pris en 33 : 39x28 le reprenait.
+        int[][] coups = {{32, 27}, {18, 22}, {33, 28}, {22, 33}, {34, 29}};
+        for (int[] coup : coups) {
+            jeu.jouer(coup[0], coup[1]);
+        }
+
+        AnalysePartie analyse = new AnalysePartie(Variante.INTERNATIONALE, Runnable::run, 2);
+        AnnotationCoup[] annotations = analyse.analyser(jeu, 6, 500);
+        assertEquals(5, annotations.length);
+        for (int i = 0; i < annotations.length; i++) {
+            assertEquals(i, annotations[i].getDemiCoup());
+            assertEquals(jeu.getCoup(i), annotations[i].getCoupJoue());
+            assertTrue(annotations[i].getPerte() >= 0);
+            assertTrue(i == 4 || !annotations[i].estErreur());
+        }
+        assertTrue(annotations[4].estGaffe());
+        assertTrue(annotations[4].estPriseManquee());
+        assertEquals("39x28", Coup.notation(annotations[4].getMeilleurCoup()));
+        // 2. 33-28 est joué alors que 27x18 était possible : la prise n'est pas imposée.
+        assertTrue(annotations[2].estPriseManquee());
+        JeuDames rejeu = new JeuDames();
+        for (AnnotationCoup annotation : annotations) {
+            assertTrue(coupsAcceptes(rejeu).contains(Coup.identite(annotation.getMeilleurCoup())));
+            rejeu.jouer(annotation.getCoupJoue());
+        }
+
+        final CountDownLatch fin = new CountDownLatch(1);
+        final AtomicInteger recus = new AtomicInteger();
+        final AtomicReference<AnnotationCoup[]> rapport = new AtomicReference<>();
+        analyse.analyser(jeu, 6, 500, new AnalysePartie.Rappel() {
+            @Override
+            public void coupAnalyse(AnnotationCoup annotation) {
+                recus.incrementAndGet();
+            }
+
+            @Override
+            public void analyseTerminee(AnnotationCoup[] resultats) {
+                rapport.set(resultats);
+                fin.countDown();
+            }
+        });
+        assertTrue(fin.await(10, TimeUnit.SECONDS));
+        assertEquals(5, recus.get());
+        assertEquals(5, rapport.get().length);
+        assertTrue(rapport.get()[4].estGaffe());
+        analyse.fermer();
+    }
+
+    /**
+     * Teste que le moteur Monte-Carlo joue un coup légal et trouve un gain simple.
+     */
+    @Test
+    public void testMcts() throws InterruptedException {
+        MoteurMcts mcts = new MoteurMcts(Variante.INTERNATIONALE, 2, 1 << 16);
+        JeuDames depart = new JeuDames();
+        ResultatMcts resultat = mcts.chercher(depart.getInstantane(), 100);
+        ListeCoups coups = new ListeCoups();
+        new GenerateurCoups(Variante.INTERNATIONALE).generer(Position.depuis(depart), coups);
+        assertTrue(coups.indexDe(resultat.getCoup(), resultat.getPrises()) >= 0);
+        assertTrue(resultat.getNbSimulations() > 0);
+        assertTrue(resultat.getSimulationsParSeconde() > 0);
+
+        // 47x38 force le gain ; les autres coups ne gagnent pas.
+        JeuDames jeu = positionGagnante();
+        // Un budget de simulations, et non de temps, rend le résultat indépendant de la machine.
+        resultat = mcts.chercher(jeu.getInstantane(), 0, 20_000);
+        assertEquals(2 * 20_000, resultat.getNbSimulations());
+        assertEquals(resultat.toString(), "47x38", Coup.notation(resultat.getCoup()));
+        assertTrue(resultat.toString(), resultat.getTauxGain() > 0.9);
+
+        // 16x7 est possible, mais la prise n'est pas imposée : 10-5 va à dame.
+        jeu = new JeuDames();
+        Damier damier = jeu.getDamier();
+        damier.enleverTousLesPions();
+        damier.ajouterPion(10, new Pion(Pion.CouleurPion.blanc));
+        damier.ajouterPion(16, new Pion(Pion.CouleurPion.blanc));
+        damier.ajouterPion(43, new Pion(Pion.CouleurPion.blanc));
+        damier.ajouterPion(4, new Pion(Pion.CouleurPion.noir));
+        damier.ajouterPion(11, new Pion(Pion.CouleurPion.noir));
+        damier.ajouterPion(17, new Pion(Pion.CouleurPion.noir));
+        jeu.publierInstantane();
+        resultat = mcts.chercher(jeu.getInstantane(), 0, 20_000);
+        assertEquals(resultat.toString(), "10-5", Coup.notation(resultat.getCoup()));
+        assertTrue(coupsAcceptes(jeu).contains(Coup.identite(resultat.getCoup())));
+        mcts.fermer();
+    }
+
+    /**
+     * Teste que le solveur prouve un gain forcé et rend une ligne qui y mène.
+     */
+    @Test
+    public void testSolveurPreuve() {
+        JeuDames jeu = positionGagnante();
+
+        SolveurPreuve solveur = new SolveurPreuve(Variante.INTERNATIONALE, 16, SolveurPreuve.PROFONDEUR_DEFAUT);
+        ResultatPreuve resultat = solveur.resoudre(jeu.getInstantane(), 100_000, 0);
+        assertTrue(resultat.toString(), resultat.estProuve());
+        assertTrue(resultat.estLigneComplete());
+        assertEquals("47x38", Coup.notation(resultat.getCoup(0)));
+        assertEquals(1, resultat.getLongueur() % 2);
+
+        // La ligne se termine sur une position où les noirs n'ont plus de coup.
+        Position position = Position.depuis(jeu.getInstantane());
+        GenerateurCoups generateur = new GenerateurCoups(Variante.INTERNATIONALE);
+        ListeCoups coups = new ListeCoups();
+        for (int i = 0; i < resultat.getLongueur(); i++) {
+            generateur.generer(position, coups);
+            assertTrue(coups.indexDe(resultat.getCoup(i), resultat.getPrises(i)) >= 0);
+            position.jouer(resultat.getCoup(i), resultat.getPrises(i));
+        }
+        assertEquals(0, generateur.generer(position, coups));
+
+        ResultatPreuve ouverture = solveur.resoudre(new JeuDames().getInstantane(), 10_000, 0);
+        assertEquals(ResultatPreuve.INCONNU, ouverture.getStatut());
+        assertEquals(0, ouverture.getLongueur());
+    }
+
+    /**
+     * Teste l'évaluation neuronale : chargement des poids, mise à jour incrémentale de
+     * l'accumulateur et symétrie des points de vue.
+     */
+    @Test
+    public void testEvaluationNeuronale() throws IOException {
+        Variante variante = Variante.INTERNATIONALE;
+        int nbCases = variante.getNbCases();
+        Random aleatoire = new Random(7);
+        short[] poids1 = new short[ReseauNeuronal.NB_TYPES * nbCases * 16];
+        for (int i = 0; i < poids1.length; i++) {
+            poids1[i] = (short) (aleatoire.nextInt(64) - 32);
+        }
+        short[] biais1 = new short[16];
+        byte[] poids2 = new byte[8 * 32];
+        aleatoire.nextBytes(poids2);
+        int[] biais2 = new int[8];
+        byte[] poids3 = new byte[8];
+        aleatoire.nextBytes(poids3);
+        ReseauNeuronal reseau = new ReseauNeuronal(nbCases, poids1, biais1, poids2, biais2, poids3, 0, 6, 16);
+
+        ByteBuffer fichier = ByteBuffer.allocate(reseau.getTailleOctets());
+        reseau.ecrire(fichier);
+        assertEquals(0, fichier.remaining());
+        ReseauNeuronal charge = ReseauNeuronal.charger(new ByteArrayInputStream(fichier.array()));
+
+        // Des dimensions corrompues sont refusées avant toute allocation.
+        byte[] corrompu = fichier.array().clone();
+        ByteBuffer.wrap(corrompu).putInt(12, Integer.MAX_VALUE);
+        boolean refuse = false;
+        try {
+            ReseauNeuronal.charger(new ByteArrayInputStream(corrompu));
+        } catch (IOException e) {
+            refuse = true;
+        }
+        assertTrue(refuse);
+
+        EvaluationNeuronale incrementale = new EvaluationNeuronale(variante, charge);
+        GenerateurCoups generateur = new GenerateurCoups(variante);
+        ListeCoups coups = new ListeCoups();
+        Position position = Position.depuis(new JeuDames());
+        for (int ply = 0; ply < 40 && generateur.generer(position, coups) > 0; ply++) {
+            position.jouer(coups.getCoup(ply % coups.getTaille()), coups.getPrises(ply % coups.getTaille()));
+            int attendu = new EvaluationNeuronale(variante, reseau).evaluer(position);
+            assertEquals(attendu, incrementale.evaluer(position));
+
+            // La même position vue par l'autre camp : damier retourné, couleurs et trait échangés.
+            Position miroir = new Position(variante);
+            miroir.definir(retourner(position.getNoirs(), nbCases), retourner(position.getBlancs(), nbCases),
+                    retourner(position.getDames(), nbCases), 1 - position.getTrait());
+            assertEquals(attendu, incrementale.evaluer(miroir));
+        }
+
+        Recherche recherche = new Recherche(variante, incrementale, new TableTransposition(12));
+        Position depart = Position.depuis(new JeuDames());
+        ResultatRecherche resultat = recherche.chercher(depart, 4, 0);
+        generateur.generer(depart, coups);
+        assertTrue(coups.indexDe(resultat.getCoup(), resultat.getPrises()) >= 0);
+    }
+
+    /**
+     * Retourne un masque de cases : la case n devient la case nbCases + 1 - n.
+     *
+     * @param masque  Le masque.
+     * @param nbCases Le nombre de cases.
+     * @return Le masque retourné.
+     */
+    private static long retourner(long masque, int nbCases) {
+        return Long.reverse(masque) >>> (Long.SIZE - nbCases);
+    }
+
+    /**
+     * Construit une position où les blancs, au trait, gagnent par 47x38 et par aucun autre coup.
+     *
+     * @return La partie.
+     */
+    private static JeuDames positionGagnante() {
+        JeuDames jeu = new JeuDames();
+        Damier damier = jeu.getDamier();
+        damier.enleverTousLesPions();
+        damier.ajouterPion(31, new Pion(Pion.CouleurPion.blanc));
+        damier.ajouterPion(46, new Pion(Pion.CouleurPion.blanc));
+        damier.ajouterPion(47, new Pion(Pion.CouleurPion.blanc));
+        damier.ajouterPion(17, new Pion(Pion.CouleurPion.noir));
+        damier.ajouterPion(42, new Pion(Pion.CouleurPion.noir));
+        jeu.publierInstantane();
+        return jeu;
+    }
+
+    /**
+     * Teste la prise majoritaire des règles officielles, la prise simple et facultative des
+     * règles de JeuDames et la prise à distance d'une dame.
+     */
+    @Test
+    public void testPrises() {
+        Variante variante = Variante.INTERNATIONALE;
+        GenerateurCoups generateur = new GenerateurCoups(variante, true);
+        ListeCoups coups = new ListeCoups();
+        Position position = new Position(variante);
+
+        // 32x21 ne prend qu'un pion : seule la rafle 32x23x12 est permise.
+        long noirs = variante.getBit(27) | variante.getBit(28) | variante.getBit(18);
+        position.definir(variante.getBit(32), noirs, 0, Position.BLANC);
+        assertEquals(1, generateur.generer(position, coups));
+        assertEquals("32x12", Coup.notation(coups.getCoup(0)));
+        assertEquals(2, Coup.nbPrises(coups.getCoup(0)));
+        assertEquals(variante.getBit(28) | variante.getBit(18), coups.getPrises(0));
+
+        // Selon JeuDames, 32x21 et 32x23 prennent chacune un pion et laissent le trait aux noirs.
+        GenerateurCoups jeuDames = new GenerateurCoups(variante);
+        assertEquals(2, jeuDames.generer(position, coups));
+        for (int i = 0; i < coups.getTaille(); i++) {
+            assertEquals(1, Coup.nbPrises(coups.getCoup(i)));
+        }
+
+        // La dame en 46 prend 28 et peut s'arrêter sur n'importe quelle case libre derrière.
+        position.definir(variante.getBit(46), variante.getBit(28), variante.getBit(46), Position.BLANC);
+        assertEquals(5, generateur.generer(position, coups));
+        for (int i = 0; i < coups.getTaille(); i++) {
+            assertEquals(46, Coup.depart(coups.getCoup(i)));
+            assertEquals(variante.getBit(28), coups.getPrises(i));
+        }
+        position.jouer(coups.getCoup(0), coups.getPrises(0));
+        assertEquals(0, position.getNoirs());
+        assertEquals(position.getBlancs(), position.getDames());
+    }
+
+    /**
+     * Teste que la recherche trouve une prise gagnante et la note comme un gain.
+     */
+    @Test
+    public void testRecherche() {
+        Variante variante = Variante.INTERNATIONALE;
+        Position position = new Position(variante);
+        position.definir(variante.getBit(32), variante.getBit(27), 0, Position.BLANC);
+        long cle = position.getCle();
+        Recherche recherche = new Recherche(variante, new EvaluationClassique(variante),
+                new TableTransposition(12));
+        ResultatRecherche resultat = recherche.chercher(position, 10, 0);
+        assertEquals("32x21", Coup.notation(resultat.getCoup()));
+        assertEquals(Recherche.MAT - 1, resultat.getScore());
+        assertEquals(cle, position.getCle());
+    }
+
+    /**
+     * Teste qu'une recherche en arrière-plan remet son résultat, même après une réflexion
+     * sans limite de temps.
+     *
+     * @throws InterruptedException Si l'attente est interrompue.
+     */
+    @Test
+    public void testServiceMoteur() throws InterruptedException {
+        ServiceMoteur service = new ServiceMoteur(Variante.INTERNATIONALE, Runnable::run);
+        Position position = Position.depuis(new JeuDames());
+        service.ponderer(position);
+        CountDownLatch fin = new CountDownLatch(1);
+        AtomicReference<ResultatRecherche> recu = new AtomicReference<>();
+        service.chercher(position, Recherche.PROFONDEUR_MAX, 200, resultat -> {
+            recu.set(resultat);
+            fin.countDown();
+        });
+        assertTrue(fin.await(10, TimeUnit.SECONDS));
+        assertNotNull(recu.get());
+        assertTrue(recu.get().getCoup() != Coup.AUCUN);
+        assertTrue(recu.get().getProfondeur() >= 1);
+        service.fermer();
+    }
+
+    /**
+     * Teste qu'une partie du moteur stockée en coups compacts se rejoue à l'identique.
+     */
+    @Test
+    public void testPartieCompacte() {
+        Variante variante = Variante.INTERNATIONALE;
+        GenerateurCoups generateur = new GenerateurCoups(variante);
+        ListeCoups coups = new ListeCoups();
+        Position position = Position.depuis(new JeuDames());
+        short[] partie = new short[40];
+        int longueur = 0;
+        while (longueur < partie.length && generateur.generer(position, coups) > 0) {
+            int index = (longueur * 7) % coups.getTaille();
+            partie[longueur++] = coups.compacter(index);
+            position.jouer(coups.getCoup(index), coups.getPrises(index));
+        }
+        RecueilParties recueil = new RecueilParties(variante);
+        recueil.ajouter(new short[0], 0);
+        assertEquals(1, recueil.ajouter(partie, longueur));
+        assertEquals(longueur, recueil.getLongueur(1));
+
+        Position rejouee = Position.depuis(new JeuDames());
+        assertEquals(longueur, recueil.rejouer(1, rejouee, generateur, coups));
+        assertEquals(position.getCle(), rejouee.getCle());
+    }
+
+    /**
+     * Teste le partage des préfixes et la navigation de l'arbre des variantes.
+     */
+    @Test
+    public void testArbreVariantes() {
+        GenerateurCoups generateur = new GenerateurCoups(Variante.INTERNATIONALE);
+        ListeCoups coups = new ListeCoups();
+        Position position = Position.depuis(new JeuDames());
+        ArbreVariantes arbre = new ArbreVariantes(position);
+        int[] ligne = new int[12];
+        long[] prises = new long[12];
+        for (int i = 0; i < ligne.length; i++) {
+            generateur.generer(position, coups);
+            int index = (i * 5) % coups.getTaille();
+            ligne[i] = coups.getCoup(index);
+            prises[i] = coups.getPrises(index);
+            position.jouer(ligne[i], prises[i]);
+        }
+        int fin = arbre.ajouterLigne(ArbreVariantes.RACINE, ligne, prises, ligne.length);
+        assertEquals(ligne.length + 1, arbre.getNbNoeuds());
+        assertEquals(fin, arbre.ajouterLigne(ArbreVariantes.RACINE, ligne, prises, ligne.length));
+        assertEquals(ligne.length + 1, arbre.getNbNoeuds());
+
+        arbre.allerA(fin);
+        assertEquals(position.getCle(), arbre.getPosition().getCle());
+
+        // Variante partageant les six premiers coups.
+        arbre.allerA(6);
+        Position branche = new Position(Variante.INTERNATIONALE);
+        branche.copier(arbre.getPosition());
+        generateur.generer(branche, coups);
+        int autre = coups.getCoup(0) == ligne[6] ? 1 : 0;
+        int variante = arbre.jouer(coups.getCoup(autre), coups.getPrises(autre));
+        branche.jouer(coups.getCoup(autre), coups.getPrises(autre));
+        assertEquals(ligne.length + 2, arbre.getNbNoeuds());
+        assertEquals(variante, arbre.getFrereSuivant(7));
+
+        arbre.allerA(fin);
+        assertEquals(position.getCle(), arbre.getPosition().getCle());
+        arbre.allerA(variante);
+        assertEquals(branche.getCle(), arbre.getPosition().getCle());
+        assertEquals(7, arbre.getPosition().getHauteur());
+
+        arbre.promouvoir(variante);
+        assertEquals(variante, arbre.getPremierEnfant(6));
+        arbre.retirer(variante);
+        assertEquals(6, arbre.getCurseur());
+        assertEquals(7, arbre.getPremierEnfant(6));
+        arbre.allerA(ArbreVariantes.RACINE);
+        assertEquals(0, arbre.getPosition().getHauteur());
+        assertEquals(Position.depuis(new JeuDames()).getCle(), arbre.getPosition().getCle());
+
+        // Un nœud retiré, ou un de ses descendants, est refusé.
+        arbre.retirer(7);
+        assertFalse(arbre.estAtteignable(7));
+        assertFalse(arbre.estAtteignable(fin));
+        assertTrue(arbre.estAtteignable(6));
+        int refus = 0;
+        try {
+            arbre.allerA(fin);
+        } catch (IllegalArgumentException e) {
+            refus++;
+        }
+        try {
+            arbre.retirer(7);
+        } catch (IllegalArgumentException e) {
+            refus++;
+        }
+        assertEquals(2, refus);
+        assertEquals(ArbreVariantes.RACINE, arbre.getCurseur());
+    }
+
+    /**
+     * Compte les suites de coups légaux d'une longueur donnée.
+     *
+     * @param generateur Le générateur.
+     * @param position   La position, restaurée au retour.
+     * @param profondeur La longueur des suites.
+     * @param ply        La distance à la position de départ.
+     * @return Le nombre de suites.
+     */
+    private long perft(GenerateurCoups generateur, Position position, int profondeur, int ply) {
+        ListeCoups coups = listes[ply];
+        int nbCoups = generateur.generer(position, coups);
+        if (profondeur == 1) {
+            return nbCoups;
+        }
+        long total = 0;
+        for (int i = 0; i < nbCoups; i++) {
+            position.jouer(coups.getCoup(i), coups.getPrises(i));
+            total += perft(generateur, position, profondeur - 1, ply + 1);
+            position.annuler();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,317 @@
+package cstjean.mobile.dames.dames;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import cstjean.mobile.dames.damier.Coup;
+import cstjean.mobile.dames.damier.InstantanePartie;
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.damier.Variante;
+import cstjean.mobile.dames.reseau.DiffusionPartie;
+import cstjean.mobile.dames.reseau.GenerateurCharge;
+import cstjean.mobile.dames.reseau.LecteurDiffusion;
+import cstjean.mobile.dames.reseau.Protocole;
+import cstjean.mobile.dames.reseau.RapportCharge;
+import cstjean.mobile.dames.reseau.ServeurParties;
+import cstjean.mobile.dames.reseau.SpectateurCanal;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Classe de test pour le jeu en réseau : serveur de parties et générateur de charge.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public class TestReseau {
+    /**
+     * Le serveur, sur un port local libre.
+     */
+    private ServeurParties serveur;
+
+    /**
+     * L'adresse du serveur.
+     */
+    private InetSocketAddress adresse;
+
+    @Before
+    public void setUp() throws IOException {
+        serveur = new ServeurParties(Variante.INTERNATIONALE, new InetSocketAddress("127.0.0.1", 0));
+        serveur.demarrer();
+        adresse = new InetSocketAddress("127.0.0.1", serveur.getPort());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        serveur.close();
+    }
+
+    /**
+     * Teste la création, la validation des coups et l'avis à l'adversaire.
+     */
+    @Test
+    public void testServeurParties() throws IOException {
+        try (SocketChannel blancs = SocketChannel.open(adresse);
+             SocketChannel noirs = SocketChannel.open(adresse);
+             SocketChannel intrus = SocketChannel.open(adresse)) {
+            envoyer(blancs, Protocole.CREER, Protocole.ADVERSAIRE, (short) 0, 0);
+            ByteBuffer reponse = recevoir(blancs);
+            assertEquals(Protocole.CREER, reponse.get(0));
+            int session = reponse.getInt(4);
+
+            envoyer(noirs, Protocole.REJOINDRE, 0, (short) 0, session);
+            assertEquals(Protocole.REJOINDRE, recevoir(noirs).get(0));
+            assertEquals(Protocole.REJOINDRE, recevoir(blancs).get(0));
+            envoyer(intrus, Protocole.REJOINDRE, 0, (short) 0, session);
+            assertRefus(Protocole.PLACE_PRISE, recevoir(intrus));
+
+            short coup = Coup.compacter(Coup.encoder(32, 28, false, 0), 0);
+            envoyer(noirs, Protocole.JOUER, 0, coup, session);
+            assertRefus(Protocole.PAS_VOTRE_TOUR, recevoir(noirs));
+            envoyer(blancs, Protocole.JOUER, 0, Coup.compacter(Coup.encoder(32, 23, false, 0), 0), session);
+            assertRefus(Protocole.COUP_ILLEGAL, recevoir(blancs));
+            envoyer(blancs, Protocole.JOUER, 0, coup, session);
+            reponse = recevoir(blancs);
+            assertEquals(Protocole.JOUER, reponse.get(0));
+            assertEquals(Protocole.EN_COURS, reponse.get(1));
+            reponse = recevoir(noirs);
+            assertEquals(Protocole.COUP_ADVERSE, reponse.get(0));
+            assertEquals(coup, reponse.getShort(2));
+            assertEquals(1, serveur.getNbCoupsJoues());
+
+            // Le serveur suit les règles de JeuDames : après 19-23, les blancs peuvent jouer 31-27
+            // sans prendre, puis 28x19 ne prend qu'un pion.
+            JeuDames jeu = new JeuDames();
+            jeu.jouer(32, 28);
+            int[][] suite = {{19, 23, 0}, {31, 27, 0}, {20, 24, 0}, {28, 19, 1}};
+            for (int i = 0; i < suite.length; i++) {
+                SocketChannel joueur = i % 2 == 0 ? noirs : blancs;
+                SocketChannel adversaire = i % 2 == 0 ? blancs : noirs;
+                short suivant = Coup.compacter(Coup.encoder(suite[i][0], suite[i][1], false, suite[i][2]), 0);
+                envoyer(joueur, Protocole.JOUER, 0, suivant, session);
+                assertEquals(Protocole.JOUER, recevoir(joueur).get(0));
+                assertEquals(suivant, recevoir(adversaire).getShort(2));
+                jeu.jouer(suite[i][0], suite[i][1]);
+                assertEquals(suite[i][2], Coup.nbPrises(jeu.getDernierCoup()));
+            }
+            assertEquals(1 + suite.length, serveur.getNbCoupsJoues());
+
+            envoyer(intrus, Protocole.JOUER, 0, coup, session + 1);
+            assertRefus(Protocole.SESSION_INCONNUE, recevoir(intrus));
+            envoyer(intrus, 42, 0, (short) 0, 0);
+            assertRefus(Protocole.REQUETE_INVALIDE, recevoir(intrus));
+
+            envoyer(blancs, Protocole.QUITTER, 0, (short) 0, session);
+            assertEquals(Protocole.QUITTER, recevoir(blancs).get(0));
+            assertEquals(Protocole.QUITTER, recevoir(noirs).get(0));
+            // Le numéro périmé ne désigne pas la session suivante créée dans la même case.
+            envoyer(blancs, Protocole.CREER, Protocole.SEUL, (short) 0, 0);
+            int suivante = recevoir(blancs).getInt(4);
+            assertTrue(suivante != session);
+            envoyer(noirs, Protocole.JOUER, 0, coup, session);
+            assertRefus(Protocole.SESSION_INCONNUE, recevoir(noirs));
+            assertEquals(1, serveur.getNbSessions());
+        }
+
+        // Le protocole échange des coups compacts : une variante de plus de 64 cases est refusée.
+        boolean refusee = false;
+        try {
+            new ServeurParties(Variante.CANADIENNE, new InetSocketAddress("127.0.0.1", 0)).close();
+        } catch (IllegalArgumentException e) {
+            refusee = true;
+        }
+        assertTrue(refusee);
+    }
+
+    /**
+     * Teste un court essai de charge : des coups légaux uniquement, tous acceptés.
+     */
+    @Test
+    public void testGenerateurCharge() throws IOException {
+        RapportCharge rapport = new GenerateurCharge(Variante.INTERNATIONALE, adresse, 4, 64, 7).executer(500);
+        assertTrue(rapport.getNbCoups() > 0);
+        assertEquals(0, rapport.getNbRefus());
+        assertTrue(rapport.getCoupsParSeconde() > 0);
+        assertTrue(rapport.getLatenceP99() >= rapport.getLatenceMediane());
+        assertTrue(serveur.getNbCoupsJoues() >= rapport.getNbCoups());
+    }
+
+    /**
+     * Teste la diffusion d'une partie : un spectateur à jour, un spectateur lent qui reçoit des
+     * lots, un spectateur arrivé en cours de partie et un spectateur à l'autre bout d'une connexion
+     * reconstituent tous la position finale.
+     */
+    @Test
+    public void testDiffusionPartie() throws IOException {
+        JeuDames jeu = new JeuDames();
+        DiffusionPartie diffusion = new DiffusionPartie(jeu.getInstantane(), 8);
+        LecteurDiffusion assidu = new LecteurDiffusion();
+        LecteurDiffusion lent = new LecteurDiffusion();
+        LecteurDiffusion tardif = new LecteurDiffusion();
+        boolean[] disponible = {false};
+        diffusion.abonner(trames -> {
+            assidu.appliquer(trames);
+            return true;
+        });
+        DiffusionPartie.Spectateur spectateurLent = trames -> {
+            if (!disponible[0]) {
+                return false;
+            }
+            lent.appliquer(trames);
+            return true;
+        };
+        diffusion.abonner(spectateurLent);
+        assertFalse(lent.estSynchronise());
+
+        try (ServerSocketChannel ecoute = ServerSocketChannel.open()) {
+            ecoute.bind(new InetSocketAddress("127.0.0.1", 0));
+            LecteurDiffusion distant = new LecteurDiffusion();
+            try (SocketChannel client = SocketChannel.open(ecoute.getLocalAddress());
+                 SpectateurCanal canal = new SpectateurCanal(ecoute.accept())) {
+                diffusion.abonner(canal);
+
+                PartiesAleatoires.jouer(jeu, 60, PartiesAleatoires.auHasard(new Random(4)), (partie, ply) -> {
+                    diffusion.publier(jeu);
+                    assertEquals(jeu.getNbCoups(), assidu.getNbCoups());
+                    assertPosition(jeu.getInstantane(), assidu);
+                    if (ply == 20) {
+                        diffusion.abonner(trames -> {
+                            tardif.appliquer(trames);
+                            return true;
+                        });
+                        assertPosition(jeu.getInstantane(), tardif);
+                    }
+                    if (ply % 5 == 4) {
+                        disponible[0] = !disponible[0];
+                    }
+                });
+                assertTrue(jeu.getNbCoups() > 20);
+                disponible[0] = true;
+                diffusion.diffuser();
+                assertTrue(diffusion.getNbLots() > 0);
+                InstantanePartie finale = jeu.getInstantane();
+                assertPosition(finale, lent);
+                assertPosition(finale, tardif);
+                assertEquals(finale.getDernierCoup(), tardif.getDernierCoup());
+
+                // Le tampon d'écriture local suffit à une partie ; le client lit tout ce qui est parti.
+                assertTrue(canal.vider());
+                ByteBuffer recu = ByteBuffer.allocate(1 << 16);
+                while (distant.getSequence() < diffusion.getSequence()) {
+                    if (client.read(recu) < 0) {
+                        throw new IOException("Connexion fermée.");
+                    }
+                    recu.flip();
+                    distant.appliquer(recu);
+                    recu.compact();
+                }
+                assertPosition(finale, distant);
+            }
+        }
+
+        assertTrue(diffusion.desabonner(spectateurLent));
+        assertFalse(diffusion.desabonner(spectateurLent));
+        assertEquals(3, diffusion.getNbSpectateurs());
+    }
+
+    /**
+     * Teste qu'un lecteur reconstitue la position d'un flux reçu un octet à la fois, comme après
+     * des lectures TCP partielles : une trame coupée reste dans le tampon jusqu'à être complète.
+     */
+    @Test
+    public void testLectureFragmentee() {
+        JeuDames jeu = new JeuDames();
+        DiffusionPartie diffusion = new DiffusionPartie(jeu.getInstantane(), 4);
+        ByteArrayOutputStream flux = new ByteArrayOutputStream();
+        diffusion.abonner(trames -> {
+            byte[] octets = new byte[trames.remaining()];
+            trames.get(octets);
+            flux.write(octets, 0, octets.length);
+            return true;
+        });
+        PartiesAleatoires.jouer(jeu, 30, PartiesAleatoires.auHasard(new Random(4)),
+                (partie, ply) -> diffusion.publier(jeu));
+
+        LecteurDiffusion lecteur = new LecteurDiffusion();
+        ByteBuffer recu = ByteBuffer.allocate(64);
+        for (byte octet : flux.toByteArray()) {
+            recu.put(octet);
+            recu.flip();
+            lecteur.appliquer(recu);
+            recu.compact();
+        }
+        assertEquals(0, recu.position());
+        assertEquals(diffusion.getSequence(), lecteur.getSequence());
+        assertPosition(jeu.getInstantane(), lecteur);
+        assertEquals(jeu.getInstantane().getDernierCoup(), lecteur.getDernierCoup());
+    }
+
+    /**
+     * Vérifie qu'un lecteur de diffusion est synchronisé sur une position.
+     *
+     * @param attendue La position attendue.
+     * @param lecteur  Le lecteur.
+     */
+    private static void assertPosition(InstantanePartie attendue, LecteurDiffusion lecteur) {
+        assertTrue(lecteur.estSynchronise());
+        for (int code = 0; code < 4; code++) {
+            assertEquals(attendue.getMasque(code), lecteur.getMasque(code));
+        }
+        assertEquals(attendue.getTour(), lecteur.getTour());
+        assertEquals(attendue.getNbCoups(), lecteur.getNbCoups());
+    }
+
+    /**
+     * Envoie une trame en mode bloquant.
+     *
+     * @param canal     Le canal.
+     * @param type      Le type de trame.
+     * @param parametre Le paramètre.
+     * @param coup      Le coup compact.
+     * @param session   Le numéro de session.
+     */
+    private static void envoyer(SocketChannel canal, int type, int parametre, short coup, int session)
+            throws IOException {
+        ByteBuffer trame = ByteBuffer.allocate(Protocole.TAILLE_TRAME);
+        Protocole.ecrire(trame, type, parametre, coup, session);
+        trame.flip();
+        while (trame.hasRemaining()) {
+            canal.write(trame);
+        }
+    }
+
+    /**
+     * Reçoit une trame en mode bloquant.
+     *
+     * @param canal Le canal.
+     * @return La trame.
+     */
+    private static ByteBuffer recevoir(SocketChannel canal) throws IOException {
+        ByteBuffer trame = ByteBuffer.allocate(Protocole.TAILLE_TRAME);
+        while (trame.hasRemaining()) {
+            if (canal.read(trame) < 0) {
+                throw new IOException("Connexion fermée.");
+            }
+        }
+        return trame;
+    }
+
+    /**
+     * Vérifie qu'une trame est un refus pour la raison attendue.
+     *
+     * @param raison La raison attendue.
+     * @param trame  La trame reçue.
+     */
+    private static void assertRefus(int raison, ByteBuffer trame) {
+        assertEquals(Protocole.REFUS, trame.get(0));
+        assertEquals(raison, trame.get(1));
+    }
+}
@@ -0,0 +1,320 @@
+package cstjean.mobile.dames.dames;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import cstjean.mobile.dames.damier.Coup;
+import cstjean.mobile.dames.damier.InstantanePartie;
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.damier.Variante;
+import cstjean.mobile.dames.moteur.Position;
+import cstjean.mobile.dames.stockage.ArchiveParties;
+import cstjean.mobile.dames.stockage.ConstructeurArchive;
+import cstjean.mobile.dames.stockage.CorpusPositions;
+import cstjean.mobile.dames.stockage.Continuation;
+import cstjean.mobile.dames.stockage.ExplorateurOuvertures;
+import cstjean.mobile.dames.stockage.HistoriqueReperes;
+import cstjean.mobile.dames.stockage.RecueilParties;
+import cstjean.mobile.dames.stockage.Motif;
+import cstjean.mobile.dames.stockage.RequeteMotifs;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Classe de test pour le stockage des parties : historique, archive, explorateur d'ouvertures
+ * et requêtes de motifs.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public class TestStockage {
+    /**
+     * Dossier temporaire des archives.
+     */
+    private File dossier;
+
+    /**
+     * Crée le dossier temporaire.
+     *
+     * @throws IOException Si le dossier ne peut pas être créé.
+     */
+    @Before
+    public void setUp() throws IOException {
+        dossier = Files.createTempDirectory("stockage").toFile();
+    }
+
+    /**
+     * Supprime le dossier temporaire.
+     */
+    @After
+    public void tearDown() {
+        File[] fichiers = dossier.listFiles();
+        if (fichiers != null) {
+            for (File fichier : fichiers) {
+                fichier.delete();
+            }
+        }
+        dossier.delete();
+    }
+
+    /**
+     * Teste qu'un historique à repères retrouve la position de chaque demi-coup d'une partie
+     * et suit les annulations.
+     */
+    @Test
+    public void testHistoriqueReperes() {
+        JeuDames jeu = new JeuDames();
+        long[] cles = new long[61];
+        cles[0] = jeu.getCle();
+        int ply = PartiesAleatoires.jouer(jeu, 60, (coups, demiCoup) -> (demiCoup * 3) % coups.getTaille(),
+                (partie, demiCoup) -> cles[demiCoup + 1] = partie.getCle());
+        assertTrue(ply > 20);
+
+        HistoriqueReperes historique = HistoriqueReperes.depuis(jeu, 8);
+        assertEquals(ply, historique.getNbCoups());
+        Position position = new Position(Variante.INTERNATIONALE);
+        for (int i = ply; i >= 0; i--) {
+            historique.positionner(i, position);
+            assertEquals(cles[i], position.getCle());
+        }
+
+        int dernier = jeu.annulerDernierCoup();
+        historique.tronquer(ply - 1);
+        historique.positionner(ply - 1, position);
+        assertEquals(jeu.getCle(), position.getCle());
+        historique.ajouter(dernier);
+        historique.positionner(ply, position);
+        assertEquals(cles[ply], position.getCle());
+    }
+
+    /**
+     * Teste qu'une archive retrouve, pour des positions atteintes, exactement les parties
+     * qui les ont atteintes, et restitue les coups de chaque partie.
+     *
+     * @throws IOException Si l'archive ne peut pas être écrite ou lue.
+     */
+    @Test
+    public void testArchiveParties() throws IOException {
+        Variante variante = Variante.INTERNATIONALE;
+        Random aleatoire = new Random(4);
+        PartiesAleatoires.Choix parmiTrois = (coups, ply) -> aleatoire.nextInt(Math.min(3, coups.getTaille()));
+        List<JeuDames> jeux = new ArrayList<>();
+        Map<Long, TreeSet<Integer>> attendues = new HashMap<>();
+        File fichier = new File(dossier, "parties.archive");
+        try (ConstructeurArchive constructeur = new ConstructeurArchive(fichier, variante)) {
+            for (int partie = 0; partie < 300; partie++) {
+                JeuDames jeu = new JeuDames();
+                int numero = partie;
+                attendues.computeIfAbsent(jeu.getCle(), cle -> new TreeSet<>()).add(numero);
+                PartiesAleatoires.jouer(jeu, 40, parmiTrois, (atteinte, ply) ->
+                        attendues.computeIfAbsent(atteinte.getCle(), cle -> new TreeSet<>()).add(numero));
+                assertEquals(partie, constructeur.ajouter(jeu));
+                jeux.add(jeu);
+            }
+        }
+
+        try (ArchiveParties archive = new ArchiveParties(fichier)) {
+            assertEquals(jeux.size(), archive.getNbParties());
+            long total = 0;
+            for (TreeSet<Integer> parties : attendues.values()) {
+                total += parties.size();
+            }
+            assertEquals(total, archive.getNbEntrees());
+
+            int[] trouvees = new int[jeux.size()];
+            for (Map.Entry<Long, TreeSet<Integer>> attendue : attendues.entrySet()) {
+                int nb = archive.chercher(attendue.getKey(), trouvees);
+                assertEquals(attendue.getValue().size(), nb);
+                assertEquals(nb, archive.compter(attendue.getKey()));
+                int i = 0;
+                for (int partie : attendue.getValue()) {
+                    assertEquals(partie, trouvees[i++]);
+                }
+            }
+            assertEquals(jeux.size(), archive.compter(new JeuDames().getCle()));
+            assertEquals(0, archive.chercher(0x123456789L, trouvees));
+
+            for (int partie = 0; partie < jeux.size(); partie += 37) {
+                JeuDames jeu = jeux.get(partie);
+                assertEquals(jeu.getNbCoups(), archive.getLongueur(partie));
+                for (int i = 0; i < jeu.getNbCoups(); i++) {
+                    assertEquals(Coup.compacter(jeu.getCoup(i), 0), archive.getCoup(partie, i));
+                }
+                assertEquals(jeu.getCle(), archive.rejouer(partie).getCle());
+            }
+        }
+
+        // Une variante inconnue dans l'en-tête est refusée.
+        try (RandomAccessFile acces = new RandomAccessFile(fichier, "rw")) {
+            acces.seek(8);
+            acces.writeInt(99);
+        }
+        boolean refusee = false;
+        try (ArchiveParties archive = new ArchiveParties(fichier)) {
+            archive.getNbParties();
+        } catch (IOException e) {
+            refusee = true;
+        }
+        assertTrue(refusee);
+
+        // Les coups d'une variante de plus de 64 cases ne tiennent pas dans la forme compacte.
+        refusee = false;
+        try {
+            new ConstructeurArchive(new File(dossier, "canadienne.archive"), Variante.CANADIENNE).close();
+        } catch (IllegalArgumentException e) {
+            refusee = true;
+        }
+        assertTrue(refusee);
+        refusee = false;
+        try {
+            new RecueilParties(Variante.CANADIENNE);
+        } catch (IllegalArgumentException e) {
+            refusee = true;
+        }
+        assertTrue(refusee);
+    }
+
+    /**
+     * Teste que l'explorateur d'ouvertures compte, pour chaque premier coup, les parties
+     * qui l'ont joué et leurs résultats, et qu'il survit à l'agrandissement de sa table.
+     */
+    @Test
+    public void testExplorateurOuvertures() {
+        Variante variante = Variante.INTERNATIONALE;
+        Random aleatoire = new Random(6);
+        ExplorateurOuvertures explorateur = new ExplorateurOuvertures(variante, 12, 4);
+        Map<Integer, int[]> attendus = new HashMap<>();
+        int nbParties = 500;
+        for (int partie = 0; partie < nbParties; partie++) {
+            JeuDames jeu = new JeuDames();
+            PartiesAleatoires.jouer(jeu, 12, PartiesAleatoires.auHasard(aleatoire));
+            int resultat = aleatoire.nextInt(3) - 1;
+            explorateur.ajouter(jeu, resultat);
+            int[] compte = attendus.computeIfAbsent(Coup.identite(jeu.getCoup(0)), coup -> new int[4]);
+            compte[0]++;
+            compte[2 - resultat]++;
+        }
+        assertEquals(nbParties, explorateur.getNbParties());
+        assertTrue(explorateur.getNbPositions() > 16);
+
+        int[] comptes = new int[4];
+        assertTrue(explorateur.statistiques(new JeuDames().getCle(), comptes));
+        assertEquals(nbParties, comptes[0]);
+        assertEquals(nbParties, comptes[1] + comptes[2] + comptes[3]);
+
+        List<Continuation> continuations = explorateur.explorer(new JeuDames());
+        assertEquals(attendus.size(), continuations.size());
+        for (int i = 0; i < continuations.size(); i++) {
+            Continuation continuation = continuations.get(i);
+            int[] attendu = attendus.get(Coup.identite(continuation.getCoup()));
+            assertNotNull(attendu);
+            assertEquals(attendu[0], continuation.getParties());
+            assertEquals(attendu[1], continuation.getVictoiresBlancs());
+            assertEquals(attendu[2], continuation.getNulles());
+            assertEquals(attendu[3], continuation.getVictoiresNoirs());
+            assertEquals(100, continuation.getPourcentageBlancs() + continuation.getPourcentageNulles()
+                    + continuation.getPourcentageNoirs(), 1e-9);
+            assertTrue(i == 0 || continuations.get(i - 1).getParties() >= continuation.getParties());
+        }
+
+        // Les continuations sont les coups qu'accepte JeuDames : après 32-28 19-23, la prise
+        // 28x19 et le déplacement 31-27, joué malgré la prise possible.
+        explorateur = new ExplorateurOuvertures(variante, 12, 4);
+        int[][] derniersCoups = {{31, 27}, {28, 19}};
+        for (int[] dernier : derniersCoups) {
+            JeuDames jeu = new JeuDames();
+            jeu.jouer(32, 28);
+            jeu.jouer(19, 23);
+            jeu.jouer(dernier[0], dernier[1]);
+            explorateur.ajouter(jeu, 0);
+        }
+        JeuDames jeu = new JeuDames();
+        jeu.jouer(32, 28);
+        jeu.jouer(19, 23);
+        Set<String> notations = new HashSet<>();
+        for (Continuation continuation : explorateur.explorer(jeu)) {
+            assertEquals(1, continuation.getParties());
+            notations.add(Coup.notation(continuation.getCoup()));
+        }
+        assertEquals(new HashSet<>(Arrays.asList("31-27", "28x19")), notations);
+    }
+
+    /**
+     * Teste qu'une requête de motif trouve, sur plusieurs threads, exactement les positions
+     * d'un corpus qui présentent un pion blanc sur 28 soutenu par 32 et 33, sans pion
+     * noir sur 23 et avec les noirs au trait.
+     *
+     * @throws IOException          Si l'archive ne peut pas être écrite ou lue.
+     * @throws InterruptedException Si l'attente est interrompue.
+     */
+    @Test
+    public void testRequeteMotifs() throws IOException, InterruptedException {
+        Variante variante = Variante.INTERNATIONALE;
+        Random aleatoire = new Random(9);
+        Set<String> attendues = new HashSet<>();
+        File fichier = new File(dossier, "motifs.archive");
+        try (ConstructeurArchive constructeur = new ConstructeurArchive(fichier, variante)) {
+            for (int partie = 0; partie < 400; partie++) {
+                JeuDames jeu = new JeuDames();
+                int numero = partie;
+                PartiesAleatoires.jouer(jeu, 50, PartiesAleatoires.auHasard(aleatoire), (atteinte, ply) -> {
+                    InstantanePartie instantane = atteinte.getInstantane();
+                    if ((instantane.getMasque(0) & variante.getBit(28)) != 0
+                            && (instantane.getBlancs() & variante.getBit(32)) != 0
+                            && (instantane.getBlancs() & variante.getBit(33)) != 0
+                            && (instantane.getMasque(1) & variante.getBit(23)) == 0
+                            && instantane.getTour() == 1) {
+                        attendues.add(numero + "/" + (ply + 1));
+                    }
+                });
+                constructeur.ajouter(jeu);
+            }
+        }
+        assertTrue(attendues.size() > 10);
+
+        CorpusPositions corpus;
+        try (ArchiveParties archive = new ArchiveParties(fichier)) {
+            corpus = CorpusPositions.depuis(archive);
+        }
+        Motif motif = new Motif(variante).exiger(0, 28).exiger(Motif.BLANCS, 32, 33).interdire(1, 23).exigerTrait(1);
+        RequeteMotifs requete = new RequeteMotifs(3);
+        try {
+            Set<String> trouvees = ConcurrentHashMap.newKeySet();
+            long nb = requete.chercher(motif, corpus, (partie, demiCoup) -> trouvees.add(partie + "/" + demiCoup));
+            assertEquals(attendues.size(), nb);
+            assertEquals(attendues, trouvees);
+            assertEquals(nb, requete.compter(motif, corpus));
+
+            assertEquals(corpus.getNbPositions(), requete.compter(new Motif(variante), corpus));
+            assertEquals(0, requete.compter(new Motif(variante).exiger(0, 23).exiger(Motif.VIDE, 23), corpus));
+
+            // Une exception du rappel est relancée à l'appelant au lieu d'un compte partiel.
+            boolean relancee = false;
+            try {
+                requete.chercher(motif, corpus, (partie, demiCoup) -> {
+                    throw new IllegalStateException("rappel");
+                });
+            } catch (IllegalStateException e) {
+                relancee = "rappel".equals(e.getMessage());
+            }
+            assertTrue(relancee);
+        } finally {
+            requete.fermer();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package cstjean.mobile.dames.dames;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import cstjean.mobile.dames.damier.AfficherDamier;
+import cstjean.mobile.dames.damier.Coup;
+import cstjean.mobile.dames.damier.Dame;
+import cstjean.mobile.dames.damier.Damier;
+import cstjean.mobile.dames.damier.JeuDames;
+import cstjean.mobile.dames.damier.Pion;
+import cstjean.mobile.dames.damier.Variante;
+import org.junit.Test;
+
+/**
+ * Classe de test pour la classe Variante.
+ *
+ * @author Bradley Fortin & Antoine Davignon
+ */
+public class TestVariante {
+
+    /**
+     * Teste la taille des damiers et le nombre de pions au départ de chaque variante.
+     */
+    @Test
+    public void testDimensions() {
+        assertEquals(32, Variante.ANGLAISE.getNbCases());
+        assertEquals(12, Variante.BRESILIENNE.getNbPionsDepart());
+        assertEquals(50, Variante.INTERNATIONALE.getNbCases());
+        assertEquals(20, Variante.INTERNATIONALE.getNbPionsDepart());
+        assertEquals(72, Variante.CANADIENNE.getNbCases());
+        assertEquals(30, Variante.CANADIENNE.getNbPionsDepart());
+
+        for (Variante variante : Variante.values()) {
+            Damier damier = new Damier(variante);
+            damier.initializer();
+            assertEquals(2 * variante.getNbPionsDepart(), damier.nbPions());
+        }
+    }
+
+    /**
+     * Teste la numérotation et les voisins du damier international.
+     */
+    @Test
+    public void testGeometrieInternationale() {
+        Variante variante = Variante.INTERNATIONALE;
+        assertEquals(1, variante.getNumero(0, 1));
+        assertEquals(-1, variante.getNumero(0, 0));
+        assertEquals(46, variante.getNumero(9, 0));
+        assertEquals(4, variante.getLigne(22));
+        assertEquals(3, variante.getColonne(22));
+
+        assertEquals(17, variante.getVoisin(22, Variante.NORD_OUEST));
+        assertEquals(18, variante.getVoisin(22, Variante.NORD_EST));
+        assertEquals(27, variante.getVoisin(22, Variante.SUD_OUEST));
+        assertEquals(28, variante.getVoisin(22, Variante.SUD_EST));
+        assertEquals(0, variante.getVoisin(6, Variante.NORD_OUEST));
+        assertEquals(18, variante.getCaseIntermediaire(22, 13));
+
+        assertArrayEquals(new int[]{41, 37, 32, 28, 23, 19, 14, 10, 5},
+                variante.getRayon(46, Variante.NORD_EST));
+        assertTrue(variante.estPromotion(Pion.CouleurPion.blanc, 3));
+        assertTrue(variante.estPromotion(Pion.CouleurPion.noir, 48));
+        assertFalse(variante.estPromotion(Pion.CouleurPion.noir, 3));
+    }
+
+    /**
+     * Teste l'affichage et les règles propres aux dames anglaises : pions qui ne prennent
+     * que vers l'avant et dames non volantes.
+     */
+    @Test
+    public void testDamesAnglaises() {
+        Damier damier = new Damier(Variante.ANGLAISE);
+        damier.initializer();
+        assertEquals("-P-P-P-P\n" +
+                "P-P-P-P-\n" +
+                "-P-P-P-P\n" +
+                "--------\n" +
+                "--------\n" +
+                "p-p-p-p-\n" +
+                "-p-p-p-p\n" +
+                "p-p-p-p-", AfficherDamier.afficher(damier));
+
+        // Une rangée de départ vidée garde ses colonnes ; une pièce sur une ligne centrale est affichée.
+        for (int position = 1; position <= 4; position++) {
+            damier.enleverPion(position);
+        }
+        damier.ajouterPion(14, new Pion(Pion.CouleurPion.noir));
+        assertEquals("- - - - \n" +
+                "P-P-P-P-\n" +
+                "-P-P-P-P\n" +
+                " -P- - -\n" +
+                "--------\n" +
+                "p-p-p-p-\n" +
+                "-p-p-p-p\n" +
+                "p-p-p-p-", AfficherDamier.afficher(damier));
+
+        assertEquals(1, Variante.ANGLAISE.getRayonDame(14, Variante.NORD_OUEST).length);
+        assertEquals(2, Variante.ANGLAISE.getDirectionsPrisePion(Pion.CouleurPion.blanc).length);
+        assertEquals(4, Variante.BRESILIENNE.getDirectionsPrisePion(Pion.CouleurPion.blanc).length);
+
+        JeuDames jeu = new JeuDames(Variante.ANGLAISE);
+        assertTrue(jeu.deplacerPion(22, 18));
+        assertTrue(jeu.deplacementValide(9, 13));
+        assertTrue(jeu.deplacementValide(9, 14));
+    }
+
+    /**
+     * Teste une partie canadienne : ses 72 cases dépassent les masques de 64 bits, les dames se
+     * déplacent et prennent donc en parcourant leurs diagonales, et l'état se sauvegarde case par case.
+     */
+    @Test
+    public void testDamesCanadiennes() {
+        Variante variante = Variante.CANADIENNE;
+        JeuDames jeu = new JeuDames(variante);
+        assertEquals(60, jeu.getDamier().nbPions());
+        assertNull(jeu.getInstantane());
+
+        jeu.getDamier().enleverTousLesPions();
+        int depart = variante.getNumero(11, 0);
+        int[] rayon = variante.getRayonDame(depart, Variante.NORD_EST);
+        assertEquals(11, rayon.length);
+        jeu.getDamier().ajouterPion(depart, new Dame(Pion.CouleurPion.blanc));
+        jeu.getDamier().ajouterPion(rayon[2], new Pion(Pion.CouleurPion.noir));
+        jeu.getDamier().ajouterPion(rayon[6], new Pion(Pion.CouleurPion.noir));
+        jeu.getDamier().ajouterPion(rayon[7], new Pion(Pion.CouleurPion.noir));
+        jeu.getDamier().ajouterPion(variante.getNumero(0, 11), new Pion(Pion.CouleurPion.noir));
+
+        assertTrue(jeu.deplacementValideDame(depart, rayon[1]));
+        assertFalse(jeu.deplacementValideDame(depart, rayon[3]));
+        assertEquals(rayon[2], jeu.getPositionPriseDame(depart, rayon[5]));
+        assertEquals(0, jeu.getPositionPriseDame(depart, rayon[8]));
+        assertTrue(jeu.deplacerPion(depart, rayon[4]));
+        assertNull(jeu.getDamier().getPion(rayon[2]));
+        assertTrue(jeu.getDamier().getPion(rayon[4]) instanceof Dame);
+        // Les pions de 6 et 7 sont collés : la dame ne les prend pas.
+        jeu.setTour(0);
+        assertEquals(0, jeu.getPositionPriseDame(rayon[4], rayon[8]));
+
+        JeuDames copie = JeuDames.restaurer(jeu.sauvegarder());
+        assertEquals(jeu.getCle(), copie.getCle());
+        assertEquals(jeu.getNbCoups(), copie.getNbCoups());
+        assertEquals(jeu.getDernierCoup(), copie.getDernierCoup());
+        assertTrue(copie.getDamier().getPion(rayon[4]) instanceof Dame);
+        assertEquals(Coup.casePrise(jeu.getDernierCoup()), rayon[2]);
+        assertEquals(rayon[2], Coup.casePrise(copie.annulerDernierCoup()));
+        assertNotNull(copie.getDamier().getPion(rayon[2]));
+    }
+}